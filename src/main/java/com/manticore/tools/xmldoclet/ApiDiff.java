@@ -0,0 +1,369 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.ApiReader.ApiElement;
+import com.manticore.tools.xmldoclet.ApiReader.ApiMember;
+import com.manticore.tools.xmldoclet.ApiReader.ApiType;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares the APIs of two documents written by the doclet and reports the added, removed and changed types and
+ * members, including their modifiers, supertypes, signatures and annotations.
+ *
+ * <p>
+ * Both documents are streamed by {@link ApiReader} in the same sorted order and compared in a single merge pass, so
+ * only one package of each document is held in memory. The changes are written to the report as they are found.
+ * </p>
+ *
+ * <p>
+ * A change is binary incompatible, following chapter 13 of the Java Language Specification, if it breaks classes
+ * compiled against the public or protected API of the previous version: removed types and members, changed field and
+ * return types, changed kinds and superclasses, removed interfaces, reduced visibility, changed {@code static}
+ * modifiers and added {@code abstract} or {@code final} modifiers.
+ * </p>
+ */
+final class ApiDiff {
+    /**
+     * The scopes from the least to the most visible.
+     */
+    private static final String[] SCOPES = {"private", "", "protected", "public"};
+
+    /**
+     * The properties whose change always breaks compiled classes.
+     */
+    private static final Set<String> INCOMPATIBLE_PROPERTIES = Set.of("kind", "superclass", "type", "return", "static");
+
+    private final Report report;
+    private int changes;
+    private int incompatibleChanges;
+
+    private ApiDiff(final Report report) {
+        this.report = report;
+    }
+
+    /**
+     * The formats of the report.
+     */
+    enum Format {
+        XML, JSON;
+
+        /**
+         * {@return the format with the given name, case-insensitive}
+         *
+         * @param name the name of the format, or null for XML
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        static Format of(final String name) {
+            if (name == null || name.isBlank()) {
+                return XML;
+            }
+
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported API diff format " + name + ", use "
+                        + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+            }
+        }
+
+        /**
+         * {@return the extension of the report files, including the dot}
+         */
+        String getExtension() {
+            return ".diff." + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Compares two documents written by the doclet.
+     *
+     * @param previous the document of the previous version
+     * @param current the document of the current version
+     * @param outputStream the stream the report is written to, which is left open
+     * @param format the format of the report
+     * @return the number of changes and of binary incompatible changes
+     */
+    static Summary compare(
+            final Path previous, final Path current, final OutputStream outputStream, final Format format)
+            throws IOException, XMLStreamException {
+        final Report report = format == Format.JSON ? new JsonReport(outputStream) : new XmlReport(outputStream);
+        final ApiDiff diff = new ApiDiff(report);
+
+        try (var previousReader = ApiReader.open(previous); var currentReader = ApiReader.open(current)) {
+            report.start(previous.toString(), current.toString());
+
+            ApiType previousType = previousReader.next();
+            ApiType currentType = currentReader.next();
+            while (previousType != null || currentType != null) {
+                final int order = previousType == null ? 1
+                        : currentType == null ? -1
+                        : previousType.getKey().compareTo(currentType.getKey());
+                if (order < 0) {
+                    diff.change("removed", previousType, null, null, null, null, isApi(previousType));
+                    previousType = previousReader.next();
+                } else if (order > 0) {
+                    diff.change("added", currentType, null, null, null, null, false);
+                    currentType = currentReader.next();
+                } else {
+                    diff.compareTypes(previousType, currentType);
+                    previousType = previousReader.next();
+                    currentType = currentReader.next();
+                }
+            }
+
+            report.end(diff.changes, diff.incompatibleChanges);
+        }
+        return new Summary(diff.changes, diff.incompatibleChanges);
+    }
+
+    private void compareTypes(final ApiType previous, final ApiType current) throws IOException, XMLStreamException {
+        final boolean api = isApi(previous);
+        compareProperties(previous, null, previous, current, api);
+
+        final Iterator<ApiMember> previousMembers = previous.members();
+        final Iterator<ApiMember> currentMembers = current.members();
+        ApiMember previousMember = previousMembers.hasNext() ? previousMembers.next() : null;
+        ApiMember currentMember = currentMembers.hasNext() ? currentMembers.next() : null;
+        while (previousMember != null || currentMember != null) {
+            final int order = previousMember == null ? 1
+                    : currentMember == null ? -1
+                    : previousMember.getKey().compareTo(currentMember.getKey());
+            if (order < 0) {
+                change("removed", previous, previousMember, null, null, null, api && isApi(previousMember));
+                previousMember = previousMembers.hasNext() ? previousMembers.next() : null;
+            } else if (order > 0) {
+                change("added", current, currentMember, null, null, null, false);
+                currentMember = currentMembers.hasNext() ? currentMembers.next() : null;
+            } else {
+                compareProperties(previous, previousMember, previousMember, currentMember, api && isApi(previousMember));
+                previousMember = previousMembers.hasNext() ? previousMembers.next() : null;
+                currentMember = currentMembers.hasNext() ? currentMembers.next() : null;
+            }
+        }
+    }
+
+    private void compareProperties(
+            final ApiType type, final ApiMember member, final ApiElement previous, final ApiElement current,
+            final boolean api) throws IOException, XMLStreamException {
+        final Set<String> names = new TreeSet<>(previous.getProperties().keySet());
+        names.addAll(current.getProperties().keySet());
+        for (final String name : names) {
+            final String previousValue = previous.get(name);
+            final String currentValue = current.get(name);
+            if (previousValue == null ? currentValue != null : !previousValue.equals(currentValue)) {
+                change("changed", type, member, name, previousValue, currentValue,
+                        api && isIncompatible(name, previousValue, currentValue));
+            }
+        }
+    }
+
+    private static boolean isIncompatible(final String name, final String previousValue, final String currentValue) {
+        switch (name) {
+            case "scope":
+                return getVisibility(currentValue) < getVisibility(previousValue);
+            case "abstract":
+            case "final":
+                return currentValue != null;
+            case "interfaces":
+                return previousValue != null && (currentValue == null
+                        || !Set.of(currentValue.split(", ")).containsAll(Set.of(previousValue.split(", "))));
+            default:
+                return INCOMPATIBLE_PROPERTIES.contains(name);
+        }
+    }
+
+    /**
+     * {@return whether an element is visible outside of its package} Documents written with {@code -private}
+     * also contain elements which are not part of the API.
+     */
+    private static boolean isApi(final ApiElement element) {
+        return getVisibility(element.get("scope")) >= 2;
+    }
+
+    private static int getVisibility(final String scope) {
+        return Arrays.asList(SCOPES).indexOf(scope == null ? "" : scope);
+    }
+
+    private void change(
+            final String action, final ApiType type, final ApiMember member, final String property,
+            final String previousValue, final String currentValue, final boolean incompatible)
+            throws IOException, XMLStreamException {
+        changes++;
+        if (incompatible) {
+            incompatibleChanges++;
+        }
+        report.change(new Change(action, type, member, property, previousValue, currentValue, incompatible));
+    }
+
+    /**
+     * The number of changes found by a comparison.
+     */
+    static final class Summary {
+        private final int changes;
+        private final int incompatibleChanges;
+
+        Summary(final int changes, final int incompatibleChanges) {
+            this.changes = changes;
+            this.incompatibleChanges = incompatibleChanges;
+        }
+
+        int getChanges() {
+            return changes;
+        }
+
+        int getIncompatibleChanges() {
+            return incompatibleChanges;
+        }
+    }
+
+    /**
+     * An added, removed or changed type or member. A changed element has one change per changed property.
+     */
+    static final class Change {
+        private final String action;
+        private final String kind;
+        private final String type;
+        private final String member;
+        private final String property;
+        private final String previousValue;
+        private final String currentValue;
+        private final boolean incompatible;
+
+        private Change(
+                final String action, final ApiType type, final ApiMember member, final String property,
+                final String previousValue, final String currentValue, final boolean incompatible) {
+            this.action = action;
+            this.kind = member == null ? type.get("kind") : member.getKind();
+            this.type = type.getQualified();
+            this.member = member == null ? null : member.getName();
+            this.property = property;
+            this.previousValue = previousValue;
+            this.currentValue = currentValue;
+            this.incompatible = incompatible;
+        }
+    }
+
+    /**
+     * Writes the changes as they are found.
+     */
+    private interface Report {
+        void start(String previous, String current) throws IOException, XMLStreamException;
+
+        void change(Change change) throws IOException, XMLStreamException;
+
+        void end(int changes, int incompatibleChanges) throws IOException, XMLStreamException;
+    }
+
+    /**
+     * Writes {@code <apiDiff>} with one {@code <change>} element per change, followed by the numbers of changes.
+     */
+    private static final class XmlReport implements Report {
+        private final XMLStreamWriter writer;
+
+        private XmlReport(final OutputStream outputStream) throws XMLStreamException {
+            this.writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, "UTF-8");
+        }
+
+        @Override
+        public void start(final String previous, final String current) throws XMLStreamException {
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("apiDiff");
+            writer.writeAttribute("previous", previous);
+            writer.writeAttribute("current", current);
+        }
+
+        @Override
+        public void change(final Change change) throws XMLStreamException {
+            writer.writeCharacters("\n  ");
+            writer.writeEmptyElement("change");
+            writer.writeAttribute("action", change.action);
+            writer.writeAttribute("kind", change.kind);
+            writer.writeAttribute("type", change.type);
+            writeAttribute("member", change.member);
+            writeAttribute("property", change.property);
+            writeAttribute("previous", change.previousValue);
+            writeAttribute("current", change.currentValue);
+            if (change.incompatible) {
+                writer.writeAttribute("incompatible", "true");
+            }
+        }
+
+        @Override
+        public void end(final int changes, final int incompatibleChanges) throws XMLStreamException {
+            writer.writeCharacters("\n  ");
+            writer.writeEmptyElement("summary");
+            writer.writeAttribute("changes", String.valueOf(changes));
+            writer.writeAttribute("incompatible", String.valueOf(incompatibleChanges));
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        }
+
+        private void writeAttribute(final String name, final String value) throws XMLStreamException {
+            if (value != null) {
+                writer.writeAttribute(name, value);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code {"previous":...,"current":...,"changes":[...],"summary":{...}}} with one object per change.
+     */
+    private static final class JsonReport implements Report {
+        private final Writer writer;
+        private boolean first = true;
+
+        private JsonReport(final OutputStream outputStream) {
+            this.writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void start(final String previous, final String current) throws IOException {
+            writer.write("{\"previous\":");
+            SearchIndex.writeString(writer, previous);
+            writer.write(",\"current\":");
+            SearchIndex.writeString(writer, current);
+            writer.write(",\"changes\":[");
+        }
+
+        @Override
+        public void change(final Change change) throws IOException {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+            writer.write("{\"action\":\"" + change.action + "\",\"kind\":\"" + change.kind + "\",\"type\":");
+            SearchIndex.writeString(writer, change.type);
+            writeProperty("member", change.member);
+            writeProperty("property", change.property);
+            writeProperty("previous", change.previousValue);
+            writeProperty("current", change.currentValue);
+            writer.write(",\"incompatible\":" + change.incompatible + "}");
+        }
+
+        @Override
+        public void end(final int changes, final int incompatibleChanges) throws IOException {
+            writer.write("],\n\"summary\":{\"changes\":" + changes + ",\"incompatible\":" + incompatibleChanges + "}}\n");
+            writer.flush();
+        }
+
+        private void writeProperty(final String name, final String value) throws IOException {
+            if (value != null) {
+                writer.write(",\"" + name + "\":");
+                SearchIndex.writeString(writer, value);
+            }
+        }
+    }
+}
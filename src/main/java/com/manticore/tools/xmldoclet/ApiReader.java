@@ -0,0 +1,478 @@
+package com.manticore.tools.xmldoclet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Streams the API of a document written by the doclet, in the plain or the compact XML profile and optionally
+ * compressed, one type at a time. Only the parts of the types and members relevant for comparing APIs are read:
+ * their kind, modifiers, supertypes, signatures and annotations.
+ *
+ * <p>
+ * The types are returned sorted by package name, then by qualified name. The doclet writes the packages in that
+ * order (see {@link Parser#getSortedClasses}), but groups the types of a package by their kind, so the types of one
+ * package are buffered and sorted. The memory needed is therefore bounded by the largest package, not by the
+ * document. The type table of a compact document is at its end, so it is read in a first pass over the document.
+ * </p>
+ *
+ * @see ApiDiff
+ */
+final class ApiReader implements Closeable {
+    private final XMLStreamReader reader;
+    private final InputStream inputStream;
+
+    /**
+     * The qualified names of the type table of a compact document, null for a plain document.
+     */
+    private final Map<String, String> types;
+
+    private final TreeMap<String, ApiType> packageTypes = new TreeMap<>();
+    private String packageName;
+    private String previousPackageName;
+
+    private ApiReader(final InputStream inputStream, final Map<String, String> types) throws XMLStreamException {
+        this.inputStream = inputStream;
+        this.reader = newFactory().createXMLStreamReader(inputStream);
+        this.types = types;
+        reader.nextTag();
+    }
+
+    /**
+     * Opens a document written by the doclet.
+     *
+     * @param file the plain or compact XML file, which may be compressed
+     * @return the reader positioned before the first type
+     */
+    static ApiReader open(final Path file) throws IOException, XMLStreamException {
+        final Map<String, String> types = isCompact(file) ? readTypeTable(file) : null;
+        final InputStream inputStream = Compression.decompress(Files.newInputStream(file));
+        try {
+            return new ApiReader(inputStream, types);
+        } catch (XMLStreamException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@return the next type, or null after the last one}
+     */
+    ApiType next() throws XMLStreamException {
+        while (packageTypes.isEmpty() && readPackage()) {
+            // packages without types are skipped
+        }
+        final Map.Entry<String, ApiType> first = packageTypes.pollFirstEntry();
+        return first == null ? null : first.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Reads the types of the next package into the buffer.
+     *
+     * @return false if there are no more packages
+     */
+    private boolean readPackage() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (!"package".equals(reader.getLocalName())) {
+                // the type table of a compact document
+                skipElement();
+                continue;
+            }
+
+            packageName = attribute("name");
+            if (previousPackageName != null && previousPackageName.compareTo(packageName) >= 0) {
+                throw new XMLStreamException("The packages are not in canonical order, " + packageName
+                        + " follows " + previousPackageName + ". Write the document again with this doclet version.",
+                        reader.getLocation());
+            }
+            previousPackageName = packageName;
+
+            readChildren(name -> {
+                switch (name) {
+                    case "annotation", "enum", "interface", "class" -> {
+                        final ApiType type = readType(name);
+                        packageTypes.put(type.getQualified(), type);
+                    }
+                    default -> skipElement();
+                }
+            });
+            return true;
+        }
+        return false;
+    }
+
+    private ApiType readType(final String kind) throws XMLStreamException {
+        final ApiType type = new ApiType(packageName, attribute("qualified"));
+        type.put("kind", kind);
+        type.put("scope", attribute("scope"));
+        putFlag(type, "abstract");
+
+        final List<String> interfaces = new ArrayList<>();
+        final List<String> annotations = new ArrayList<>();
+        final List<String> typeParameters = new ArrayList<>();
+        readChildren(name -> {
+            switch (name) {
+                case "class" -> type.put("superclass", readTypeName());
+                case "interface" -> interfaces.add(readTypeName());
+                case "generic" -> typeParameters.add(readTypeParameter());
+                case "annotation" -> annotations.add(readAnnotationName());
+                case "constructor", "method" -> type.add(readExecutable(name, kind));
+                case "field" -> type.add(readField(kind));
+                case "constant" -> type.add(readConstant());
+                case "element" -> type.add(readAnnotationElement());
+                default -> skipElement();
+            }
+        });
+
+        // the order of the interfaces doesn't matter for the API
+        interfaces.sort(null);
+        putList(type, "interfaces", interfaces);
+        putList(type, "typeParameters", typeParameters);
+        putList(type, "annotations", annotations);
+        return type;
+    }
+
+    private ApiMember readExecutable(final String kind, final String typeKind) throws XMLStreamException {
+        final String name = attribute("name");
+        final ApiMember member = new ApiMember(kind);
+        member.put("scope", readMemberScope(typeKind));
+        putFlag(member, "abstract");
+        putFlag(member, "final");
+        putFlag(member, "static");
+
+        final List<String> parameters = new ArrayList<>();
+        final List<String> exceptions = new ArrayList<>();
+        final List<String> annotations = new ArrayList<>();
+        readChildren(childName -> {
+            switch (childName) {
+                case "parameter" -> parameters.add(readParameterType());
+                case "return" -> member.put("return", readTypeName());
+                case "exception" -> exceptions.add(readTypeName());
+                case "annotation" -> annotations.add(readAnnotationName());
+                default -> skipElement();
+            }
+        });
+
+        member.setName(name + "(" + String.join(",", parameters) + ")");
+        exceptions.sort(null);
+        putList(member, "exceptions", exceptions);
+        putList(member, "annotations", annotations);
+        return member;
+    }
+
+    private ApiMember readField(final String typeKind) throws XMLStreamException {
+        final ApiMember member = new ApiMember("field");
+        member.setName(attribute("name"));
+        member.put("scope", readMemberScope(typeKind));
+        putFlag(member, "static");
+        putFlag(member, "final");
+        putFlag(member, "volatile");
+        putFlag(member, "transient");
+
+        final List<String> annotations = new ArrayList<>();
+        readChildren(name -> {
+            switch (name) {
+                case "type" -> member.put("type", readTypeName());
+                case "constant" -> member.put("constant", reader.getElementText());
+                case "annotation" -> annotations.add(readAnnotationName());
+                default -> skipElement();
+            }
+        });
+        putList(member, "annotations", annotations);
+        return member;
+    }
+
+    private ApiMember readConstant() throws XMLStreamException {
+        final ApiMember member = new ApiMember("constant");
+        member.setName(attribute("name"));
+        // enum constants and annotation elements are implicitly public
+        member.put("scope", "public");
+        final List<String> annotations = new ArrayList<>();
+        readChildren(name -> {
+            if ("annotation".equals(name)) {
+                annotations.add(readAnnotationName());
+            } else {
+                skipElement();
+            }
+        });
+        putList(member, "annotations", annotations);
+        return member;
+    }
+
+    private ApiMember readAnnotationElement() throws XMLStreamException {
+        final ApiMember member = new ApiMember("element");
+        member.setName(attribute("name"));
+        member.put("scope", "public");
+        member.put("default", attribute("default"));
+        readChildren(name -> {
+            if ("type".equals(name)) {
+                member.put("type", readTypeName());
+            } else {
+                skipElement();
+            }
+        });
+        return member;
+    }
+
+    /**
+     * Reads the scope of a member. The members of interfaces are implicitly public, unless they are private.
+     */
+    private String readMemberScope(final String typeKind) {
+        final String scope = attribute("scope");
+        return "interface".equals(typeKind) && (scope == null || scope.isEmpty()) ? "public" : scope;
+    }
+
+    private String readParameterType() throws XMLStreamException {
+        final String[] type = {""};
+        readChildren(name -> {
+            if ("type".equals(name)) {
+                type[0] = readTypeName();
+            } else {
+                skipElement();
+            }
+        });
+        return type[0];
+    }
+
+    private String readTypeParameter() throws XMLStreamException {
+        final StringBuilder typeParameter = new StringBuilder(attribute("name"));
+        readChildren(name -> {
+            if ("bound".equals(name)) {
+                typeParameter.append(typeParameter.indexOf(" extends ") < 0 ? " extends " : " & ")
+                        .append(reader.getElementText().trim());
+            } else {
+                skipElement();
+            }
+        });
+        return typeParameter.toString();
+    }
+
+    private String readAnnotationName() throws XMLStreamException {
+        final String qualified = attribute("qualified");
+        skipElement();
+        return qualified;
+    }
+
+    /**
+     * Reads the qualified name of a type element, resolving the reference of a compact document.
+     */
+    private String readTypeName() throws XMLStreamException {
+        final String qualified = types == null ? attribute("qualified") : types.get(attribute("ref"));
+        skipElement();
+        return qualified;
+    }
+
+    private void putFlag(final ApiElement element, final String name) {
+        if (Boolean.parseBoolean(attribute(name))) {
+            element.put(name, "true");
+        }
+    }
+
+    private static void putList(final ApiElement element, final String name, final List<String> values) {
+        if (!values.isEmpty()) {
+            element.put(name, String.join(", ", values));
+        }
+    }
+
+    private String attribute(final String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private void readChildren(final ChildHandler handler) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                handler.handle(reader.getLocalName());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+
+    private void skipElement() throws XMLStreamException {
+        skipElement(reader);
+    }
+
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static boolean isCompact(final Path file) throws IOException, XMLStreamException {
+        try (var inputStream = Compression.decompress(Files.newInputStream(file))) {
+            final XMLStreamReader reader = newFactory().createXMLStreamReader(inputStream);
+            try {
+                reader.nextTag();
+                return CompactXmlWriter.NAMESPACE.equals(reader.getNamespaceURI());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the qualified names of the type table of a compact document, skipping the packages.
+     */
+    private static Map<String, String> readTypeTable(final Path file) throws IOException, XMLStreamException {
+        final Map<String, String> types = new HashMap<>();
+        try (var inputStream = Compression.decompress(Files.newInputStream(file))) {
+            final XMLStreamReader reader = newFactory().createXMLStreamReader(inputStream);
+            try {
+                reader.nextTag();
+                while (reader.hasNext()) {
+                    final int event = reader.next();
+                    if (event != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if ("type".equals(reader.getLocalName())) {
+                        types.put(reader.getAttributeValue(null, "id"), reader.getAttributeValue(null, "qualified"));
+                    } else if (!"types".equals(reader.getLocalName())) {
+                        skipElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return types;
+    }
+
+    private static XMLInputFactory newFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @FunctionalInterface
+    private interface ChildHandler {
+        void handle(String localName) throws XMLStreamException;
+    }
+
+    /**
+     * A type or member, described by the properties relevant for its API, such as its scope, modifiers and types.
+     * Absent properties have their default, like false for the modifiers.
+     */
+    abstract static class ApiElement {
+        private final SortedMap<String, String> properties = new TreeMap<>();
+
+        void put(final String name, final String value) {
+            if (value != null) {
+                properties.put(name, value);
+            }
+        }
+
+        /**
+         * {@return the value of a property, or null if the property has its default}
+         *
+         * @param name the name of the property
+         */
+        String get(final String name) {
+            return properties.get(name);
+        }
+
+        SortedMap<String, String> getProperties() {
+            return properties;
+        }
+    }
+
+    /**
+     * A class, interface, enum or annotation type and its members.
+     */
+    static final class ApiType extends ApiElement {
+        private final String packageName;
+        private final String qualified;
+        private final SortedMap<String, ApiMember> members = new TreeMap<>();
+
+        ApiType(final String packageName, final String qualified) {
+            this.packageName = packageName;
+            this.qualified = qualified;
+        }
+
+        /**
+         * {@return the key the types are sorted by: the package name, followed by a character lower than any in a
+         * name, followed by the qualified name}
+         */
+        String getKey() {
+            return packageName + "\0" + qualified;
+        }
+
+        String getQualified() {
+            return qualified;
+        }
+
+        /**
+         * {@return the members, sorted by their kind and name}
+         */
+        Iterator<ApiMember> members() {
+            return members.values().iterator();
+        }
+
+        void add(final ApiMember member) {
+            members.put(member.getKey(), member);
+        }
+    }
+
+    /**
+     * A constructor, method, field, enum constant or annotation element. Constructors and methods are named with
+     * their parameter types, like {@code method(int,java.lang.String)}, so overloads are distinct members.
+     */
+    static final class ApiMember extends ApiElement {
+        private final String kind;
+        private String name;
+
+        ApiMember(final String kind) {
+            this.kind = kind;
+        }
+
+        String getKind() {
+            return kind;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        void setName(final String name) {
+            this.name = name;
+        }
+
+        String getKey() {
+            return kind + " " + name;
+        }
+    }
+}
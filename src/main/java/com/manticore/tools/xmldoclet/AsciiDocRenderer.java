@@ -0,0 +1,297 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.AnnotationInstance;
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Constructor;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.EnumConstant;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.MethodParameter;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TagInfo;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the packages, enums, classes and interfaces with their public constructors and methods as AsciiDoc, see
+ * {@link Renderer}. The sections have the same content as the ones of the {@link MarkdownRenderer}, and the anchors of
+ * the {@link SearchIndex} as IDs, which the resolved {@code {@link}} tags and the documented types of signatures
+ * refer to.
+ *
+ * <p>
+ * Paragraphs, line breaks, list items, {@code <code>}, {@code {@code}} and {@code <pre>} of the comments are
+ * converted, other HTML tags are removed since AsciiDoc would show them as text.
+ * </p>
+ */
+final class AsciiDocRenderer extends Renderer {
+    private static final Pattern PRE_PATTERN = Pattern.compile("<pre>\\s*([\\s\\S]*?)\\s*</pre>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern INDENT_PATTERN = Pattern.compile("\\n[ \\t]*");
+    private static final Pattern CODE_PATTERN = Pattern.compile(
+            "\\{@code\\s+([^}]*[^\\s}])\\s*}|<code>\\s*([\\s\\S]*?)\\s*</code>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PARAGRAPH_PATTERN = Pattern.compile("\\s*</?p>\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BREAK_PATTERN = Pattern.compile("\\s*<br\\s*/?>\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIST_ITEM_PATTERN = Pattern.compile("\\s*<li>\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIST_PATTERN = Pattern.compile("\\s*</?[uo]l>\\s*|\\s*</li>", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HTML_TAG_PATTERN = Pattern.compile("</?[a-zA-Z][^>]*>");
+    private static final Pattern BLANK_LINES_PATTERN = Pattern.compile("\\n{3,}");
+    private static final Pattern LINK_PATTERN =
+            Pattern.compile("\\{@link(plain)?\\s+([^\\s}(]+(\\([^)]*\\))?)\\s*([^}]*[^\\s}])?\\s*}");
+
+    AsciiDocRenderer(final Map<String, String> parameters, final int parallelism) {
+        super(parameters, parallelism);
+    }
+
+    @Override
+    protected void renderHeader(final Root root, final StringBuilder output) {
+        collectDocumentedTypes(root);
+
+        output.append("= ").append(getParameter("doctitle", "Java API")).append("\n:toc: left\n:toclevels: 3\n\n");
+
+        final String basePackage = getParameter("basePackage", "");
+        if (!basePackage.isEmpty()) {
+            output.append("Base Package: `+").append(basePackage).append("+`\n\n");
+        }
+    }
+
+    @Override
+    protected void renderPackage(final Package packageNode, final StringBuilder output) {
+        final String name = packageNode.getName();
+        final String basePackage = getParameter("basePackage", "");
+        final String displayName = basePackage.isEmpty() ? name
+                : name.length() <= basePackage.length() ? "Base"
+                : name.substring(basePackage.length() + 1);
+
+        renderHeading("==", name, displayName, output);
+        renderComment(packageNode.getComment(), packageNode.getLink(), output);
+
+        for (final Enum enumNode : packageNode.getEnum()) {
+            renderEnum(enumNode, output);
+        }
+        for (final Class classNode : packageNode.getClazz()) {
+            renderClass(classNode, output);
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            renderInterface(interfaceNode, output);
+        }
+    }
+
+    private void renderEnum(final Enum enumNode, final StringBuilder output) {
+        renderHeading("===", enumNode.getQualified(), enumNode.getName(), output);
+        output.append("_enum_");
+        renderTypeList(" implements ", enumNode.getInterface(), output);
+        output.append("\n\n");
+        renderComment(enumNode.getComment(), enumNode.getLink(), output);
+
+        final List<EnumConstant> constants = enumNode.getConstant();
+        if (!constants.isEmpty()) {
+            output.append(".Constants\n");
+            for (final EnumConstant constant : constants) {
+                output.append("* `+").append(constant.getName()).append("+`");
+                renderItemComment(constant.getComment(), constant.getLink(), output);
+                output.append('\n');
+            }
+            output.append('\n');
+        }
+    }
+
+    private void renderClass(final Class classNode, final StringBuilder output) {
+        renderHeading("===", classNode.getQualified(), classNode.getName(), output);
+        output.append(classNode.isAbstract() ? "_abstract class_" : "_class_");
+        if (classNode.getClazz() != null) {
+            output.append(" extends ").append(typeLink(classNode.getClazz()));
+        }
+        renderTypeList(" implements ", classNode.getInterface(), output);
+        renderTypeList(" \u2014 known subclasses: ", classNode.getSubclass(), output);
+        output.append("\n\n");
+        renderComment(classNode.getComment(), classNode.getLink(), output);
+
+        boolean first = true;
+        for (final Constructor constructorNode : classNode.getConstructor()) {
+            if ("public".equals(constructorNode.getScope())) {
+                if (first) {
+                    output.append(".Constructors\n");
+                    first = false;
+                }
+                output.append("* *").append(constructorNode.getName()).append('*');
+                renderParameterList(constructorNode.getParameter(), output);
+                renderItemComment(constructorNode.getComment(), constructorNode.getLink(), output);
+                renderParameterDescriptions(constructorNode.getParameter(), constructorNode.getTag(),
+                        constructorNode.getLink(), output);
+                output.append('\n');
+            }
+        }
+        if (!first) {
+            output.append('\n');
+        }
+
+        renderMethods(classNode.getMethod(), output);
+    }
+
+    private void renderInterface(final Interface interfaceNode, final StringBuilder output) {
+        renderHeading("===", interfaceNode.getQualified(), interfaceNode.getName(), output);
+        output.append("_interface_");
+        renderTypeList(" extends ", interfaceNode.getInterface(), output);
+        renderTypeList(" \u2014 known implementations: ", interfaceNode.getImplementor(), output);
+        output.append("\n\n");
+        renderComment(interfaceNode.getComment(), interfaceNode.getLink(), output);
+
+        renderMethods(interfaceNode.getMethod(), output);
+    }
+
+    private void renderMethods(final List<Method> methods, final StringBuilder output) {
+        boolean first = true;
+        for (final Method methodNode : methods) {
+            if (!isRendered(methodNode.getScope())) {
+                continue;
+            }
+            if (first) {
+                output.append(".Methods\n");
+                first = false;
+            }
+
+            output.append("* ");
+            for (final AnnotationInstance annotation : methodNode.getAnnotation()) {
+                output.append("`+@").append(annotation.getName()).append("+` ");
+            }
+            if (methodNode.isStatic()) {
+                output.append("_static_ ");
+            }
+            output.append('*').append(methodNode.getName()).append('*');
+            renderParameterList(methodNode.getParameter(), output);
+
+            final TypeInfo returnNode = methodNode.getReturn();
+            if (returnNode != null && !"void".equals(returnNode.getQualified())) {
+                output.append(" \u2192 ").append(typeLink(returnNode));
+            }
+            renderItemComment(methodNode.getComment(), methodNode.getLink(), output);
+            renderParameterDescriptions(methodNode.getParameter(), methodNode.getTag(), methodNode.getLink(), output);
+
+            final String returnDescription = getTagText(methodNode.getTag(), "return", null);
+            if (returnDescription != null) {
+                output.append("\n** _returns_ ").append(attach(convert(returnDescription, methodNode.getLink())));
+            }
+            output.append('\n');
+        }
+        if (!first) {
+            output.append('\n');
+        }
+    }
+
+    private static void renderHeading(
+            final String level, final String qualified, final String name, final StringBuilder output) {
+        output.append("[[").append(SearchIndex.getAnchor(qualified)).append("]]\n")
+                .append(level).append(' ').append(name).append("\n\n");
+    }
+
+    private void renderTypeList(final String label, final List<TypeInfo> types, final StringBuilder output) {
+        for (int i = 0; i < types.size(); i++) {
+            output.append(i == 0 ? label : ", ").append(typeLink(types.get(i)));
+        }
+    }
+
+    private void renderParameterList(final List<MethodParameter> parameters, final StringBuilder output) {
+        output.append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(typeLink(parameters.get(i).getType())).append(' ').append(parameters.get(i).getName());
+        }
+        output.append(')');
+    }
+
+    private void renderParameterDescriptions(
+            final List<MethodParameter> parameters, final List<TagInfo> tags, final List<LinkInfo> links,
+            final StringBuilder output) {
+        for (final MethodParameter parameter : parameters) {
+            final String description = getTagText(tags, "param", parameter.getName());
+            if (description != null) {
+                output.append("\n** `+").append(parameter.getName()).append("+` ")
+                        .append(attach(convert(description, links)));
+            }
+        }
+    }
+
+    private void renderComment(final String comment, final List<LinkInfo> links, final StringBuilder output) {
+        if (comment != null && !comment.isBlank()) {
+            output.append(convert(comment, links)).append("\n\n");
+        }
+    }
+
+    /**
+     * Renders the comment of a list item as the following lines of its paragraph.
+     */
+    private void renderItemComment(final String comment, final List<LinkInfo> links, final StringBuilder output) {
+        if (comment != null && !comment.isBlank()) {
+            output.append(" +\n").append(attach(convert(comment, links)));
+        }
+    }
+
+    /**
+     * {@return the simple name of a type, referring to its section if it is documented}
+     */
+    private String typeLink(final TypeInfo type) {
+        final String qualified = type.getQualified();
+        final String name = getSimpleTypeName(type);
+        return documentedTypes.contains(qualified)
+                ? "<<" + SearchIndex.getAnchor(qualified) + "," + name + ">>"
+                : "`+" + name + "+`";
+    }
+
+    /**
+     * {@return a comment converted to AsciiDoc}
+     *
+     * @param comment the comment
+     * @param links the resolved references of the commented element
+     */
+    String convert(final String comment, final List<LinkInfo> links) {
+        final var output = new StringBuilder(comment.length() + 32);
+        final Matcher pre = PRE_PATTERN.matcher(comment);
+        int start = 0;
+        while (pre.find()) {
+            output.append(convertText(comment.substring(start, pre.start()), links))
+                    .append("\n\n[source,java]\n----\n").append(pre.group(1)).append("\n----\n\n");
+            start = pre.end();
+        }
+        output.append(convertText(comment.substring(start), links));
+        return BLANK_LINES_PATTERN.matcher(output).replaceAll("\n\n").strip();
+    }
+
+    private String convertText(final String text, final List<LinkInfo> links) {
+        String converted = INDENT_PATTERN.matcher(text).replaceAll("\n");
+        converted = CODE_PATTERN.matcher(converted).replaceAll(match -> Matcher.quoteReplacement(
+                "`+" + (match.group(1) != null ? match.group(1) : match.group(2)) + "+`"));
+        converted = PARAGRAPH_PATTERN.matcher(converted).replaceAll("\n\n");
+        converted = BREAK_PATTERN.matcher(converted).replaceAll(" +\n");
+        converted = LIST_ITEM_PATTERN.matcher(converted).replaceAll("\n* ");
+        converted = LIST_PATTERN.matcher(converted).replaceAll("\n");
+        converted = HTML_TAG_PATTERN.matcher(converted).replaceAll("");
+
+        return LINK_PATTERN.matcher(converted).replaceAll(match -> {
+            final String reference = match.group(2);
+            final String label = match.group(4) != null ? match.group(4) : reference;
+            final LinkInfo link = links.stream()
+                    .filter(candidate -> reference.equals(candidate.getReference()))
+                    .findFirst()
+                    .orElse(null);
+            return Matcher.quoteReplacement(link != null && link.getAnchor() != null
+                    ? "<<" + link.getAnchor() + "," + label + ">>"
+                    : "`+" + label + "+`");
+        });
+    }
+
+    /**
+     * {@return the blocks of a converted comment attached to the list item they follow} The blank lines between them
+     * would end the list, so they are replaced by list continuations.
+     */
+    private static String attach(final String text) {
+        return text.replace("\n\n", "\n+\n");
+    }
+}
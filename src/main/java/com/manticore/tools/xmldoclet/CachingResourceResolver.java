@@ -0,0 +1,116 @@
+package com.manticore.tools.xmldoclet;
+
+import net.sf.saxon.lib.ResourceRequest;
+import net.sf.saxon.lib.ResourceResolver;
+import net.sf.saxon.trans.XPathException;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the modules of the stylesheets, like {@code xsl:include}, {@code xsl:import} and
+ * {@code xsl:use-package}, from the classpath, from jars or from files, and keeps their content by URI. A module
+ * shared by several stylesheets is therefore read only once, and a file is read again only when it was modified. The
+ * modules of the bundled stylesheets have {@code jar:} URIs, or {@code file:} ones when the classes aren't packaged.
+ * Other URIs are left to the default resolver of Saxon.
+ */
+final class CachingResourceResolver implements ResourceResolver {
+    private final Map<String, Module> modules = new ConcurrentHashMap<>();
+
+    @Override
+    public Source resolve(final ResourceRequest request) throws XPathException {
+        final Path file = request.uri != null ? getFile(request.uri) : null;
+        if (request.uri == null || file != null && !Files.isRegularFile(file)) {
+            return null;
+        }
+
+        Module module = modules.get(request.uri);
+        try {
+            final long lastModified = file != null ? Files.getLastModifiedTime(file).toMillis() : 0;
+            if (module == null || module.lastModified != lastModified) {
+                final byte[] content;
+                if (file != null) {
+                    content = Files.readAllBytes(file);
+                } else {
+                    try (InputStream inputStream = open(request.uri)) {
+                        if (inputStream == null) {
+                            return null;
+                        }
+                        content = inputStream.readAllBytes();
+                    }
+                }
+                module = new Module(lastModified, content);
+                modules.put(request.uri, module);
+            }
+        } catch (IOException e) {
+            throw new XPathException("Failed to read " + request.uri + ": " + e.getMessage());
+        }
+
+        return new StreamSource(new ByteArrayInputStream(module.content), request.uri);
+    }
+
+    /**
+     * {@return the content of a {@code jar:} URI or of a classpath resource, or null if there is none}
+     *
+     * @param uri a {@code jar:} URI or the name of a classpath resource
+     */
+    private InputStream open(final String uri) throws IOException {
+        final URI parsed;
+        try {
+            parsed = new URI(uri);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (parsed.getScheme() == null) {
+            return getClass().getClassLoader().getResourceAsStream(uri);
+        } else if (!"jar".equalsIgnoreCase(parsed.getScheme())) {
+            return null;
+        }
+        try {
+            return parsed.toURL().openStream();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@return the file of a {@code file:} URI, or null for any other URI}
+     *
+     * @param uri the absolute URI of a module
+     */
+    static Path getFile(final String uri) {
+        try {
+            final var parsed = new URI(uri);
+            return "file".equalsIgnoreCase(parsed.getScheme()) ? Path.of(parsed) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@return the number of cached modules}
+     */
+    int size() {
+        return modules.size();
+    }
+
+    private static final class Module {
+        private final long lastModified;
+        private final byte[] content;
+
+        private Module(final long lastModified, final byte[] content) {
+            this.lastModified = lastModified;
+            this.content = content;
+        }
+    }
+}
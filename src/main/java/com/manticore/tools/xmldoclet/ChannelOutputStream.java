@@ -0,0 +1,161 @@
+package com.manticore.tools.xmldoclet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link OutputStream} writing into a {@link GatheringByteChannel} through a set of pooled direct
+ * {@link ByteBuffer}s. The buffers are filled one after another and written together with a single gathering write,
+ * so the data is copied only once (from the heap into the direct buffers) and the channel sees a few large writes.
+ */
+final class ChannelOutputStream extends OutputStream {
+    /**
+     * Number of buffers filled before they are written with one gathering write.
+     */
+    static final int GATHER_COUNT = 4;
+
+    private final GatheringByteChannel channel;
+    private final ByteBuffer[] buffers;
+    private int index;
+    private boolean closed;
+
+    /**
+     * @param channel the channel to write to; it is closed together with this stream
+     * @param bufferSize the size of each of the {@link #GATHER_COUNT} direct buffers
+     */
+    ChannelOutputStream(final GatheringByteChannel channel, final int bufferSize) {
+        this.channel = channel;
+        this.buffers = new ByteBuffer[GATHER_COUNT];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = BufferPool.acquire(bufferSize);
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        if (!buffers[index].hasRemaining()) {
+            nextBuffer();
+        }
+        buffers[index].put((byte) b);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureOpen();
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            ByteBuffer buffer = buffers[index];
+            if (!buffer.hasRemaining()) {
+                nextBuffer();
+                buffer = buffers[index];
+            }
+
+            final int count = Math.min(remaining, buffer.remaining());
+            buffer.put(bytes, position, count);
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Writes the buffered data into the channel. The channel itself is not forced to the storage device.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeBuffers();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try (channel) {
+            writeBuffers();
+        } finally {
+            for (int i = 0; i < buffers.length; i++) {
+                BufferPool.release(buffers[i]);
+                buffers[i] = null;
+            }
+        }
+    }
+
+    private void nextBuffer() throws IOException {
+        if (index == buffers.length - 1) {
+            writeBuffers();
+        } else {
+            index++;
+        }
+    }
+
+    /**
+     * Writes all filled buffers with gathering writes, until everything has been written, and clears them.
+     */
+    private void writeBuffers() throws IOException {
+        final int count = buffers[index].position() > 0 ? index + 1 : index;
+        if (count == 0) {
+            return;
+        }
+
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            buffers[i].flip();
+            remaining += buffers[i].remaining();
+        }
+
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, 0, count);
+        }
+
+        for (int i = 0; i < count; i++) {
+            buffers[i].clear();
+        }
+        index = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * A small pool of direct buffers, since allocating (and freeing) direct memory is expensive.
+     * Only buffers of the most recently requested size are kept.
+     */
+    private static final class BufferPool {
+        private static final int MAX_POOLED = 4 * GATHER_COUNT;
+
+        private static final Queue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+        private static final AtomicInteger POOLED = new AtomicInteger();
+
+        static ByteBuffer acquire(final int capacity) {
+            for (ByteBuffer buffer = POOL.poll(); buffer != null; buffer = POOL.poll()) {
+                POOLED.decrementAndGet();
+                if (buffer.capacity() == capacity) {
+                    return buffer.clear();
+                }
+            }
+
+            return ByteBuffer.allocateDirect(capacity);
+        }
+
+        static void release(final ByteBuffer buffer) {
+            if (buffer != null && POOLED.incrementAndGet() <= MAX_POOLED) {
+                POOL.offer(buffer.clear());
+            } else if (buffer != null) {
+                POOLED.decrementAndGet();
+            }
+        }
+    }
+}
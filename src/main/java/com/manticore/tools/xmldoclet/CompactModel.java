@@ -0,0 +1,1430 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Annotation;
+import com.manticore.tools.xmldoclet.xjc.AnnotationArgument;
+import com.manticore.tools.xmldoclet.xjc.AnnotationElement;
+import com.manticore.tools.xmldoclet.xjc.AnnotationInstance;
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Constructor;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.EnumConstant;
+import com.manticore.tools.xmldoclet.xjc.Field;
+import com.manticore.tools.xmldoclet.xjc.InheritedMembers;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.MemberRef;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.MethodParameter;
+import com.manticore.tools.xmldoclet.xjc.ObjectFactory;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TagInfo;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+import com.manticore.tools.xmldoclet.xjc.TypeParameter;
+import com.manticore.tools.xmldoclet.xjc.Wildcard;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A compact in-memory form of the object model, which the doclet keeps instead of the JAXB beans while it writes its
+ * outputs (see {@link Parser#parseCompactModel()}).
+ *
+ * <p>
+ * The beans generated from {@code javadoc.xsd} hold every flag in its own boxed field, every child list in its own
+ * {@code ArrayList} and every type reference, tag and link in its own object. Here the flags are packed into an
+ * {@code int}, the scope is a byte, the children are arrays of their exact size (shared when empty), tags, links and
+ * member references are flattened into string arrays, and names, type references, parameters and annotation
+ * instances are interned per model, so the many members using {@code java.lang.String} or {@code @Override} share
+ * one node.
+ * </p>
+ *
+ * <p>
+ * {@link #projectRoot()} projects the model back to the beans one package at a time: the packages of the returned
+ * root are created when they are accessed and not kept, so the writers, which visit each package once, only hold the
+ * beans of a single package. The packages of {@link #toRoot()} are projected once and kept by the root, for the
+ * callers holding on to the model.
+ * </p>
+ *
+ * <p>
+ * A model with a memory budget (see {@link #CompactModel(long)}) estimates the size of the packages it holds and of
+ * the strings and nodes interned for them. Once they pass the budget, the packages are appended to a temporary
+ * segment file and evicted together with the interned values, and the packages of the root are read back from the
+ * segment file when they are accessed. Such a model only accepts complete packages, since the
+ * spilled ones can't be updated by {@link #setReverseReferences(String, Object)}. It must be closed to delete the
+ * segment file.
+ * </p>
+ */
+final class CompactModel implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CompactModel.class.getName());
+
+    /**
+     * The estimated size of an object header with a few fields, and of a string without its characters.
+     */
+    private static final int NODE_BYTES = 48;
+
+    /**
+     * The estimated size of an entry of the intern tables, besides the interned value.
+     */
+    private static final int INTERNED_ENTRY_BYTES = 40;
+
+    static final int ABSTRACT = 1;
+    static final int FINAL = 1 << 1;
+    static final int STATIC = 1 << 2;
+    static final int NATIVE = 1 << 3;
+    static final int SYNCHRONIZED = 1 << 4;
+    static final int VOLATILE = 1 << 5;
+    static final int TRANSIENT = 1 << 6;
+    static final int VAR_ARGS = 1 << 7;
+    static final int INCLUDED = 1 << 8;
+    static final int ERROR = 1 << 9;
+    static final int EXCEPTION = 1 << 10;
+    static final int EXTERNALIZABLE = 1 << 11;
+    static final int SERIALIZABLE = 1 << 12;
+    static final int PRIMITIVE = 1 << 13;
+    static final int ARRAY = 1 << 14;
+
+    /**
+     * The flags the {@link Parser} always sets on classes, constructors, methods, fields and annotation arguments,
+     * so they are projected even when false, like the parser writes them. Other flags are only projected when true.
+     */
+    private static final int CLASS_FLAGS = ABSTRACT | ERROR | EXCEPTION | EXTERNALIZABLE | SERIALIZABLE;
+    private static final int CONSTRUCTOR_FLAGS = FINAL | NATIVE | STATIC | SYNCHRONIZED | VAR_ARGS;
+    private static final int METHOD_FLAGS = ABSTRACT | CONSTRUCTOR_FLAGS;
+    private static final int FIELD_FLAGS = FINAL | STATIC | VOLATILE | TRANSIENT;
+    private static final int ARGUMENT_FLAGS = PRIMITIVE | ARRAY;
+
+    private static final String[] NO_STRINGS = {};
+    private static final TypeRef[] NO_TYPES = {};
+    private static final MemberNode[] NO_MEMBERS = {};
+    private static final ParameterNode[] NO_PARAMETERS = {};
+    private static final AnnotationNode[] NO_ANNOTATIONS = {};
+    private static final ArgumentNode[] NO_ARGUMENTS = {};
+    private static final InheritedNode[] NO_INHERITED = {};
+    private static final String[][] NO_TYPE_PARAMETERS = {};
+
+    /**
+     * The scopes of packages, types and members, stored as their ordinal.
+     */
+    enum Scope {
+        PACKAGE(""), PRIVATE("private"), PROTECTED("protected"), PUBLIC("public");
+
+        private static final Scope[] VALUES = values();
+        private final String name;
+
+        Scope(final String name) {
+            this.name = name;
+        }
+
+        static byte of(final String name) {
+            if (name == null) {
+                return -1;
+            }
+            for (final Scope scope : VALUES) {
+                if (scope.name.equals(name)) {
+                    return (byte) scope.ordinal();
+                }
+            }
+            throw new IllegalArgumentException("Unknown scope " + name);
+        }
+
+        static String nameOf(final byte scope) {
+            return scope < 0 ? null : VALUES[scope].name;
+        }
+    }
+
+    private final ObjectFactory objectFactory = new ObjectFactory();
+
+    /**
+     * The packages, each a {@link PackageNode} in memory or a {@link SpilledPackage} in the segment file.
+     */
+    private final List<Object> packages = new ArrayList<>();
+    private final Map<String, TypeNode> typesByName = new HashMap<>();
+
+    /**
+     * The interned strings and nodes. With a memory budget they only hold the ones of the packages in memory, since
+     * they are cleared when the packages are spilled.
+     */
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<Object, Object> nodes = new HashMap<>();
+
+    /**
+     * The estimated size of the packages in memory that may be spilled, or 0 if nothing is spilled.
+     */
+    private final long memoryBudget;
+
+    /**
+     * The estimated size of the packages in memory and of the strings and nodes interned for them.
+     */
+    private long residentSize;
+    private Path segmentDirectory;
+    /**
+     * The segment file all spilled packages are appended to, so a model keeps a single file open however often it
+     * spills.
+     */
+    private FileChannel segment;
+    private long segmentSize;
+    private int spilledPackages;
+
+    /**
+     * Creates a model holding all packages in memory.
+     */
+    CompactModel() {
+        this(0);
+    }
+
+    /**
+     * Creates a model spilling the packages to a temporary segment file once their estimated size passes a budget.
+     *
+     * @param memoryBudget the estimated size in bytes of the packages held in memory, or 0 to hold all of them
+     */
+    CompactModel(final long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Adds a package with its types. The beans are not referenced afterwards.
+     *
+     * @param packageNode the package
+     */
+    void add(final Package packageNode) {
+        final List<TypeNode> types = new ArrayList<>();
+        for (final Annotation annotation : packageNode.getAnnotation()) {
+            types.add(compactAnnotation(annotation));
+        }
+        for (final Enum enumNode : packageNode.getEnum()) {
+            types.add(compactEnum(enumNode));
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            types.add(compactInterface(interfaceNode));
+        }
+        for (final Class classNode : packageNode.getClazz()) {
+            types.add(compactClass(classNode));
+        }
+        final var compact = new PackageNode(intern(packageNode.getName()), packageNode.getComment(),
+                compactTags(packageNode.getTag()), compactLinks(packageNode.getLink()), types.toArray(TypeNode[]::new));
+        packages.add(compact);
+
+        if (memoryBudget == 0) {
+            for (final TypeNode type : types) {
+                typesByName.put(type.qualified, type);
+            }
+        } else {
+            residentSize += estimateSize(compact);
+            if (residentSize > memoryBudget) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Appends the packages in memory to the segment file and evicts them.
+     */
+    private void spill() {
+        try {
+            if (segment == null) {
+                segmentDirectory = Files.createTempDirectory("xml-doclet-segments");
+                segment = FileChannel.open(segmentDirectory.resolve("segment.bin"), StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+
+            for (int i = 0; i < packages.size(); i++) {
+                if (packages.get(i) instanceof PackageNode packageNode) {
+                    final var bytes = new ByteArrayOutputStream();
+                    try (var outputStream = new ObjectOutputStream(bytes)) {
+                        outputStream.writeObject(packageNode);
+                    }
+                    final ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                    final int length = buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        segment.write(buffer, segmentSize + length - buffer.remaining());
+                    }
+                    packages.set(i, new SpilledPackage(segment, segmentSize, length));
+                    segmentSize += length;
+                    spilledPackages++;
+                }
+            }
+            // the spilled packages are read back with their own copies, so the interned values are only referenced
+            // by the evicted packages
+            strings.clear();
+            nodes.clear();
+            residentSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill the packages to " + segmentDirectory, e);
+        }
+    }
+
+    /**
+     * {@return a package in memory or read from the segment file}
+     */
+    private PackageNode getPackageNode(final int index) {
+        final Object packageNode = packages.get(index);
+        if (packageNode instanceof SpilledPackage spilled) {
+            return spilled.read();
+        }
+        return (PackageNode) packageNode;
+    }
+
+    /**
+     * {@return the number of packages spilled to the segment file}
+     */
+    int getSpilledPackages() {
+        return spilledPackages;
+    }
+
+    /**
+     * {@return the temporary directory of the segment file, or null if nothing is spilled}
+     */
+    Path getSegmentDirectory() {
+        return segmentDirectory;
+    }
+
+    /**
+     * Deletes the segment file.
+     */
+    @Override
+    public void close() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close the segment file", e);
+            }
+            segment = null;
+            segmentSize = 0;
+        }
+        if (segmentDirectory != null) {
+            try (var files = Files.list(segmentDirectory)) {
+                for (final Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+                Files.delete(segmentDirectory);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to delete the segment file in " + segmentDirectory, e);
+            }
+            segmentDirectory = null;
+        }
+    }
+
+    /**
+     * {@return the estimated size of a package in memory} Only the parts of the package that are not shared with
+     * other packages are counted: its nodes, comments, tags and links, but not the interned names and types, which
+     * are counted when they are interned.
+     */
+    private static long estimateSize(final PackageNode packageNode) {
+        long size = NODE_BYTES + estimateSize(packageNode.comment) + estimateSize(packageNode.tags)
+                + estimateSize(packageNode.links);
+        for (final TypeNode type : packageNode.types) {
+            size += NODE_BYTES * 2 + estimateSize(type.comment) + estimateSize(type.tags) + estimateSize(type.links)
+                    + estimateSize(type.usedBy);
+            for (final MemberNode[] members : List.of(
+                    type.elements, type.constants, type.constructors, type.methods, type.fields)) {
+                for (final MemberNode member : members) {
+                    size += NODE_BYTES * 2 + estimateSize(member.comment) + estimateSize(member.tags)
+                            + estimateSize(member.links) + 8L * (member.parameters.length + member.annotations.length);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(final String value) {
+        return value == null ? 0 : NODE_BYTES + value.length();
+    }
+
+    private static long estimateSize(final String[] values) {
+        long size = 16 + 8L * values.length;
+        for (final String value : values) {
+            size += estimateSize(value);
+        }
+        return size;
+    }
+
+    /**
+     * Replaces the subclasses, implementors and usages of a type, which are only known once all types are added.
+     *
+     * @param qualified the qualified name of an added type
+     * @param references a class, interface or enum node holding the references
+     * @throws IllegalStateException if the model has a memory budget, whose packages must be complete when added
+     */
+    void setReverseReferences(final String qualified, final Object references) {
+        if (memoryBudget != 0) {
+            throw new IllegalStateException("The packages of a model with a memory budget can't be updated");
+        }
+        final TypeNode type = typesByName.get(qualified);
+        if (type == null) {
+            return;
+        }
+
+        if (references instanceof Class classNode) {
+            type.subtypes = compactTypes(classNode.getSubclass());
+            type.usedBy = compactMemberRefs(classNode.getUsedBy());
+        } else if (references instanceof Interface interfaceNode) {
+            type.subtypes = compactTypes(interfaceNode.getImplementor());
+            type.usedBy = compactMemberRefs(interfaceNode.getUsedBy());
+        } else if (references instanceof Enum enumNode) {
+            type.usedBy = compactMemberRefs(enumNode.getUsedBy());
+        }
+    }
+
+    /**
+     * {@return the number of packages}
+     */
+    int size() {
+        return packages.size();
+    }
+
+    /**
+     * {@return a new root, whose packages are projected when they are first accessed and kept by the root} The root is
+     * read-only.
+     */
+    Root toRoot() {
+        return new ProjectedRoot(this, true);
+    }
+
+    /**
+     * {@return a new root, whose packages are projected each time they are accessed} The root is read-only.
+     */
+    Root projectRoot() {
+        return new ProjectedRoot(this, false);
+    }
+
+    /**
+     * {@return the beans of a package with its types}
+     *
+     * @param index the index of the package, in the order it was added
+     */
+    Package getPackage(final int index) {
+        final PackageNode compact = getPackageNode(index);
+        final Package packageNode = objectFactory.createPackage();
+        packageNode.setName(compact.name);
+        packageNode.setComment(compact.comment);
+        projectTags(compact.tags, packageNode.getTag());
+        projectLinks(compact.links, packageNode.getLink());
+
+        for (final TypeNode type : compact.types) {
+            switch (type.kind) {
+                case TypeNode.ANNOTATION -> packageNode.getAnnotation().add(projectAnnotation(type));
+                case TypeNode.ENUM -> packageNode.getEnum().add(projectEnum(type));
+                case TypeNode.INTERFACE -> packageNode.getInterface().add(projectInterface(type));
+                default -> packageNode.getClazz().add(projectClass(type));
+            }
+        }
+        return packageNode;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // compaction
+
+    private TypeNode compactAnnotation(final Annotation annotation) {
+        final var type = new TypeNode(TypeNode.ANNOTATION, annotation.getName(), annotation.getQualified(),
+                annotation.getComment(), annotation.getScope(), annotation.isIncluded() ? INCLUDED : 0);
+        type.elements = new MemberNode[annotation.getElement().size()];
+        for (int i = 0; i < type.elements.length; i++) {
+            final AnnotationElement element = annotation.getElement().get(i);
+            final var member = new MemberNode(intern(element.getName()), intern(element.getQualified()), null, null,
+                    (byte) -1, 0);
+            member.type = compactType(element.getType());
+            member.value = element.getDefault();
+            type.elements[i] = member;
+        }
+        type.annotations = compactAnnotations(annotation.getAnnotation());
+        type.tags = compactTags(annotation.getTag());
+        type.links = compactLinks(annotation.getLink());
+        return type;
+    }
+
+    private TypeNode compactEnum(final Enum enumNode) {
+        final var type = new TypeNode(TypeNode.ENUM, enumNode.getName(), enumNode.getQualified(),
+                enumNode.getComment(), enumNode.getScope(), enumNode.isIncluded() ? INCLUDED : 0);
+        type.superclass = compactType(enumNode.getClazz());
+        type.interfaces = compactTypes(enumNode.getInterface());
+        type.constants = new MemberNode[enumNode.getConstant().size()];
+        for (int i = 0; i < type.constants.length; i++) {
+            final EnumConstant constant = enumNode.getConstant().get(i);
+            final var member = new MemberNode(intern(constant.getName()), null, constant.getComment(), null,
+                    (byte) -1, 0);
+            member.annotations = compactAnnotations(constant.getAnnotation());
+            member.tags = compactTags(constant.getTag());
+            member.links = compactLinks(constant.getLink());
+            type.constants[i] = member;
+        }
+        type.annotations = compactAnnotations(enumNode.getAnnotation());
+        type.tags = compactTags(enumNode.getTag());
+        type.links = compactLinks(enumNode.getLink());
+        type.usedBy = compactMemberRefs(enumNode.getUsedBy());
+        return type;
+    }
+
+    private TypeNode compactInterface(final Interface interfaceNode) {
+        final var type = new TypeNode(TypeNode.INTERFACE, interfaceNode.getName(), interfaceNode.getQualified(),
+                interfaceNode.getComment(), interfaceNode.getScope(), interfaceNode.isIncluded() ? INCLUDED : 0);
+        type.generics = compactTypeParameters(interfaceNode.getGeneric());
+        type.interfaces = compactTypes(interfaceNode.getInterface());
+        type.methods = compactMethods(interfaceNode.getMethod());
+        type.annotations = compactAnnotations(interfaceNode.getAnnotation());
+        type.tags = compactTags(interfaceNode.getTag());
+        type.links = compactLinks(interfaceNode.getLink());
+        type.fields = compactFields(interfaceNode.getField());
+        type.inherited = compactInherited(interfaceNode.getInherited());
+        type.subtypes = compactTypes(interfaceNode.getImplementor());
+        type.usedBy = compactMemberRefs(interfaceNode.getUsedBy());
+        return type;
+    }
+
+    private TypeNode compactClass(final Class classNode) {
+        final int modifiers = (classNode.isAbstract() ? ABSTRACT : 0)
+                | (classNode.isError() ? ERROR : 0)
+                | (classNode.isException() ? EXCEPTION : 0)
+                | (classNode.isExternalizable() ? EXTERNALIZABLE : 0)
+                | (classNode.isIncluded() ? INCLUDED : 0)
+                | (classNode.isSerializable() ? SERIALIZABLE : 0);
+        final var type = new TypeNode(TypeNode.CLASS, classNode.getName(), classNode.getQualified(),
+                classNode.getComment(), classNode.getScope(), modifiers);
+        type.generics = compactTypeParameters(classNode.getGeneric());
+        type.superclass = compactType(classNode.getClazz());
+        type.interfaces = compactTypes(classNode.getInterface());
+        type.methods = compactMethods(classNode.getMethod());
+        type.annotations = compactAnnotations(classNode.getAnnotation());
+        type.constructors = compactConstructors(classNode.getConstructor());
+        type.fields = compactFields(classNode.getField());
+        type.inherited = compactInherited(classNode.getInherited());
+        type.tags = compactTags(classNode.getTag());
+        type.links = compactLinks(classNode.getLink());
+        type.subtypes = compactTypes(classNode.getSubclass());
+        type.usedBy = compactMemberRefs(classNode.getUsedBy());
+        return type;
+    }
+
+    private MemberNode[] compactConstructors(final List<Constructor> constructors) {
+        if (constructors.isEmpty()) {
+            return NO_MEMBERS;
+        }
+
+        final var members = new MemberNode[constructors.size()];
+        for (int i = 0; i < members.length; i++) {
+            final Constructor constructor = constructors.get(i);
+            final int modifiers = (constructor.isFinal() ? FINAL : 0)
+                    | (constructor.isIncluded() ? INCLUDED : 0)
+                    | (constructor.isNative() ? NATIVE : 0)
+                    | (constructor.isStatic() ? STATIC : 0)
+                    | (constructor.isSynchronized() ? SYNCHRONIZED : 0)
+                    | (constructor.isVarArgs() ? VAR_ARGS : 0);
+            final var member = new MemberNode(intern(constructor.getName()), intern(constructor.getQualified()),
+                    constructor.getComment(), intern(constructor.getSignature()), Scope.of(constructor.getScope()),
+                    modifiers);
+            member.parameters = compactParameters(constructor.getParameter());
+            member.exceptions = compactTypes(constructor.getException());
+            member.annotations = compactAnnotations(constructor.getAnnotation());
+            member.tags = compactTags(constructor.getTag());
+            member.links = compactLinks(constructor.getLink());
+            members[i] = member;
+        }
+        return members;
+    }
+
+    private MemberNode[] compactMethods(final List<Method> methods) {
+        if (methods.isEmpty()) {
+            return NO_MEMBERS;
+        }
+
+        final var members = new MemberNode[methods.size()];
+        for (int i = 0; i < members.length; i++) {
+            final Method method = methods.get(i);
+            final int modifiers = (method.isAbstract() ? ABSTRACT : 0)
+                    | (method.isFinal() ? FINAL : 0)
+                    | (method.isIncluded() ? INCLUDED : 0)
+                    | (method.isNative() ? NATIVE : 0)
+                    | (method.isStatic() ? STATIC : 0)
+                    | (method.isSynchronized() ? SYNCHRONIZED : 0)
+                    | (method.isVarArgs() ? VAR_ARGS : 0);
+            final var member = new MemberNode(intern(method.getName()), intern(method.getQualified()),
+                    method.getComment(), intern(method.getSignature()), Scope.of(method.getScope()), modifiers);
+            member.type = compactType(method.getReturn());
+            member.parameters = compactParameters(method.getParameter());
+            member.exceptions = compactTypes(method.getException());
+            member.annotations = compactAnnotations(method.getAnnotation());
+            member.tags = compactTags(method.getTag());
+            member.links = compactLinks(method.getLink());
+            member.overrides = method.getOverrides() == null ? null : compactMemberRefs(List.of(method.getOverrides()));
+            member.implementations = compactMemberRefs(method.getImplements());
+            members[i] = member;
+        }
+        return members;
+    }
+
+    private MemberNode[] compactFields(final List<Field> fields) {
+        if (fields.isEmpty()) {
+            return NO_MEMBERS;
+        }
+
+        final var members = new MemberNode[fields.size()];
+        for (int i = 0; i < members.length; i++) {
+            final Field field = fields.get(i);
+            final int modifiers = (field.isFinal() ? FINAL : 0)
+                    | (field.isStatic() ? STATIC : 0)
+                    | (field.isVolatile() ? VOLATILE : 0)
+                    | (field.isTransient() ? TRANSIENT : 0);
+            final var member = new MemberNode(intern(field.getName()), intern(field.getQualified()),
+                    field.getComment(), null, Scope.of(field.getScope()), modifiers);
+            member.type = compactType(field.getType());
+            member.value = field.getConstant() == null || field.getConstant().isEmpty()
+                    ? field.getConstant()
+                    : intern(field.getConstant());
+            member.annotations = compactAnnotations(field.getAnnotation());
+            member.tags = compactTags(field.getTag());
+            member.links = compactLinks(field.getLink());
+            members[i] = member;
+        }
+        return members;
+    }
+
+    private ParameterNode[] compactParameters(final List<MethodParameter> parameters) {
+        if (parameters.isEmpty()) {
+            return NO_PARAMETERS;
+        }
+
+        final var compact = new ParameterNode[parameters.size()];
+        for (int i = 0; i < compact.length; i++) {
+            final MethodParameter parameter = parameters.get(i);
+            compact[i] = internNode(new ParameterNode(intern(parameter.getName()), compactType(parameter.getType()),
+                    compactAnnotations(parameter.getAnnotation())));
+        }
+        return compact;
+    }
+
+    private AnnotationNode[] compactAnnotations(final List<AnnotationInstance> annotations) {
+        if (annotations.isEmpty()) {
+            return NO_ANNOTATIONS;
+        }
+
+        final var compact = new AnnotationNode[annotations.size()];
+        for (int i = 0; i < compact.length; i++) {
+            compact[i] = compactAnnotation(annotations.get(i));
+        }
+        return compact;
+    }
+
+    private AnnotationNode compactAnnotation(final AnnotationInstance annotation) {
+        final List<AnnotationArgument> arguments = annotation.getArgument();
+        final ArgumentNode[] compactArguments = arguments.isEmpty() ? NO_ARGUMENTS : new ArgumentNode[arguments.size()];
+        for (int i = 0; i < compactArguments.length; i++) {
+            final AnnotationArgument argument = arguments.get(i);
+            compactArguments[i] = new ArgumentNode(intern(argument.getName()), compactType(argument.getType()),
+                    (argument.isPrimitive() ? PRIMITIVE : 0) | (argument.isArray() ? ARRAY : 0),
+                    compactStrings(argument.getValue()), compactAnnotations(argument.getAnnotation()));
+        }
+        return internNode(new AnnotationNode(intern(annotation.getName()), intern(annotation.getQualified()),
+                compactArguments));
+    }
+
+    private TypeRef[] compactTypes(final List<TypeInfo> types) {
+        if (types.isEmpty()) {
+            return NO_TYPES;
+        }
+
+        final var compact = new TypeRef[types.size()];
+        for (int i = 0; i < compact.length; i++) {
+            compact[i] = compactType(types.get(i));
+        }
+        return compact;
+    }
+
+    private TypeRef compactType(final TypeInfo type) {
+        if (type == null) {
+            return null;
+        }
+
+        final Wildcard wildcard = type.getWildcard();
+        return internNode(new TypeRef(intern(type.getQualified()), intern(type.getDimension()),
+                compactTypes(type.getGeneric()),
+                wildcard == null ? null : compactTypes(wildcard.getExtendsBound()),
+                wildcard == null ? null : compactTypes(wildcard.getSuperBound())));
+    }
+
+    private String[][] compactTypeParameters(final List<TypeParameter> typeParameters) {
+        if (typeParameters.isEmpty()) {
+            return NO_TYPE_PARAMETERS;
+        }
+
+        final var compact = new String[typeParameters.size()][];
+        for (int i = 0; i < compact.length; i++) {
+            final TypeParameter typeParameter = typeParameters.get(i);
+            final var nameAndBounds = new String[typeParameter.getBound().size() + 1];
+            nameAndBounds[0] = intern(typeParameter.getName());
+            for (int j = 1; j < nameAndBounds.length; j++) {
+                nameAndBounds[j] = intern(typeParameter.getBound().get(j - 1));
+            }
+            compact[i] = nameAndBounds;
+        }
+        return compact;
+    }
+
+    private InheritedNode[] compactInherited(final List<InheritedMembers> inherited) {
+        if (inherited.isEmpty()) {
+            return NO_INHERITED;
+        }
+
+        final var compact = new InheritedNode[inherited.size()];
+        for (int i = 0; i < compact.length; i++) {
+            final InheritedMembers members = inherited.get(i);
+            compact[i] = new InheritedNode(intern(members.getQualified()), compactMemberRefs(members.getMethod()),
+                    compactMemberRefs(members.getField()));
+        }
+        return compact;
+    }
+
+    /**
+     * {@return the tags as name and text pairs}
+     */
+    private String[] compactTags(final List<TagInfo> tags) {
+        if (tags.isEmpty()) {
+            return NO_STRINGS;
+        }
+
+        final var compact = new String[tags.size() * 2];
+        for (int i = 0; i < tags.size(); i++) {
+            compact[2 * i] = intern(tags.get(i).getName());
+            compact[2 * i + 1] = tags.get(i).getText();
+        }
+        return compact;
+    }
+
+    /**
+     * {@return the links as reference, qualified, member and anchor quadruples}
+     */
+    private String[] compactLinks(final List<LinkInfo> links) {
+        if (links.isEmpty()) {
+            return NO_STRINGS;
+        }
+
+        final var compact = new String[links.size() * 4];
+        for (int i = 0; i < links.size(); i++) {
+            final LinkInfo link = links.get(i);
+            compact[4 * i] = intern(link.getReference());
+            compact[4 * i + 1] = intern(link.getQualified());
+            compact[4 * i + 2] = intern(link.getMember());
+            compact[4 * i + 3] = intern(link.getAnchor());
+        }
+        return compact;
+    }
+
+    /**
+     * {@return the member references as name, signature and type triples}
+     */
+    private String[] compactMemberRefs(final List<MemberRef> memberRefs) {
+        if (memberRefs.isEmpty()) {
+            return NO_STRINGS;
+        }
+
+        final var compact = new String[memberRefs.size() * 3];
+        for (int i = 0; i < memberRefs.size(); i++) {
+            final MemberRef memberRef = memberRefs.get(i);
+            compact[3 * i] = intern(memberRef.getName());
+            compact[3 * i + 1] = intern(memberRef.getSignature());
+            compact[3 * i + 2] = intern(memberRef.getType());
+        }
+        return compact;
+    }
+
+    private String[] compactStrings(final List<String> values) {
+        if (values.isEmpty()) {
+            return NO_STRINGS;
+        }
+
+        final var compact = new String[values.size()];
+        for (int i = 0; i < compact.length; i++) {
+            compact[i] = intern(values.get(i));
+        }
+        return compact;
+    }
+
+    /**
+     * {@return the string of this model equal to the given one} Unlike {@link String#intern()}, the strings are
+     * released with the model.
+     */
+    private String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String interned = strings.putIfAbsent(value, value);
+        if (interned == null && memoryBudget > 0) {
+            residentSize += INTERNED_ENTRY_BYTES + estimateSize(value);
+        }
+        return interned == null ? value : interned;
+    }
+
+    /**
+     * {@return the node of this model equal to the given immutable node}
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T internNode(final T node) {
+        final Object interned = nodes.putIfAbsent(node, node);
+        if (interned == null && memoryBudget > 0) {
+            residentSize += INTERNED_ENTRY_BYTES + NODE_BYTES;
+        }
+        return interned == null ? node : (T) interned;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // projection
+
+    private Annotation projectAnnotation(final TypeNode type) {
+        final Annotation annotation = objectFactory.createAnnotation();
+        annotation.setName(type.name);
+        annotation.setQualified(type.qualified);
+        annotation.setComment(type.comment);
+        annotation.setScope(Scope.nameOf(type.scope));
+        projectFlag(type.modifiers, 0, INCLUDED, annotation::setIncluded);
+        for (final MemberNode member : type.elements) {
+            final AnnotationElement element = objectFactory.createAnnotationElement();
+            element.setName(member.name);
+            element.setQualified(member.qualified);
+            element.setType(projectType(member.type));
+            element.setDefault(member.value);
+            annotation.getElement().add(element);
+        }
+        projectAnnotations(type.annotations, annotation::getAnnotation);
+        projectTags(type.tags, annotation.getTag());
+        projectLinks(type.links, annotation.getLink());
+        return annotation;
+    }
+
+    private Enum projectEnum(final TypeNode type) {
+        final Enum enumNode = objectFactory.createEnum();
+        enumNode.setName(type.name);
+        enumNode.setQualified(type.qualified);
+        enumNode.setComment(type.comment);
+        enumNode.setScope(Scope.nameOf(type.scope));
+        projectFlag(type.modifiers, 0, INCLUDED, enumNode::setIncluded);
+        enumNode.setClazz(projectType(type.superclass));
+        projectTypes(type.interfaces, enumNode::getInterface);
+        for (final MemberNode member : type.constants) {
+            final EnumConstant constant = objectFactory.createEnumConstant();
+            constant.setName(member.name);
+            constant.setComment(member.comment);
+            projectAnnotations(member.annotations, constant::getAnnotation);
+            projectTags(member.tags, constant.getTag());
+            projectLinks(member.links, constant.getLink());
+            enumNode.getConstant().add(constant);
+        }
+        projectAnnotations(type.annotations, enumNode::getAnnotation);
+        projectTags(type.tags, enumNode.getTag());
+        projectLinks(type.links, enumNode.getLink());
+        projectMemberRefs(type.usedBy, enumNode::getUsedBy);
+        return enumNode;
+    }
+
+    private Interface projectInterface(final TypeNode type) {
+        final Interface interfaceNode = objectFactory.createInterface();
+        interfaceNode.setName(type.name);
+        interfaceNode.setQualified(type.qualified);
+        interfaceNode.setComment(type.comment);
+        interfaceNode.setScope(Scope.nameOf(type.scope));
+        projectFlag(type.modifiers, 0, INCLUDED, interfaceNode::setIncluded);
+        projectTypeParameters(type.generics, interfaceNode::getGeneric);
+        projectTypes(type.interfaces, interfaceNode::getInterface);
+        for (final MemberNode member : type.methods) {
+            interfaceNode.getMethod().add(projectMethod(member));
+        }
+        projectAnnotations(type.annotations, interfaceNode::getAnnotation);
+        projectTags(type.tags, interfaceNode.getTag());
+        projectLinks(type.links, interfaceNode.getLink());
+        for (final MemberNode member : type.fields) {
+            interfaceNode.getField().add(projectField(member));
+        }
+        projectInherited(type.inherited, interfaceNode::getInherited);
+        projectTypes(type.subtypes, interfaceNode::getImplementor);
+        projectMemberRefs(type.usedBy, interfaceNode::getUsedBy);
+        return interfaceNode;
+    }
+
+    private Class projectClass(final TypeNode type) {
+        final Class classNode = objectFactory.createClass();
+        classNode.setName(type.name);
+        classNode.setQualified(type.qualified);
+        classNode.setComment(type.comment);
+        classNode.setScope(Scope.nameOf(type.scope));
+        projectFlag(type.modifiers, CLASS_FLAGS, ABSTRACT, classNode::setAbstract);
+        projectFlag(type.modifiers, CLASS_FLAGS, ERROR, classNode::setError);
+        projectFlag(type.modifiers, CLASS_FLAGS, EXCEPTION, classNode::setException);
+        projectFlag(type.modifiers, CLASS_FLAGS, EXTERNALIZABLE, classNode::setExternalizable);
+        projectFlag(type.modifiers, CLASS_FLAGS, INCLUDED, classNode::setIncluded);
+        projectFlag(type.modifiers, CLASS_FLAGS, SERIALIZABLE, classNode::setSerializable);
+        projectTypeParameters(type.generics, classNode::getGeneric);
+        classNode.setClazz(projectType(type.superclass));
+        projectTypes(type.interfaces, classNode::getInterface);
+        for (final MemberNode member : type.methods) {
+            classNode.getMethod().add(projectMethod(member));
+        }
+        projectAnnotations(type.annotations, classNode::getAnnotation);
+        for (final MemberNode member : type.constructors) {
+            classNode.getConstructor().add(projectConstructor(member));
+        }
+        for (final MemberNode member : type.fields) {
+            classNode.getField().add(projectField(member));
+        }
+        projectInherited(type.inherited, classNode::getInherited);
+        projectTags(type.tags, classNode.getTag());
+        projectLinks(type.links, classNode.getLink());
+        projectTypes(type.subtypes, classNode::getSubclass);
+        projectMemberRefs(type.usedBy, classNode::getUsedBy);
+        return classNode;
+    }
+
+    private Constructor projectConstructor(final MemberNode member) {
+        final Constructor constructor = objectFactory.createConstructor();
+        constructor.setName(member.name);
+        constructor.setQualified(member.qualified);
+        constructor.setComment(member.comment);
+        constructor.setScope(Scope.nameOf(member.scope));
+        projectFlag(member.modifiers, CONSTRUCTOR_FLAGS, FINAL, constructor::setFinal);
+        projectFlag(member.modifiers, CONSTRUCTOR_FLAGS, INCLUDED, constructor::setIncluded);
+        projectFlag(member.modifiers, CONSTRUCTOR_FLAGS, NATIVE, constructor::setNative);
+        projectFlag(member.modifiers, CONSTRUCTOR_FLAGS, STATIC, constructor::setStatic);
+        projectFlag(member.modifiers, CONSTRUCTOR_FLAGS, SYNCHRONIZED, constructor::setSynchronized);
+        projectFlag(member.modifiers, CONSTRUCTOR_FLAGS, VAR_ARGS, constructor::setVarArgs);
+        constructor.setSignature(member.signature);
+        projectParameters(member.parameters, constructor::getParameter);
+        projectTypes(member.exceptions, constructor::getException);
+        projectAnnotations(member.annotations, constructor::getAnnotation);
+        projectTags(member.tags, constructor.getTag());
+        projectLinks(member.links, constructor.getLink());
+        return constructor;
+    }
+
+    private Method projectMethod(final MemberNode member) {
+        final Method method = objectFactory.createMethod();
+        method.setName(member.name);
+        method.setQualified(member.qualified);
+        method.setComment(member.comment);
+        method.setScope(Scope.nameOf(member.scope));
+        projectFlag(member.modifiers, METHOD_FLAGS, ABSTRACT, method::setAbstract);
+        projectFlag(member.modifiers, METHOD_FLAGS, FINAL, method::setFinal);
+        projectFlag(member.modifiers, METHOD_FLAGS, INCLUDED, method::setIncluded);
+        projectFlag(member.modifiers, METHOD_FLAGS, NATIVE, method::setNative);
+        projectFlag(member.modifiers, METHOD_FLAGS, STATIC, method::setStatic);
+        projectFlag(member.modifiers, METHOD_FLAGS, SYNCHRONIZED, method::setSynchronized);
+        projectFlag(member.modifiers, METHOD_FLAGS, VAR_ARGS, method::setVarArgs);
+        method.setSignature(member.signature);
+        method.setReturn(projectType(member.type));
+        projectParameters(member.parameters, method::getParameter);
+        projectTypes(member.exceptions, method::getException);
+        projectAnnotations(member.annotations, method::getAnnotation);
+        projectTags(member.tags, method.getTag());
+        projectLinks(member.links, method.getLink());
+        if (member.overrides != null && member.overrides.length > 0) {
+            method.setOverrides(projectMemberRef(member.overrides, 0));
+        }
+        projectMemberRefs(member.implementations, method::getImplements);
+        return method;
+    }
+
+    private Field projectField(final MemberNode member) {
+        final Field field = objectFactory.createField();
+        field.setType(projectType(member.type));
+        field.setName(member.name);
+        field.setQualified(member.qualified);
+        field.setComment(member.comment);
+        field.setScope(Scope.nameOf(member.scope));
+        projectFlag(member.modifiers, FIELD_FLAGS, FINAL, field::setFinal);
+        projectFlag(member.modifiers, FIELD_FLAGS, STATIC, field::setStatic);
+        projectFlag(member.modifiers, FIELD_FLAGS, VOLATILE, field::setVolatile);
+        projectFlag(member.modifiers, FIELD_FLAGS, TRANSIENT, field::setTransient);
+        field.setConstant(member.value);
+        projectAnnotations(member.annotations, field::getAnnotation);
+        projectTags(member.tags, field.getTag());
+        projectLinks(member.links, field.getLink());
+        return field;
+    }
+
+    private void projectParameters(
+            final ParameterNode[] parameters, final java.util.function.Supplier<List<MethodParameter>> target) {
+        if (parameters.length == 0) {
+            return;
+        }
+
+        final List<MethodParameter> list = target.get();
+        for (final ParameterNode parameter : parameters) {
+            final MethodParameter parameterNode = objectFactory.createMethodParameter();
+            parameterNode.setName(parameter.name);
+            parameterNode.setType(projectType(parameter.type));
+            projectAnnotations(parameter.annotations, parameterNode::getAnnotation);
+            list.add(parameterNode);
+        }
+    }
+
+    private void projectAnnotations(
+            final AnnotationNode[] annotations, final java.util.function.Supplier<List<AnnotationInstance>> target) {
+        if (annotations.length == 0) {
+            return;
+        }
+
+        final List<AnnotationInstance> list = target.get();
+        for (final AnnotationNode annotation : annotations) {
+            final AnnotationInstance instance = objectFactory.createAnnotationInstance();
+            instance.setName(annotation.name);
+            instance.setQualified(annotation.qualified);
+            for (final ArgumentNode argument : annotation.arguments) {
+                final AnnotationArgument argumentNode = objectFactory.createAnnotationArgument();
+                argumentNode.setName(argument.name);
+                argumentNode.setType(projectType(argument.type));
+                projectFlag(argument.flags, ARGUMENT_FLAGS, PRIMITIVE, argumentNode::setPrimitive);
+                projectFlag(argument.flags, ARGUMENT_FLAGS, ARRAY, argumentNode::setArray);
+                if (argument.values.length > 0) {
+                    argumentNode.getValue().addAll(Arrays.asList(argument.values));
+                }
+                projectAnnotations(argument.annotations, argumentNode::getAnnotation);
+                instance.getArgument().add(argumentNode);
+            }
+            list.add(instance);
+        }
+    }
+
+    private void projectTypes(final TypeRef[] types, final java.util.function.Supplier<List<TypeInfo>> target) {
+        if (types.length == 0) {
+            return;
+        }
+
+        final List<TypeInfo> list = target.get();
+        for (final TypeRef type : types) {
+            list.add(projectType(type));
+        }
+    }
+
+    private TypeInfo projectType(final TypeRef type) {
+        if (type == null) {
+            return null;
+        }
+
+        final TypeInfo typeInfo = objectFactory.createTypeInfo();
+        typeInfo.setQualified(type.qualified);
+        typeInfo.setDimension(type.dimension);
+        if (type.extendsBounds != null) {
+            final Wildcard wildcard = objectFactory.createWildcard();
+            projectTypes(type.extendsBounds, wildcard::getExtendsBound);
+            projectTypes(type.superBounds, wildcard::getSuperBound);
+            typeInfo.setWildcard(wildcard);
+        }
+        projectTypes(type.generics, typeInfo::getGeneric);
+        return typeInfo;
+    }
+
+    private void projectTypeParameters(
+            final String[][] typeParameters, final java.util.function.Supplier<List<TypeParameter>> target) {
+        if (typeParameters.length == 0) {
+            return;
+        }
+
+        final List<TypeParameter> list = target.get();
+        for (final String[] nameAndBounds : typeParameters) {
+            final TypeParameter typeParameter = objectFactory.createTypeParameter();
+            typeParameter.setName(nameAndBounds[0]);
+            if (nameAndBounds.length > 1) {
+                typeParameter.getBound().addAll(Arrays.asList(nameAndBounds).subList(1, nameAndBounds.length));
+            }
+            list.add(typeParameter);
+        }
+    }
+
+    private void projectInherited(
+            final InheritedNode[] inherited, final java.util.function.Supplier<List<InheritedMembers>> target) {
+        if (inherited.length == 0) {
+            return;
+        }
+
+        final List<InheritedMembers> list = target.get();
+        for (final InheritedNode members : inherited) {
+            final InheritedMembers inheritedNode = objectFactory.createInheritedMembers();
+            inheritedNode.setQualified(members.qualified);
+            projectMemberRefs(members.methods, inheritedNode::getMethod);
+            projectMemberRefs(members.fields, inheritedNode::getField);
+            list.add(inheritedNode);
+        }
+    }
+
+    private void projectTags(final String[] tags, final List<TagInfo> target) {
+        for (int i = 0; i < tags.length; i += 2) {
+            final TagInfo tag = objectFactory.createTagInfo();
+            tag.setName(tags[i]);
+            tag.setText(tags[i + 1]);
+            target.add(tag);
+        }
+    }
+
+    private void projectLinks(final String[] links, final List<LinkInfo> target) {
+        for (int i = 0; i < links.length; i += 4) {
+            final LinkInfo link = objectFactory.createLinkInfo();
+            link.setReference(links[i]);
+            link.setQualified(links[i + 1]);
+            link.setMember(links[i + 2]);
+            link.setAnchor(links[i + 3]);
+            target.add(link);
+        }
+    }
+
+    private void projectMemberRefs(
+            final String[] memberRefs, final java.util.function.Supplier<List<MemberRef>> target) {
+        if (memberRefs.length == 0) {
+            return;
+        }
+
+        final List<MemberRef> list = target.get();
+        for (int i = 0; i < memberRefs.length; i += 3) {
+            list.add(projectMemberRef(memberRefs, i));
+        }
+    }
+
+    private MemberRef projectMemberRef(final String[] memberRefs, final int index) {
+        final MemberRef memberRef = objectFactory.createMemberRef();
+        memberRef.setName(memberRefs[index]);
+        memberRef.setSignature(memberRefs[index + 1]);
+        memberRef.setType(memberRefs[index + 2]);
+        return memberRef;
+    }
+
+    /**
+     * Sets a flag on a bean if the parser always sets it for this kind of node, or if it is true.
+     */
+    private static void projectFlag(
+            final int modifiers, final int alwaysSet, final int flag, final java.util.function.Consumer<Boolean> setter) {
+        final boolean value = (modifiers & flag) != 0;
+        if (value || (alwaysSet & flag) != 0) {
+            setter.accept(value);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // nodes
+
+    private static final class PackageNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String comment;
+        private final String[] tags;
+        private final String[] links;
+        private final TypeNode[] types;
+
+        private PackageNode(
+                final String name, final String comment, final String[] tags, final String[] links,
+                final TypeNode[] types) {
+            this.name = name;
+            this.comment = comment;
+            this.tags = tags;
+            this.links = links;
+            this.types = types;
+        }
+    }
+
+    /**
+     * An annotation type, enum, interface or class. The members of other kinds of types are empty.
+     */
+    private static final class TypeNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private static final byte ANNOTATION = 0;
+        private static final byte ENUM = 1;
+        private static final byte INTERFACE = 2;
+        private static final byte CLASS = 3;
+
+        private final byte kind;
+        private final byte scope;
+        private final int modifiers;
+        private final String name;
+        private final String qualified;
+        private final String comment;
+        private String[][] generics = NO_TYPE_PARAMETERS;
+        private TypeRef superclass;
+        private TypeRef[] interfaces = NO_TYPES;
+        private MemberNode[] elements = NO_MEMBERS;
+        private MemberNode[] constants = NO_MEMBERS;
+        private MemberNode[] constructors = NO_MEMBERS;
+        private MemberNode[] methods = NO_MEMBERS;
+        private MemberNode[] fields = NO_MEMBERS;
+        private AnnotationNode[] annotations = NO_ANNOTATIONS;
+        private String[] tags = NO_STRINGS;
+        private String[] links = NO_STRINGS;
+        private InheritedNode[] inherited = NO_INHERITED;
+        /**
+         * The subclasses of a class or the implementors of an interface.
+         */
+        private TypeRef[] subtypes = NO_TYPES;
+        private String[] usedBy = NO_STRINGS;
+
+        private TypeNode(
+                final byte kind, final String name, final String qualified, final String comment, final String scope,
+                final int modifiers) {
+            this.kind = kind;
+            this.name = name;
+            this.qualified = qualified;
+            this.comment = comment;
+            this.scope = Scope.of(scope);
+            this.modifiers = modifiers;
+        }
+    }
+
+    /**
+     * A constructor, method, field, enum constant or annotation element.
+     */
+    private static final class MemberNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final byte scope;
+        private final int modifiers;
+        private final String name;
+        private final String qualified;
+        private final String comment;
+        private final String signature;
+        /**
+         * The return type of a method or the type of a field or annotation element.
+         */
+        private TypeRef type;
+        /**
+         * The constant value of a field or the default of an annotation element.
+         */
+        private String value;
+        private ParameterNode[] parameters = NO_PARAMETERS;
+        private TypeRef[] exceptions = NO_TYPES;
+        private AnnotationNode[] annotations = NO_ANNOTATIONS;
+        private String[] tags = NO_STRINGS;
+        private String[] links = NO_STRINGS;
+        private String[] overrides;
+        private String[] implementations = NO_STRINGS;
+
+        private MemberNode(
+                final String name, final String qualified, final String comment, final String signature,
+                final byte scope, final int modifiers) {
+            this.name = name;
+            this.qualified = qualified;
+            this.comment = comment;
+            this.signature = signature;
+            this.scope = scope;
+            this.modifiers = modifiers;
+        }
+    }
+
+    private static final class InheritedNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String qualified;
+        private final String[] methods;
+        private final String[] fields;
+
+        private InheritedNode(final String qualified, final String[] methods, final String[] fields) {
+            this.qualified = qualified;
+            this.methods = methods;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * An immutable type reference, shared by all elements referring to the same type.
+     */
+    private static final class TypeRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String qualified;
+        private final String dimension;
+        private final TypeRef[] generics;
+        /**
+         * The bounds of a wildcard, both null if the type is no wildcard.
+         */
+        private final TypeRef[] extendsBounds;
+        private final TypeRef[] superBounds;
+        private final int hashCode;
+
+        private TypeRef(
+                final String qualified, final String dimension, final TypeRef[] generics,
+                final TypeRef[] extendsBounds, final TypeRef[] superBounds) {
+            this.qualified = qualified;
+            this.dimension = dimension;
+            this.generics = generics;
+            this.extendsBounds = extendsBounds;
+            this.superBounds = superBounds;
+            this.hashCode = Objects.hash(qualified, dimension, Arrays.hashCode(generics),
+                    Arrays.hashCode(extendsBounds), Arrays.hashCode(superBounds));
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return object instanceof TypeRef other && hashCode == other.hashCode
+                    && Objects.equals(qualified, other.qualified) && Objects.equals(dimension, other.dimension)
+                    && Arrays.equals(generics, other.generics) && Arrays.equals(extendsBounds, other.extendsBounds)
+                    && Arrays.equals(superBounds, other.superBounds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * An immutable method parameter, shared by all methods with the same parameter.
+     */
+    private static final class ParameterNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final TypeRef type;
+        private final AnnotationNode[] annotations;
+
+        private ParameterNode(final String name, final TypeRef type, final AnnotationNode[] annotations) {
+            this.name = name;
+            this.type = type;
+            this.annotations = annotations;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return object instanceof ParameterNode other && Objects.equals(name, other.name)
+                    && Objects.equals(type, other.type) && Arrays.equals(annotations, other.annotations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, type, Arrays.hashCode(annotations));
+        }
+    }
+
+    /**
+     * An immutable annotation instance, shared by all elements with the same annotation.
+     */
+    private static final class AnnotationNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final String qualified;
+        private final ArgumentNode[] arguments;
+
+        private AnnotationNode(final String name, final String qualified, final ArgumentNode[] arguments) {
+            this.name = name;
+            this.qualified = qualified;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return object instanceof AnnotationNode other && Objects.equals(name, other.name)
+                    && Objects.equals(qualified, other.qualified) && Arrays.equals(arguments, other.arguments);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, qualified, Arrays.hashCode(arguments));
+        }
+    }
+
+    private static final class ArgumentNode implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final TypeRef type;
+        private final int flags;
+        private final String[] values;
+        private final AnnotationNode[] annotations;
+
+        private ArgumentNode(
+                final String name, final TypeRef type, final int flags, final String[] values,
+                final AnnotationNode[] annotations) {
+            this.name = name;
+            this.type = type;
+            this.flags = flags;
+            this.values = values;
+            this.annotations = annotations;
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            return object instanceof ArgumentNode other && flags == other.flags && Objects.equals(name, other.name)
+                    && Objects.equals(type, other.type) && Arrays.equals(values, other.values)
+                    && Arrays.equals(annotations, other.annotations);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, type, flags, Arrays.hashCode(values), Arrays.hashCode(annotations));
+        }
+    }
+
+    /**
+     * A package serialized to the segment file.
+     */
+    private static final class SpilledPackage {
+        private final FileChannel segment;
+        private final long position;
+        private final int length;
+
+        private SpilledPackage(final FileChannel segment, final long position, final int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+
+        private PackageNode read() {
+            final ByteBuffer buffer = ByteBuffer.allocate(length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (segment.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("The segment file ends within a package");
+                    }
+                }
+                try (var inputStream = new ObjectInputStream(new ByteArrayInputStream(buffer.array()))) {
+                    return (PackageNode) inputStream.readObject();
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                throw new UncheckedIOException("Failed to read a spilled package",
+                        e instanceof IOException ioException ? ioException : new IOException(e));
+            }
+        }
+    }
+
+    /**
+     * A read-only root projecting each package when it is accessed, or only when it is first accessed if the packages
+     * are kept. The JAXB marshaller reads the package list of the generated class, which is replaced by the projecting
+     * list.
+     */
+    private static final class ProjectedRoot extends Root {
+        private ProjectedRoot(final CompactModel model, final boolean kept) {
+            final Package[] packages = kept ? new Package[model.size()] : null;
+            this._package = new AbstractList<>() {
+                @Override
+                public Package get(final int index) {
+                    if (packages == null) {
+                        return model.getPackage(index);
+                    }
+                    Objects.checkIndex(index, packages.length);
+                    if (packages[index] == null) {
+                        packages[index] = model.getPackage(index);
+                    }
+                    return packages[index];
+                }
+
+                @Override
+                public int size() {
+                    return packages == null ? model.size() : packages.length;
+                }
+            };
+        }
+    }
+}
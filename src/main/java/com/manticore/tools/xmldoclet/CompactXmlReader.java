@@ -0,0 +1,670 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads a document written in the compact XML profile (see {@code javadoc-compact.xsd}) back into a {@link Root},
+ * resolving all type references against the {@code <types>} table.
+ *
+ * <p>
+ * All references to the same type id are resolved to the same {@link TypeInfo} instance, so the model keeps the
+ * deduplication of the compact document.
+ * </p>
+ *
+ * @see CompactXmlWriter
+ */
+public final class CompactXmlReader {
+    private final XMLStreamReader reader;
+    private final ObjectFactory objectFactory = new ObjectFactory();
+
+    /**
+     * A map where each key is a type id and each value is the (possibly not yet populated) type with that id.
+     * References may appear before the table, so the instances are created on first sight and filled in later.
+     */
+    private final Map<String, TypeInfo> types = new HashMap<>();
+
+    private CompactXmlReader(final XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads a compact document.
+     *
+     * @param inputStream the stream to read the document from
+     * @return the document root with all type references resolved
+     * @throws XMLStreamException when the document can't be parsed
+     */
+    public static Root read(final InputStream inputStream) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        final XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+        try {
+            return new CompactXmlReader(reader).readRoot();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Root readRoot() throws XMLStreamException {
+        reader.nextTag();
+        if (!CompactXmlWriter.NAMESPACE.equals(reader.getNamespaceURI())) {
+            throw new XMLStreamException("Not a compact javadoc document: " + reader.getName(), reader.getLocation());
+        }
+
+        final Root root = objectFactory.createRoot();
+        readChildren(name -> {
+            switch (name) {
+                case "package":
+                    root.getPackage().add(readPackage());
+                    break;
+                case "types":
+                    readChildren(typeName -> readType());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+
+        return root;
+    }
+
+    private Package readPackage() throws XMLStreamException {
+        final Package packageNode = objectFactory.createPackage();
+        packageNode.setName(attribute("name"));
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    packageNode.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    packageNode.getTag().add(readTag());
+                    break;
+                case "link":
+                    packageNode.getLink().add(readLink());
+                    break;
+                case "annotation":
+                    packageNode.getAnnotation().add(readAnnotation());
+                    break;
+                case "enum":
+                    packageNode.getEnum().add(readEnum());
+                    break;
+                case "interface":
+                    packageNode.getInterface().add(readInterface());
+                    break;
+                case "class":
+                    packageNode.getClazz().add(readClass());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return packageNode;
+    }
+
+    private Annotation readAnnotation() throws XMLStreamException {
+        final Annotation annotation = objectFactory.createAnnotation();
+        annotation.setName(attribute("name"));
+        annotation.setQualified(attribute("qualified"));
+        annotation.setScope(attribute("scope"));
+        readBoolean("included", annotation::setIncluded);
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    annotation.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    annotation.getTag().add(readTag());
+                    break;
+                case "link":
+                    annotation.getLink().add(readLink());
+                    break;
+                case "element":
+                    annotation.getElement().add(readAnnotationElement());
+                    break;
+                case "annotation":
+                    annotation.getAnnotation().add(readAnnotationInstance());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return annotation;
+    }
+
+    private AnnotationElement readAnnotationElement() throws XMLStreamException {
+        final AnnotationElement element = objectFactory.createAnnotationElement();
+        element.setName(attribute("name"));
+        element.setQualified(attribute("qualified"));
+        element.setDefault(attribute("default"));
+        readChildren(name -> {
+            if ("type".equals(name)) {
+                element.setType(readTypeRef());
+            } else {
+                skipElement();
+            }
+        });
+        return element;
+    }
+
+    private Enum readEnum() throws XMLStreamException {
+        final Enum enumNode = objectFactory.createEnum();
+        enumNode.setName(attribute("name"));
+        enumNode.setQualified(attribute("qualified"));
+        enumNode.setScope(attribute("scope"));
+        readBoolean("included", enumNode::setIncluded);
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    enumNode.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    enumNode.getTag().add(readTag());
+                    break;
+                case "link":
+                    enumNode.getLink().add(readLink());
+                    break;
+                case "class":
+                    enumNode.setClazz(readTypeRef());
+                    break;
+                case "interface":
+                    enumNode.getInterface().add(readTypeRef());
+                    break;
+                case "constant":
+                    enumNode.getConstant().add(readEnumConstant());
+                    break;
+                case "annotation":
+                    enumNode.getAnnotation().add(readAnnotationInstance());
+                    break;
+                case "usedBy":
+                    enumNode.getUsedBy().add(readMemberRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return enumNode;
+    }
+
+    private EnumConstant readEnumConstant() throws XMLStreamException {
+        final EnumConstant constant = objectFactory.createEnumConstant();
+        constant.setName(attribute("name"));
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    constant.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    constant.getTag().add(readTag());
+                    break;
+                case "link":
+                    constant.getLink().add(readLink());
+                    break;
+                case "annotation":
+                    constant.getAnnotation().add(readAnnotationInstance());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return constant;
+    }
+
+    private Interface readInterface() throws XMLStreamException {
+        final Interface interfaceNode = objectFactory.createInterface();
+        interfaceNode.setName(attribute("name"));
+        interfaceNode.setQualified(attribute("qualified"));
+        interfaceNode.setScope(attribute("scope"));
+        readBoolean("included", interfaceNode::setIncluded);
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    interfaceNode.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    interfaceNode.getTag().add(readTag());
+                    break;
+                case "link":
+                    interfaceNode.getLink().add(readLink());
+                    break;
+                case "generic":
+                    interfaceNode.getGeneric().add(readTypeParameter());
+                    break;
+                case "interface":
+                    interfaceNode.getInterface().add(readTypeRef());
+                    break;
+                case "method":
+                    interfaceNode.getMethod().add(readMethod());
+                    break;
+                case "annotation":
+                    interfaceNode.getAnnotation().add(readAnnotationInstance());
+                    break;
+                case "field":
+                    interfaceNode.getField().add(readField());
+                    break;
+                case "inherited":
+                    interfaceNode.getInherited().add(readInheritedMembers());
+                    break;
+                case "implementor":
+                    interfaceNode.getImplementor().add(readTypeRef());
+                    break;
+                case "usedBy":
+                    interfaceNode.getUsedBy().add(readMemberRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return interfaceNode;
+    }
+
+    private Class readClass() throws XMLStreamException {
+        final Class classNode = objectFactory.createClass();
+        classNode.setName(attribute("name"));
+        classNode.setQualified(attribute("qualified"));
+        classNode.setScope(attribute("scope"));
+        readBoolean("abstract", classNode::setAbstract);
+        readBoolean("error", classNode::setError);
+        readBoolean("exception", classNode::setException);
+        readBoolean("externalizable", classNode::setExternalizable);
+        readBoolean("included", classNode::setIncluded);
+        readBoolean("serializable", classNode::setSerializable);
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    classNode.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    classNode.getTag().add(readTag());
+                    break;
+                case "link":
+                    classNode.getLink().add(readLink());
+                    break;
+                case "generic":
+                    classNode.getGeneric().add(readTypeParameter());
+                    break;
+                case "class":
+                    classNode.setClazz(readTypeRef());
+                    break;
+                case "interface":
+                    classNode.getInterface().add(readTypeRef());
+                    break;
+                case "constructor":
+                    classNode.getConstructor().add(readConstructor());
+                    break;
+                case "method":
+                    classNode.getMethod().add(readMethod());
+                    break;
+                case "annotation":
+                    classNode.getAnnotation().add(readAnnotationInstance());
+                    break;
+                case "field":
+                    classNode.getField().add(readField());
+                    break;
+                case "inherited":
+                    classNode.getInherited().add(readInheritedMembers());
+                    break;
+                case "subclass":
+                    classNode.getSubclass().add(readTypeRef());
+                    break;
+                case "usedBy":
+                    classNode.getUsedBy().add(readMemberRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return classNode;
+    }
+
+    private Constructor readConstructor() throws XMLStreamException {
+        final Constructor constructor = objectFactory.createConstructor();
+        constructor.setName(attribute("name"));
+        constructor.setSignature(attribute("signature"));
+        constructor.setQualified(attribute("qualified"));
+        constructor.setScope(attribute("scope"));
+        readBoolean("final", constructor::setFinal);
+        readBoolean("included", constructor::setIncluded);
+        readBoolean("native", constructor::setNative);
+        readBoolean("synchronized", constructor::setSynchronized);
+        readBoolean("static", constructor::setStatic);
+        readBoolean("varArgs", constructor::setVarArgs);
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    constructor.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    constructor.getTag().add(readTag());
+                    break;
+                case "link":
+                    constructor.getLink().add(readLink());
+                    break;
+                case "parameter":
+                    constructor.getParameter().add(readMethodParameter());
+                    break;
+                case "exception":
+                    constructor.getException().add(readTypeRef());
+                    break;
+                case "annotation":
+                    constructor.getAnnotation().add(readAnnotationInstance());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return constructor;
+    }
+
+    private Method readMethod() throws XMLStreamException {
+        final Method method = objectFactory.createMethod();
+        method.setName(attribute("name"));
+        method.setSignature(attribute("signature"));
+        method.setQualified(attribute("qualified"));
+        method.setScope(attribute("scope"));
+        readBoolean("abstract", method::setAbstract);
+        readBoolean("final", method::setFinal);
+        readBoolean("included", method::setIncluded);
+        readBoolean("native", method::setNative);
+        readBoolean("synchronized", method::setSynchronized);
+        readBoolean("static", method::setStatic);
+        readBoolean("varArgs", method::setVarArgs);
+        readChildren(name -> {
+            switch (name) {
+                case "comment":
+                    method.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    method.getTag().add(readTag());
+                    break;
+                case "link":
+                    method.getLink().add(readLink());
+                    break;
+                case "parameter":
+                    method.getParameter().add(readMethodParameter());
+                    break;
+                case "return":
+                    method.setReturn(readTypeRef());
+                    break;
+                case "exception":
+                    method.getException().add(readTypeRef());
+                    break;
+                case "annotation":
+                    method.getAnnotation().add(readAnnotationInstance());
+                    break;
+                case "overrides":
+                    method.setOverrides(readMemberRef());
+                    break;
+                case "implements":
+                    method.getImplements().add(readMemberRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return method;
+    }
+
+    private InheritedMembers readInheritedMembers() throws XMLStreamException {
+        final InheritedMembers inherited = objectFactory.createInheritedMembers();
+        inherited.setQualified(attribute("qualified"));
+        readChildren(name -> {
+            switch (name) {
+                case "method":
+                    inherited.getMethod().add(readMemberRef());
+                    break;
+                case "field":
+                    inherited.getField().add(readMemberRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return inherited;
+    }
+
+    private MemberRef readMemberRef() throws XMLStreamException {
+        final MemberRef memberRef = objectFactory.createMemberRef();
+        memberRef.setName(attribute("name"));
+        memberRef.setSignature(attribute("signature"));
+        memberRef.setType(attribute("type"));
+        skipElement();
+        return memberRef;
+    }
+
+    private MethodParameter readMethodParameter() throws XMLStreamException {
+        final MethodParameter parameter = objectFactory.createMethodParameter();
+        parameter.setName(attribute("name"));
+        readChildren(name -> {
+            switch (name) {
+                case "type":
+                    parameter.setType(readTypeRef());
+                    break;
+                case "annotation":
+                    parameter.getAnnotation().add(readAnnotationInstance());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return parameter;
+    }
+
+    private Field readField() throws XMLStreamException {
+        final Field field = objectFactory.createField();
+        field.setName(attribute("name"));
+        field.setQualified(attribute("qualified"));
+        field.setScope(attribute("scope"));
+        readBoolean("volatile", field::setVolatile);
+        readBoolean("transient", field::setTransient);
+        readBoolean("static", field::setStatic);
+        readBoolean("final", field::setFinal);
+        readChildren(name -> {
+            switch (name) {
+                case "type":
+                    field.setType(readTypeRef());
+                    break;
+                case "comment":
+                    field.setComment(reader.getElementText());
+                    break;
+                case "tag":
+                    field.getTag().add(readTag());
+                    break;
+                case "link":
+                    field.getLink().add(readLink());
+                    break;
+                case "constant":
+                    field.setConstant(reader.getElementText());
+                    break;
+                case "annotation":
+                    field.getAnnotation().add(readAnnotationInstance());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return field;
+    }
+
+    private AnnotationInstance readAnnotationInstance() throws XMLStreamException {
+        final AnnotationInstance instance = objectFactory.createAnnotationInstance();
+        instance.setName(attribute("name"));
+        instance.setQualified(attribute("qualified"));
+        readChildren(name -> {
+            if ("argument".equals(name)) {
+                instance.getArgument().add(readAnnotationArgument());
+            } else {
+                skipElement();
+            }
+        });
+        return instance;
+    }
+
+    private AnnotationArgument readAnnotationArgument() throws XMLStreamException {
+        final AnnotationArgument argument = objectFactory.createAnnotationArgument();
+        argument.setName(attribute("name"));
+        readBoolean("primitive", argument::setPrimitive);
+        readBoolean("array", argument::setArray);
+        readChildren(name -> {
+            switch (name) {
+                case "type":
+                    argument.setType(readTypeRef());
+                    break;
+                case "value":
+                    argument.getValue().add(reader.getElementText());
+                    break;
+                case "annotation":
+                    argument.getAnnotation().add(readAnnotationInstance());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return argument;
+    }
+
+    private TagInfo readTag() throws XMLStreamException {
+        final TagInfo tag = objectFactory.createTagInfo();
+        tag.setName(attribute("name"));
+        tag.setText(attribute("text"));
+        skipElement();
+        return tag;
+    }
+
+    private LinkInfo readLink() throws XMLStreamException {
+        final LinkInfo link = objectFactory.createLinkInfo();
+        link.setReference(attribute("reference"));
+        link.setQualified(attribute("qualified"));
+        link.setMember(attribute("member"));
+        link.setAnchor(attribute("anchor"));
+        skipElement();
+        return link;
+    }
+
+    private TypeParameter readTypeParameter() throws XMLStreamException {
+        final TypeParameter typeParameter = objectFactory.createTypeParameter();
+        typeParameter.setName(attribute("name"));
+        readChildren(name -> {
+            if ("bound".equals(name)) {
+                typeParameter.getBound().add(reader.getElementText());
+            } else {
+                skipElement();
+            }
+        });
+        return typeParameter;
+    }
+
+    /**
+     * Reads one entry of the type table into the instance shared by all references to its id.
+     */
+    private void readType() throws XMLStreamException {
+        final TypeInfo typeInfo = getType(attribute("id"));
+        typeInfo.setQualified(attribute("qualified"));
+        typeInfo.setDimension(attribute("dimension"));
+        readChildren(name -> {
+            switch (name) {
+                case "wildcard":
+                    typeInfo.setWildcard(readWildcard());
+                    break;
+                case "generic":
+                    typeInfo.getGeneric().add(readTypeRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+    }
+
+    private Wildcard readWildcard() throws XMLStreamException {
+        final Wildcard wildcard = objectFactory.createWildcard();
+        readChildren(name -> {
+            switch (name) {
+                case "extendsBound":
+                    wildcard.getExtendsBound().add(readTypeRef());
+                    break;
+                case "superBound":
+                    wildcard.getSuperBound().add(readTypeRef());
+                    break;
+                default:
+                    skipElement();
+            }
+        });
+        return wildcard;
+    }
+
+    private TypeInfo readTypeRef() throws XMLStreamException {
+        final TypeInfo typeInfo = getType(attribute("ref"));
+        skipElement();
+        return typeInfo;
+    }
+
+    private TypeInfo getType(final String id) throws XMLStreamException {
+        if (id == null) {
+            throw new XMLStreamException("Missing type id", reader.getLocation());
+        }
+
+        return types.computeIfAbsent(id, key -> objectFactory.createTypeInfo());
+    }
+
+    private String attribute(final String name) {
+        return reader.getAttributeValue(null, name);
+    }
+
+    private void readBoolean(final String name, final Consumer<Boolean> setter) {
+        final String value = attribute(name);
+        if (value != null) {
+            setter.accept(Boolean.valueOf(value));
+        }
+    }
+
+    /**
+     * Reads all child elements of the current element, passing each one to a handler,
+     * until the end tag of the current element is reached.
+     * The handler must consume the child element up to its own end tag.
+     *
+     * @param handler the handler receiving the local name of each child element
+     */
+    private void readChildren(final ChildHandler handler) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                handler.handle(reader.getLocalName());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips the current element and all its content, up to its end tag.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChildHandler {
+        void handle(String localName) throws XMLStreamException;
+    }
+}
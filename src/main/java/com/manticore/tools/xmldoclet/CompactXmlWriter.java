@@ -0,0 +1,443 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.*;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link Root} in the compact XML profile described by {@code javadoc-compact.xsd}.
+ *
+ * <p>
+ * Each distinct {@link TypeInfo} is written only once into a {@code <types>} table and all other elements refer to
+ * it by its id. The table is written after the packages, so the document is produced in a single streaming pass.
+ * Boolean attributes are only written when they differ from their schema default.
+ * </p>
+ *
+ * @see CompactXmlReader
+ */
+final class CompactXmlWriter {
+    static final String NAMESPACE = "http://www.manticore-projects.com/xmldoclet/compact";
+
+    private final XMLStreamWriter writer;
+
+    /**
+     * A map where each key is the identity of a type (see {@link #getTypeKey(TypeInfo)}) and each value is its id.
+     */
+    private final Map<String, String> typeIds = new HashMap<>();
+
+    /**
+     * The distinct types in the order their ids were assigned.
+     */
+    private final List<TypeInfo> types = new ArrayList<>();
+
+    CompactXmlWriter(final XMLStreamWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the complete document, including the XML declaration.
+     *
+     * @param root the document root
+     * @param encoding the encoding declared in the XML declaration
+     * @throws XMLStreamException when writing fails
+     */
+    void write(final Root root, final String encoding) throws XMLStreamException {
+        writer.writeStartDocument(encoding, "1.0");
+        writer.writeStartElement("c", "root", NAMESPACE);
+        writer.writeNamespace("c", NAMESPACE);
+
+        for (final Package packageNode : root.getPackage()) {
+            writePackage(packageNode);
+        }
+
+        writeTypes();
+
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.flush();
+    }
+
+    void writePackage(final Package packageNode) throws XMLStreamException {
+        writer.writeStartElement("package");
+        writeAttribute("name", packageNode.getName());
+        writeText("comment", packageNode.getComment());
+        writeTags(packageNode.getTag());
+        writeLinks(packageNode.getLink());
+
+        for (final Annotation annotation : packageNode.getAnnotation()) {
+            writeAnnotation(annotation);
+        }
+        for (final Enum enumNode : packageNode.getEnum()) {
+            writeEnum(enumNode);
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            writeInterface(interfaceNode);
+        }
+        for (final Class classNode : packageNode.getClazz()) {
+            writeClass(classNode);
+        }
+
+        writer.writeEndElement();
+    }
+
+    private void writeAnnotation(final Annotation annotation) throws XMLStreamException {
+        writer.writeStartElement("annotation");
+        writeAttribute("name", annotation.getName());
+        writeAttribute("qualified", annotation.getQualified());
+        writeAttribute("scope", annotation.getScope());
+        writeAttribute("included", annotation.isIncluded(), true);
+        writeText("comment", annotation.getComment());
+        writeTags(annotation.getTag());
+        writeLinks(annotation.getLink());
+
+        for (final AnnotationElement element : annotation.getElement()) {
+            writer.writeStartElement("element");
+            writeAttribute("name", element.getName());
+            writeAttribute("qualified", element.getQualified());
+            writeAttribute("default", element.getDefault());
+            writeTypeRef("type", element.getType());
+            writer.writeEndElement();
+        }
+
+        writeAnnotationInstances(annotation.getAnnotation());
+        writer.writeEndElement();
+    }
+
+    private void writeEnum(final Enum enumNode) throws XMLStreamException {
+        writer.writeStartElement("enum");
+        writeAttribute("name", enumNode.getName());
+        writeAttribute("qualified", enumNode.getQualified());
+        writeAttribute("scope", enumNode.getScope());
+        writeAttribute("included", enumNode.isIncluded(), true);
+        writeText("comment", enumNode.getComment());
+        writeTags(enumNode.getTag());
+        writeLinks(enumNode.getLink());
+        writeTypeRef("class", enumNode.getClazz());
+        writeTypeRefs("interface", enumNode.getInterface());
+
+        for (final EnumConstant constant : enumNode.getConstant()) {
+            writer.writeStartElement("constant");
+            writeAttribute("name", constant.getName());
+            writeText("comment", constant.getComment());
+            writeTags(constant.getTag());
+            writeLinks(constant.getLink());
+            writeAnnotationInstances(constant.getAnnotation());
+            writer.writeEndElement();
+        }
+
+        writeAnnotationInstances(enumNode.getAnnotation());
+        writeMemberRefs("usedBy", enumNode.getUsedBy());
+        writer.writeEndElement();
+    }
+
+    private void writeInterface(final Interface interfaceNode) throws XMLStreamException {
+        writer.writeStartElement("interface");
+        writeAttribute("name", interfaceNode.getName());
+        writeAttribute("qualified", interfaceNode.getQualified());
+        writeAttribute("scope", interfaceNode.getScope());
+        writeAttribute("included", interfaceNode.isIncluded(), true);
+        writeText("comment", interfaceNode.getComment());
+        writeTags(interfaceNode.getTag());
+        writeLinks(interfaceNode.getLink());
+        writeTypeParameters(interfaceNode.getGeneric());
+        writeTypeRefs("interface", interfaceNode.getInterface());
+
+        for (final Method method : interfaceNode.getMethod()) {
+            writeMethod(method);
+        }
+
+        writeAnnotationInstances(interfaceNode.getAnnotation());
+
+        for (final Field field : interfaceNode.getField()) {
+            writeField(field);
+        }
+
+        writeInheritedMembers(interfaceNode.getInherited());
+        writeTypeRefs("implementor", interfaceNode.getImplementor());
+        writeMemberRefs("usedBy", interfaceNode.getUsedBy());
+
+        writer.writeEndElement();
+    }
+
+    private void writeClass(final Class classNode) throws XMLStreamException {
+        writer.writeStartElement("class");
+        writeAttribute("name", classNode.getName());
+        writeAttribute("qualified", classNode.getQualified());
+        writeAttribute("scope", classNode.getScope());
+        writeAttribute("abstract", classNode.isAbstract(), false);
+        writeAttribute("error", classNode.isError(), false);
+        writeAttribute("exception", classNode.isException(), false);
+        writeAttribute("externalizable", classNode.isExternalizable(), false);
+        writeAttribute("included", classNode.isIncluded(), true);
+        writeAttribute("serializable", classNode.isSerializable(), false);
+        writeText("comment", classNode.getComment());
+        writeTags(classNode.getTag());
+        writeLinks(classNode.getLink());
+        writeTypeParameters(classNode.getGeneric());
+        writeTypeRef("class", classNode.getClazz());
+        writeTypeRefs("interface", classNode.getInterface());
+
+        for (final Constructor constructor : classNode.getConstructor()) {
+            writeConstructor(constructor);
+        }
+        for (final Method method : classNode.getMethod()) {
+            writeMethod(method);
+        }
+
+        writeAnnotationInstances(classNode.getAnnotation());
+
+        for (final Field field : classNode.getField()) {
+            writeField(field);
+        }
+
+        writeInheritedMembers(classNode.getInherited());
+        writeTypeRefs("subclass", classNode.getSubclass());
+        writeMemberRefs("usedBy", classNode.getUsedBy());
+
+        writer.writeEndElement();
+    }
+
+    private void writeConstructor(final Constructor constructor) throws XMLStreamException {
+        writer.writeStartElement("constructor");
+        writeAttribute("name", constructor.getName());
+        writeAttribute("signature", constructor.getSignature());
+        writeAttribute("qualified", constructor.getQualified());
+        writeAttribute("scope", constructor.getScope());
+        writeAttribute("final", constructor.isFinal(), false);
+        writeAttribute("included", constructor.isIncluded(), true);
+        writeAttribute("native", constructor.isNative(), false);
+        writeAttribute("synchronized", constructor.isSynchronized(), false);
+        writeAttribute("static", constructor.isStatic(), false);
+        writeAttribute("varArgs", constructor.isVarArgs(), false);
+        writeText("comment", constructor.getComment());
+        writeTags(constructor.getTag());
+        writeLinks(constructor.getLink());
+        writeParameters(constructor.getParameter());
+        writeTypeRefs("exception", constructor.getException());
+        writeAnnotationInstances(constructor.getAnnotation());
+        writer.writeEndElement();
+    }
+
+    private void writeMethod(final Method method) throws XMLStreamException {
+        writer.writeStartElement("method");
+        writeAttribute("name", method.getName());
+        writeAttribute("signature", method.getSignature());
+        writeAttribute("qualified", method.getQualified());
+        writeAttribute("scope", method.getScope());
+        writeAttribute("abstract", method.isAbstract(), false);
+        writeAttribute("final", method.isFinal(), false);
+        writeAttribute("included", method.isIncluded(), true);
+        writeAttribute("native", method.isNative(), false);
+        writeAttribute("synchronized", method.isSynchronized(), false);
+        writeAttribute("static", method.isStatic(), false);
+        writeAttribute("varArgs", method.isVarArgs(), false);
+        writeText("comment", method.getComment());
+        writeTags(method.getTag());
+        writeLinks(method.getLink());
+        writeParameters(method.getParameter());
+        writeTypeRef("return", method.getReturn());
+        writeTypeRefs("exception", method.getException());
+        writeAnnotationInstances(method.getAnnotation());
+        writeMemberRef("overrides", method.getOverrides());
+        writeMemberRefs("implements", method.getImplements());
+        writer.writeEndElement();
+    }
+
+    private void writeInheritedMembers(final List<InheritedMembers> inheritedMembers) throws XMLStreamException {
+        for (final InheritedMembers inherited : inheritedMembers) {
+            writer.writeStartElement("inherited");
+            writeAttribute("qualified", inherited.getQualified());
+            writeMemberRefs("method", inherited.getMethod());
+            writeMemberRefs("field", inherited.getField());
+            writer.writeEndElement();
+        }
+    }
+
+    private void writeMemberRefs(final String elementName, final List<MemberRef> memberRefs)
+            throws XMLStreamException {
+        for (final MemberRef memberRef : memberRefs) {
+            writeMemberRef(elementName, memberRef);
+        }
+    }
+
+    private void writeMemberRef(final String elementName, final MemberRef memberRef) throws XMLStreamException {
+        if (memberRef != null) {
+            writer.writeEmptyElement(elementName);
+            writeAttribute("name", memberRef.getName());
+            writeAttribute("signature", memberRef.getSignature());
+            writeAttribute("type", memberRef.getType());
+        }
+    }
+
+    private void writeParameters(final List<MethodParameter> parameters) throws XMLStreamException {
+        for (final MethodParameter parameter : parameters) {
+            writer.writeStartElement("parameter");
+            writeAttribute("name", parameter.getName());
+            writeTypeRef("type", parameter.getType());
+            writeAnnotationInstances(parameter.getAnnotation());
+            writer.writeEndElement();
+        }
+    }
+
+    private void writeField(final Field field) throws XMLStreamException {
+        writer.writeStartElement("field");
+        writeAttribute("name", field.getName());
+        writeAttribute("qualified", field.getQualified());
+        writeAttribute("scope", field.getScope());
+        writeAttribute("volatile", field.isVolatile(), false);
+        writeAttribute("transient", field.isTransient(), false);
+        writeAttribute("static", field.isStatic(), false);
+        writeAttribute("final", field.isFinal(), false);
+        writeTypeRef("type", field.getType());
+        writeText("comment", field.getComment());
+        writeTags(field.getTag());
+        writeLinks(field.getLink());
+        writeText("constant", field.getConstant());
+        writeAnnotationInstances(field.getAnnotation());
+        writer.writeEndElement();
+    }
+
+    private void writeAnnotationInstances(final List<AnnotationInstance> instances) throws XMLStreamException {
+        for (final AnnotationInstance instance : instances) {
+            writer.writeStartElement("annotation");
+            writeAttribute("name", instance.getName());
+            writeAttribute("qualified", instance.getQualified());
+
+            for (final AnnotationArgument argument : instance.getArgument()) {
+                writer.writeStartElement("argument");
+                writeAttribute("name", argument.getName());
+                writeAttribute("primitive", argument.isPrimitive(), false);
+                writeAttribute("array", argument.isArray(), false);
+                writeTypeRef("type", argument.getType());
+                for (final String value : argument.getValue()) {
+                    writeText("value", value);
+                }
+                writeAnnotationInstances(argument.getAnnotation());
+                writer.writeEndElement();
+            }
+
+            writer.writeEndElement();
+        }
+    }
+
+    private void writeTags(final List<TagInfo> tags) throws XMLStreamException {
+        for (final TagInfo tag : tags) {
+            writer.writeEmptyElement("tag");
+            writeAttribute("name", tag.getName());
+            writeAttribute("text", tag.getText());
+        }
+    }
+
+    private void writeLinks(final List<LinkInfo> links) throws XMLStreamException {
+        for (final LinkInfo link : links) {
+            writer.writeEmptyElement("link");
+            writeAttribute("reference", link.getReference());
+            writeAttribute("qualified", link.getQualified());
+            writeAttribute("member", link.getMember());
+            writeAttribute("anchor", link.getAnchor());
+        }
+    }
+
+    private void writeTypeParameters(final List<TypeParameter> typeParameters) throws XMLStreamException {
+        for (final TypeParameter typeParameter : typeParameters) {
+            writer.writeStartElement("generic");
+            writeAttribute("name", typeParameter.getName());
+            for (final String bound : typeParameter.getBound()) {
+                writeText("bound", bound);
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    private void writeTypeRefs(final String elementName, final List<TypeInfo> typeInfos) throws XMLStreamException {
+        for (final TypeInfo typeInfo : typeInfos) {
+            writeTypeRef(elementName, typeInfo);
+        }
+    }
+
+    private void writeTypeRef(final String elementName, final TypeInfo typeInfo) throws XMLStreamException {
+        if (typeInfo != null) {
+            writer.writeEmptyElement(elementName);
+            writer.writeAttribute("ref", getTypeId(typeInfo));
+        }
+    }
+
+    /**
+     * Writes the type table. Generic arguments and wildcard bounds seen only inside the table are appended to it while
+     * it is being written, that is why the list is traversed by index.
+     */
+    private void writeTypes() throws XMLStreamException {
+        writer.writeStartElement("types");
+        for (int i = 0; i < types.size(); i++) {
+            final TypeInfo typeInfo = types.get(i);
+            writer.writeStartElement("type");
+            writer.writeAttribute("id", Integer.toString(i, Character.MAX_RADIX));
+            writeAttribute("qualified", typeInfo.getQualified());
+            writeAttribute("dimension", typeInfo.getDimension());
+
+            final Wildcard wildcard = typeInfo.getWildcard();
+            if (wildcard != null) {
+                writer.writeStartElement("wildcard");
+                writeTypeRefs("extendsBound", wildcard.getExtendsBound());
+                writeTypeRefs("superBound", wildcard.getSuperBound());
+                writer.writeEndElement();
+            }
+
+            writeTypeRefs("generic", typeInfo.getGeneric());
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * {@return the id of a type, registering it in the type table when it is seen for the first time}
+     *
+     * @param typeInfo the type to get its id
+     */
+    private String getTypeId(final TypeInfo typeInfo) {
+        return typeIds.computeIfAbsent(getTypeKey(typeInfo), key -> {
+            types.add(typeInfo);
+            return Integer.toString(types.size() - 1, Character.MAX_RADIX);
+        });
+    }
+
+    /**
+     * {@return the identity of a type}
+     * The qualified name already contains the generic arguments and wildcard bounds, only the dimension is kept apart.
+     *
+     * @param typeInfo the type to get its identity
+     */
+    private static String getTypeKey(final TypeInfo typeInfo) {
+        final String dimension = typeInfo.getDimension();
+        return dimension == null ? typeInfo.getQualified() : typeInfo.getQualified() + '#' + dimension;
+    }
+
+    private void writeAttribute(final String name, final String value) throws XMLStreamException {
+        if (value != null) {
+            writer.writeAttribute(name, value);
+        }
+    }
+
+    private void writeAttribute(final String name, final boolean value, final boolean defaultValue)
+            throws XMLStreamException {
+        if (value != defaultValue) {
+            writer.writeAttribute(name, Boolean.toString(value));
+        }
+    }
+
+    private void writeText(final String elementName, final String text) throws XMLStreamException {
+        if (text != null) {
+            writer.writeStartElement(elementName);
+            writer.writeCharacters(text);
+            writer.writeEndElement();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.manticore.tools.xmldoclet;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression formats for the written files, selected by the {@code -compress} option.
+ *
+ * <p>
+ * {@link #GZIP} and {@link #DEFLATE} are provided by the JDK. {@link #ZSTD} needs
+ * <a href="https://github.com/luben/zstd-jni">zstd-jni</a> on the doclet path and is loaded reflectively,
+ * so the doclet does not depend on a native library unless that format is requested.
+ * </p>
+ */
+enum Compression {
+    NONE("") {
+        @Override
+        OutputStream compress(final OutputStream outputStream, final int bufferSize) {
+            return outputStream;
+        }
+    },
+    GZIP(".gz") {
+        @Override
+        OutputStream compress(final OutputStream outputStream, final int bufferSize) throws IOException {
+            return new GZIPOutputStream(outputStream, bufferSize);
+        }
+    },
+    /** Zlib wrapped deflate stream. */
+    DEFLATE(".zz") {
+        @Override
+        OutputStream compress(final OutputStream outputStream, final int bufferSize) {
+            return new DeflaterOutputStream(outputStream, new Deflater(), bufferSize);
+        }
+    },
+    ZSTD(".zst") {
+        @Override
+        OutputStream compress(final OutputStream outputStream, final int bufferSize) throws IOException {
+            return (OutputStream) newZstdStream("com.github.luben.zstd.ZstdOutputStream", OutputStream.class, outputStream);
+        }
+    };
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+    /**
+     * The suffix appended to the name of a compressed file, such as {@code .gz}.
+     */
+    private final String extension;
+
+    Compression(final String extension) {
+        this.extension = extension;
+    }
+
+    String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Wraps a stream, so that everything written to it gets compressed.
+     *
+     * @param outputStream the stream receiving the compressed data
+     * @param bufferSize the size of the compressor's buffer
+     * @return the compressing stream, or the given stream itself for {@link #NONE}
+     */
+    abstract OutputStream compress(OutputStream outputStream, int bufferSize) throws IOException;
+
+    /**
+     * {@return the compression format with the given name, ignoring the case}
+     *
+     * @param name the name of the format, such as {@code gzip}; null or empty for {@link #NONE}
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    static Compression of(final String name) {
+        if (name == null || name.isBlank()) {
+            return NONE;
+        }
+
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown compression format: " + name + ". Use gzip, deflate or zstd.", e);
+        }
+    }
+
+    /**
+     * Wraps a stream that may contain compressed data, detecting the format from its magic bytes.
+     * Uncompressed data is passed through unchanged.
+     *
+     * @param inputStream the stream to read from
+     * @return a stream returning the uncompressed data
+     */
+    static InputStream decompress(final InputStream inputStream) throws IOException {
+        final var bufferedInputStream = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        final byte[] header = new byte[ZSTD_MAGIC.length];
+
+        bufferedInputStream.mark(header.length);
+        final int length = bufferedInputStream.readNBytes(header, 0, header.length);
+        bufferedInputStream.reset();
+
+        if (startsWith(header, length, GZIP_MAGIC)) {
+            return new GZIPInputStream(bufferedInputStream);
+        } else if (startsWith(header, length, ZSTD_MAGIC)) {
+            return (InputStream) newZstdStream("com.github.luben.zstd.ZstdInputStream", InputStream.class, bufferedInputStream);
+        } else if (length >= 2 && isZlibHeader(header[0], header[1])) {
+            return new InflaterInputStream(bufferedInputStream);
+        }
+
+        return bufferedInputStream;
+    }
+
+    private static boolean startsWith(final byte[] header, final int length, final byte[] magic) {
+        if (length < magic.length) {
+            return false;
+        }
+
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the two header bytes of a zlib stream (RFC 1950): deflate method with a 32K window and a valid check sum.
+     * An XML document can't match, since it starts with {@code <} or a byte order mark.
+     */
+    private static boolean isZlibHeader(final byte cmf, final byte flg) {
+        return cmf == (byte) 0x78 && ((cmf & 0xff) << 8 | (flg & 0xff)) % 31 == 0;
+    }
+
+    private static Object newZstdStream(final String className, final Class<?> parameterType, final Object stream)
+            throws IOException {
+        try {
+            return Class.forName(className).getConstructor(parameterType).newInstance(stream);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("zstd compression needs com.github.luben:zstd-jni on the doclet path", e);
+        } catch (InvocationTargetException e) {
+            throw new IOException("Failed to create the zstd stream", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Failed to create the zstd stream", e);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.AnnotationInstance;
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Constructor;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.EnumConstant;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.MethodParameter;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TagInfo;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the packages, enums, classes and interfaces with their public constructors and methods as a DocBook 5
+ * book, see {@link Renderer}. Each package is a chapter and each type a section, with the anchors of the
+ * {@link SearchIndex} as IDs, which the resolved {@code {@link}} tags and the documented types of signatures link to.
+ *
+ * <p>
+ * The comments are converted into paragraphs and program listings, with {@code <code>} and {@code {@code}} as
+ * literals. Other HTML tags are removed and the text is escaped, so the document is always well-formed.
+ * </p>
+ */
+final class DocBookRenderer extends Renderer {
+    private static final Pattern PRE_PATTERN = Pattern.compile("<pre>\\s*([\\s\\S]*?)\\s*</pre>", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The inline markup of the comments: {@code {@code}} and {@code <code>} (groups 1 and 2), {@code {@link}} and
+     * {@code {@linkplain}} with their reference and label (groups 3 and 5), paragraphs (group 6) and other tags.
+     */
+    private static final Pattern MARKUP_PATTERN = Pattern.compile(
+            "\\{@code\\s+([^}]*[^\\s}])\\s*}"
+                    + "|<code>\\s*([\\s\\S]*?)\\s*</code>"
+                    + "|\\{@link(?:plain)?\\s+([^\\s}(]+(\\([^)]*\\))?)\\s*([^}]*[^\\s}])?\\s*}"
+                    + "|(</?p\\s*/?>)"
+                    + "|</?[a-zA-Z][^>]*>",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The ampersands not starting an entity reference defined by XML.
+     */
+    private static final Pattern AMPERSAND_PATTERN = Pattern.compile("&(?!(?:lt|gt|amp|quot|apos|#\\d+|#x\\p{XDigit}+);)");
+    private static final Pattern INVALID_CHARACTERS_PATTERN =
+            Pattern.compile("[^\\t\\n\\r\\x20-\\uD7FF\\uE000-\\uFFFD\\x{10000}-\\x{10FFFF}]");
+
+    DocBookRenderer(final Map<String, String> parameters, final int parallelism) {
+        super(parameters, parallelism);
+    }
+
+    @Override
+    protected void renderHeader(final Root root, final StringBuilder output) {
+        collectDocumentedTypes(root);
+
+        output.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<book xmlns=\"http://docbook.org/ns/docbook\" version=\"5.0\">\n<info>\n<title>")
+                .append(escape(getParameter("doctitle", "Java API"))).append("</title>\n");
+
+        final String basePackage = getParameter("basePackage", "");
+        if (!basePackage.isEmpty()) {
+            output.append("<subtitle>Base Package: <package>").append(escape(basePackage))
+                    .append("</package></subtitle>\n");
+        }
+        output.append("</info>\n");
+    }
+
+    @Override
+    protected void renderFooter(final StringBuilder output) {
+        output.append("</book>\n");
+    }
+
+    @Override
+    protected void renderPackage(final Package packageNode, final StringBuilder output) {
+        final String name = packageNode.getName();
+        final String basePackage = getParameter("basePackage", "");
+        final String displayName = basePackage.isEmpty() ? name
+                : name.length() <= basePackage.length() ? "Base"
+                : name.substring(basePackage.length() + 1);
+
+        output.append("<chapter xml:id=\"").append(SearchIndex.getAnchor(name)).append("\">\n<title>")
+                .append(escape(displayName)).append("</title>\n");
+        renderComment(packageNode.getComment(), packageNode.getLink(), output);
+
+        for (final Enum enumNode : packageNode.getEnum()) {
+            renderEnum(enumNode, output);
+        }
+        for (final Class classNode : packageNode.getClazz()) {
+            renderClass(classNode, output);
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            renderInterface(interfaceNode, output);
+        }
+
+        // a chapter needs at least one block
+        if (output.lastIndexOf("</title>\n") == output.length() - "</title>\n".length()) {
+            output.append("<para/>\n");
+        }
+        output.append("</chapter>\n");
+    }
+
+    private void renderEnum(final Enum enumNode, final StringBuilder output) {
+        renderSectionStart(enumNode.getQualified(), enumNode.getName(), output);
+        output.append("<para><emphasis>enum</emphasis>");
+        renderTypeList(" implements ", enumNode.getInterface(), output);
+        output.append("</para>\n");
+        renderComment(enumNode.getComment(), enumNode.getLink(), output);
+
+        final List<EnumConstant> constants = enumNode.getConstant();
+        if (!constants.isEmpty()) {
+            output.append("<variablelist>\n<title>Constants</title>\n");
+            for (final EnumConstant constant : constants) {
+                output.append("<varlistentry>\n<term><constant>").append(escape(constant.getName()))
+                        .append("</constant></term>\n<listitem>\n");
+                renderItemComment(constant.getComment(), constant.getLink(), output);
+                output.append("</listitem>\n</varlistentry>\n");
+            }
+            output.append("</variablelist>\n");
+        }
+        output.append("</section>\n");
+    }
+
+    private void renderClass(final Class classNode, final StringBuilder output) {
+        renderSectionStart(classNode.getQualified(), classNode.getName(), output);
+        output.append(classNode.isAbstract() ? "<para><emphasis>abstract class</emphasis>" : "<para><emphasis>class</emphasis>");
+        if (classNode.getClazz() != null) {
+            output.append(" extends ").append(typeLink(classNode.getClazz()));
+        }
+        renderTypeList(" implements ", classNode.getInterface(), output);
+        renderTypeList(" \u2014 known subclasses: ", classNode.getSubclass(), output);
+        output.append("</para>\n");
+        renderComment(classNode.getComment(), classNode.getLink(), output);
+
+        boolean first = true;
+        for (final Constructor constructorNode : classNode.getConstructor()) {
+            if ("public".equals(constructorNode.getScope())) {
+                if (first) {
+                    output.append("<variablelist>\n<title>Constructors</title>\n");
+                    first = false;
+                }
+                output.append("<varlistentry>\n<term><methodname>").append(escape(constructorNode.getName()))
+                        .append("</methodname>");
+                renderParameterList(constructorNode.getParameter(), output);
+                output.append("</term>\n<listitem>\n");
+                renderItemComment(constructorNode.getComment(), constructorNode.getLink(), output);
+                renderParameterDescriptions(constructorNode.getParameter(), constructorNode.getTag(),
+                        constructorNode.getLink(), output);
+                output.append("</listitem>\n</varlistentry>\n");
+            }
+        }
+        if (!first) {
+            output.append("</variablelist>\n");
+        }
+
+        renderMethods(classNode.getMethod(), output);
+        output.append("</section>\n");
+    }
+
+    private void renderInterface(final Interface interfaceNode, final StringBuilder output) {
+        renderSectionStart(interfaceNode.getQualified(), interfaceNode.getName(), output);
+        output.append("<para><emphasis>interface</emphasis>");
+        renderTypeList(" extends ", interfaceNode.getInterface(), output);
+        renderTypeList(" \u2014 known implementations: ", interfaceNode.getImplementor(), output);
+        output.append("</para>\n");
+        renderComment(interfaceNode.getComment(), interfaceNode.getLink(), output);
+
+        renderMethods(interfaceNode.getMethod(), output);
+        output.append("</section>\n");
+    }
+
+    private void renderMethods(final List<Method> methods, final StringBuilder output) {
+        boolean first = true;
+        for (final Method methodNode : methods) {
+            if (!isRendered(methodNode.getScope())) {
+                continue;
+            }
+            if (first) {
+                output.append("<variablelist>\n<title>Methods</title>\n");
+                first = false;
+            }
+
+            output.append("<varlistentry>\n<term>");
+            for (final AnnotationInstance annotation : methodNode.getAnnotation()) {
+                output.append("<literal>@").append(escape(annotation.getName())).append("</literal> ");
+            }
+            if (methodNode.isStatic()) {
+                output.append("<emphasis>static</emphasis> ");
+            }
+            output.append("<methodname>").append(escape(methodNode.getName())).append("</methodname>");
+            renderParameterList(methodNode.getParameter(), output);
+
+            final TypeInfo returnNode = methodNode.getReturn();
+            if (returnNode != null && !"void".equals(returnNode.getQualified())) {
+                output.append(" \u2192 ").append(typeLink(returnNode));
+            }
+            output.append("</term>\n<listitem>\n");
+            renderItemComment(methodNode.getComment(), methodNode.getLink(), output);
+            renderParameterDescriptions(methodNode.getParameter(), methodNode.getTag(), methodNode.getLink(), output);
+
+            final String returnDescription = getTagText(methodNode.getTag(), "return", null);
+            if (returnDescription != null) {
+                output.append("<formalpara><title>Returns</title>")
+                        .append(convertInline(returnDescription, methodNode.getLink())).append("</formalpara>\n");
+            }
+            output.append("</listitem>\n</varlistentry>\n");
+        }
+        if (!first) {
+            output.append("</variablelist>\n");
+        }
+    }
+
+    private static void renderSectionStart(final String qualified, final String name, final StringBuilder output) {
+        output.append("<section xml:id=\"").append(SearchIndex.getAnchor(qualified)).append("\">\n<title>")
+                .append(escape(name)).append("</title>\n");
+    }
+
+    private void renderTypeList(final String label, final List<TypeInfo> types, final StringBuilder output) {
+        for (int i = 0; i < types.size(); i++) {
+            output.append(i == 0 ? label : ", ").append(typeLink(types.get(i)));
+        }
+    }
+
+    private void renderParameterList(final List<MethodParameter> parameters, final StringBuilder output) {
+        output.append('(');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(typeLink(parameters.get(i).getType())).append(" <parameter>")
+                    .append(escape(parameters.get(i).getName())).append("</parameter>");
+        }
+        output.append(')');
+    }
+
+    private void renderParameterDescriptions(
+            final List<MethodParameter> parameters, final List<TagInfo> tags, final List<LinkInfo> links,
+            final StringBuilder output) {
+        boolean first = true;
+        for (final MethodParameter parameter : parameters) {
+            final String description = getTagText(tags, "param", parameter.getName());
+            if (description != null) {
+                if (first) {
+                    output.append("<variablelist>\n");
+                    first = false;
+                }
+                output.append("<varlistentry><term><parameter>").append(escape(parameter.getName()))
+                        .append("</parameter></term><listitem>").append(convert(description, links))
+                        .append("</listitem></varlistentry>\n");
+            }
+        }
+        if (!first) {
+            output.append("</variablelist>\n");
+        }
+    }
+
+    private void renderComment(final String comment, final List<LinkInfo> links, final StringBuilder output) {
+        if (comment != null && !comment.isBlank()) {
+            output.append(convert(comment, links)).append('\n');
+        }
+    }
+
+    /**
+     * Renders the comment of a list item, or an empty paragraph, since a list item needs at least one block.
+     */
+    private void renderItemComment(final String comment, final List<LinkInfo> links, final StringBuilder output) {
+        output.append(comment != null && !comment.isBlank() ? convert(comment, links) : "<para/>").append('\n');
+    }
+
+    /**
+     * {@return the simple name of a type, linked to its section if it is documented}
+     */
+    private String typeLink(final TypeInfo type) {
+        final String qualified = type.getQualified();
+        final String name = escape(getSimpleTypeName(type));
+        return documentedTypes.contains(qualified)
+                ? "<link linkend=\"" + SearchIndex.getAnchor(qualified) + "\">" + name + "</link>"
+                : "<type>" + name + "</type>";
+    }
+
+    /**
+     * {@return a comment converted to DocBook paragraphs and program listings}
+     *
+     * @param comment the comment
+     * @param links the resolved references of the commented element
+     */
+    String convert(final String comment, final List<LinkInfo> links) {
+        final var output = new StringBuilder(comment.length() + 32);
+        final Matcher pre = PRE_PATTERN.matcher(comment);
+        int start = 0;
+        while (pre.find()) {
+            renderParagraphs(comment.substring(start, pre.start()), links, output);
+            output.append("<programlisting>").append(escape(pre.group(1))).append("</programlisting>");
+            start = pre.end();
+        }
+        renderParagraphs(comment.substring(start), links, output);
+        return output.length() == 0 ? "<para/>" : output.toString();
+    }
+
+    /**
+     * {@return a comment converted to a single paragraph, for the elements only allowing one}
+     */
+    private String convertInline(final String comment, final List<LinkInfo> links) {
+        final var output = new StringBuilder("<para>");
+        final var text = PRE_PATTERN.matcher(comment).replaceAll("{@code $1}");
+        final Matcher markup = MARKUP_PATTERN.matcher(text);
+        int start = 0;
+        while (markup.find()) {
+            output.append(escape(text.substring(start, markup.start())));
+            if (markup.group(6) != null) {
+                output.append(' ');
+            } else {
+                appendInline(markup, links, output);
+            }
+            start = markup.end();
+        }
+        return output.append(escape(text.substring(start)).strip()).append("</para>").toString();
+    }
+
+    private void renderParagraphs(final String text, final List<LinkInfo> links, final StringBuilder output) {
+        final var paragraph = new StringBuilder();
+        final Matcher markup = MARKUP_PATTERN.matcher(text);
+        int start = 0;
+        while (markup.find()) {
+            paragraph.append(escape(text.substring(start, markup.start())));
+            if (markup.group(6) != null) {
+                appendParagraph(paragraph, output);
+            } else {
+                appendInline(markup, links, paragraph);
+            }
+            start = markup.end();
+        }
+        paragraph.append(escape(text.substring(start)));
+        appendParagraph(paragraph, output);
+    }
+
+    /**
+     * Appends the inline markup of a match of the {@link #MARKUP_PATTERN}, other tags are removed.
+     */
+    private static void appendInline(final Matcher markup, final List<LinkInfo> links, final StringBuilder output) {
+        if (markup.group(1) != null || markup.group(2) != null) {
+            output.append("<literal>").append(escape(markup.group(1) != null ? markup.group(1) : markup.group(2)))
+                    .append("</literal>");
+        } else if (markup.group(3) != null) {
+            final String reference = markup.group(3);
+            final String label = escape(markup.group(5) != null ? markup.group(5) : reference);
+            final LinkInfo link = links.stream()
+                    .filter(candidate -> reference.equals(candidate.getReference()))
+                    .findFirst()
+                    .orElse(null);
+            output.append(link != null && link.getAnchor() != null
+                    ? "<link linkend=\"" + link.getAnchor() + "\">" + label + "</link>"
+                    : "<literal>" + label + "</literal>");
+        }
+    }
+
+    private static void appendParagraph(final StringBuilder paragraph, final StringBuilder output) {
+        final String text = paragraph.toString().strip();
+        if (!text.isEmpty()) {
+            output.append("<para>").append(text).append("</para>");
+        }
+        paragraph.setLength(0);
+    }
+
+    /**
+     * {@return the text escaped for XML} The entity references defined by XML are kept and the characters XML
+     * doesn't allow are removed.
+     */
+    static String escape(final String text) {
+        final String valid = INVALID_CHARACTERS_PATTERN.matcher(text).replaceAll("");
+        return AMPERSAND_PATTERN.matcher(valid).replaceAll("&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;");
+    }
+}
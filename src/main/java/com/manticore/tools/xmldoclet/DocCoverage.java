@@ -0,0 +1,387 @@
+package com.manticore.tools.xmldoclet;
+
+import com.sun.source.doctree.DocTree;
+import com.sun.source.doctree.ParamTree;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The documentation coverage of the API, counted by the {@link Parser} from the comments and tags it reads anyway,
+ * so it needs no second pass over the written document.
+ *
+ * <p>
+ * An element is part of the API if it and its enclosing types are public or protected. Per package, the coverage
+ * counts the types, constructors, methods, fields and enum constants of the API with a comment, the parameters of
+ * their constructors and methods with a {@code @param} tag, and their methods returning a value with a
+ * {@code @return} tag or a leading {@code {@return}}. The counters are plain integers, updated on the thread of
+ * the parser like the rest of its state.
+ * </p>
+ */
+final class DocCoverage {
+    /**
+     * The ratios of the coverage.
+     */
+    enum Metric {
+        COMMENTS("comments", "elements", "commented", "commentCoverage"),
+        PARAMS("params", "params", "documentedParams", "paramCoverage"),
+        RETURNS("returns", "returns", "documentedReturns", "returnCoverage");
+
+        private final String key;
+        private final String countName;
+        private final String documentedName;
+        private final String percentageName;
+
+        Metric(final String key, final String countName, final String documentedName, final String percentageName) {
+            this.key = key;
+            this.countName = countName;
+            this.documentedName = documentedName;
+            this.percentageName = percentageName;
+        }
+
+        /**
+         * {@return the name of the metric in the {@code -minCoverage} option}
+         */
+        String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * The formats of the report.
+     */
+    enum Format {
+        XML, JSON;
+
+        /**
+         * {@return the format with the given name, case-insensitive}
+         *
+         * @param name the name of the format, or null for XML
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        static Format of(final String name) {
+            if (name == null || name.isBlank()) {
+                return XML;
+            }
+
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported coverage format " + name + ", use "
+                        + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+            }
+        }
+
+        /**
+         * {@return the extension of the report files, including the dot}
+         */
+        String getExtension() {
+            return ".coverage." + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Map<String, PackageCoverage> packages = new TreeMap<>();
+
+    /**
+     * The package of the last counted element, since the parser visits the elements package by package.
+     */
+    private PackageElement currentPackage;
+    private PackageCoverage currentCoverage;
+
+    /**
+     * Counts whether a package has a comment.
+     *
+     * @param packageElement the package
+     * @param comment the comment of the package, empty if it has none
+     */
+    void addPackage(final PackageElement packageElement, final String comment) {
+        getCoverage(packageElement).documented = !comment.isEmpty();
+    }
+
+    /**
+     * Counts the comment and the tags of a type or member, unless it is not part of the API.
+     *
+     * @param element the type, constructor, method, field or enum constant
+     * @param comment the comment of the element, empty if it has none
+     * @param tags the block tags of the comment
+     */
+    void add(final Element element, final String comment, final List<? extends DocTree> tags) {
+        final PackageCoverage coverage = getApiCoverage(element);
+        if (coverage == null) {
+            return;
+        }
+
+        coverage.count(Metric.COMMENTS, !comment.isEmpty() ? 1 : 0, 1);
+        if (element instanceof ExecutableElement executable) {
+            final List<? extends VariableElement> parameters = executable.getParameters();
+            if (!parameters.isEmpty()) {
+                int documentedParameters = 0;
+                for (final VariableElement parameter : parameters) {
+                    if (hasParamTag(tags, parameter.getSimpleName())) {
+                        documentedParameters++;
+                    }
+                }
+                coverage.count(Metric.PARAMS, documentedParameters, parameters.size());
+            }
+            if (executable.getKind() == ElementKind.METHOD && executable.getReturnType().getKind() != TypeKind.VOID) {
+                coverage.count(Metric.RETURNS, hasReturn(comment, tags) ? 1 : 0, 1);
+            }
+        }
+    }
+
+    /**
+     * {@return the coverage of the package of an element, or null if the element or one of its enclosing types is
+     * not public or protected}
+     */
+    private PackageCoverage getApiCoverage(final Element element) {
+        Element enclosing = element;
+        while (!(enclosing instanceof PackageElement)) {
+            final var modifiers = enclosing.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) && !modifiers.contains(Modifier.PROTECTED)) {
+                return null;
+            }
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return getCoverage((PackageElement) enclosing);
+    }
+
+    private PackageCoverage getCoverage(final PackageElement packageElement) {
+        if (packageElement != currentPackage) {
+            currentPackage = packageElement;
+            currentCoverage = packages.computeIfAbsent(
+                    packageElement.getQualifiedName().toString(), PackageCoverage::new);
+        }
+        return currentCoverage;
+    }
+
+    private static boolean hasParamTag(final List<? extends DocTree> tags, final Name name) {
+        for (final DocTree tag : tags) {
+            if (tag instanceof ParamTree param && !param.isTypeParameter()
+                    && param.getName().getName().contentEquals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasReturn(final String comment, final List<? extends DocTree> tags) {
+        if (comment.startsWith("{@return")) {
+            return true;
+        }
+        for (final DocTree tag : tags) {
+            if (tag.getKind() == DocTree.Kind.RETURN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@return the coverage of each package, by package name}
+     */
+    Collection<PackageCoverage> getPackages() {
+        return packages.values();
+    }
+
+    /**
+     * {@return the coverage of all packages}
+     */
+    PackageCoverage getTotal() {
+        final var total = new PackageCoverage("");
+        for (final PackageCoverage coverage : packages.values()) {
+            for (final Metric metric : Metric.values()) {
+                total.count(metric, coverage.getDocumented(metric), coverage.getCount(metric));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Parses the thresholds of the {@code -minCoverage} option.
+     *
+     * @param value comma separated {@code <metric>=<percent>}, the metrics being the keys of {@link Metric}
+     * @return the minimum percentage of each given metric
+     * @throws IllegalArgumentException if a metric is unknown or a percentage is not between 0 and 100
+     */
+    static Map<Metric, Double> parseThresholds(final String value) {
+        final Map<Metric, Double> thresholds = new EnumMap<>(Metric.class);
+        for (final String threshold : value.split(",")) {
+            if (threshold.isBlank()) {
+                continue;
+            }
+
+            final String[] keyAndPercentage = threshold.split("=", 2);
+            Metric metric = null;
+            for (final Metric candidate : Metric.values()) {
+                if (candidate.key.equals(keyAndPercentage[0].trim())) {
+                    metric = candidate;
+                }
+            }
+            double percentage = -1;
+            if (keyAndPercentage.length == 2) {
+                try {
+                    percentage = Double.parseDouble(keyAndPercentage[1].trim().replace("%", ""));
+                } catch (NumberFormatException e) {
+                    // reported below
+                }
+            }
+            if (metric == null || !(percentage >= 0 && percentage <= 100)) {
+                throw new IllegalArgumentException("Invalid coverage threshold " + threshold.trim()
+                        + ", use <metric>=<percent> with the metrics comments, params and returns");
+            }
+            thresholds.put(metric, percentage);
+        }
+        return thresholds;
+    }
+
+    /**
+     * Writes the coverage of each package, followed by the coverage of all packages.
+     *
+     * @param outputStream the stream the report is written to, which is left open
+     * @param format the format of the report
+     */
+    void write(final OutputStream outputStream, final Format format) throws IOException, XMLStreamException {
+        if (format == Format.JSON) {
+            writeJson(outputStream);
+        } else {
+            writeXml(outputStream);
+        }
+    }
+
+    /**
+     * Writes {@code <coverage>} with one {@code <package>} element per package, followed by the {@code <summary>}.
+     */
+    private void writeXml(final OutputStream outputStream) throws XMLStreamException {
+        final XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement("coverage");
+        for (final PackageCoverage coverage : packages.values()) {
+            writer.writeCharacters("\n  ");
+            writer.writeEmptyElement("package");
+            writer.writeAttribute("name", coverage.name);
+            writer.writeAttribute("documented", String.valueOf(coverage.documented));
+            for (final Metric metric : Metric.values()) {
+                writer.writeAttribute(metric.countName, String.valueOf(coverage.getCount(metric)));
+                writer.writeAttribute(metric.documentedName, String.valueOf(coverage.getDocumented(metric)));
+            }
+        }
+
+        final PackageCoverage total = getTotal();
+        writer.writeCharacters("\n  ");
+        writer.writeEmptyElement("summary");
+        for (final Metric metric : Metric.values()) {
+            writer.writeAttribute(metric.countName, String.valueOf(total.getCount(metric)));
+            writer.writeAttribute(metric.documentedName, String.valueOf(total.getDocumented(metric)));
+            writer.writeAttribute(metric.percentageName, formatPercentage(total.getPercentage(metric)));
+        }
+        writer.writeCharacters("\n");
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+    }
+
+    /**
+     * Writes {@code {"packages":[...],"summary":{...}}} with one object per package.
+     */
+    private void writeJson(final OutputStream outputStream) throws IOException {
+        final Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        writer.write("{\"packages\":[");
+        boolean first = true;
+        for (final PackageCoverage coverage : packages.values()) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+            writer.write("{\"name\":");
+            SearchIndex.writeString(writer, coverage.name);
+            writer.write(",\"documented\":" + coverage.documented);
+            for (final Metric metric : Metric.values()) {
+                writer.write(",\"" + metric.countName + "\":" + coverage.getCount(metric)
+                        + ",\"" + metric.documentedName + "\":" + coverage.getDocumented(metric));
+            }
+            writer.write("}");
+        }
+
+        final PackageCoverage total = getTotal();
+        writer.write("],\n\"summary\":{");
+        for (final Metric metric : Metric.values()) {
+            writer.write((metric.ordinal() > 0 ? "," : "") + "\"" + metric.countName + "\":" + total.getCount(metric)
+                    + ",\"" + metric.documentedName + "\":" + total.getDocumented(metric)
+                    + ",\"" + metric.percentageName + "\":" + formatPercentage(total.getPercentage(metric)));
+        }
+        writer.write("}}\n");
+        writer.flush();
+    }
+
+    /**
+     * {@return a percentage with one decimal}
+     */
+    static String formatPercentage(final double percentage) {
+        return String.format(Locale.ROOT, "%.1f", percentage);
+    }
+
+    /**
+     * The counters of a package, each metric counting the documented and all elements.
+     */
+    static final class PackageCoverage {
+        private final String name;
+        private boolean documented;
+        private final int[] documentedCounts = new int[Metric.values().length];
+        private final int[] counts = new int[Metric.values().length];
+
+        private PackageCoverage(final String name) {
+            this.name = name;
+        }
+
+        private void count(final Metric metric, final int documentedCount, final int count) {
+            documentedCounts[metric.ordinal()] += documentedCount;
+            counts[metric.ordinal()] += count;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * {@return whether the package has a comment}
+         */
+        boolean isDocumented() {
+            return documented;
+        }
+
+        int getCount(final Metric metric) {
+            return counts[metric.ordinal()];
+        }
+
+        int getDocumented(final Metric metric) {
+            return documentedCounts[metric.ordinal()];
+        }
+
+        /**
+         * {@return the percentage of the documented elements, 100 if there are none}
+         */
+        double getPercentage(final Metric metric) {
+            final int count = getCount(metric);
+            return count == 0 ? 100.0 : 100.0 * getDocumented(metric) / count;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.manticore.tools.xmldoclet;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+import javax.xml.stream.XMLStreamException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Documents the modules of a multi-module project in one JVM. The modules are read from a manifest and documented
+ * concurrently as separate javadoc tasks on a bounded number of threads. The tasks share what the doclet keeps per
+ * JVM, like the JAXB context and the compiled stylesheets, and the XML documents of the modules are merged into an
+ * aggregate document in the canonical order (see {@link XmlMerge}).
+ *
+ * <p>
+ * The manifest is a properties file. Relative paths are resolved against its directory.
+ * </p>
+ *
+ * <pre>
+ * # the modules, a package split across modules is merged in this order
+ * modules=core,parser
+ * # the doclet and javadoc options of all modules, values containing whitespace are quoted
+ * options=-rst -noTimestamp -apiDiff "previous release/javadoc.xml"
+ * # the output directory, with a sub-directory per module
+ * directory=build/docs
+ * # the aggregate XML document in the output directory, none if empty
+ * aggregate=javadoc.xml
+ * # the number of modules documented concurrently
+ * threads=4
+ *
+ * core.sourcepath=core/src/main/java
+ * core.subpackages=com.example.core
+ * parser.sourcepath=parser/src/main/java:parser/build/generated
+ * parser.classpath=libs/antlr.jar
+ * parser.subpackages=com.example.parser
+ * parser.options=-inheritedMembers
+ * </pre>
+ *
+ * <p>
+ * The source path of a module defaults to {@code <module>/src/main/java}. Each javadoc task holds the compiled
+ * sources of its module, so the number of threads is bounded by the heap rather than by the processors.
+ * </p>
+ *
+ * <p>
+ * The options of a module override the ones of all modules, including the {@code -filename} and {@code -compress}
+ * options naming the XML document that is merged from it. The aggregate document is compressed with the
+ * {@code -compress} option of all modules.
+ * </p>
+ */
+public final class DocletLauncher {
+    private final List<Module> modules = new ArrayList<>();
+    private final List<String> options;
+    private final Path directory;
+    private final String aggregate;
+    private final int threads;
+
+    /**
+     * @param manifest the manifest
+     * @param baseDirectory the directory relative paths of the manifest are resolved against
+     * @throws IllegalArgumentException if the manifest is invalid
+     */
+    DocletLauncher(final Properties manifest, final Path baseDirectory) {
+        for (final String name : manifest.getProperty("modules", "").split(",")) {
+            if (!name.isBlank()) {
+                modules.add(new Module(name.trim(), manifest, baseDirectory));
+            }
+        }
+        if (modules.isEmpty()) {
+            throw new IllegalArgumentException("The manifest lists no modules");
+        }
+
+        options = split(manifest.getProperty("options", ""));
+        directory = baseDirectory.resolve(manifest.getProperty("directory", ".").trim());
+        aggregate = manifest.getProperty("aggregate", "javadoc.xml").trim();
+        try {
+            threads = Integer.parseInt(manifest.getProperty("threads",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number of threads " + manifest.getProperty("threads"), e);
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads " + threads);
+        }
+    }
+
+    /**
+     * Reads a manifest.
+     *
+     * @param manifest the properties file
+     * @return the launcher of the modules of the manifest
+     * @throws IllegalArgumentException if the manifest is invalid
+     */
+    public static DocletLauncher load(final Path manifest) throws IOException {
+        final var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        final Path baseDirectory = manifest.toAbsolutePath().getParent();
+        return new DocletLauncher(properties, baseDirectory);
+    }
+
+    /**
+     * Documents all modules and merges their XML documents into the aggregate document. The messages of each module
+     * are written together when it is done, in the order of the manifest.
+     *
+     * @param out the writer receiving the messages of the javadoc tasks and the launcher
+     * @return whether all modules were documented and merged
+     */
+    public boolean run(final PrintWriter out) throws InterruptedException {
+        final long start = System.nanoTime();
+        final DocumentationTool javadoc = ToolProvider.getSystemDocumentationTool();
+        if (javadoc == null) {
+            throw new IllegalStateException("No javadoc tool available, a JDK is required");
+        }
+
+        boolean success = true;
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, modules.size()));
+        try {
+            final List<Future<Result>> results = new ArrayList<>();
+            for (final Module module : modules) {
+                results.add(executor.submit(() -> document(javadoc, module)));
+            }
+            for (int i = 0; i < modules.size(); i++) {
+                final Module module = modules.get(i);
+                try {
+                    final Result result = results.get(i).get();
+                    out.print(result.messages);
+                    out.println((result.success ? "Documented " : "Failed to document ") + module.name + " in "
+                            + result.millis + " ms");
+                    success &= result.success;
+                } catch (ExecutionException e) {
+                    out.println("Failed to document " + module.name + ": " + e.getCause());
+                    success = false;
+                }
+                out.flush();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!success) {
+            out.println("The aggregate document is not written, since modules failed");
+        } else if (!aggregate.isEmpty() && !options.contains("-dryrun")) {
+            success = merge(out);
+        }
+        out.println("Documented " + modules.size() + " modules in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        out.flush();
+        return success;
+    }
+
+    private Result document(final DocumentationTool javadoc, final Module module) {
+        final long start = System.nanoTime();
+        final var messages = new StringWriter();
+        final boolean success;
+        try (var writer = new PrintWriter(messages)) {
+            success = javadoc.getTask(writer, null, null, XmlDoclet.class, getArguments(module), null).call();
+        } finally {
+            // the pooled thread would keep the compiled sources of this module while documenting the next one
+            XmlDoclet.releaseModel();
+        }
+        return new Result(success, messages.toString(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private boolean merge(final PrintWriter out) {
+        final Compression compression;
+        final List<Path> documents = new ArrayList<>();
+        try {
+            compression = Compression.of(getOptionValue(options, "-compress"));
+            for (final Module module : modules) {
+                documents.add(getDocument(module));
+            }
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return false;
+        }
+
+        final Path target = directory.resolve(aggregate + compression.getExtension());
+        try {
+            final XmlMerge.Result result =
+                    XmlMerge.merge(documents, target, compression, XmlDoclet.DEFAULT_BUFFER_SIZE);
+            for (final String duplicate : result.getDuplicates()) {
+                out.println("Duplicate type " + duplicate);
+            }
+            out.println((result.isWritten() ? "Wrote aggregate document " : "Aggregate document unchanged ") + target);
+            return true;
+        } catch (IOException | XMLStreamException e) {
+            out.println("Failed to write the aggregate document " + target + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * {@return the arguments of the javadoc task of a module}
+     */
+    List<String> getArguments(final Module module) {
+        final List<String> arguments = new ArrayList<>(options);
+        arguments.addAll(module.options);
+        arguments.add("-sourcepath");
+        arguments.add(module.sourcepath);
+        if (module.classpath != null) {
+            arguments.add("-classpath");
+            arguments.add(module.classpath);
+        }
+        if (module.subpackages != null) {
+            arguments.add("-subpackages");
+            arguments.add(module.subpackages);
+        }
+        arguments.add("-d");
+        arguments.add(getModuleDirectory(module).toString());
+        return arguments;
+    }
+
+    /**
+     * {@return the modules of the manifest}
+     */
+    List<Module> getModules() {
+        return modules;
+    }
+
+    private Path getModuleDirectory(final Module module) {
+        return directory.resolve(module.name);
+    }
+
+    /**
+     * {@return the XML document of a module, named by the {@code -filename} and {@code -compress} options of the
+     * module, which override the ones of all modules}
+     *
+     * @param module the module
+     * @throws IllegalArgumentException if the compression format is unknown
+     */
+    Path getDocument(final Module module) {
+        final List<String> moduleOptions = new ArrayList<>(options);
+        moduleOptions.addAll(module.options);
+        final String filename = getOptionValue(moduleOptions, "-filename");
+        final Compression compression = Compression.of(getOptionValue(moduleOptions, "-compress"));
+        return getModuleDirectory(module)
+                .resolve((filename != null ? filename : "javadoc.xml") + compression.getExtension());
+    }
+
+    /**
+     * {@return the value of the last occurrence of an option, or null if it isn't given}
+     */
+    private static String getOptionValue(final List<String> arguments, final String option) {
+        final int index = arguments.lastIndexOf(option);
+        return index >= 0 && index + 1 < arguments.size() ? arguments.get(index + 1) : null;
+    }
+
+    /**
+     * {@return the options separated by whitespace} Like in the argument files of the javadoc tool, a value containing
+     * whitespace is enclosed in double or single quotes, which are removed.
+     *
+     * @param value the options
+     * @throws IllegalArgumentException if a quote isn't closed
+     */
+    static List<String> split(final String value) {
+        final List<String> options = new ArrayList<>();
+        final var option = new StringBuilder();
+        boolean inOption = false;
+        char quote = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    option.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inOption = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inOption) {
+                    options.add(option.toString());
+                    option.setLength(0);
+                    inOption = false;
+                }
+            } else {
+                option.append(c);
+                inOption = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("Unclosed quote in the options " + value);
+        }
+        if (inOption) {
+            options.add(option.toString());
+        }
+        return options;
+    }
+
+    /**
+     * Documents the modules of a manifest.
+     *
+     * @param args the manifest file
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length != 1) {
+            System.err.println("Usage: java -cp xml-doclet.jar " + DocletLauncher.class.getName() + " <manifest>");
+            System.exit(2);
+        }
+        final boolean success = load(Path.of(args[0]))
+                .run(new PrintWriter(System.out, true, Charset.defaultCharset()));
+        System.exit(success ? 0 : 1);
+    }
+
+    /**
+     * A module of the manifest.
+     */
+    static final class Module {
+        private final String name;
+        private final String sourcepath;
+        private final String classpath;
+        private final String subpackages;
+        private final List<String> options;
+
+        private Module(final String name, final Properties manifest, final Path baseDirectory) {
+            this.name = name;
+            this.sourcepath = resolve(manifest.getProperty(name + ".sourcepath", name + "/src/main/java"),
+                    baseDirectory);
+            final String classpath = manifest.getProperty(name + ".classpath");
+            this.classpath = classpath != null ? resolve(classpath, baseDirectory) : null;
+            this.subpackages = manifest.getProperty(name + ".subpackages");
+            this.options = split(manifest.getProperty(name + ".options", ""));
+        }
+
+        /**
+         * {@return the name of the module, which is the name of its output directory}
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Resolves the relative entries of a path against the directory of the manifest.
+         */
+        private static String resolve(final String path, final Path baseDirectory) {
+            return Arrays.stream(path.trim().split(File.pathSeparator))
+                    .map(entry -> baseDirectory.resolve(entry.trim()).toString())
+                    .collect(Collectors.joining(File.pathSeparator));
+        }
+    }
+
+    private static final class Result {
+        private final boolean success;
+        private final String messages;
+        private final long millis;
+
+        private Result(final boolean success, final String messages, final long millis) {
+            this.success = success;
+            this.messages = messages;
+            this.millis = millis;
+        }
+    }
+}
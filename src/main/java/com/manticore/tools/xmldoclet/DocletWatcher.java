@@ -0,0 +1,413 @@
+package com.manticore.tools.xmldoclet;
+
+import javax.tools.DocumentationTool;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Watches the source files of a javadoc invocation and documents the changed ones again, so the documents can be
+ * previewed while the comments are written. The javadoc tool, its file manager and the object model stay in memory
+ * between the invocations: each change only parses the types of the changed files, merges them into the model
+ * (see {@link IncrementalModel}) and renders the packages that changed, the other packages are taken from a cache.
+ * The outputs are written like by a single invocation of the doclet with the same options.
+ *
+ * <pre>
+ * java -cp xml-doclet.jar com.manticore.tools.xmldoclet.DocletWatcher \
+ *     -sourcepath src/main/java -subpackages com.example -d build/docs -rst
+ * </pre>
+ *
+ * <p>
+ * The directories of the {@code -sourcepath} (or of the given source files without one) are watched with a
+ * {@link WatchService}. The changes are collected until no file changed for {@link #QUIET_PERIOD_MILLIS}, so saving
+ * several files or an editor writing a file in several steps is documented once. If the changed files don't compile,
+ * they are documented again with the next change.
+ * </p>
+ *
+ * <p>
+ * The documents are rendered with {@code -renderer native} unless another renderer is given, and the XML file is
+ * only written if another output reads it, like the stylesheets of {@code -renderer xslt}. The documentation coverage
+ * ({@code -coverage} and {@code -minCoverage}) is not supported, since only the changed files are parsed.
+ * </p>
+ */
+public final class DocletWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DocletWatcher.class.getName());
+
+    /**
+     * The time without changes after which the changes are documented.
+     */
+    static final long QUIET_PERIOD_MILLIS = 100;
+
+    /**
+     * The options selecting the documented packages, which are replaced by the changed files.
+     */
+    private static final Set<String> SELECTION_OPTIONS = Set.of("-subpackages", "-exclude", "--module");
+
+    /**
+     * The options selecting the doclet, which is always the {@link XmlDoclet}.
+     */
+    private static final Set<String> DOCLET_OPTIONS = Set.of("-doclet", "-docletpath", "--doclet-path");
+
+    private final DocumentationTool javadoc;
+    private final StandardJavaFileManager fileManager;
+    private final PrintWriter out;
+
+    /**
+     * The options without the selection of the documented packages and source files.
+     */
+    private final List<String> options = new ArrayList<>();
+
+    /**
+     * The selection of the documented packages and source files.
+     */
+    private final List<String> selection = new ArrayList<>();
+
+    /**
+     * The directories of the {@code -sourcepath}, from which the packages of the changed files are derived.
+     */
+    private final List<Path> sourceRoots = new ArrayList<>();
+    private final Set<String> packages = new HashSet<>();
+    private final List<String> subpackages = new ArrayList<>();
+    private final List<String> excludedPackages = new ArrayList<>();
+    private final Set<Path> sourceFiles = new HashSet<>();
+    private boolean moduleSelected;
+
+    private final IncrementalModel model = new IncrementalModel();
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * The changed files that were not documented yet, because they didn't compile.
+     */
+    private final Set<Path> pendingFiles = new LinkedHashSet<>();
+
+    /**
+     * @param arguments the arguments of the javadoc tool, without {@code -doclet}
+     * @param out the writer receiving the messages of the javadoc tool and the watcher
+     * @throws IllegalArgumentException if the arguments contain an option that is not supported in watch mode
+     */
+    public DocletWatcher(final List<String> arguments, final PrintWriter out) throws IOException {
+        this.javadoc = ToolProvider.getSystemDocumentationTool();
+        if (javadoc == null) {
+            throw new IllegalStateException("No javadoc tool available, a JDK is required");
+        }
+        this.out = out;
+
+        final List<Path> sourceDirectories = new ArrayList<>();
+        final var docletOptions = new SupportedOptions().get();
+        for (int i = 0; i < arguments.size(); i++) {
+            final String argument = arguments.get(i);
+            if (!argument.startsWith("-")) {
+                selection.add(argument);
+                if (argument.endsWith(".java")) {
+                    sourceDirectories.add(Path.of(argument).toAbsolutePath().getParent());
+                    sourceFiles.add(Path.of(argument).toAbsolutePath().normalize());
+                } else {
+                    packages.add(argument);
+                }
+                continue;
+            }
+
+            final int count = getArgumentCount(argument, docletOptions);
+            final List<String> values = arguments.subList(i + 1, Math.min(arguments.size(), i + 1 + count));
+            if (SELECTION_OPTIONS.contains(argument)) {
+                selection.add(argument);
+                selection.addAll(values);
+                if (!values.isEmpty() && "-subpackages".equals(argument)) {
+                    subpackages.addAll(List.of(values.get(0).split(":")));
+                } else if (!values.isEmpty() && "-exclude".equals(argument)) {
+                    excludedPackages.addAll(List.of(values.get(0).split(":")));
+                } else if ("--module".equals(argument)) {
+                    moduleSelected = true;
+                }
+            } else if (!DOCLET_OPTIONS.contains(argument)) {
+                options.add(argument);
+                options.addAll(values);
+            }
+            if (("-sourcepath".equals(argument) || "--source-path".equals(argument)) && !values.isEmpty()) {
+                sourceDirectories.clear();
+                for (final String directory : values.get(0).split(File.pathSeparator)) {
+                    sourceDirectories.add(Path.of(directory));
+                    sourceRoots.add(Path.of(directory).toAbsolutePath().normalize());
+                }
+            }
+            i += count;
+        }
+        if (options.contains("-coverage") || options.contains("-minCoverage")) {
+            throw new IllegalArgumentException(
+                    "The coverage of the changed files is not the one of the documentation, -coverage and"
+                            + " -minCoverage are not supported in watch mode");
+        }
+        if (!options.contains("-renderer")) {
+            // only the native renderers render just the changed packages
+            options.add("-renderer");
+            options.add("native");
+        }
+        if (sourceRoots.isEmpty()) {
+            sourceRoots.add(Path.of("").toAbsolutePath());
+        }
+
+        this.fileManager = javadoc.getStandardFileManager(null, null, null);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (final Path directory : sourceDirectories.isEmpty() ? List.of(Path.of("")) : sourceDirectories) {
+            if (Files.isDirectory(directory)) {
+                register(directory);
+            }
+        }
+    }
+
+    /**
+     * Documents all source files, then documents the changed files until the thread is interrupted.
+     */
+    public void watch() throws InterruptedException {
+        document();
+        while (true) {
+            final Set<Path> changedFiles = awaitChanges();
+            if (changedFiles == null) {
+                out.println("Too many changes, documenting all source files");
+                document();
+            } else if (!changedFiles.isEmpty()) {
+                document(changedFiles);
+            }
+        }
+    }
+
+    /**
+     * Documents all source files, replacing the model.
+     *
+     * @return whether the model was updated
+     */
+    public boolean document() {
+        model.clear();
+        pendingFiles.clear();
+        final List<String> arguments = new ArrayList<>(options);
+        arguments.addAll(selection);
+        return run(arguments, "all source files");
+    }
+
+    /**
+     * Documents the changed source files and writes the outputs of the complete model. Files in packages which are
+     * not selected by the arguments are ignored, like they are when all source files are documented.
+     *
+     * @param changedFiles the changed files, including the deleted ones
+     * @return whether the model was updated
+     */
+    public boolean document(final Collection<Path> changedFiles) {
+        changedFiles.stream().filter(this::isSelected).forEach(pendingFiles::add);
+        if (pendingFiles.isEmpty()) {
+            out.println("No selected source files changed");
+            out.flush();
+            return false;
+        }
+        model.addChangedFiles(pendingFiles);
+
+        final List<String> arguments = new ArrayList<>(options);
+        pendingFiles.stream().filter(Files::isRegularFile).map(Path::toString).forEach(arguments::add);
+        if (arguments.size() == options.size()) {
+            // only deleted files: any other file is documented again, so the outputs are written without their types
+            final Path file = model.getFiles().stream()
+                    .filter(Files::isRegularFile)
+                    .findFirst()
+                    .orElse(null);
+            if (file == null) {
+                out.println("No source files left to document");
+                return false;
+            }
+            arguments.add(file.toString());
+        }
+
+        final boolean updated = run(arguments, pendingFiles.size() + " changed files");
+        if (updated) {
+            pendingFiles.clear();
+        }
+        return updated;
+    }
+
+    /**
+     * {@return whether a source file is documented with the arguments}: it is one of the given source files or its
+     * package, derived from its path relative to the {@code -sourcepath}, is one of the given packages or one of the
+     * {@code -subpackages} which is not {@code -exclude}d. The files of modules are always selected.
+     *
+     * @param file the source file
+     */
+    boolean isSelected(final Path file) {
+        final Path absoluteFile = file.toAbsolutePath().normalize();
+        if (sourceFiles.contains(absoluteFile) || moduleSelected) {
+            return true;
+        }
+
+        for (final Path sourceRoot : sourceRoots) {
+            if (absoluteFile.getParent().startsWith(sourceRoot)) {
+                final Path relativeDirectory = sourceRoot.relativize(absoluteFile.getParent());
+                final String packageName = relativeDirectory.toString().replace(File.separatorChar, '.');
+                if (packages.contains(packageName)) {
+                    return true;
+                }
+                return subpackages.stream().anyMatch(parent -> isSubpackage(packageName, parent))
+                        && excludedPackages.stream().noneMatch(parent -> isSubpackage(packageName, parent));
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSubpackage(final String packageName, final String parent) {
+        return packageName.equals(parent) || packageName.startsWith(parent + ".");
+    }
+
+    private boolean run(final List<String> arguments, final String description) {
+        final long start = System.nanoTime();
+        final int updates = model.getUpdates();
+        try (var registration = XmlDoclet.registerIncrementalModel(model)) {
+            javadoc.getTask(out, fileManager, null, XmlDoclet.class, arguments, null).call();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to document " + description, e);
+        } finally {
+            // the incremental model keeps what is needed, not the compiled sources of the previous invocation
+            XmlDoclet.releaseModel();
+        }
+
+        final boolean updated = model.getUpdates() != updates;
+        out.println((updated ? "Documented " : "Failed to document ") + description + " in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        out.flush();
+        return updated;
+    }
+
+    /**
+     * Waits for changed source files, until no file changed for {@link #QUIET_PERIOD_MILLIS}.
+     *
+     * @return the changed files, including the deleted ones, or null if changes were lost and all files must be
+     *         documented again
+     */
+    Set<Path> awaitChanges() throws InterruptedException {
+        final Set<Path> changedFiles = new LinkedHashSet<>();
+        boolean overflow = false;
+        WatchKey key = watchService.take();
+        while (key != null) {
+            final Path directory = directories.get(key);
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else if (directory != null) {
+                    addChangedFiles(directory.resolve((Path) event.context()), event.kind(), changedFiles);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+            key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return overflow ? null : changedFiles;
+    }
+
+    private void addChangedFiles(final Path path, final WatchEvent.Kind<?> kind, final Set<Path> changedFiles) {
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+            // the files of a new directory, like a moved package, are created before it is watched
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(DocletWatcher::isSourceFile).forEach(changedFiles::add);
+                register(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to watch " + path, e);
+            }
+        } else if (isSourceFile(path)) {
+            changedFiles.add(path);
+        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            // the files of a deleted directory
+            final Path deleted = path.toAbsolutePath().normalize();
+            model.getFiles().stream().filter(file -> file.startsWith(deleted)).forEach(changedFiles::add);
+        }
+    }
+
+    private static boolean isSourceFile(final Path path) {
+        final String name = path.getFileName().toString();
+        return name.endsWith(".java") && !"module-info.java".equals(name);
+    }
+
+    private void register(final Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory, final BasicFileAttributes attributes)
+                    throws IOException {
+                directories.put(directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * {@return the number of arguments of an option of the javadoc tool or the doclet}
+     */
+    private int getArgumentCount(final String option, final Set<CustomOption> docletOptions) {
+        final int count = javadoc.isSupportedOption(option);
+        if (count >= 0) {
+            return count;
+        }
+        for (final CustomOption docletOption : docletOptions) {
+            if (CustomOption.addHyphenPrefix(docletOption.getName()).equals(option)) {
+                return docletOption.getArgumentCount();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * {@return the object model of the documented source files}
+     */
+    IncrementalModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            watchService.close();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Watches the source files of the given javadoc arguments until the process is stopped.
+     *
+     * @param args the arguments of the javadoc tool, without {@code -doclet}
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Usage: java -cp xml-doclet.jar " + DocletWatcher.class.getName()
+                    + " [javadoc options] [packages] [source files]");
+            return;
+        }
+        try (var watcher = new DocletWatcher(List.of(args), new PrintWriter(System.out, true, Charset.defaultCharset()))) {
+            watcher.watch();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
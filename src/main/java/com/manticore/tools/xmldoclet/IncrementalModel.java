@@ -0,0 +1,438 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Annotation;
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Constructor;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.EnumConstant;
+import com.manticore.tools.xmldoclet.xjc.Field;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.MemberRef;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.ObjectFactory;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+import com.sun.source.util.TreePath;
+import jdk.javadoc.doclet.DocletEnvironment;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The object model of a watched source tree (see {@link DocletWatcher}), kept between the javadoc invocations and
+ * updated with the types of the changed source files only. Each invocation documents just the changed files, and
+ * the doclet merges its types into the model with {@link #update(DocletEnvironment, Parser)} before writing the
+ * outputs of the complete model.
+ *
+ * <p>
+ * The types parsed from a source file replace the ones it declared before, and the reverse references (subclasses,
+ * implementors and usages) from and to them are updated: the references from the changed types to the other ones
+ * are taken from {@link Parser#parseExternalReverseReferences()}, the ones from the other types are kept. The links
+ * of the comments get the anchors of the types documented by the whole model. The members the types of unchanged
+ * files inherit from changed ones are only updated when their files change too.
+ * </p>
+ *
+ * <p>
+ * Packages are never modified: a package whose types change is replaced by a new one, so the rendered packages can
+ * be cached by their identity (see {@link #getPackageCache(String)}) and only the changed packages are rendered again.
+ * </p>
+ */
+final class IncrementalModel {
+    private static final Comparator<TypeInfo> BY_QUALIFIED = Comparator.comparing(TypeInfo::getQualified);
+
+    /**
+     * Orders the usages by their type only, the sort is stable, so the usages of a type keep the order of the
+     * {@link ReverseReferences}.
+     */
+    private static final Comparator<MemberRef> BY_TYPE = Comparator.comparing(MemberRef::getType);
+
+    private final ObjectFactory objectFactory = new ObjectFactory();
+
+    /**
+     * The packages by name, in their canonical order.
+     */
+    private final TreeMap<String, Package> packages = new TreeMap<>();
+
+    /**
+     * The qualified names of the types declared by each source file.
+     */
+    private final Map<Path, Set<String>> typesByFile = new HashMap<>();
+
+    /**
+     * The source files changed since the last update, including the deleted ones.
+     */
+    private final Set<Path> changedFiles = new HashSet<>();
+
+    private final Map<String, Map<Package, Object>> packageCaches = new ConcurrentHashMap<>();
+    private int updates;
+
+    /**
+     * Adds source files whose types are replaced by the next update, also if it doesn't parse them because they were
+     * deleted.
+     *
+     * @param files the changed source files
+     */
+    void addChangedFiles(final Collection<Path> files) {
+        for (final Path file : files) {
+            changedFiles.add(file.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * {@return the source files of the documented types}
+     */
+    Set<Path> getFiles() {
+        return Collections.unmodifiableSet(typesByFile.keySet());
+    }
+
+    /**
+     * {@return the number of updates, which changes with each doclet invocation}
+     */
+    int getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Removes all types, so the next update starts over.
+     */
+    void clear() {
+        packages.clear();
+        typesByFile.clear();
+        changedFiles.clear();
+        packageCaches.clear();
+    }
+
+    /**
+     * {@return the cache of the packages rendered for an output, see {@link Renderer#setPackageCache(Map)}} The
+     * caches are cleared when types are added or removed, since the packages refer to the documented types.
+     *
+     * @param output the name of the output
+     */
+    Map<Package, Object> getPackageCache(final String output) {
+        return packageCaches.computeIfAbsent(output, key -> Collections.synchronizedMap(new WeakHashMap<>()));
+    }
+
+    /**
+     * Merges the types of a doclet invocation into the model.
+     *
+     * @param env the environment of the doclet invocation, which includes the types of the changed files
+     * @param parser the parser of the doclet invocation
+     * @return the document root of the complete model
+     */
+    Root update(final DocletEnvironment env, final Parser parser) {
+        final Root parsedRoot = parser.parseRootDoc();
+        final Map<String, Object> externalReferences = parser.parseExternalReverseReferences();
+        final Set<String> typesBefore = getTypes();
+
+        // the types of the changed files are replaced, including the ones that don't exist anymore
+        final Map<Path, Set<String>> parsedFiles = new HashMap<>();
+        for (final TypeElement type : parser.getClasses(env)) {
+            final Path file = getSourceFile(env, type);
+            if (file != null) {
+                parsedFiles.computeIfAbsent(file, key -> new HashSet<>()).add(TypeUtils.getQualifiedName(type));
+            }
+        }
+        changedFiles.addAll(parsedFiles.keySet());
+        final Set<String> replacedTypes = new HashSet<>();
+        for (final Path file : changedFiles) {
+            final Set<String> types = typesByFile.remove(file);
+            if (types != null) {
+                replacedTypes.addAll(types);
+            }
+        }
+        typesByFile.putAll(parsedFiles);
+        changedFiles.clear();
+        for (final Package packageNode : parsedRoot.getPackage()) {
+            forEachType(packageNode, (qualified, typeNode) -> replacedTypes.add(qualified));
+        }
+
+        final Set<String> editedPackages = new HashSet<>();
+        final Map<String, Object> previousTypes = new HashMap<>();
+        final Map<String, String> packageNames = new HashMap<>();
+        for (final Package packageNode : List.copyOf(packages.values())) {
+            final String name = packageNode.getName();
+            forEachType(packageNode, (qualified, typeNode) -> {
+                if (replacedTypes.contains(qualified)) {
+                    previousTypes.put(qualified, typeNode);
+                    editPackage(name, editedPackages);
+                } else {
+                    packageNames.put(qualified, name);
+                    // the references from the replaced types are added again from the parsed ones
+                    if (removeReverseReferences(typeNode, replacedTypes)) {
+                        editPackage(name, editedPackages);
+                    }
+                }
+            });
+        }
+        for (final String name : editedPackages) {
+            removeTypes(packages.get(name), replacedTypes);
+        }
+
+        // the references from the parsed types to the other ones
+        for (final Map.Entry<String, Object> references : externalReferences.entrySet()) {
+            final String name = packageNames.get(references.getKey());
+            if (name != null) {
+                final Package packageNode = editPackage(name, editedPackages);
+                forEachType(packageNode, (qualified, typeNode) -> {
+                    if (qualified.equals(references.getKey())) {
+                        addReverseReferences(typeNode, references.getValue());
+                    }
+                });
+            }
+        }
+
+        // the parsed types keep the references from the other types
+        for (final Package parsedPackage : parsedRoot.getPackage()) {
+            final Package packageNode = editPackage(parsedPackage.getName(), editedPackages);
+            setPackageComment(packageNode, parsedPackage);
+            forEachType(parsedPackage, (qualified, typeNode) -> {
+                final Object previousType = previousTypes.get(qualified);
+                if (previousType != null) {
+                    removeReverseReferences(previousType, replacedTypes);
+                    addReverseReferences(typeNode, previousType);
+                }
+            });
+            packageNode.getAnnotation().addAll(parsedPackage.getAnnotation());
+            packageNode.getEnum().addAll(parsedPackage.getEnum());
+            packageNode.getInterface().addAll(parsedPackage.getInterface());
+            packageNode.getClazz().addAll(parsedPackage.getClazz());
+        }
+
+        // the comments of changed package-info files
+        for (final PackageElement packageElement : ElementFilter.packagesIn(env.getIncludedElements())) {
+            final String name = packageElement.getQualifiedName().toString();
+            if (packages.containsKey(name)) {
+                setPackageComment(editPackage(name, editedPackages), parser.parsePackage(packageElement));
+            }
+        }
+
+        for (final String name : editedPackages) {
+            final Package packageNode = packages.get(name);
+            packageNode.getAnnotation().sort(Comparator.comparing(Annotation::getQualified));
+            packageNode.getEnum().sort(Comparator.comparing(Enum::getQualified));
+            packageNode.getInterface().sort(Comparator.comparing(Interface::getQualified));
+            packageNode.getClazz().sort(Comparator.comparing(Class::getQualified));
+            if (packageNode.getAnnotation().isEmpty() && packageNode.getEnum().isEmpty()
+                    && packageNode.getInterface().isEmpty() && packageNode.getClazz().isEmpty()) {
+                packages.remove(name);
+            }
+        }
+
+        // the links refer to the documented types, so all of them are checked when types were added or removed
+        final Set<String> types = getTypes();
+        if (types.equals(typesBefore)) {
+            for (final Package parsedPackage : parsedRoot.getPackage()) {
+                updateAnchors(parsedPackage, types);
+            }
+        } else {
+            packageCaches.clear();
+            for (final Package packageNode : List.copyOf(packages.values())) {
+                if (updateAnchors(packageNode, types)) {
+                    editPackage(packageNode.getName(), editedPackages);
+                }
+            }
+        }
+
+        updates++;
+        final Root rootNode = objectFactory.createRoot();
+        rootNode.getPackage().addAll(packages.values());
+        return rootNode;
+    }
+
+    /**
+     * {@return the package of the model with the given name, replaced by a copy the first time it is edited by an
+     * update} The copy refers to the same types.
+     *
+     * @param name the name of the package, which is added if it doesn't exist
+     * @param editedPackages the names of the packages edited by the update
+     */
+    private Package editPackage(final String name, final Set<String> editedPackages) {
+        if (editedPackages.add(name)) {
+            final Package original = packages.get(name);
+            final Package copy = objectFactory.createPackage();
+            copy.setName(name);
+            if (original != null) {
+                setPackageComment(copy, original);
+                copy.getAnnotation().addAll(original.getAnnotation());
+                copy.getEnum().addAll(original.getEnum());
+                copy.getInterface().addAll(original.getInterface());
+                copy.getClazz().addAll(original.getClazz());
+            }
+            packages.put(name, copy);
+        }
+        return packages.get(name);
+    }
+
+    private static void setPackageComment(final Package packageNode, final Package source) {
+        packageNode.setComment(source.getComment());
+        packageNode.getTag().clear();
+        packageNode.getTag().addAll(source.getTag());
+        packageNode.getLink().clear();
+        packageNode.getLink().addAll(source.getLink());
+    }
+
+    private static void removeTypes(final Package packageNode, final Set<String> qualifiedNames) {
+        packageNode.getAnnotation().removeIf(annotationNode -> qualifiedNames.contains(annotationNode.getQualified()));
+        packageNode.getEnum().removeIf(enumNode -> qualifiedNames.contains(enumNode.getQualified()));
+        packageNode.getInterface().removeIf(interfaceNode -> qualifiedNames.contains(interfaceNode.getQualified()));
+        packageNode.getClazz().removeIf(classNode -> qualifiedNames.contains(classNode.getQualified()));
+    }
+
+    private Set<String> getTypes() {
+        final Set<String> types = new HashSet<>();
+        for (final Package packageNode : packages.values()) {
+            forEachType(packageNode, (qualified, typeNode) -> types.add(qualified));
+        }
+        return types;
+    }
+
+    private static void forEachType(final Package packageNode, final TypeConsumer consumer) {
+        for (final Annotation annotationNode : packageNode.getAnnotation()) {
+            consumer.accept(annotationNode.getQualified(), annotationNode);
+        }
+        for (final Enum enumNode : packageNode.getEnum()) {
+            consumer.accept(enumNode.getQualified(), enumNode);
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            consumer.accept(interfaceNode.getQualified(), interfaceNode);
+        }
+        for (final Class classNode : packageNode.getClazz()) {
+            consumer.accept(classNode.getQualified(), classNode);
+        }
+    }
+
+    /**
+     * Removes the reverse references from some types.
+     *
+     * @param typeNode the node of a type
+     * @param origins the qualified names of the types whose references are removed
+     * @return whether any reference was removed
+     */
+    private static boolean removeReverseReferences(final Object typeNode, final Set<String> origins) {
+        boolean removed = false;
+        if (typeNode instanceof Class classNode) {
+            removed = classNode.getSubclass().removeIf(subclass -> origins.contains(subclass.getQualified()));
+        } else if (typeNode instanceof Interface interfaceNode) {
+            removed = interfaceNode.getImplementor()
+                    .removeIf(implementor -> origins.contains(implementor.getQualified()));
+        }
+        final List<MemberRef> usedBy = getUsedBy(typeNode);
+        return usedBy != null && usedBy.removeIf(member -> origins.contains(member.getType())) || removed;
+    }
+
+    /**
+     * Adds the reverse references of another node of the same type, in the order the {@link Parser} adds them.
+     *
+     * @param typeNode the node of a type
+     * @param references the node with the references to add
+     */
+    private static void addReverseReferences(final Object typeNode, final Object references) {
+        if (typeNode instanceof Class classNode && references instanceof Class referencesNode) {
+            classNode.getSubclass().addAll(referencesNode.getSubclass());
+            classNode.getSubclass().sort(BY_QUALIFIED);
+        } else if (typeNode instanceof Interface interfaceNode && references instanceof Interface referencesNode) {
+            interfaceNode.getImplementor().addAll(referencesNode.getImplementor());
+            interfaceNode.getImplementor().sort(BY_QUALIFIED);
+        }
+
+        final List<MemberRef> usedBy = getUsedBy(typeNode);
+        final List<MemberRef> referencesUsedBy = getUsedBy(references);
+        if (usedBy != null && referencesUsedBy != null) {
+            usedBy.addAll(referencesUsedBy);
+            usedBy.sort(BY_TYPE);
+        }
+    }
+
+    private static List<MemberRef> getUsedBy(final Object typeNode) {
+        if (typeNode instanceof Class classNode) {
+            return classNode.getUsedBy();
+        } else if (typeNode instanceof Interface interfaceNode) {
+            return interfaceNode.getUsedBy();
+        } else if (typeNode instanceof Enum enumNode) {
+            return enumNode.getUsedBy();
+        }
+        return null;
+    }
+
+    /**
+     * Sets the anchors of the links of a package and its types to the documented types and packages, like the
+     * {@link LinkResolver} does for a complete invocation.
+     *
+     * @param packageNode the package
+     * @param types the qualified names of the documented types
+     * @return whether any anchor changed
+     */
+    private boolean updateAnchors(final Package packageNode, final Set<String> types) {
+        final List<List<LinkInfo>> links = new ArrayList<>();
+        links.add(packageNode.getLink());
+        for (final Annotation annotationNode : packageNode.getAnnotation()) {
+            links.add(annotationNode.getLink());
+        }
+        for (final Enum enumNode : packageNode.getEnum()) {
+            links.add(enumNode.getLink());
+            enumNode.getConstant().stream().map(EnumConstant::getLink).forEach(links::add);
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            links.add(interfaceNode.getLink());
+            interfaceNode.getMethod().stream().map(Method::getLink).forEach(links::add);
+            interfaceNode.getField().stream().map(Field::getLink).forEach(links::add);
+        }
+        for (final Class classNode : packageNode.getClazz()) {
+            links.add(classNode.getLink());
+            classNode.getConstructor().stream().map(Constructor::getLink).forEach(links::add);
+            classNode.getMethod().stream().map(Method::getLink).forEach(links::add);
+            classNode.getField().stream().map(Field::getLink).forEach(links::add);
+        }
+
+        boolean changed = false;
+        for (final List<LinkInfo> linkNodes : links) {
+            for (final LinkInfo linkNode : linkNodes) {
+                final String qualified = linkNode.getQualified();
+                final String anchor = qualified != null && (types.contains(qualified) || packages.containsKey(qualified))
+                        ? SearchIndex.getAnchor(qualified)
+                        : null;
+                if (!Objects.equals(anchor, linkNode.getAnchor())) {
+                    linkNode.setAnchor(anchor);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * {@return the normalized source file of an element, or null if it wasn't read from a file}
+     */
+    private static Path getSourceFile(final DocletEnvironment env, final Element element) {
+        final TreePath path = env.getDocTrees().getPath(element);
+        if (path == null) {
+            return null;
+        }
+        final URI uri = path.getCompilationUnit().getSourceFile().toUri();
+        return "file".equalsIgnoreCase(uri.getScheme()) ? Path.of(uri).toAbsolutePath().normalize() : null;
+    }
+
+    @FunctionalInterface
+    private interface TypeConsumer {
+        void accept(String qualified, Object typeNode);
+    }
+}
@@ -0,0 +1,250 @@
+package com.manticore.tools.xmldoclet;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.manticore.tools.xmldoclet.TypeUtils.*;
+
+/**
+ * Resolves the members a type inherits from its supertypes and the methods its own methods override, for the
+ * {@code -inheritedMembers} option.
+ *
+ * <p>
+ * The member table of each type contains its declared methods and fields plus the ones it inherits and doesn't
+ * override or hide. The table of a type is built from the tables of its direct supertypes and memoized, so a base
+ * type shared by many types, such as {@code java.util.AbstractList} or {@code java.lang.Object}, is resolved only
+ * once per doclet invocation, unlike {@link Elements#getAllMembers(TypeElement)} which walks the whole hierarchy for
+ * every type. Overriding is decided by {@link Elements#overrides(ExecutableElement, ExecutableElement, TypeElement)},
+ * which also covers a method implementing an interface method through an inherited implementation.
+ * </p>
+ */
+final class InheritanceResolver {
+    private final Elements elements;
+
+    private final Map<TypeElement, MemberTable> tables = new HashMap<>();
+
+    InheritanceResolver(final Elements elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Gets the methods and fields a type inherits, grouped by the supertype declaring them.
+     *
+     * @param type the class or interface
+     * @return a map where each key is a supertype, in the order the supertypes are visited (the superclass chain
+     *         first, then the interfaces in declaration order), and each value contains the members inherited from it
+     */
+    Map<TypeElement, List<Element>> getInherited(final TypeElement type) {
+        final MemberTable table = getTable(type);
+        final Map<TypeElement, List<Element>> inherited = new LinkedHashMap<>();
+        for (final TypeElement supertype : getAllSupertypes(type)) {
+            inherited.put(supertype, new ArrayList<>());
+        }
+
+        for (final List<ExecutableElement> methods : table.methods.values()) {
+            for (final ExecutableElement method : methods) {
+                addInherited(inherited, method);
+            }
+        }
+        for (final VariableElement field : table.fields.values()) {
+            addInherited(inherited, field);
+        }
+
+        inherited.values().removeIf(List::isEmpty);
+        return inherited;
+    }
+
+    /**
+     * Gets the methods of the supertypes that a method overrides or implements. A method overrides at most one method
+     * of a class, the nearest one, but may implement the methods of several interfaces.
+     *
+     * @param method a method declared in a class or interface
+     * @return the overridden methods, the one of a class first
+     */
+    List<ExecutableElement> getOverridden(final ExecutableElement method) {
+        final List<ExecutableElement> overridden = new ArrayList<>();
+        if (method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE)) {
+            return overridden;
+        }
+
+        final var type = (TypeElement) method.getEnclosingElement();
+        final String name = method.getSimpleName().toString();
+        for (final TypeElement supertype : getSupertypes(type)) {
+            for (final ExecutableElement candidate : getTable(supertype).methods.getOrDefault(name, List.of())) {
+                if (!overridden.contains(candidate) && isInherited(candidate, supertype, type)
+                        && elements.overrides(method, candidate, type)) {
+                    overridden.add(candidate);
+                }
+            }
+        }
+
+        // the method of a class before the ones of interfaces
+        overridden.sort((method1, method2) -> Boolean.compare(isInterfaceMember(method1), isInterfaceMember(method2)));
+        return overridden;
+    }
+
+    /**
+     * {@return the member table of a type, building it from the tables of its supertypes the first time}
+     * The tables are not built with {@code computeIfAbsent}, since building one adds the ones of the supertypes.
+     *
+     * @param type the type to get its table
+     */
+    private MemberTable getTable(final TypeElement type) {
+        final MemberTable cached = tables.get(type);
+        if (cached != null) {
+            return cached;
+        }
+
+        final var table = new MemberTable();
+        for (final ExecutableElement method : getMethods(type)) {
+            table.methods.computeIfAbsent(method.getSimpleName().toString(), name -> new ArrayList<>()).add(method);
+        }
+        for (final VariableElement field : getFields(type)) {
+            if (field.getKind() == ElementKind.FIELD) {
+                table.fields.put(field.getSimpleName().toString(), field);
+            }
+        }
+
+        for (final TypeElement supertype : getSupertypes(type)) {
+            final MemberTable supertypeTable = getTable(supertype);
+
+            for (final Map.Entry<String, List<ExecutableElement>> entry : supertypeTable.methods.entrySet()) {
+                final List<ExecutableElement> methods =
+                        table.methods.computeIfAbsent(entry.getKey(), name -> new ArrayList<>());
+                for (final ExecutableElement method : entry.getValue()) {
+                    if (!methods.contains(method) && isInherited(method, supertype, type)
+                            && !isOverridden(method, methods, type)) {
+                        // an interface method may override one inherited through an earlier supertype
+                        methods.removeIf(inheritedMethod -> !inheritedMethod.getEnclosingElement().equals(type)
+                                && elements.overrides(method, inheritedMethod, type));
+                        methods.add(method);
+                    }
+                }
+            }
+
+            // a field hides all fields with the same name, also the ones of later supertypes
+            for (final VariableElement field : supertypeTable.fields.values()) {
+                if (isInherited(field, supertype, type)) {
+                    table.fields.putIfAbsent(field.getSimpleName().toString(), field);
+                }
+            }
+        }
+
+        tables.put(type, table);
+        return table;
+    }
+
+    private boolean isOverridden(
+            final ExecutableElement method, final List<ExecutableElement> methods, final TypeElement type) {
+        for (final ExecutableElement overrider : methods) {
+            if (elements.overrides(overrider, method, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a member of a supertype is inherited by a type: private members never are, package-private ones
+     * only within the package, and static methods of interfaces aren't inherited either.
+     */
+    private boolean isInherited(final Element member, final TypeElement supertype, final TypeElement type) {
+        if (member.getModifiers().contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (member instanceof ExecutableElement && member.getModifiers().contains(Modifier.STATIC)
+                && isInterfaceMember(member)) {
+            return false;
+        }
+        if (member.getModifiers().contains(Modifier.PUBLIC) || member.getModifiers().contains(Modifier.PROTECTED)
+                || supertype.getKind().isInterface()) {
+            return true;
+        }
+        return elements.getPackageOf(member).equals(elements.getPackageOf(type));
+    }
+
+    /**
+     * Adds a member to the list of its declaring type, unless it is declared by the type itself.
+     */
+    private static void addInherited(final Map<TypeElement, List<Element>> inherited, final Element member) {
+        final List<Element> members = inherited.get((TypeElement) member.getEnclosingElement());
+        if (members != null) {
+            members.add(member);
+        }
+    }
+
+    /**
+     * {@return all supertypes of a type: the superclass chain first, then the interfaces in declaration order, each
+     * followed by its superinterfaces}
+     */
+    private static List<TypeElement> getAllSupertypes(final TypeElement type) {
+        final List<TypeElement> classes = new ArrayList<>();
+        classes.add(type);
+        for (int i = 0; i < classes.size(); i++) {
+            addSupertype(classes, classes.get(i).getSuperclass());
+        }
+
+        final List<TypeElement> supertypes = new ArrayList<>(classes.subList(1, classes.size()));
+        for (final TypeElement classElement : classes) {
+            addInterfaces(supertypes, classElement);
+        }
+        return supertypes;
+    }
+
+    private static void addInterfaces(final List<TypeElement> supertypes, final TypeElement type) {
+        for (final TypeMirror interfaceType : type.getInterfaces()) {
+            if (interfaceType.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            final var interfaceElement = (TypeElement) ((DeclaredType) interfaceType).asElement();
+            if (!supertypes.contains(interfaceElement)) {
+                supertypes.add(interfaceElement);
+                addInterfaces(supertypes, interfaceElement);
+            }
+        }
+    }
+
+    /**
+     * {@return the direct supertypes of a type: its superclass first, then its interfaces}
+     * Interfaces without superinterfaces have none, their implicit {@code Object} members aren't listed as inherited.
+     */
+    private static List<TypeElement> getSupertypes(final TypeElement type) {
+        final List<TypeElement> supertypes = new ArrayList<>();
+        addSupertype(supertypes, type.getSuperclass());
+        for (final TypeMirror interfaceType : type.getInterfaces()) {
+            addSupertype(supertypes, interfaceType);
+        }
+        return supertypes;
+    }
+
+    private static void addSupertype(final List<TypeElement> supertypes, final TypeMirror typeMirror) {
+        if (typeMirror.getKind() == TypeKind.DECLARED) {
+            supertypes.add((TypeElement) ((DeclaredType) typeMirror).asElement());
+        }
+    }
+
+    private static boolean isInterfaceMember(final Element member) {
+        return member.getEnclosingElement().getKind().isInterface();
+    }
+
+    /**
+     * The methods (by name, overloads in declaration order) and fields visible in a type.
+     */
+    private static final class MemberTable {
+        private final Map<String, List<ExecutableElement>> methods = new LinkedHashMap<>();
+        private final Map<String, VariableElement> fields = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,346 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Annotation;
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Constructor;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.Field;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import jdk.javadoc.doclet.DocletEnvironment;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.manticore.tools.xmldoclet.TypeUtils.*;
+
+/**
+ * An on-demand view of the XML object model, for tools embedding the doclet that only need a few of its elements.
+ *
+ * <p>
+ * Nothing is parsed up front: packages, types and members are created by the {@link Parser} when they are first
+ * accessed and memoized afterwards, so repeated lookups return the same nodes. Queries about the type hierarchy,
+ * such as {@link #getImplementors(String)}, are answered from the {@link DocletEnvironment} without creating any
+ * node at all. {@link #toRoot()} materializes the complete model, reusing everything that was already created,
+ * and is equivalent to {@link Parser#parseRootDoc()}.
+ * </p>
+ *
+ * <p>
+ * The model is only valid while the {@link DocletEnvironment} is, and like the environment it is meant to be used
+ * from the doclet's thread.
+ * </p>
+ *
+ * <pre>{@code
+ * final var model = new LazyModel(env);
+ * for (final String implementor : model.getImplementors("java.lang.Runnable")) {
+ *     model.findClass(implementor).ifPresent(classNode -> ...);
+ * }
+ * }</pre>
+ */
+public class LazyModel {
+    private final DocletEnvironment env;
+    private final MemoizingParser parser;
+
+    /**
+     * The included types by their qualified name, in the canonical order of {@link Parser#getSortedClasses}.
+     */
+    private Map<String, TypeElement> includedTypes;
+
+    /**
+     * The included types grouped by the name of their package, in the order of {@link #toRoot()}.
+     */
+    private Map<String, List<TypeElement>> typesByPackage;
+
+    private Root root;
+
+    private final Map<String, Package> packages = new ConcurrentHashMap<>();
+    private final Map<TypeElement, Object> types = new ConcurrentHashMap<>();
+    private final Map<ExecutableElement, Object> executables = new ConcurrentHashMap<>();
+    private final Map<VariableElement, Field> fields = new ConcurrentHashMap<>();
+
+    /**
+     * @param env the operating environment of a single invocation of the doclet
+     */
+    public LazyModel(final DocletEnvironment env) {
+        this(env, false);
+    }
+
+    /**
+     * @param env the operating environment of a single invocation of the doclet
+     * @param withInheritedMembers whether the inherited members and overridden methods are created, see
+     *        {@link Parser#Parser(DocletEnvironment, boolean)}
+     */
+    public LazyModel(final DocletEnvironment env, final boolean withInheritedMembers) {
+        this.env = env;
+        this.parser = new MemoizingParser(env, withInheritedMembers);
+    }
+
+    /**
+     * {@return the qualified names of all included types, including nested ones}
+     */
+    public Set<String> getTypeNames() {
+        return Collections.unmodifiableSet(getIncludedTypes().keySet());
+    }
+
+    /**
+     * {@return the names of the packages containing included types, in the order of {@link #toRoot()}}
+     */
+    public List<String> getPackageNames() {
+        return new ArrayList<>(getTypesByPackage().keySet());
+    }
+
+    /**
+     * Gets a package together with all its included types.
+     *
+     * @param packageName the qualified name of the package
+     * @return the package node, or an empty Optional if the package contains no included type
+     */
+    public Optional<Package> findPackage(final String packageName) {
+        final List<TypeElement> packageTypes = getTypesByPackage().get(packageName);
+        if (packageTypes == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(packages.computeIfAbsent(packageName, name -> {
+            final var packageElement = (PackageElement) Parser.getTopLevelClass(packageTypes.get(0)).getEnclosingElement();
+            final Package packageNode = parser.parsePackage(packageElement);
+            for (final TypeElement typeElement : packageTypes) {
+                addType(packageNode, typeElement);
+            }
+            return packageNode;
+        }));
+    }
+
+    public Optional<Class> findClass(final String qualifiedName) {
+        return findType(qualifiedName, Class.class);
+    }
+
+    public Optional<Interface> findInterface(final String qualifiedName) {
+        return findType(qualifiedName, Interface.class);
+    }
+
+    public Optional<Enum> findEnum(final String qualifiedName) {
+        return findType(qualifiedName, Enum.class);
+    }
+
+    public Optional<Annotation> findAnnotation(final String qualifiedName) {
+        return findType(qualifiedName, Annotation.class);
+    }
+
+    /**
+     * Gets the methods of a type having a given name, without creating the type node or any other member.
+     *
+     * @param qualifiedName the qualified name of an included type
+     * @param methodName the simple name of the methods
+     * @return the method nodes, in declaration order; empty if the type isn't included
+     */
+    public List<Method> findMethods(final String qualifiedName, final String methodName) {
+        final TypeElement typeElement = getIncludedTypes().get(qualifiedName);
+        if (typeElement == null) {
+            return List.of();
+        }
+
+        final var methods = new ArrayList<Method>();
+        for (final ExecutableElement method : getMethods(typeElement)) {
+            if (method.getSimpleName().contentEquals(methodName)) {
+                methods.add(parser.parseMethod(method));
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Gets a field of a type, without creating the type node or any other member.
+     *
+     * @param qualifiedName the qualified name of an included type
+     * @param fieldName the name of the field
+     * @return the field node, or an empty Optional if there is no such field
+     */
+    public Optional<Field> findField(final String qualifiedName, final String fieldName) {
+        final TypeElement typeElement = getIncludedTypes().get(qualifiedName);
+        if (typeElement == null) {
+            return Optional.empty();
+        }
+
+        for (final VariableElement field : getFields(typeElement)) {
+            if (field.getSimpleName().contentEquals(fieldName)) {
+                return Optional.of(parser.parseField(field));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Finds the included types that are a subtype of a given type, either directly or indirectly.
+     *
+     * @param qualifiedName the qualified name of a class or interface, which doesn't need to be included
+     * @return the qualified names of the subtypes, excluding the type itself
+     */
+    public List<String> getSubtypes(final String qualifiedName) {
+        final TypeElement superTypeElement = env.getElementUtils().getTypeElement(qualifiedName);
+        if (superTypeElement == null) {
+            return List.of();
+        }
+
+        final Types types = env.getTypeUtils();
+        final TypeMirror superType = types.erasure(superTypeElement.asType());
+        final var subtypes = new ArrayList<String>();
+        for (final Map.Entry<String, TypeElement> entry : getIncludedTypes().entrySet()) {
+            final TypeElement typeElement = entry.getValue();
+            if (!typeElement.equals(superTypeElement) && types.isSubtype(types.erasure(typeElement.asType()), superType)) {
+                subtypes.add(entry.getKey());
+            }
+        }
+        return subtypes;
+    }
+
+    /**
+     * {@return the qualified names of the included classes and enums implementing an interface, either directly or
+     * indirectly}
+     *
+     * @param qualifiedName the qualified name of the interface, which doesn't need to be included
+     */
+    public List<String> getImplementors(final String qualifiedName) {
+        final var implementors = new ArrayList<String>();
+        for (final String subtype : getSubtypes(qualifiedName)) {
+            final ElementKind kind = getIncludedTypes().get(subtype).getKind();
+            if (kind != ElementKind.INTERFACE && kind != ElementKind.ANNOTATION_TYPE) {
+                implementors.add(subtype);
+            }
+        }
+        return implementors;
+    }
+
+    /**
+     * Materializes the complete model, reusing the nodes already created. The subclasses, implementors and usages of
+     * the types are only added here, since they are known once all types are created. The root is created once,
+     * later calls return the same root.
+     *
+     * @return the root node, containing everything parsed from javadoc doclet
+     */
+    public Root toRoot() {
+        if (root != null) {
+            return root;
+        }
+
+        final Root rootNode = parser.objectFactory.createRoot();
+        for (final String packageName : getPackageNames()) {
+            findPackage(packageName).ifPresent(rootNode.getPackage()::add);
+        }
+
+        // all types and members were created above, so all references to the types are known now
+        for (final TypeElement typeElement : getIncludedTypes().values()) {
+            parser.addReverseReferences(typeElement, getTypeNode(typeElement));
+        }
+        root = rootNode;
+        return rootNode;
+    }
+
+    /**
+     * {@return the documentation coverage of the elements created so far, which covers the complete model after
+     * {@link #toRoot()}}
+     */
+    DocCoverage getCoverage() {
+        return parser.getCoverage();
+    }
+
+    private <T> Optional<T> findType(final String qualifiedName, final java.lang.Class<T> nodeClass) {
+        final TypeElement typeElement = getIncludedTypes().get(qualifiedName);
+        if (typeElement == null) {
+            return Optional.empty();
+        }
+
+        final Object typeNode = getTypeNode(typeElement);
+        return nodeClass.isInstance(typeNode) ? Optional.of(nodeClass.cast(typeNode)) : Optional.empty();
+    }
+
+    private void addType(final Package packageNode, final TypeElement typeElement) {
+        final Object typeNode = getTypeNode(typeElement);
+        if (typeNode instanceof Annotation annotationNode) {
+            packageNode.getAnnotation().add(annotationNode);
+        } else if (typeNode instanceof Enum enumNode) {
+            packageNode.getEnum().add(enumNode);
+        } else if (typeNode instanceof Interface interfaceNode) {
+            packageNode.getInterface().add(interfaceNode);
+        } else {
+            packageNode.getClazz().add((Class) typeNode);
+        }
+    }
+
+    private Object getTypeNode(final TypeElement typeElement) {
+        return types.computeIfAbsent(typeElement, element -> switch (element.getKind()) {
+            case ANNOTATION_TYPE -> parser.parseAnnotationTypeDoc(element);
+            case ENUM -> parser.parseEnum(element);
+            case INTERFACE -> parser.parseInterface(element);
+            default -> parser.parseClass(element);
+        });
+    }
+
+    private Map<String, TypeElement> getIncludedTypes() {
+        if (includedTypes == null) {
+            final List<TypeElement> sortedTypes = parser.getSortedClasses(env);
+            final var typesByName = new LinkedHashMap<String, TypeElement>(sortedTypes.size() * 4 / 3 + 1);
+            for (final TypeElement typeElement : sortedTypes) {
+                typesByName.put(getQualifiedName(typeElement), typeElement);
+            }
+            includedTypes = typesByName;
+        }
+        return includedTypes;
+    }
+
+    private Map<String, List<TypeElement>> getTypesByPackage() {
+        if (typesByPackage == null) {
+            final var packageTypes = new LinkedHashMap<String, List<TypeElement>>();
+            for (final TypeElement typeElement : getIncludedTypes().values()) {
+                packageTypes.computeIfAbsent(getPackageName(typeElement), name -> new ArrayList<>()).add(typeElement);
+            }
+            typesByPackage = packageTypes;
+        }
+        return typesByPackage;
+    }
+
+    private static String getPackageName(final TypeElement typeElement) {
+        final var packageElement = (PackageElement) Parser.getTopLevelClass(typeElement).getEnclosingElement();
+        return packageElement.getQualifiedName().toString();
+    }
+
+    /**
+     * A parser returning the same node each time a member is parsed, so members created by the member lookups are
+     * reused when their type is created later, and vice versa.
+     */
+    private final class MemoizingParser extends Parser {
+        private MemoizingParser(final DocletEnvironment env, final boolean withInheritedMembers) {
+            super(env, withInheritedMembers);
+        }
+
+        @Override
+        protected Method parseMethod(final ExecutableElement methodDoc) {
+            return (Method) executables.computeIfAbsent(methodDoc, super::parseMethod);
+        }
+
+        @Override
+        protected Constructor parseConstructor(final ExecutableElement constructorDoc) {
+            return (Constructor) executables.computeIfAbsent(constructorDoc, super::parseConstructor);
+        }
+
+        @Override
+        protected Field parseField(final VariableElement fieldDoc) {
+            return fields.computeIfAbsent(fieldDoc, super::parseField);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.ObjectFactory;
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.doctree.ReferenceTree;
+import com.sun.source.util.DocTreePath;
+import com.sun.source.util.DocTreePathScanner;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.TreePath;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.manticore.tools.xmldoclet.TypeUtils.*;
+
+/**
+ * Resolves the {@code {@link}}, {@code {@linkplain}}, {@code @see} and {@code @throws} references of the comments
+ * to the documented packages, types and members.
+ *
+ * <p>
+ * The compiler resolves each {@link ReferenceTree} to its element through {@link DocTrees#getElement(DocTreePath)},
+ * in the scope of the commented element, so imports, nested types and overloads are handled like by the javadoc
+ * tool. The element is then looked up in a symbol table of all included packages, types and members, built once,
+ * which gives the anchor of its section. Members share the anchor of their type, like in the {@link SearchIndex}.
+ * References to elements which are not documented, such as JDK types, keep their qualified name but get no anchor.
+ * </p>
+ */
+final class LinkResolver {
+    private final DocTrees docTrees;
+    private final ObjectFactory objectFactory;
+    private final Map<Element, String> anchors;
+
+    /**
+     * @param docTrees the doc trees of the doclet environment
+     * @param objectFactory the factory creating the link nodes
+     * @param types the included types
+     */
+    LinkResolver(final DocTrees docTrees, final ObjectFactory objectFactory, final Collection<TypeElement> types) {
+        this.docTrees = docTrees;
+        this.objectFactory = objectFactory;
+        this.anchors = new HashMap<>(types.size() * 16);
+
+        for (final TypeElement type : types) {
+            final String anchor = SearchIndex.getAnchor(getQualifiedName(type));
+            anchors.put(type, anchor);
+            for (final Element member : type.getEnclosedElements()) {
+                if (member.getKind().isField() || member instanceof ExecutableElement) {
+                    anchors.put(member, anchor);
+                }
+            }
+
+            final PackageElement packageElement = (PackageElement) Parser.getTopLevelClass(type).getEnclosingElement();
+            anchors.computeIfAbsent(
+                    packageElement, key -> SearchIndex.getAnchor(packageElement.getQualifiedName().toString()));
+        }
+    }
+
+    /**
+     * {@return the references in the comment of an element, once per distinct reference text} Both the body and
+     * the block tags of the comment are scanned.
+     *
+     * @param element the commented element
+     */
+    List<LinkInfo> resolve(final Element element) {
+        final DocCommentTree docCommentTree = docTrees.getDocCommentTree(element);
+        final TreePath treePath = docCommentTree == null ? null : docTrees.getPath(element);
+        if (treePath == null) {
+            return List.of();
+        }
+
+        final Map<String, LinkInfo> links = new LinkedHashMap<>();
+        new DocTreePathScanner<Void, Void>() {
+            @Override
+            public Void visitReference(final ReferenceTree node, final Void unused) {
+                links.computeIfAbsent(node.getSignature(), reference -> resolve(reference, getCurrentPath()));
+                return null;
+            }
+        }.scan(new DocTreePath(treePath, docCommentTree), null);
+        return List.copyOf(links.values());
+    }
+
+    private LinkInfo resolve(final String reference, final DocTreePath referencePath) {
+        final LinkInfo linkNode = objectFactory.createLinkInfo();
+        linkNode.setReference(reference);
+
+        final Element target = docTrees.getElement(referencePath);
+        if (target == null) {
+            return linkNode;
+        }
+
+        if (target instanceof PackageElement packageElement) {
+            linkNode.setQualified(packageElement.getQualifiedName().toString());
+        } else if (target instanceof TypeElement) {
+            linkNode.setQualified(getQualifiedName(target));
+        } else {
+            linkNode.setQualified(getQualifiedName(target.getEnclosingElement()));
+            // the name with the qualified parameter types, like method(java.lang.String)
+            linkNode.setMember(target.toString());
+        }
+        linkNode.setAnchor(anchors.get(target));
+        return linkNode;
+    }
+}
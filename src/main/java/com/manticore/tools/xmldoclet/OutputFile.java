@@ -0,0 +1,228 @@
+package com.manticore.tools.xmldoclet;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An output file that is written into a hidden temporary file in the same directory and atomically moved to its
+ * final name by {@link #commit()}. Tools watching the output directory therefore never see a partially written
+ * file: they see either the previous version or the complete new one.
+ *
+ * <p>
+ * The content is written through a {@link FileChannel} with pooled direct buffers (see {@link ChannelOutputStream}).
+ * If the file is compressed, the compression runs in a separate pipeline thread (see {@link PipelinedOutputStream}).
+ * Closing an output file that was not committed discards the temporary file.
+ * </p>
+ *
+ * <p>
+ * A SHA-256 digest of the uncompressed content is computed while it is written. If an existing target file has the
+ * same content, the temporary file is discarded instead of being moved, so the modification time of the target only
+ * changes with its content and up-to-date checks, caches and incremental copies downstream stay valid.
+ * </p>
+ *
+ * <pre>{@code
+ * try (var outputFile = OutputFile.open(path, Compression.NONE, bufferSize)) {
+ *     write(outputFile.getOutputStream());
+ *     outputFile.commit();
+ * }
+ * }</pre>
+ */
+final class OutputFile implements Closeable {
+    private final Path target;
+    private final Path temporary;
+    private final Compression compression;
+    private final DigestOutputStream outputStream;
+    private boolean committed;
+
+    private OutputFile(
+            final Path target, final Path temporary, final Compression compression, final OutputStream outputStream) {
+        this.target = target;
+        this.temporary = temporary;
+        this.compression = compression;
+        this.outputStream = new DigestOutputStream(outputStream);
+    }
+
+    /**
+     * Opens an output file.
+     *
+     * @param target the final path of the file
+     * @param compression the compression format of the content
+     * @param bufferSize the size of the output buffers
+     * @return the opened output file
+     */
+    static OutputFile open(final Path target, final Compression compression, final int bufferSize) throws IOException {
+        final Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        final Path temporary = directory.resolve(
+                "." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        final OutputStream channelOutputStream = new ChannelOutputStream(channel, bufferSize);
+        try {
+            final OutputStream outputStream = compression == Compression.NONE
+                    ? channelOutputStream
+                    : new PipelinedOutputStream(compression.compress(channelOutputStream, bufferSize), bufferSize);
+            return new OutputFile(target, temporary, compression, outputStream);
+        } catch (IOException | RuntimeException e) {
+            channelOutputStream.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a file unless it already has the given content.
+     *
+     * @param target the path of the file
+     * @param content the uncompressed content
+     * @param compression the compression format of the file
+     * @param bufferSize the size of the output buffers
+     * @return true if the file was written, false if it was left unchanged
+     */
+    static boolean writeIfChanged(
+            final Path target, final byte[] content, final Compression compression, final int bufferSize)
+            throws IOException {
+        try (var outputFile = open(target, compression, bufferSize)) {
+            outputFile.getOutputStream().write(content);
+            return outputFile.commit();
+        }
+    }
+
+    /**
+     * {@return the stream to write the file content to}
+     * It must not be closed by the caller, that is done by {@link #commit()} or {@link #close()}.
+     */
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Finishes writing and atomically replaces the target file with the written content, unless the target already
+     * has the same content. Falls back to a plain replacing move when the file system doesn't support atomic moves.
+     *
+     * @return true if the target file was replaced, false if it was left unchanged
+     */
+    boolean commit() throws IOException {
+        outputStream.close();
+
+        if (hasSameContent()) {
+            Files.delete(temporary);
+            committed = true;
+            return false;
+        }
+
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+        return true;
+    }
+
+    /**
+     * Discards the temporary file, unless the output was committed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (committed) {
+            return;
+        }
+
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            // the content is discarded anyway
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Compares the written content with the one of the target file. The size of an uncompressed file is checked
+     * first, so a changed file usually doesn't need to be read. The content of a compressed file is compared after
+     * decompressing it.
+     */
+    private boolean hasSameContent() throws IOException {
+        if (!Files.isRegularFile(target)
+                || compression == Compression.NONE && Files.size(target) != outputStream.getCount()) {
+            return false;
+        }
+
+        final MessageDigest digest = newDigest();
+        try (var inputStream = Compression.decompress(Files.newInputStream(target))) {
+            final byte[] buffer = new byte[8192];
+            for (int length = inputStream.read(buffer); length >= 0; length = inputStream.read(buffer)) {
+                digest.update(buffer, 0, length);
+            }
+        }
+        return MessageDigest.isEqual(digest.digest(), outputStream.getDigest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Computes the digest and the size of the uncompressed content while it is written.
+     */
+    private static final class DigestOutputStream extends FilterOutputStream {
+        private final MessageDigest digest = newDigest();
+        private long count;
+        private byte[] result;
+
+        private DigestOutputStream(final OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            digest.update((byte) b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            out.write(bytes, offset, length);
+            digest.update(bytes, offset, length);
+            count += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (result == null) {
+                result = digest.digest();
+            }
+            super.close();
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        byte[] getDigest() {
+            return result;
+        }
+    }
+}
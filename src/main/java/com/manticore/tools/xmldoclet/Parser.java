@@ -14,10 +14,13 @@ import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
 import javax.lang.model.type.WildcardType;
 import javax.lang.model.util.ElementFilter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
 
 import static com.manticore.tools.xmldoclet.TypeUtils.*;
 import static java.util.Objects.requireNonNullElse;
@@ -44,13 +47,43 @@ public class Parser {
     private final DocTrees docTrees;
     protected final TypeUtils typeUtils;
 
+    /**
+     * Resolves the inherited members and overridden methods, or null if they are not written.
+     */
+    private final InheritanceResolver inheritanceResolver;
+
+    /**
+     * The subclasses, implementors and usages of the types, collected while parsing.
+     */
+    private final ReverseReferences reverseReferences = new ReverseReferences();
+
+    /**
+     * Resolves the references of the comments, created with the symbol table of the included types on first use.
+     */
+    private LinkResolver linkResolver;
+
+    /**
+     * The documentation coverage of the parsed elements.
+     */
+    private final DocCoverage coverage = new DocCoverage();
+
     /**
      * @param env the operating environment of a single invocation of the doclet
      */
     public Parser(final DocletEnvironment env) {
+        this(env, false);
+    }
+
+    /**
+     * @param env the operating environment of a single invocation of the doclet
+     * @param withInheritedMembers whether the members inherited by each class and interface and the methods
+     *        overridden by each method are written (the {@code -inheritedMembers} option)
+     */
+    public Parser(final DocletEnvironment env, final boolean withInheritedMembers) {
         this.env = env;
         this.docTrees = env.getDocTrees();
         this.typeUtils = new TypeUtils(env.getTypeUtils(), env.getElementUtils());
+        this.inheritanceResolver = withInheritedMembers ? new InheritanceResolver(env.getElementUtils()) : null;
     }
 
     public Set<TypeElement> getClasses(final DocletEnvironment env) {
@@ -58,6 +91,50 @@ public class Parser {
         return ElementFilter.typesIn(elements);
     }
 
+    /**
+     * {@return the included types in the canonical order of the document: by package name, then by qualified name}
+     * The javadoc tool returns them in the order the source files were found, which depends on the file system,
+     * so sorting them makes the output of the same sources byte-identical on every machine.
+     *
+     * @param env the operating environment of a single invocation of the doclet
+     */
+    public List<TypeElement> getSortedClasses(final DocletEnvironment env) {
+        final Set<TypeElement> classes = getClasses(env);
+
+        // the sort keys are computed once, the package name is followed by a character lower than any in a name
+        final List<Map.Entry<String, TypeElement>> keyedClasses = new ArrayList<>(classes.size());
+        for (final TypeElement classElement : classes) {
+            final var packageElement = (PackageElement) getTopLevelClass(classElement).getEnclosingElement();
+            keyedClasses.add(Map.entry(
+                    packageElement.getQualifiedName() + "\0" + getQualifiedName(classElement), classElement));
+        }
+        keyedClasses.sort(Map.Entry.comparingByKey());
+
+        final List<TypeElement> sortedClasses = new ArrayList<>(keyedClasses.size());
+        for (final Map.Entry<String, TypeElement> keyedClass : keyedClasses) {
+            sortedClasses.add(keyedClass.getValue());
+        }
+        return sortedClasses;
+    }
+
+    /**
+     * {@return the members sorted by their simple name} The sort is stable, so overloads keep their declaration order.
+     *
+     * @param members the methods, fields or annotation elements of a type
+     */
+    static <T extends Element> List<T> sortByName(final List<T> members) {
+        final List<T> sortedMembers = new ArrayList<>(members);
+        sortedMembers.sort((member1, member2) -> CharSequence.compare(member1.getSimpleName(), member2.getSimpleName()));
+        return sortedMembers;
+    }
+
+    /**
+     * {@return the documentation coverage of the elements parsed so far}
+     */
+    DocCoverage getCoverage() {
+        return coverage;
+    }
+
     String getJavaDoc(final Element element) {
         final var docCommentTree = docTrees.getDocCommentTree(element);
         return docCommentTree == null ? "" : docCommentTree.getFullBody().toString();
@@ -74,36 +151,289 @@ public class Parser {
     }
 
     /**
-     * The entry point into parsing the javadoc.
+     * The entry point into parsing the javadoc. Packages, types and their members are created in the canonical order
+     * of {@link #getSortedClasses(DocletEnvironment)} and {@link #sortByName(List)}, while parameters, enum constants
+     * and annotations keep their declaration order.
      *
      * @return The root node, containing everything parsed from javadoc doclet
      */
     public Root parseRootDoc() {
         final Root rootNode = objectFactory.createRoot();
+        final List<TypeElement> classes = getSortedClasses(env);
+        final List<Object> typeNodes = new ArrayList<>(classes.size());
 
-        for (final TypeElement classDoc : getClasses(env)) {
-            final Package packageNode = getPackage(rootNode, classDoc);
+        for (final TypeElement classDoc : classes) {
+            typeNodes.add(parseType(getPackage(rootNode, classDoc), classDoc));
+        }
 
-            switch (classDoc.getKind()) {
-                case ANNOTATION_TYPE:
-                    packageNode.getAnnotation().add(parseAnnotationTypeDoc(classDoc));
-                    break;
-                case ENUM:
-                    packageNode.getEnum().add(parseEnum(classDoc));
-                    break;
-                case INTERFACE:
-                    packageNode.getInterface().add(parseInterface(classDoc));
-                    break;
-                default:
-                    packageNode.getClazz().add(parseClass(classDoc));
-                    break;
+        // the references to a type are known once all types and members are parsed
+        for (int i = 0; i < classes.size(); i++) {
+            addReverseReferences(classes.get(i), typeNodes.get(i));
+        }
+
+        return rootNode;
+    }
+
+    /**
+     * Parses the javadoc into a {@link CompactModel}, like {@link #parseRootDoc()} but without keeping the beans:
+     * each package is compacted once its types are parsed, the canonical order keeps the types of a package together.
+     *
+     * @return the compact model of everything parsed from javadoc doclet
+     */
+    CompactModel parseCompactModel() {
+        final var model = new CompactModel();
+        final List<TypeElement> classes = getSortedClasses(env);
+        parsePackages(classes, false, model::add);
+
+        // the references are collected into a temporary node of the same kind and copied into the model
+        for (final TypeElement classDoc : classes) {
+            final Object typeNode = createReverseReferencesNode(classDoc);
+            if (typeNode != null) {
+                model.setReverseReferences(getQualifiedName(classDoc), typeNode);
+            }
+        }
+
+        return model;
+    }
+
+    /**
+     * Parses the javadoc into a {@link CompactModel} with a memory budget, which spills the packages to a segment file
+     * once their estimated size passes it. The packages are parsed like {@link #parsePackages(Consumer)}, so they
+     * are complete when they are added and may be spilled right away.
+     *
+     * @param memoryBudget the estimated size in bytes of the packages held in memory
+     * @return the compact model of everything parsed from javadoc doclet, which must be closed
+     */
+    CompactModel parseCompactModel(final long memoryBudget) {
+        final var model = new CompactModel(memoryBudget);
+        try {
+            parsePackages(model::add);
+        } catch (RuntimeException | Error e) {
+            model.close();
+            throw e;
+        }
+        return model;
+    }
+
+    /**
+     * {@return the reverse references from the parsed types to the types that are not included, by their qualified
+     * name} Each is a node of the kind of the referenced type, which has only its reverse references, like the
+     * temporary nodes of {@link #parseCompactModel()}. It lets the {@link IncrementalModel} update the references to
+     * the types that were parsed before. Must be called after {@link #parseRootDoc()}.
+     */
+    Map<String, Object> parseExternalReverseReferences() {
+        final Set<TypeElement> classes = getClasses(env);
+        final Map<String, Object> typeNodes = new HashMap<>();
+        for (final TypeElement type : reverseReferences.getReferencedTypes()) {
+            if (!classes.contains(type)) {
+                final Object typeNode = createReverseReferencesNode(type);
+                if (typeNode != null) {
+                    typeNodes.put(getQualifiedName(type), typeNode);
+                }
             }
         }
+        return typeNodes;
+    }
+
+    /**
+     * {@return a node of the kind of a type, which has only its reverse references, or null for an annotation type}
+     *
+     * @param classDoc the type
+     */
+    private Object createReverseReferencesNode(final TypeElement classDoc) {
+        final Object typeNode = switch (classDoc.getKind()) {
+            case ANNOTATION_TYPE -> null;
+            case ENUM -> objectFactory.createEnum();
+            case INTERFACE -> objectFactory.createInterface();
+            default -> objectFactory.createClass();
+        };
+        if (typeNode != null) {
+            addReverseReferences(classDoc, typeNode);
+        }
+        return typeNode;
+    }
+
+    /**
+     * Parses the javadoc one package at a time, in the order of {@link #parseRootDoc()}. The reverse references are
+     * collected from all types up front, so each package is complete when it is passed to the consumer, as soon as
+     * its types are parsed. The parser doesn't reference it afterwards.
+     *
+     * @param consumer the consumer of the packages
+     */
+    void parsePackages(final Consumer<Package> consumer) {
+        final List<TypeElement> classes = getSortedClasses(env);
+        for (final TypeElement classDoc : classes) {
+            collectReverseReferences(classDoc);
+        }
+        parsePackages(classes, true, consumer);
+    }
 
+    /**
+     * {@return the packages with the names of their types, without parsing anything else} It lets the outputs
+     * consuming the packages of {@link #parsePackages(Consumer)} write what precedes the packages, such as a table of
+     * contents, before the packages are parsed.
+     */
+    Root parseOutline() {
+        final Root rootNode = objectFactory.createRoot();
+        Package packageNode = null;
+        for (final TypeElement classDoc : getSortedClasses(env)) {
+            final var packageDoc = (PackageElement) getTopLevelClass(classDoc).getEnclosingElement();
+            if (packageNode == null || !packageDoc.getQualifiedName().contentEquals(packageNode.getName())) {
+                packageNode = objectFactory.createPackage();
+                packageNode.setName(packageDoc.getQualifiedName().toString());
+                rootNode.getPackage().add(packageNode);
+            }
 
+            final String name = classDoc.getSimpleName().toString();
+            final String qualified = getQualifiedName(classDoc);
+            switch (classDoc.getKind()) {
+                case ANNOTATION_TYPE -> {
+                    final Annotation annotationNode = objectFactory.createAnnotation();
+                    annotationNode.setName(name);
+                    annotationNode.setQualified(qualified);
+                    packageNode.getAnnotation().add(annotationNode);
+                }
+                case ENUM -> {
+                    final Enum enumNode = objectFactory.createEnum();
+                    enumNode.setName(name);
+                    enumNode.setQualified(qualified);
+                    packageNode.getEnum().add(enumNode);
+                }
+                case INTERFACE -> {
+                    final Interface interfaceNode = objectFactory.createInterface();
+                    interfaceNode.setName(name);
+                    interfaceNode.setQualified(qualified);
+                    packageNode.getInterface().add(interfaceNode);
+                }
+                default -> {
+                    final Class classNode = objectFactory.createClass();
+                    classNode.setName(name);
+                    classNode.setQualified(qualified);
+                    packageNode.getClazz().add(classNode);
+                }
+            }
+        }
         return rootNode;
     }
 
+    /**
+     * Parses the types package by package and passes each package on once its types are parsed.
+     *
+     * @param classes the types, in the canonical order keeping the types of a package together
+     * @param withReverseReferences whether the reverse references are added to the types, which requires them to be
+     *        collected before
+     * @param consumer the consumer of the packages
+     */
+    private void parsePackages(
+            final List<TypeElement> classes, final boolean withReverseReferences, final Consumer<Package> consumer) {
+        final Root rootNode = objectFactory.createRoot();
+        for (final TypeElement classDoc : classes) {
+            final Package packageNode = getPackage(rootNode, classDoc);
+            if (rootNode.getPackage().size() > 1) {
+                passOn(rootNode.getPackage().remove(0), consumer);
+            }
+
+            final Object typeNode = parseType(packageNode, classDoc);
+            if (withReverseReferences) {
+                addReverseReferences(classDoc, typeNode);
+            }
+        }
+        if (!rootNode.getPackage().isEmpty()) {
+            passOn(rootNode.getPackage().remove(0), consumer);
+        }
+    }
+
+    private void passOn(final Package packageNode, final Consumer<Package> consumer) {
+        packages.remove(packageNode.getName());
+        consumer.accept(packageNode);
+    }
+
+    /**
+     * Collects the reverse references of a type and its members without parsing them, exactly like parsing the type
+     * does.
+     *
+     * @param classDoc the type
+     */
+    private void collectReverseReferences(final TypeElement classDoc) {
+        switch (classDoc.getKind()) {
+            case ANNOTATION_TYPE:
+                return;
+            case ENUM:
+                break;
+            case INTERFACE:
+                getMethods(classDoc).forEach(reverseReferences::addUsages);
+                getFields(classDoc).forEach(reverseReferences::addUsages);
+                break;
+            default:
+                getMethods(classDoc).forEach(reverseReferences::addUsages);
+                getConstructors(classDoc).forEach(reverseReferences::addUsages);
+                getFields(classDoc).forEach(reverseReferences::addUsages);
+                break;
+        }
+        reverseReferences.addSupertypes(classDoc);
+    }
+
+    /**
+     * Parses a type and adds it to its package.
+     *
+     * @return the node of the type, null for annotation types
+     *
+     * @param packageNode the package of the type
+     * @param classDoc the type
+     */
+    private Object parseType(final Package packageNode, final TypeElement classDoc) {
+        switch (classDoc.getKind()) {
+            case ANNOTATION_TYPE:
+                packageNode.getAnnotation().add(parseAnnotationTypeDoc(classDoc));
+                return null;
+            case ENUM:
+                final Enum enumNode = parseEnum(classDoc);
+                packageNode.getEnum().add(enumNode);
+                return enumNode;
+            case INTERFACE:
+                final Interface interfaceNode = parseInterface(classDoc);
+                packageNode.getInterface().add(interfaceNode);
+                return interfaceNode;
+            default:
+                final Class classNode = parseClass(classDoc);
+                packageNode.getClazz().add(classNode);
+                return classNode;
+        }
+    }
+
+    /**
+     * Adds the reverse references collected while parsing to the node of a type: the subclasses of a class, the
+     * implementors of an interface and the members using a class, interface or enum. Must be called after all
+     * types are parsed, replaces the references added before.
+     *
+     * @param typeElement the type
+     * @param typeNode the node of the type, annotation types and null are ignored
+     */
+    protected void addReverseReferences(final TypeElement typeElement, final Object typeNode) {
+        if (typeNode instanceof Class classNode) {
+            classNode.getSubclass().clear();
+            for (final TypeElement subclass : reverseReferences.getSubclasses(typeElement)) {
+                classNode.getSubclass().add(parseTypeInfo(subclass.asType()));
+            }
+            setUsedBy(classNode.getUsedBy(), typeElement);
+        } else if (typeNode instanceof Interface interfaceNode) {
+            interfaceNode.getImplementor().clear();
+            for (final TypeElement implementor : reverseReferences.getImplementors(typeElement)) {
+                interfaceNode.getImplementor().add(parseTypeInfo(implementor.asType()));
+            }
+            setUsedBy(interfaceNode.getUsedBy(), typeElement);
+        } else if (typeNode instanceof Enum enumNode) {
+            setUsedBy(enumNode.getUsedBy(), typeElement);
+        }
+    }
+
+    private void setUsedBy(final List<MemberRef> usedBy, final TypeElement typeElement) {
+        usedBy.clear();
+        for (final Element member : reverseReferences.getUsages(typeElement)) {
+            usedBy.add(parseMemberRef(member));
+        }
+    }
+
     /**
      * @return the package node for the given class element
      *
@@ -147,6 +477,8 @@ public class Parser {
         for (final DocTree tag : getTags(packageDoc)) {
             packageNode.getTag().add(parseTag(tag));
         }
+        coverage.addPackage(packageDoc, comment);
+        packageNode.getLink().addAll(parseLinks(packageDoc));
 
         return packageNode;
     }
@@ -171,7 +503,7 @@ public class Parser {
 
         annotationNode.setScope(parseScope(annotationTypeDoc));
 
-        for (final ExecutableElement annotationTypeElementDoc : getMethods(annotationTypeDoc)) {
+        for (final ExecutableElement annotationTypeElementDoc : sortByName(getMethods(annotationTypeDoc))) {
             final var annotationElement = parseAnnotationTypeElementDoc(annotationTypeElementDoc);
             annotationNode.getElement().add(annotationElement);
         }
@@ -182,9 +514,12 @@ public class Parser {
             annotationNode.getAnnotation().add(annotationInstance);
         }
 
-        for (final DocTree tag : getTags(annotationTypeDoc)) {
+        final List<? extends DocTree> tags = getTags(annotationTypeDoc);
+        for (final DocTree tag : tags) {
             annotationNode.getTag().add(parseTag(tag));
         }
+        coverage.add(annotationTypeDoc, comment, tags);
+        annotationNode.getLink().addAll(parseLinks(annotationTypeDoc));
 
         return annotationNode;
     }
@@ -245,10 +580,14 @@ public class Parser {
             enumNode.getAnnotation().add(annotationParser.parse(classDoc.getQualifiedName(), annotationDesc));
         }
 
-        for (final DocTree tag : getTags(classDoc)) {
+        final List<? extends DocTree> tags = getTags(classDoc);
+        for (final DocTree tag : tags) {
             enumNode.getTag().add(parseTag(tag));
         }
+        coverage.add(classDoc, comment, tags);
+        enumNode.getLink().addAll(parseLinks(classDoc));
 
+        reverseReferences.addSupertypes(classDoc);
         return enumNode;
     }
 
@@ -271,9 +610,12 @@ public class Parser {
             enumConstant.getAnnotation().add(annotationParser.parse(fieldDoc.getSimpleName(), annotationDesc));
         }
 
-        for (final DocTree tag : getTags(fieldDoc)) {
+        final List<? extends DocTree> tags = getTags(fieldDoc);
+        for (final DocTree tag : tags) {
             enumConstant.getTag().add(parseTag(tag));
         }
+        coverage.add(fieldDoc, comment, tags);
+        enumConstant.getLink().addAll(parseLinks(fieldDoc));
 
         return enumConstant;
     }
@@ -300,7 +642,7 @@ public class Parser {
             interfaceNode.getInterface().add(parseTypeInfo(interfaceType));
         }
 
-        for (final ExecutableElement method : getMethods(classDoc)) {
+        for (final ExecutableElement method : sortByName(getMethods(classDoc))) {
             interfaceNode.getMethod().add(parseMethod(method));
         }
 
@@ -309,14 +651,20 @@ public class Parser {
             interfaceNode.getAnnotation().add(annotationParser.parse(classDoc.getQualifiedName(), annotationDesc));
         }
 
-        for (final DocTree tag : getTags(classDoc)) {
+        final List<? extends DocTree> tags = getTags(classDoc);
+        for (final DocTree tag : tags) {
             interfaceNode.getTag().add(parseTag(tag));
         }
+        coverage.add(classDoc, comment, tags);
+        interfaceNode.getLink().addAll(parseLinks(classDoc));
 
-        for (final VariableElement field : getFields(classDoc)) {
+        for (final VariableElement field : sortByName(getFields(classDoc))) {
             interfaceNode.getField().add(parseField(field));
         }
 
+        interfaceNode.getInherited().addAll(parseInheritedMembers(classDoc));
+
+        reverseReferences.addSupertypes(classDoc);
         return interfaceNode;
     }
 
@@ -352,7 +700,7 @@ public class Parser {
             classNode.getInterface().add(parseTypeInfo(interfaceType));
         }
 
-        for (final ExecutableElement method : getMethods(classDoc)) {
+        for (final ExecutableElement method : sortByName(getMethods(classDoc))) {
             classNode.getMethod().add(parseMethod(method));
         }
 
@@ -366,14 +714,20 @@ public class Parser {
             classNode.getConstructor().add(parseConstructor(constructor));
         }
 
-        for (final VariableElement field : getFields(classDoc)) {
+        for (final VariableElement field : sortByName(getFields(classDoc))) {
             classNode.getField().add(parseField(field));
         }
 
-        for (final DocTree tag : getTags(classDoc)) {
+        classNode.getInherited().addAll(parseInheritedMembers(classDoc));
+
+        final List<? extends DocTree> tags = getTags(classDoc);
+        for (final DocTree tag : tags) {
             classNode.getTag().add(parseTag(tag));
         }
+        coverage.add(classDoc, comment, tags);
+        classNode.getLink().addAll(parseLinks(classDoc));
 
+        reverseReferences.addSupertypes(classDoc);
         return classNode;
     }
 
@@ -412,10 +766,14 @@ public class Parser {
             constructorNode.getAnnotation().add(annotationInstance);
         }
 
-        for (final DocTree tag : getTags(constructorDoc)) {
+        final List<? extends DocTree> tags = getTags(constructorDoc);
+        for (final DocTree tag : tags) {
             constructorNode.getTag().add(parseTag(tag));
         }
+        coverage.add(constructorDoc, comment, tags);
+        constructorNode.getLink().addAll(parseLinks(constructorDoc));
 
+        reverseReferences.addUsages(constructorDoc);
         return constructorNode;
     }
 
@@ -456,13 +814,76 @@ public class Parser {
             methodNode.getAnnotation().add(annotationInstance);
         }
 
-        for (final DocTree tag : getTags(methodDoc)) {
+        final List<? extends DocTree> tags = getTags(methodDoc);
+        for (final DocTree tag : tags) {
             methodNode.getTag().add(parseTag(tag));
         }
+        coverage.add(methodDoc, comment, tags);
+        methodNode.getLink().addAll(parseLinks(methodDoc));
+
+        reverseReferences.addUsages(methodDoc);
+
+        if (inheritanceResolver != null) {
+            for (final ExecutableElement overridden : inheritanceResolver.getOverridden(methodDoc)) {
+                if (overridden.getEnclosingElement().getKind().isInterface()) {
+                    methodNode.getImplements().add(parseMemberRef(overridden));
+                } else {
+                    methodNode.setOverrides(parseMemberRef(overridden));
+                }
+            }
+        }
 
         return methodNode;
     }
 
+    /**
+     * Parses the members a class or interface inherits, one node per supertype declaring some of them. Nothing is
+     * parsed unless the parser was created with inherited members.
+     *
+     * @param classDoc the class or interface
+     * @return the inherited members, in the order of the supertypes
+     */
+    protected List<InheritedMembers> parseInheritedMembers(final TypeElement classDoc) {
+        if (inheritanceResolver == null) {
+            return List.of();
+        }
+
+        final List<InheritedMembers> inheritedNodes = new ArrayList<>();
+        final Map<TypeElement, List<Element>> inheritedMembers = inheritanceResolver.getInherited(classDoc);
+        for (final Map.Entry<TypeElement, List<Element>> inherited : inheritedMembers.entrySet()) {
+            final InheritedMembers inheritedNode = objectFactory.createInheritedMembers();
+            inheritedNode.setQualified(getQualifiedName(inherited.getKey()));
+            for (final Element member : sortByName(inherited.getValue())) {
+                if (member instanceof ExecutableElement) {
+                    inheritedNode.getMethod().add(parseMemberRef(member));
+                } else {
+                    inheritedNode.getField().add(parseMemberRef(member));
+                }
+            }
+            inheritedNodes.add(inheritedNode);
+        }
+        return inheritedNodes;
+    }
+
+    /**
+     * Parses a reference to a method, constructor or field of another type.
+     *
+     * @param member the method, constructor or field
+     * @return the reference node
+     */
+    protected MemberRef parseMemberRef(final Element member) {
+        final MemberRef memberRefNode = objectFactory.createMemberRef();
+        // constructors are named like their class, as in the constructor nodes
+        memberRefNode.setName(member.getKind() == ElementKind.CONSTRUCTOR
+                ? member.getEnclosingElement().getSimpleName().toString()
+                : member.getSimpleName().toString());
+        if (member instanceof ExecutableElement method) {
+            memberRefNode.setSignature(getMethodSignature(method));
+        }
+        memberRefNode.setType(getQualifiedName(member.getEnclosingElement()));
+        return memberRefNode;
+    }
+
     protected MethodParameter parseMethodParameter(final VariableElement parameter) {
         final MethodParameter parameterMethodNode = objectFactory.createMethodParameter();
         parameterMethodNode.setName(getSimpleName(parameter));
@@ -498,10 +919,14 @@ public class Parser {
             fieldNode.getAnnotation().add(annotationParser.parse(fieldDoc.getSimpleName(), annotationDesc));
         }
 
-        for (final DocTree tag : getTags(fieldDoc)) {
+        final List<? extends DocTree> tags = getTags(fieldDoc);
+        for (final DocTree tag : tags) {
             fieldNode.getTag().add(parseTag(tag));
         }
+        coverage.add(fieldDoc, comment, tags);
+        fieldNode.getLink().addAll(parseLinks(fieldDoc));
 
+        reverseReferences.addUsages(fieldDoc);
         return fieldNode;
     }
 
@@ -568,6 +993,20 @@ public class Parser {
         return tagNode;
     }
 
+    /**
+     * Parses the {@code {@link}}, {@code {@linkplain}}, {@code @see} and {@code @throws} references in the comment
+     * of an element, resolved to their target and its anchor (see {@link LinkResolver}).
+     *
+     * @param element the commented element
+     * @return the resolved references, once per distinct reference
+     */
+    protected List<LinkInfo> parseLinks(final Element element) {
+        if (linkResolver == null) {
+            linkResolver = new LinkResolver(docTrees, objectFactory, getClasses(env));
+        }
+        return linkResolver.resolve(element);
+    }
+
     /**
      * @return string representation of the element scope
      *
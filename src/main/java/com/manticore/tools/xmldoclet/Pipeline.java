@@ -0,0 +1,242 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs consumers of the items of a producer as stages on their own threads, while the producer still produces them,
+ * so parsing the packages and writing the outputs overlap (see the {@code -pipeline} option). Each stage receives the
+ * items in the order they are published, through a bounded queue: a producer running ahead of a slow stage waits for
+ * it, so at most {@code capacity} items per stage are in flight.
+ *
+ * <p>
+ * A stage that finishes without consuming all items, for instance because it failed, doesn't block the producer:
+ * the items published to it afterwards are dropped.
+ * </p>
+ *
+ * @param <T> the type of the items
+ */
+final class Pipeline<T> {
+    private static final Object END = new Object();
+    private static final Object CANCEL = new Object();
+
+    private final int capacity;
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * @param capacity the number of items each stage's queue holds
+     */
+    Pipeline(final int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Starts a stage consuming the items published from now on.
+     *
+     * @param name the name of the stage's thread
+     * @param consumer the consumer of the stage, which can iterate the items only once
+     */
+    void addStage(final String name, final StageConsumer<T> consumer) {
+        final var stage = new Stage(consumer);
+        final var thread = new Thread(stage, name);
+        thread.setDaemon(true);
+        stage.thread = thread;
+        stages.add(stage);
+        thread.start();
+    }
+
+    /**
+     * Passes an item to all stages, waiting while the queue of a stage is full.
+     *
+     * @param item the item
+     */
+    void publish(final T item) {
+        for (final Stage stage : stages) {
+            stage.put(item);
+        }
+    }
+
+    /**
+     * Ends the items of all stages and waits for the stages to finish.
+     *
+     * @param completed whether all items were published; if not, the stages fail with a {@link CancellationException}
+     *        when they reach the end of the published items
+     * @throws RuntimeException the first exception a stage threw
+     */
+    void close(final boolean completed) {
+        for (final Stage stage : stages) {
+            stage.put(completed ? END : CANCEL);
+        }
+
+        Throwable failure = null;
+        for (final Stage stage : stages) {
+            try {
+                stage.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + stage.thread.getName(), e);
+            }
+            if (failure == null) {
+                failure = stage.failure;
+            }
+        }
+
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (failure instanceof Error error) {
+            throw error;
+        } else if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    /**
+     * The consumer of a stage.
+     */
+    @FunctionalInterface
+    interface StageConsumer<T> {
+        void consume(Iterable<T> items) throws Exception;
+    }
+
+    private final class Stage implements Runnable {
+        private final StageConsumer<T> consumer;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(capacity);
+        private Thread thread;
+        private volatile boolean finished;
+        private Throwable failure;
+
+        private Stage(final StageConsumer<T> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void run() {
+            try {
+                consumer.consume(this::iterator);
+            } catch (Exception | Error e) {
+                failure = e;
+            } finally {
+                finished = true;
+                queue.clear();
+            }
+        }
+
+        private void put(final Object item) {
+            try {
+                // a finished stage doesn't take items anymore, so the queue is checked again after a while
+                while (!finished && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    // wait for the stage
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while publishing to " + thread.getName(), e);
+            }
+        }
+
+        private Iterator<T> iterator() {
+            return new Iterator<>() {
+                private Object next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null) {
+                        try {
+                            next = queue.take();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new CancellationException("Interrupted while waiting for the next item");
+                        }
+                    }
+                    if (next == CANCEL) {
+                        throw new CancellationException("The producer failed");
+                    }
+                    return next != END;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final var item = (T) next;
+                    next = null;
+                    return item;
+                }
+            };
+        }
+    }
+
+    /**
+     * {@return a root whose packages are streamed from a stage} The packages can be iterated only once, and neither
+     * accessed by index nor counted, so the root is only passed to the writers of the outputs and never to result
+     * sinks or {@link XmlDoclet#getRoot()}.
+     *
+     * @param outline the packages with the names of their types, see {@link Parser#parseOutline()}
+     * @param items the items of a stage
+     * @param toPackage the function returning the package of an item
+     * @param <T> the type of the items
+     */
+    static <T> Root stream(final Root outline, final Iterable<T> items, final Function<T, Package> toPackage) {
+        return new StreamedRoot(outline, items, toPackage);
+    }
+
+    /**
+     * {@return the outline of a root, with at least the names of its packages and types} It is the root itself unless
+     * its packages are streamed.
+     *
+     * @param root the document root
+     */
+    static Root getOutline(final Root root) {
+        return root instanceof StreamedRoot streamedRoot ? streamedRoot.outline : root;
+    }
+
+    /**
+     * A root whose packages are streamed from a stage, see {@link #stream(Root, Iterable, Function)}.
+     */
+    private static final class StreamedRoot extends Root {
+        private final Root outline;
+
+        private <T> StreamedRoot(final Root outline, final Iterable<T> items, final Function<T, Package> toPackage) {
+            this.outline = outline;
+            this._package = new AbstractList<>() {
+                @Override
+                public Iterator<Package> iterator() {
+                    final Iterator<T> iterator = items.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Package next() {
+                            return toPackage.apply(iterator.next());
+                        }
+                    };
+                }
+
+                @Override
+                public Package get(final int index) {
+                    throw new UnsupportedOperationException("The streamed packages can only be iterated");
+                }
+
+                @Override
+                public int size() {
+                    throw new UnsupportedOperationException("The streamed packages can only be iterated");
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.manticore.tools.xmldoclet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An {@link OutputStream} that hands filled buffers over to a separate thread, which writes them into the
+ * downstream stream. Used to overlap the marshalling of the XML with its compression.
+ *
+ * <p>
+ * A fixed number of buffers is recycled between the writing thread and the pipeline thread, so the memory is bounded
+ * and a slow downstream stream applies backpressure to the writer. Failures of the pipeline thread are rethrown to
+ * the writer on its next hand-over or when closing.
+ * </p>
+ */
+final class PipelinedOutputStream extends OutputStream {
+    private static final int BUFFER_COUNT = 4;
+
+    /**
+     * Signals the pipeline thread that no more chunks will follow.
+     */
+    private static final Chunk END = new Chunk(new byte[0]);
+
+    private final OutputStream downstream;
+    private final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final Thread pipeline;
+
+    private Chunk current;
+    private volatile Throwable failure;
+    private boolean closed;
+
+    /**
+     * @param downstream the stream written (and closed) by the pipeline thread
+     * @param bufferSize the size of each buffer handed over to the pipeline thread
+     */
+    PipelinedOutputStream(final OutputStream downstream, final int bufferSize) {
+        this.downstream = downstream;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            free.add(new Chunk(new byte[bufferSize]));
+        }
+
+        this.pipeline = new Thread(this::drain, "xml-doclet-output-pipeline");
+        this.pipeline.setDaemon(true);
+        this.pipeline.start();
+        this.current = takeFreeChunk();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        ensureOpen();
+        if (current.length == current.data.length) {
+            handOver();
+        }
+        current.data[current.length++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        ensureOpen();
+        int position = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (current.length == current.data.length) {
+                handOver();
+            }
+
+            final int count = Math.min(remaining, current.data.length - current.length);
+            System.arraycopy(bytes, position, current.data, current.length, count);
+            current.length += count;
+            position += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Hands the partially filled buffer over to the pipeline thread.
+     * The downstream stream is not flushed, since the pipeline thread owns it.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (current.length > 0) {
+            handOver();
+        }
+    }
+
+    /**
+     * Hands over the remaining data and waits for the pipeline thread to write it and to close the downstream stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            if (current.length > 0) {
+                filled.put(current);
+            }
+            filled.put(END);
+            pipeline.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the output pipeline");
+        }
+
+        rethrowFailure();
+    }
+
+    private void handOver() throws IOException {
+        rethrowFailure();
+        try {
+            filled.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing to the output pipeline");
+        }
+        current.length = 0;
+    }
+
+    /**
+     * Runs in the pipeline thread: writes all filled buffers into the downstream stream and recycles them.
+     * After a failure it keeps recycling the buffers without writing, so the writer never blocks forever.
+     */
+    private void drain() {
+        try {
+            for (Chunk chunk = filled.take(); chunk != END; chunk = filled.take()) {
+                if (failure == null) {
+                    try {
+                        downstream.write(chunk.data, 0, chunk.length);
+                    } catch (IOException | RuntimeException e) {
+                        failure = e;
+                    }
+                }
+                free.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            failure = e;
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                downstream.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private Chunk takeFreeChunk() {
+        final Chunk chunk = free.poll();
+        if (chunk == null) {
+            throw new IllegalStateException("No free buffer available");
+        }
+        return chunk;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        final Throwable throwable = failure;
+        if (throwable instanceof IOException) {
+            throw new IOException("Failed to write the output", throwable);
+        } else if (throwable != null) {
+            throw new IOException("Output pipeline failed", throwable);
+        }
+    }
+
+    /**
+     * A buffer and the number of valid bytes in it.
+     */
+    private static final class Chunk {
+        private final byte[] data;
+        private int length;
+
+        private Chunk(final byte[] data) {
+            this.data = data;
+        }
+    }
+}
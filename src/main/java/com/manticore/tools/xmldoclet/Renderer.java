@@ -0,0 +1,294 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TagInfo;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the object model of the doclet directly into a text format, without writing and re-parsing the XML and
+ * without a stylesheet. It is the native alternative to the XSLT transformation of the XML file
+ * (see {@link XmlDoclet#transform}), which is still used with {@code -renderer xslt}.
+ *
+ * <p>
+ * The packages are rendered in parallel into pooled {@link StringBuilder}s and written in their document order.
+ * At most two packages per thread are rendered ahead of the one being written, so the memory stays bounded by a few
+ * packages and the pooled builders are reused instead of growing a new one for each package.
+ * </p>
+ *
+ * <p>
+ * The renderers take the same parameters as the stylesheets: the given doclet options without their hyphen.
+ * </p>
+ */
+abstract class Renderer {
+    private static final int BUILDER_CAPACITY = 16 * 1024;
+    private static final Pattern PACKAGE_QUALIFIER_PATTERN = Pattern.compile("\\b[a-z_$][\\w$]*\\.");
+
+    protected final Map<String, String> parameters;
+    private final int parallelism;
+
+    /**
+     * The qualified names of the documented enums, classes and interfaces, which have a section to link to.
+     * Collected by {@link #collectDocumentedTypes(Root)}.
+     */
+    protected final Set<String> documentedTypes = new HashSet<>();
+
+    /**
+     * The packages rendered before, by package, or null if they are always rendered.
+     */
+    private Map<Package, Object> packageCache;
+
+    /**
+     * @param parameters the given doclet options, see {@link SupportedOptions#getGivenOptions()}
+     * @param parallelism the number of threads rendering packages
+     */
+    protected Renderer(final Map<String, String> parameters, final int parallelism) {
+        this.parameters = parameters;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Keeps the rendered packages in a cache shared by the renderers of the same output, so a package is only rendered
+     * again if it was replaced (see {@link IncrementalModel}). The cache must be cleared when the documented types
+     * change.
+     *
+     * @param packageCache the cache, keyed by the identity of the packages
+     */
+    void setPackageCache(final Map<Package, Object> packageCache) {
+        this.packageCache = packageCache;
+    }
+
+    /**
+     * {@return the cached result of rendering a package, rendering it if it isn't cached}
+     *
+     * @param packageNode the package
+     * @param task the task rendering the package, whose result is immutable
+     */
+    @SuppressWarnings("unchecked")
+    protected <R> R getCached(final Package packageNode, final Task<Package, R> task) {
+        if (packageCache == null) {
+            return task.run(packageNode);
+        }
+        final Object cached = packageCache.get(packageNode);
+        if (cached != null) {
+            return (R) cached;
+        }
+        final R rendered = task.run(packageNode);
+        packageCache.put(packageNode, rendered);
+        return rendered;
+    }
+
+    /**
+     * Renders the complete document.
+     *
+     * @param root the document root
+     * @param writer the writer receiving the document, which is left open
+     */
+    void render(final Root root, final Writer writer) throws IOException {
+        final var header = new StringBuilder();
+        renderHeader(Pipeline.getOutline(root), header);
+        writer.append(header);
+
+        final BlockingQueue<StringBuilder> builders = new ArrayBlockingQueue<>(getWindow());
+        forEachInOrder(root.getPackage(), packageNode -> {
+            final StringBuilder builder = builders.poll();
+            final StringBuilder output = builder == null ? new StringBuilder(BUILDER_CAPACITY) : builder;
+            if (packageCache == null) {
+                renderPackage(packageNode, output);
+            } else {
+                output.append(this.<String>getCached(packageNode, cachedPackage -> {
+                    final var cachedOutput = new StringBuilder(BUILDER_CAPACITY);
+                    renderPackage(cachedPackage, cachedOutput);
+                    return cachedOutput.toString();
+                }));
+            }
+            return output;
+        }, output -> {
+            writer.append(output);
+            output.setLength(0);
+            builders.offer(output);
+        });
+
+        final var footer = new StringBuilder();
+        renderFooter(footer);
+        writer.append(footer);
+    }
+
+    /**
+     * Renders what precedes the packages, such as the title.
+     *
+     * @param root the document root, or only its outline if the packages are streamed (see
+     *        {@link Pipeline#getOutline(Root)})
+     * @param output the builder to append to
+     */
+    protected abstract void renderHeader(Root root, StringBuilder output);
+
+    /**
+     * Renders what follows the packages, nothing by default.
+     *
+     * @param output the builder to append to
+     */
+    protected void renderFooter(final StringBuilder output) {
+        // nothing by default
+    }
+
+    /**
+     * Renders a package with its types. Called concurrently for different packages.
+     *
+     * @param packageNode the package
+     * @param output the builder to append to
+     */
+    protected abstract void renderPackage(Package packageNode, StringBuilder output);
+
+    /**
+     * Runs a task for each item on the rendering threads and passes the results to a consumer on the calling
+     * thread, in the order of the items.
+     *
+     * @param items the items, which are iterated once
+     * @param task the task run for each item
+     * @param consumer the consumer of the results
+     */
+    protected <T, R> void forEachInOrder(final Iterable<T> items, final Task<T, R> task, final Consumer<R> consumer)
+            throws IOException {
+        if (parallelism == 1) {
+            for (final T item : items) {
+                consumer.accept(task.run(item));
+            }
+            return;
+        }
+
+        // the threads are only started for the items submitted, so a small document doesn't start all of them
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            final var thread = new Thread(runnable, "xml-doclet-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final ArrayDeque<Future<R>> pending = new ArrayDeque<>();
+            for (final T item : items) {
+                if (pending.size() == getWindow()) {
+                    consumer.accept(await(pending.poll()));
+                }
+                pending.add(executor.submit(() -> task.run(item)));
+            }
+            while (!pending.isEmpty()) {
+                consumer.accept(await(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Collects the {@link #documentedTypes} before the packages are rendered.
+     *
+     * @param root the document root or its outline
+     */
+    protected void collectDocumentedTypes(final Root root) {
+        for (final Package packageNode : root.getPackage()) {
+            packageNode.getEnum().forEach(enumNode -> documentedTypes.add(enumNode.getQualified()));
+            packageNode.getClazz().forEach(classNode -> documentedTypes.add(classNode.getQualified()));
+            packageNode.getInterface().forEach(interfaceNode -> documentedTypes.add(interfaceNode.getQualified()));
+        }
+    }
+
+    /**
+     * {@return the description of a block tag, or null if the element has no such tag}
+     *
+     * @param tags the block tags of the element
+     * @param name the name of the tag, without {@code @}
+     * @param parameter the parameter the tag must describe, or null for any
+     */
+    protected static String getTagText(final List<TagInfo> tags, final String name, final String parameter) {
+        final String prefix = "@" + name + " " + (parameter == null ? "" : parameter + " ");
+        for (final TagInfo tag : tags) {
+            if (name.equals(tag.getName()) && tag.getText() != null && tag.getText().startsWith(prefix)) {
+                final String text = tag.getText().substring(prefix.length()).strip();
+                return text.isEmpty() ? null : text;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@return the name of a type without the packages of its qualified name, with its dimension}
+     */
+    protected static String getSimpleTypeName(final TypeInfo type) {
+        return PACKAGE_QUALIFIER_PATTERN.matcher(type.getQualified()).replaceAll("")
+                + (type.getDimension() == null ? "" : type.getDimension());
+    }
+
+    /**
+     * {@return whether a constructor or method is rendered} These are the public ones, and the methods of interfaces
+     * without a scope, which are implicitly public.
+     *
+     * @param scope the scope of the constructor or method
+     */
+    protected static boolean isRendered(final String scope) {
+        return "public".equals(scope) || scope == null || scope.isEmpty();
+    }
+
+    protected String getParameter(final String name, final String defaultValue) {
+        return parameters.getOrDefault(name, defaultValue);
+    }
+
+    protected boolean isEnabled(final String name) {
+        return SupportedOptions.NO_ARG_VALUE.equals(parameters.get(name));
+    }
+
+    private int getWindow() {
+        return 2 * parallelism;
+    }
+
+    private static <R> R await(final Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while rendering");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A task run on a rendering thread.
+     */
+    @FunctionalInterface
+    protected interface Task<T, R> {
+        R run(T item);
+    }
+
+    /**
+     * Receives the results of the tasks on the calling thread.
+     */
+    @FunctionalInterface
+    protected interface Consumer<R> {
+        void accept(R result) throws IOException;
+    }
+}
@@ -0,0 +1,159 @@
+package com.manticore.tools.xmldoclet;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.manticore.tools.xmldoclet.TypeUtils.*;
+
+/**
+ * The reverse references between types, collected by the {@link Parser} while it parses the types and their members:
+ * the direct subclasses of each class, the types directly implementing or extending each interface, and the methods,
+ * constructors and fields using each type in their signature.
+ *
+ * <p>
+ * Each reference is added to a hash map once, when the referencing element is parsed, so the indexes are built in
+ * linear time instead of each consumer searching the whole document for the types referring to a type.
+ * </p>
+ */
+final class ReverseReferences {
+    private static final Comparator<Element> BY_TYPE_AND_NAME = Comparator
+            .comparing((Element element) -> getQualifiedName(getType(element)))
+            .thenComparing(element -> element.getSimpleName().toString());
+
+    private final Map<TypeElement, Set<TypeElement>> subclasses = new HashMap<>();
+    private final Map<TypeElement, Set<TypeElement>> implementors = new HashMap<>();
+    private final Map<TypeElement, Set<Element>> usages = new HashMap<>();
+
+    /**
+     * Adds a class, interface or enum as subclass of its superclass and as implementor of its interfaces.
+     *
+     * @param type the type to add
+     */
+    void addSupertypes(final TypeElement type) {
+        final TypeElement superclass = asTypeElement(type.getSuperclass());
+        if (superclass != null) {
+            subclasses.computeIfAbsent(superclass, key -> new LinkedHashSet<>()).add(type);
+        }
+
+        for (final TypeMirror interfaceType : type.getInterfaces()) {
+            final TypeElement interfaceElement = asTypeElement(interfaceType);
+            if (interfaceElement != null) {
+                implementors.computeIfAbsent(interfaceElement, key -> new LinkedHashSet<>()).add(type);
+            }
+        }
+    }
+
+    /**
+     * Adds a method or constructor as usage of its return and parameter types.
+     *
+     * @param executable the method or constructor to add
+     */
+    void addUsages(final ExecutableElement executable) {
+        addUsage(executable, executable.getReturnType());
+        for (final VariableElement parameter : executable.getParameters()) {
+            addUsage(executable, parameter.asType());
+        }
+    }
+
+    /**
+     * Adds a field as usage of its type.
+     *
+     * @param field the field to add
+     */
+    void addUsages(final VariableElement field) {
+        addUsage(field, field.asType());
+    }
+
+    /**
+     * {@return the types referenced by the collected types, which have reverse references}
+     */
+    Set<TypeElement> getReferencedTypes() {
+        final Set<TypeElement> types = new LinkedHashSet<>(subclasses.keySet());
+        types.addAll(implementors.keySet());
+        types.addAll(usages.keySet());
+        return types;
+    }
+
+    /**
+     * {@return the direct subclasses of a class, sorted by their qualified name}
+     *
+     * @param type the class
+     */
+    List<TypeElement> getSubclasses(final TypeElement type) {
+        return sorted(subclasses.get(type), Comparator.comparing(TypeUtils::getQualifiedName));
+    }
+
+    /**
+     * {@return the classes and enums directly implementing an interface and the interfaces directly extending it,
+     * sorted by their qualified name}
+     *
+     * @param type the interface
+     */
+    List<TypeElement> getImplementors(final TypeElement type) {
+        return sorted(implementors.get(type), Comparator.comparing(TypeUtils::getQualifiedName));
+    }
+
+    /**
+     * {@return the methods, constructors and fields using a type as parameter, return or field type, also as type
+     * argument or array component, sorted by their declaring type and name}
+     *
+     * @param type the type
+     */
+    List<Element> getUsages(final TypeElement type) {
+        return sorted(usages.get(type), BY_TYPE_AND_NAME);
+    }
+
+    /**
+     * Adds a usage of a type and of the types inside of it, such as type arguments, wildcard bounds and array
+     * components. Type variables are not followed.
+     */
+    private void addUsage(final Element member, final TypeMirror typeMirror) {
+        if (typeMirror instanceof ArrayType arrayType) {
+            addUsage(member, arrayType.getComponentType());
+        } else if (typeMirror instanceof WildcardType wildcardType) {
+            if (wildcardType.getExtendsBound() != null) {
+                addUsage(member, wildcardType.getExtendsBound());
+            }
+            if (wildcardType.getSuperBound() != null) {
+                addUsage(member, wildcardType.getSuperBound());
+            }
+        } else if (typeMirror instanceof DeclaredType declaredType) {
+            final var typeElement = (TypeElement) declaredType.asElement();
+            usages.computeIfAbsent(typeElement, key -> new LinkedHashSet<>()).add(member);
+            for (final TypeMirror typeArgument : declaredType.getTypeArguments()) {
+                addUsage(member, typeArgument);
+            }
+        }
+    }
+
+    private static TypeElement asTypeElement(final TypeMirror typeMirror) {
+        return typeMirror instanceof DeclaredType declaredType ? (TypeElement) declaredType.asElement() : null;
+    }
+
+    private static TypeElement getType(final Element member) {
+        return (TypeElement) member.getEnclosingElement();
+    }
+
+    private static <T> List<T> sorted(final Set<T> elements, final Comparator<? super T> comparator) {
+        if (elements == null) {
+            return List.of();
+        }
+
+        final List<T> sortedElements = new ArrayList<>(elements);
+        sortedElements.sort(comparator);
+        return sortedElements;
+    }
+}
@@ -0,0 +1,458 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.AnnotationInstance;
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Constructor;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.EnumConstant;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.MethodParameter;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders the Restructured Text of {@code restructured.xsl} natively, see {@link Renderer}. The output is the same as
+ * the one of the stylesheet, including the documents of the {@code -splitRst} option, except that only public
+ * constructors and methods are rendered: the stylesheet lets the built-in template rules copy the raw comments of the
+ * other members into the document.
+ */
+final class RstRenderer extends Renderer {
+    private static final String TITLE_RULE = "#".repeat(71);
+    private static final String PACKAGE_RULE = "*".repeat(71);
+    private static final String TYPE_RULE = "=".repeat(71);
+
+    /**
+     * The replacements of {@code my:replaceTags}, in the order of the stylesheet.
+     */
+    private static final Pattern[] TAG_PATTERNS = {
+            Pattern.compile("<pre>\\s*([\\s\\S]*?)\\s*</pre>", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\{@code [\\s|\\n]*([^}]*[^\\s])[\\s|\\n]*}", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("<code>\\s*([\\s\\S]*?)\\s*</code>", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("\\n\\s*"),
+            Pattern.compile("<p>\\s*([\\s\\S]*?)\\s*</p>", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("<blockquote>\\s*([\\s\\S]*?)\\s*</blockquote>", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("<p>\\s*", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("<br>\\s*", Pattern.CASE_INSENSITIVE),
+            Pattern.compile("<\\s*([\\s\\S]*?)\\s*/?>")
+    };
+    private static final String[] TAG_REPLACEMENTS = {
+            "`$1`", "`$1`", "``$1``", " ", "\n| $1", "\n| $1 \n|", "\n| ", "\n| ", "``$1``"
+    };
+
+    /**
+     * The {@code {@link}} and {@code {@linkplain}} tags of {@code my:replaceLinks}.
+     */
+    private static final Pattern LINK_PATTERN =
+            Pattern.compile("\\{@link(plain)?\\s+([^\\s}(]+(\\([^)]*\\))?)\\s*([^}]*[^\\s}])?\\s*}");
+
+    RstRenderer(final Map<String, String> parameters, final int parallelism) {
+        super(parameters, parallelism);
+    }
+
+    /**
+     * Renders the index document of the {@code -splitRst} option and the documents of the packages and types.
+     *
+     * @param root the document root
+     * @param index the builder receiving the index document
+     * @return the content of each document by its path relative to the index document, in the order of the
+     *         toctrees
+     */
+    Map<String, String> renderSplit(final Root root, final StringBuilder index) throws IOException {
+        renderHeader(Pipeline.getOutline(root), index);
+
+        final Map<String, String> documents = new LinkedHashMap<>();
+        forEachInOrder(root.getPackage(), packageNode -> getCached(packageNode, this::renderDocuments),
+                documents::putAll);
+        return documents;
+    }
+
+    @Override
+    protected void renderHeader(final Root root, final StringBuilder output) {
+        renderFloatingToc("", output);
+
+        output.append('\n').append(TITLE_RULE).append('\n')
+                .append(getParameter("doctitle", "Java API"))
+                .append('\n').append(TITLE_RULE).append("\n\n");
+
+        final String basePackage = getParameter("basePackage", "");
+        if (!basePackage.isEmpty()) {
+            output.append("Base Package: ").append(basePackage).append("\n\n");
+        }
+
+        if (isEnabled("splitRst")) {
+            output.append("\n.. toctree::\n    :maxdepth: 2\n\n");
+            final String directory = getSplitDirectory();
+            for (final Package packageNode : root.getPackage()) {
+                output.append("    ").append(directory).append('/').append(packageNode.getName()).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Renders the floating TOC, if enabled.
+     *
+     * @param indexPrefix the path from the document to the directory of the search index, which is next to the index
+     *        document
+     * @param output the builder receiving the TOC
+     */
+    private void renderFloatingToc(final String indexPrefix, final StringBuilder output) {
+        if (isEnabled("withFloatingToc")) {
+            output.append("\n.. raw:: html\n\n    <div id=\"floating-toc\"");
+            final String searchIndex = getParameter("searchIndex", "");
+            if (!searchIndex.isEmpty()) {
+                output.append(" data-index=\"").append(indexPrefix).append(searchIndex).append('"');
+            }
+            if (isEnabled("withVirtualToc")) {
+                output.append(" data-virtual=\"true\"");
+            }
+            output.append(">\n"
+                    + "        <div class=\"search-container\">\n"
+                    + "            <input type=\"button\" id=\"toc-hide-show-btn\"></input>\n"
+                    + "            <input type=\"text\" id=\"toc-search\" placeholder=\"Search\" />\n"
+                    + "        </div>\n"
+                    + "        <ul id=\"toc-list\"></ul>\n"
+                    + "    </div>\n\n\n");
+        }
+    }
+
+    @Override
+    protected void renderPackage(final Package packageNode, final StringBuilder output) {
+        renderPackageHeading(packageNode, output);
+        for (final Object type : getTypes(packageNode)) {
+            renderType(type, output);
+        }
+    }
+
+    /**
+     * {@return the document of a package and, if it has more constructors and methods than the
+     * {@code -splitThreshold}, the documents of its types}
+     */
+    private Map<String, String> renderDocuments(final Package packageNode) {
+        final String directory = getSplitDirectory();
+        final Map<String, String> documents = new LinkedHashMap<>();
+        final var output = new StringBuilder();
+        // the documents are in the split directory, one level below the search index
+        renderFloatingToc("../", output);
+        renderPackageHeading(packageNode, output);
+
+        final List<Object> types = getTypes(packageNode);
+        if (countExecutables(packageNode) > getSplitThreshold()) {
+            output.append("\n.. toctree::\n    :maxdepth: 1\n\n");
+            for (final Object type : types) {
+                output.append("    ").append(getQualified(type)).append('\n');
+            }
+            documents.put(directory + "/" + packageNode.getName() + ".rst", output.toString());
+
+            for (final Object type : types) {
+                final var typeOutput = new StringBuilder();
+                renderFloatingToc("../", typeOutput);
+                renderType(type, typeOutput);
+                documents.put(directory + "/" + getQualified(type) + ".rst", typeOutput.toString());
+            }
+        } else {
+            for (final Object type : types) {
+                renderType(type, output);
+            }
+            documents.put(directory + "/" + packageNode.getName() + ".rst", output.toString());
+        }
+        return documents;
+    }
+
+    private void renderPackageHeading(final Package packageNode, final StringBuilder output) {
+        final String name = packageNode.getName();
+        final String basePackage = getParameter("basePackage", "");
+        final String displayName = basePackage.isEmpty() ? name
+                : name.length() <= basePackage.length() ? "Base"
+                : name.substring(basePackage.length() + 1);
+
+        output.append("\n..  _").append(name).append(":\n")
+                .append(PACKAGE_RULE).append('\n')
+                .append(displayName).append('\n')
+                .append(PACKAGE_RULE).append('\n');
+    }
+
+    /**
+     * {@return the enums, classes and interfaces of a package, in the order they are rendered}
+     */
+    private static List<Object> getTypes(final Package packageNode) {
+        final List<Object> types = new ArrayList<>(
+                packageNode.getEnum().size() + packageNode.getClazz().size() + packageNode.getInterface().size());
+        types.addAll(packageNode.getEnum());
+        types.addAll(packageNode.getClazz());
+        types.addAll(packageNode.getInterface());
+        return types;
+    }
+
+    /**
+     * {@return the number of constructors and methods of a package, which is compared to the
+     * {@code -splitThreshold}}
+     */
+    static int countExecutables(final Package packageNode) {
+        int count = 0;
+        for (final Class classNode : packageNode.getClazz()) {
+            count += classNode.getConstructor().size() + classNode.getMethod().size();
+        }
+        for (final Interface interfaceNode : packageNode.getInterface()) {
+            count += interfaceNode.getMethod().size();
+        }
+        return count;
+    }
+
+    private static String getQualified(final Object type) {
+        if (type instanceof Enum enumNode) {
+            return enumNode.getQualified();
+        } else if (type instanceof Class classNode) {
+            return classNode.getQualified();
+        }
+        return ((Interface) type).getQualified();
+    }
+
+    private static void renderType(final Object type, final StringBuilder output) {
+        if (type instanceof Enum enumNode) {
+            renderEnum(enumNode, output);
+        } else if (type instanceof Class classNode) {
+            renderClass(classNode, output);
+        } else {
+            renderInterface((Interface) type, output);
+        }
+    }
+
+    private static void renderInterface(final Interface interfaceNode, final StringBuilder output) {
+        output.append("\n..  _").append(interfaceNode.getQualified()).append(":\n")
+                .append(TYPE_RULE).append('\n')
+                .append(interfaceNode.getName()).append('\n')
+                .append(TYPE_RULE).append("\n\n");
+
+        renderTypeList("*implements:* ", interfaceNode.getInterface(), output);
+        renderTypeList("*provides:* ", interfaceNode.getImplementor(), output);
+        output.append("\n\n");
+
+        renderTypeComment(interfaceNode.getComment(), interfaceNode.getLink(), output);
+        for (final Method methodNode : interfaceNode.getMethod()) {
+            renderMethod(methodNode, output);
+        }
+    }
+
+    private static void renderClass(final Class classNode, final StringBuilder output) {
+        renderTypeHeading(classNode.getQualified(), classNode.getName(), output);
+
+        if (classNode.getClazz() != null) {
+            output.append("*extends:* ").append(className(classNode.getClazz().getQualified())).append(' ');
+        }
+        renderTypeList("*implements:* ", classNode.getInterface(), output);
+        renderTypeList("*provides:* ", classNode.getSubclass(), output);
+        output.append("\n\n");
+
+        renderTypeComment(classNode.getComment(), classNode.getLink(), output);
+        for (final Constructor constructorNode : classNode.getConstructor()) {
+            renderConstructor(constructorNode, output);
+        }
+        for (final Method methodNode : classNode.getMethod()) {
+            renderMethod(methodNode, output);
+        }
+    }
+
+    private static void renderEnum(final Enum enumNode, final StringBuilder output) {
+        renderTypeHeading(enumNode.getQualified(), enumNode.getName(), output);
+
+        output.append('[');
+        final List<EnumConstant> constants = enumNode.getConstant();
+        for (int i = 0; i < constants.size(); i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(constants.get(i).getName());
+        }
+        output.append("]\n\n");
+
+        renderTypeComment(enumNode.getComment(), enumNode.getLink(), output);
+    }
+
+    /**
+     * Renders the heading of classes and enums, which have an empty line after their label.
+     */
+    private static void renderTypeHeading(final String qualified, final String name, final StringBuilder output) {
+        output.append("\n..  _").append(qualified).append(":\n\n")
+                .append(TYPE_RULE).append('\n')
+                .append(name).append('\n')
+                .append(TYPE_RULE).append("\n\n");
+    }
+
+    private static void renderTypeList(final String label, final List<TypeInfo> types, final StringBuilder output) {
+        if (types.isEmpty()) {
+            return;
+        }
+
+        output.append(label);
+        for (int i = 0; i < types.size(); i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(className(types.get(i).getQualified()));
+        }
+        output.append(' ');
+    }
+
+    private static void renderTypeComment(final String comment, final List<LinkInfo> links, final StringBuilder output) {
+        if (comment != null) {
+            output.append(replaceTags(comment, links)).append("\n\n");
+        }
+    }
+
+    private static void renderConstructor(final Constructor constructorNode, final StringBuilder output) {
+        if (!"public".equals(constructorNode.getScope())) {
+            return;
+        }
+
+        output.append("| **").append(constructorNode.getName()).append("** (");
+        renderParameterNames(constructorNode.getParameter(), output);
+        output.append(")\n");
+
+        if (constructorNode.getComment() != null) {
+            output.append(replaceTags(constructorNode.getComment(), constructorNode.getLink())).append('\n');
+        }
+        renderParameters(constructorNode.getParameter(), output);
+        output.append("\n\n");
+    }
+
+    private static void renderMethod(final Method methodNode, final StringBuilder output) {
+        if (!"public".equals(methodNode.getScope())) {
+            return;
+        }
+
+        final List<AnnotationInstance> annotations = methodNode.getAnnotation();
+        if (!annotations.isEmpty()) {
+            for (int i = 0; i < annotations.size(); i++) {
+                if (i > 0) {
+                    output.append(',');
+                }
+                output.append("| *@").append(annotations.get(i).getName()).append('*');
+            }
+            output.append('\n');
+        }
+
+        output.append("| **").append(methodNode.getName()).append("** (");
+        renderParameterNames(methodNode.getParameter(), output);
+        output.append(')');
+
+        final TypeInfo returnNode = methodNode.getReturn();
+        final boolean returnsValue = returnNode != null && !"void".equals(returnNode.getQualified());
+        if (returnsValue) {
+            output.append(" \u2192 ").append(className(returnNode.getQualified()));
+        }
+        output.append('\n');
+
+        if (methodNode.getComment() != null) {
+            output.append(replaceTags(methodNode.getComment(), methodNode.getLink())).append('\n');
+        }
+        renderParameters(methodNode.getParameter(), output);
+        if (returnsValue) {
+            output.append("|          returns ").append(className(returnNode.getQualified())).append("\n\n");
+        }
+        output.append("\n\n");
+    }
+
+    private static void renderParameterNames(final List<MethodParameter> parameters, final StringBuilder output) {
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                output.append(", ");
+            }
+            output.append(parameters.get(i).getName());
+        }
+    }
+
+    private static void renderParameters(final List<MethodParameter> parameters, final StringBuilder output) {
+        for (final MethodParameter parameter : parameters) {
+            output.append("|          ").append(className(parameter.getType().getQualified()))
+                    .append(' ').append(parameter.getName()).append('\n');
+        }
+    }
+
+    /**
+     * {@return a reference to the section of a qualified type, or the name of a primitive type}
+     * Like {@code my:className}.
+     */
+    static String className(final String qualified) {
+        final int index = qualified.lastIndexOf('.');
+        return index < 0 ? qualified : ":ref:`" + qualified.substring(index + 1) + "<" + qualified + ">`";
+    }
+
+    /**
+     * {@return a comment as a line block, with the HTML tags turned into literals and the resolved links into
+     * references} Like {@code my:replaceTags}.
+     *
+     * @param comment the comment
+     * @param links the resolved references of the commented element
+     */
+    static String replaceTags(final String comment, final List<LinkInfo> links) {
+        String text = comment;
+        for (int i = 0; i < TAG_PATTERNS.length; i++) {
+            text = TAG_PATTERNS[i].matcher(text).replaceAll(TAG_REPLACEMENTS[i]);
+        }
+        return "| " + replaceLinks(text, links);
+    }
+
+    /**
+     * {@return the text with the {@code {@link}} tags turned into references to the sections of their resolved
+     * targets, or into interpreted text} Like {@code my:replaceLinks}.
+     */
+    private static String replaceLinks(final String text, final List<LinkInfo> links) {
+        final Matcher matcher = LINK_PATTERN.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+
+        final var output = new StringBuilder(text.length() + 64);
+        int start = 0;
+        do {
+            output.append(text, start, matcher.start());
+
+            final String reference = matcher.group(2);
+            final String label = matcher.group(4) != null ? matcher.group(4) : reference;
+            final LinkInfo link = links.stream()
+                    .filter(candidate -> reference.equals(candidate.getReference()))
+                    .findFirst()
+                    .orElse(null);
+            if (link != null && link.getAnchor() != null) {
+                output.append(":ref:`").append(label).append(" <").append(link.getQualified()).append(">`");
+            } else {
+                output.append('`').append(label).append('`');
+            }
+            start = matcher.end();
+        } while (matcher.find());
+        return output.append(text, start, text.length()).toString();
+    }
+
+    private String getSplitDirectory() {
+        return getParameter("splitDirectory", "javadoc");
+    }
+
+    private int getSplitThreshold() {
+        return parseSplitThreshold(getParameter("splitThreshold", "1000"));
+    }
+
+    /**
+     * {@return the value of the {@code -splitThreshold} option}
+     *
+     * @param value the value of the option
+     */
+    static int parseSplitThreshold(final String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            // like number() in the stylesheet, which makes the comparison false
+            return Integer.MAX_VALUE;
+        }
+    }
+}
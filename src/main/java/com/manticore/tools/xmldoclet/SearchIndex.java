@@ -0,0 +1,303 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Enum;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * A prebuilt search index for the floating TOC ({@code floating_toc.js}), written as JSON by the {@code -searchIndex}
+ * option. It lets the script build the TOC and answer searches without scanning the headings of the page.
+ *
+ * <p>
+ * The index contains the packages, types and public methods rendered into the Restructured Text, in these arrays:
+ * </p>
+ * <ul>
+ * <li>{@code names}: the display names, sorted case-insensitively, so prefixes can be looked up by binary search</li>
+ * <li>{@code qualified}, {@code kinds} and {@code anchors}: the qualified name, the kind ({@code p}ackage,
+ * {@code c}lass, {@code i}nterface, {@code e}num or {@code m}ethod) and the HTML anchor of each name</li>
+ * <li>{@code docs}: only for the documents of the {@code -splitRst} option, the document of each name, without
+ * extension and relative to the index</li>
+ * <li>{@code toc}: the packages and types in the order of the document</li>
+ * <li>{@code trigrams}: for each trigram of the lower case names, the ascending indices of the names containing it,
+ * delta encoded</li>
+ * </ul>
+ *
+ * <p>
+ * The anchors are the ids Sphinx derives from the labels {@code restructured.xsl} writes for packages and types,
+ * so they are stable across builds. Methods have the anchor and the document of their type.
+ * </p>
+ */
+final class SearchIndex {
+    static final int VERSION = 1;
+
+    private static final Pattern NON_ID_CHARS = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern NON_ID_AT_ENDS = Pattern.compile("^[-0-9]+|-+$");
+
+    private static final Comparator<Entry> BY_NAME = Comparator
+            .comparing((Entry entry) -> entry.name.toLowerCase(Locale.ROOT))
+            .thenComparing(entry -> entry.qualified);
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Entry> toc = new ArrayList<>();
+
+    private SearchIndex() {
+    }
+
+    /**
+     * Creates the index of a document, following the order {@code restructured.xsl} renders its elements in: the
+     * document order of the packages, and their enums, classes and interfaces.
+     *
+     * @param root the document root
+     * @return the index
+     */
+    static SearchIndex of(final Root root) {
+        return of(root, null, 0);
+    }
+
+    /**
+     * Creates the index of the documents of the {@code -splitRst} option, where each name links to the document of
+     * its package or, for packages with more constructors and methods than the threshold, of its type.
+     *
+     * @param root the document root
+     * @param splitDirectory the directory of the documents relative to the index, or {@code null} for a single
+     *        document
+     * @param splitThreshold the number of constructors and methods above which a package is split into one document
+     *        per type
+     * @return the index
+     */
+    static SearchIndex of(final Root root, final String splitDirectory, final int splitThreshold) {
+        final var index = new SearchIndex();
+
+        for (final Package packageNode : root.getPackage()) {
+            final String packageDocument = splitDirectory != null ? splitDirectory + "/" + packageNode.getName() : null;
+            final boolean splitTypes =
+                    splitDirectory != null && RstRenderer.countExecutables(packageNode) > splitThreshold;
+            index.addTocEntry(packageNode.getName(), packageNode.getName(), 'p', packageDocument);
+
+            for (final Enum enumNode : packageNode.getEnum()) {
+                index.addTocEntry(enumNode.getName(), enumNode.getQualified(), 'e',
+                        splitTypes ? splitDirectory + "/" + enumNode.getQualified() : packageDocument);
+            }
+            for (final Class classNode : packageNode.getClazz()) {
+                final String document = splitTypes ? splitDirectory + "/" + classNode.getQualified() : packageDocument;
+                index.addTocEntry(classNode.getName(), classNode.getQualified(), 'c', document);
+                index.addMethods(classNode.getName(), classNode.getQualified(), classNode.getMethod(), document);
+            }
+            for (final Interface interfaceNode : packageNode.getInterface()) {
+                final String document =
+                        splitTypes ? splitDirectory + "/" + interfaceNode.getQualified() : packageDocument;
+                index.addTocEntry(interfaceNode.getName(), interfaceNode.getQualified(), 'i', document);
+                index.addMethods(
+                        interfaceNode.getName(), interfaceNode.getQualified(), interfaceNode.getMethod(), document);
+            }
+        }
+
+        index.entries.sort(BY_NAME);
+        return index;
+    }
+
+    /**
+     * {@return the HTML id Sphinx (docutils) generates for a label with the given name}
+     *
+     * @param name the qualified name of a package or type
+     */
+    static String getAnchor(final String name) {
+        final String id = NON_ID_CHARS.matcher(name.toLowerCase(Locale.ROOT)).replaceAll("-");
+        return NON_ID_AT_ENDS.matcher(id).replaceAll("");
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the index as JSON.
+     *
+     * @param writer the writer to write to, which is left open
+     */
+    void write(final Writer writer) throws IOException {
+        writer.write("{\"version\":" + VERSION);
+
+        writer.write(",\"names\":");
+        writeStrings(writer, entries.stream().map(entry -> entry.name).toList());
+        writer.write(",\"qualified\":");
+        writeStrings(writer, entries.stream().map(entry -> entry.qualified).toList());
+        writer.write(",\"anchors\":");
+        writeStrings(writer, entries.stream().map(entry -> entry.anchor).toList());
+        if (!entries.isEmpty() && entries.get(0).document != null) {
+            writer.write(",\"docs\":");
+            writeStrings(writer, entries.stream().map(entry -> entry.document).toList());
+        }
+
+        writer.write(",\"kinds\":\"");
+        for (final Entry entry : entries) {
+            writer.write(entry.kind);
+        }
+        writer.write('"');
+
+        final Map<Entry, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            indices.put(entries.get(i), i);
+        }
+
+        writer.write(",\"toc\":[");
+        for (int i = 0; i < toc.size(); i++) {
+            writer.write((i > 0 ? "," : "") + indices.get(toc.get(i)));
+        }
+        writer.write(']');
+
+        writer.write(",\"trigrams\":{");
+        boolean first = true;
+        for (final Map.Entry<String, List<Integer>> trigram : getTrigrams().entrySet()) {
+            writer.write(first ? "" : ",");
+            writeString(writer, trigram.getKey());
+            writer.write(":[");
+            int previous = 0;
+            for (int i = 0; i < trigram.getValue().size(); i++) {
+                final int index = trigram.getValue().get(i);
+                writer.write((i > 0 ? "," : "") + (index - previous));
+                previous = index;
+            }
+            writer.write(']');
+            first = false;
+        }
+        writer.write("}}");
+        writer.flush();
+    }
+
+    /**
+     * {@return a map where each key is a trigram and each value contains the ascending indices of the entries
+     * whose lower case name contains the trigram}
+     */
+    Map<String, List<Integer>> getTrigrams() {
+        final Map<String, List<Integer>> trigrams = new TreeMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            final String name = entries.get(i).name.toLowerCase(Locale.ROOT);
+            final Set<String> nameTrigrams = new LinkedHashSet<>();
+            for (int j = 0; j + 3 <= name.length(); j++) {
+                nameTrigrams.add(name.substring(j, j + 3));
+            }
+
+            for (final String trigram : nameTrigrams) {
+                trigrams.computeIfAbsent(trigram, key -> new ArrayList<>()).add(i);
+            }
+        }
+        return trigrams;
+    }
+
+    private void addTocEntry(final String name, final String qualified, final char kind, final String document) {
+        final var entry = new Entry(name, qualified, kind, getAnchor(qualified), document);
+        entries.add(entry);
+        toc.add(entry);
+    }
+
+    /**
+     * Adds the public methods of a type, once per name since overloads share the anchor of their type.
+     */
+    private void addMethods(
+            final String typeName, final String typeQualified, final List<Method> methods, final String document) {
+        final Set<String> methodNames = new LinkedHashSet<>();
+        for (final Method method : methods) {
+            if ("public".equals(method.getScope())) {
+                methodNames.add(method.getName());
+            }
+        }
+
+        for (final String methodName : methodNames) {
+            entries.add(new Entry(
+                    typeName + "." + methodName, typeQualified + "." + methodName, 'm', getAnchor(typeQualified),
+                    document));
+        }
+    }
+
+    private static void writeStrings(final Writer writer, final List<String> strings) throws IOException {
+        writer.write('[');
+        for (int i = 0; i < strings.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeString(writer, strings.get(i));
+        }
+        writer.write(']');
+    }
+
+    /**
+     * Writes a string as JSON string literal.
+     */
+    static void writeString(final Writer writer, final String string) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * A name in the index.
+     */
+    static final class Entry {
+        private final String name;
+        private final String qualified;
+        private final char kind;
+        private final String anchor;
+        private final String document;
+
+        private Entry(
+                final String name, final String qualified, final char kind, final String anchor,
+                final String document) {
+            this.name = name;
+            this.qualified = qualified;
+            this.kind = kind;
+            this.anchor = anchor;
+            this.document = document;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getQualified() {
+            return qualified;
+        }
+
+        char getKind() {
+            return kind;
+        }
+
+        String getAnchor() {
+            return anchor;
+        }
+
+        /**
+         * {@return the document of the {@code -splitRst} option containing the name, without extension and relative
+         * to the index, or {@code null} for a single document}
+         */
+        String getDocument() {
+            return document;
+        }
+    }
+}
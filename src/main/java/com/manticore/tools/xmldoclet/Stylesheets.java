@@ -0,0 +1,211 @@
+package com.manticore.tools.xmldoclet;
+
+import net.sf.saxon.s9api.Processor;
+import net.sf.saxon.s9api.SaxonApiException;
+import net.sf.saxon.s9api.XsltCompiler;
+import net.sf.saxon.s9api.XsltExecutable;
+import net.sf.saxon.s9api.XsltPackage;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compiled stylesheets, shared by all doclet runs of the JVM. The bundled stylesheets and the custom ones of
+ * the {@code -stylesheets} option are compiled once by a single {@link XsltCompiler} and kept by URI, so they are
+ * only compiled again when one of their files was modified. Their modules are read through a
+ * {@link CachingResourceResolver}, and the XSLT 3.0 library packages of the {@code -xslPackages} option are compiled
+ * once and imported into the compiler, so all stylesheets can use them with {@code xsl:use-package}.
+ *
+ * <p>
+ * The compiled stylesheets are thread-safe, but the compiler isn't, so compiling is synchronized. The documents
+ * transformed by the stylesheets must be built by the same {@link #getProcessor() processor}.
+ * </p>
+ */
+final class Stylesheets {
+    private final Processor processor = new Processor(false);
+    private final XsltCompiler compiler;
+    private final Map<URI, Compiled<XsltExecutable>> executables = new HashMap<>();
+    private final Map<URI, Compiled<XsltPackage>> packages = new HashMap<>();
+
+    /**
+     * The files resolved while a stylesheet is compiled, null otherwise.
+     */
+    private List<Path> dependencies;
+
+    private Stylesheets() {
+        final var resolver = new CachingResourceResolver();
+        compiler = processor.newXsltCompiler();
+        compiler.setResourceResolver(request -> {
+            final Path file = request.uri != null ? CachingResourceResolver.getFile(request.uri) : null;
+            if (file != null && dependencies != null) {
+                dependencies.add(file);
+            }
+            return resolver.resolve(request);
+        });
+    }
+
+    /**
+     * {@return the stylesheets shared by all doclet runs}
+     */
+    static Stylesheets getShared() {
+        return Holder.SHARED;
+    }
+
+    /**
+     * {@return the processor the stylesheets were compiled by}
+     */
+    Processor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * Compiles a stylesheet without keeping it.
+     *
+     * @param source the stylesheet
+     * @return the compiled stylesheet
+     * @throws SaxonApiException if the stylesheet is invalid
+     */
+    synchronized XsltExecutable compile(final Source source) throws SaxonApiException {
+        return compiler.compile(source);
+    }
+
+    /**
+     * {@return a compiled stylesheet} It is compiled unless it was compiled before and none of its files was modified
+     * since.
+     *
+     * @param uri the URI of the stylesheet, see {@link #getResource(String)} for the bundled ones
+     * @throws SaxonApiException if the stylesheet is invalid
+     */
+    synchronized XsltExecutable get(final URI uri) throws SaxonApiException {
+        Compiled<XsltExecutable> compiled = executables.get(uri);
+        if (compiled == null || compiled.isModified()) {
+            compiled = compile(uri, () -> compiler.compile(new StreamSource(uri.toString())));
+            executables.put(uri, compiled);
+        }
+        return compiled.value;
+    }
+
+    /**
+     * Compiles an XSLT 3.0 library package and imports it into the compiler, unless it was imported before and none
+     * of its files was modified since. The stylesheets compiled before a modified package are compiled again.
+     *
+     * @param uri the URI of the package
+     * @throws SaxonApiException if the package is invalid
+     */
+    synchronized void importPackage(final URI uri) throws SaxonApiException {
+        Compiled<XsltPackage> compiled = packages.get(uri);
+        if (compiled == null || compiled.isModified()) {
+            compiled = compile(uri, () -> compiler.compilePackage(new StreamSource(uri.toString())));
+            compiler.importPackage(compiled.value);
+            packages.put(uri, compiled);
+            executables.clear();
+        }
+    }
+
+    private <T> Compiled<T> compile(final URI uri, final Compilation<T> compilation) throws SaxonApiException {
+        dependencies = new ArrayList<>();
+        try {
+            final Path file = CachingResourceResolver.getFile(uri.toString());
+            if (file != null) {
+                dependencies.add(file);
+            }
+            final T value = compilation.compile();
+            return new Compiled<>(value, dependencies);
+        } finally {
+            dependencies = null;
+        }
+    }
+
+    /**
+     * {@return the URI of a bundled stylesheet}
+     *
+     * @param resource the resource of the stylesheet, like {@link XmlDoclet#RESTRUCTURED_XSL}
+     */
+    static URI getResource(final String resource) {
+        try {
+            return XmlDoclet.class.getResource(resource).toURI();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Invalid URI of " + resource, e);
+        }
+    }
+
+    /**
+     * Parses the custom stylesheets given by the {@code -stylesheets} option.
+     *
+     * @param value a comma separated list of stylesheets with the extensions of their documents, like
+     *        {@code html.xsl=html,text.xsl=txt}
+     * @return a map where each key is the file of a stylesheet and each value the extension of its document, with the
+     *         leading dot
+     * @throws IllegalArgumentException if a stylesheet has no extension
+     */
+    static Map<Path, String> parse(final String value) {
+        final Map<Path, String> stylesheets = new LinkedHashMap<>();
+        for (final String entry : value.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            final int separator = entry.lastIndexOf('=');
+            final String extension = separator < 0 ? "" : entry.substring(separator + 1).trim();
+            if (separator <= 0 || extension.isEmpty() || extension.equals(".")) {
+                throw new IllegalArgumentException(
+                        "Invalid stylesheet " + entry.trim() + ", use <stylesheet>=<extension>");
+            }
+            stylesheets.put(Path.of(entry.substring(0, separator).trim()),
+                    extension.startsWith(".") ? extension : "." + extension);
+        }
+        return stylesheets;
+    }
+
+    @FunctionalInterface
+    private interface Compilation<T> {
+        T compile() throws SaxonApiException;
+    }
+
+    /**
+     * A compiled stylesheet or package, with the modification times of its files.
+     */
+    private static final class Compiled<T> {
+        private final T value;
+        private final Map<Path, FileTime> files = new HashMap<>();
+
+        private Compiled(final T value, final List<Path> files) {
+            this.value = value;
+            for (final Path file : files) {
+                this.files.put(file, getLastModifiedTime(file));
+            }
+        }
+
+        private boolean isModified() {
+            for (final Map.Entry<Path, FileTime> file : files.entrySet()) {
+                final FileTime lastModified = getLastModifiedTime(file.getKey());
+                if (lastModified == null || !lastModified.equals(file.getValue())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static FileTime getLastModifiedTime(final Path file) {
+            try {
+                return Files.getLastModifiedTime(file);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Holder {
+        private static final Stylesheets SHARED = new Stylesheets();
+    }
+}
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.manticore.tools.xmldoclet.CustomOption.addHyphenPrefix;
 
@@ -17,8 +18,14 @@ final class SupportedOptions {
      * A Map where the key is an option name and the value is the argument value
      * (considering each argument has at most one value).
      * It stores all sucessfuly parsed options given to the Doclet in the command line.
+     * Options without arguments are stored with the value {@link #NO_ARG_VALUE}, since the map doesn't accept nulls.
      */
-    private final Map<String, String> givenCliOptionsMap = new HashMap<>();
+    private final Map<String, String> givenCliOptionsMap = new ConcurrentHashMap<>();
+
+    /**
+     * The value stored for a given option that has no arguments.
+     */
+    static final String NO_ARG_VALUE = "true";
 
     /**
      * Set of supported options.
@@ -32,14 +39,33 @@ final class SupportedOptions {
                 newNoArgOption("dryrun", "Parse javadoc, but don't write output file.\nDefault: false"),
                 newNoArgOption("rst", "Transform the XML into a Restructured Text file (*.rst).\nDefault: false"),
                 newNoArgOption("md", "Transform the XML into a Markdown file (*.md).\nDefault: false"),
-                newNoArgOption("docbook", "Transform the XML into a DocBook file (*.db.xml).\nDefault: false"),
-                newNoArgOption("adoc", "Transform the XML into an Ascii Doctor file (*.adoc).\nDefault: false"),
+                newArgOption("renderer", "renderer", "Render -rst and -md natively or with the stylesheets: native or xslt.\nDefault: xslt"),
+                newArgOption("stylesheets", "files", "Transform the XML with custom stylesheets, comma separated as <stylesheet>=<extension>.\n"),
+                newArgOption("xslPackages", "files", "XSLT 3.0 library packages the custom stylesheets use, comma separated.\n"),
+                newNoArgOption("docbook", "Write a DocBook 5 book (*.db.xml), rendered from the parsed model.\nDefault: false"),
+                newNoArgOption("adoc", "Write an AsciiDoc file (*.adoc), rendered from the parsed model.\nDefault: false"),
                 newOneArgOption("filename", "Name of the output file.\nDefault: javadoc.xml"),
+                newArgOption("compress", "format", "Compress the written files with gzip, deflate or zstd (needs zstd-jni).\nDefault: none"),
+                newArgOption("bufferSize", "bytes", "Size of the output buffers.\nDefault: 65536"),
+                newNoArgOption("pipeline", "Write the outputs while the packages are parsed, each on its own thread.\nDefault: false"),
+                newArgOption("memoryBudget", "size", "Spill the parsed packages to a temporary file once their estimated size passes it, like 512m.\n"),
+                newNoArgOption("inheritedMembers", "Write the members each class and interface inherits and the methods each method overrides.\nDefault: false"),
+                newArgOption("apiDiff", "file", "Compare the API with a previous output of this doclet and write the changes (*.diff.xml).\n"),
+                newArgOption("apiDiffFormat", "format", "Format of the API changes, xml or json.\nDefault: xml"),
+                newNoArgOption("failOnIncompatible", "Fail if the API has binary incompatible changes, see -apiDiff.\nDefault: false"),
+                newNoArgOption("coverage", "Write the documentation coverage of the API per package (*.coverage.xml).\nDefault: false"),
+                newArgOption("coverageFormat", "format", "Format of the documentation coverage, xml or json.\nDefault: xml"),
+                newArgOption("minCoverage", "thresholds", "Fail if the documentation coverage is lower, comma separated as <metric>=<percent> of comments, params and returns.\n"),
+                newNoArgOption("compactXml", "Write the compact XML profile (javadoc-compact.xsd), listing each type only once.\nDefault: false"),
                 newOneArgOption("basePackage", "Name of the base package.\n"),
                 newOneArgOption("doctitle", "Document Title\n"),
                 newOneArgOption("windowtitle", "Window Title\n"),
-                newNoArgOption("noTimestamp", "No Timestamp.\n"),
-                newNoArgOption("withFloatingToc", "Renders a Floating TOC on the right side.\n"));
+                newNoArgOption("noTimestamp", "Don't write timestamps, so the output only changes with the sources.\nDefault: false"),
+                newNoArgOption("withFloatingToc", "Renders a Floating TOC on the right side.\n"),
+                newNoArgOption("withVirtualToc", "Renders only the visible entries of the Floating TOC, for large APIs.\nDefault: false"),
+                newNoArgOption("splitRst", "Write the Restructured Text as one document per package, with a toctree index.\nDefault: false"),
+                newArgOption("splitThreshold", "members", "Split packages with more constructors and methods into one document per type.\nDefault: 1000"),
+                newNoArgOption("searchIndex", "Write a search index (*.index.json) for the Floating TOC.\nDefault: false"));
     }
 
     public Set<CustomOption> get() {
@@ -79,7 +105,7 @@ final class SupportedOptions {
      * @return true to indicate the option was successfully processed.
      */
     private boolean processNoArgValue(final String optionName) {
-        storeParsedOption(optionName, null);
+        storeParsedOption(optionName, NO_ARG_VALUE);
         return true;
     }
 
@@ -124,4 +150,14 @@ final class SupportedOptions {
         return givenCliOptionsMap.getOrDefault(addHyphenPrefix(optionName), defaultValue);
     }
 
+    /**
+     * {@return the given options as stylesheet parameters}
+     * The keys are the option names without the hyphen, options without arguments have the value {@link #NO_ARG_VALUE}.
+     */
+    public Map<String, String> getGivenOptions() {
+        final var parameters = new HashMap<String, String>();
+        givenCliOptionsMap.forEach((optionName, value) -> parameters.put(optionName.substring(1), value));
+        return parameters;
+    }
+
 }
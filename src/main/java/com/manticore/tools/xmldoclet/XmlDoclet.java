@@ -11,14 +11,30 @@ import net.sf.saxon.s9api.*;
 
 import javax.lang.model.SourceVersion;
 import javax.tools.Diagnostic;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.stream.StreamSource;
 import java.io.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /// Doclet class.
 ///
@@ -35,9 +51,41 @@ public final class XmlDoclet implements Doclet {
     public static final String MARKDOWN_XSL = "/com/manticore/xsl/markdown.xsl";
 
     /**
-     * The parsed object model. Used in unit tests.
+     * Default size of the output buffers, see the {@code -bufferSize} option.
      */
-    private static Root root;
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of packages each output of the {@code -pipeline} option may be behind the parser.
+     */
+    static final int PIPELINE_CAPACITY = 4;
+
+    /**
+     * The parsed object model of the last invocation on each thread, the root the outputs were written from. Used in
+     * unit tests.
+     */
+    private static final ThreadLocal<Supplier<Root>> ROOT = new ThreadLocal<>();
+
+    /**
+     * The on-demand model of the last invocation on each thread, for tools embedding the doclet, until
+     * {@link #releaseModel()}. Used in unit tests.
+     */
+    private static final ThreadLocal<LazyModel> MODEL = new ThreadLocal<>();
+
+    /**
+     * The sinks receiving the object model of the invocations on each thread, see {@link #registerResultSink(Consumer)}.
+     */
+    private static final ThreadLocal<Consumer<Root>> RESULT_SINK = new ThreadLocal<>();
+
+    /**
+     * The model of the {@link DocletWatcher} on the current thread, which the doclet updates with the parsed types.
+     */
+    private static final ThreadLocal<IncrementalModel> INCREMENTAL_MODEL = new ThreadLocal<>();
+
+    /**
+     * The JAXB context of the object model, see {@link #getJaxbContext()}.
+     */
+    private static JAXBContext jaxbContext;
 
     /**
      * Supported Doclet options.
@@ -46,6 +94,22 @@ public final class XmlDoclet implements Doclet {
 
     private Reporter reporter;
 
+    /**
+     * Whether an output failed, or a check of the {@code -failOnIncompatible} or {@code -minCoverage} option. The
+     * outputs of {@code -pipeline} fail on the threads of their stages.
+     */
+    private volatile boolean failed;
+
+    /**
+     * The model updated by this invocation, see {@link #registerIncrementalModel(IncrementalModel)}.
+     */
+    private IncrementalModel incrementalModel;
+
+    /**
+     * The documentation coverage counted by the parser of this invocation, see {@link DocCoverage}.
+     */
+    private DocCoverage coverage;
+
     public XmlDoclet() {
         try {
             this.options = new SupportedOptions();
@@ -93,9 +157,87 @@ public final class XmlDoclet implements Doclet {
         // find org.glassfish.jaxb.runtime.v2.ContextFactory in the FAT Jar
         Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
 
-        root = new Parser(env).parseRootDoc();
-        save(root);
-        return true;
+        final boolean withInheritedMembers = options.hasOption("inheritedMembers");
+        MODEL.set(new LazyModel(env, withInheritedMembers));
+        ROOT.remove();
+
+        // every output, the result sink, the coverage and getRoot() come from this parser, so from the same model
+        final var parser = new Parser(env, withInheritedMembers);
+        coverage = parser.getCoverage();
+        final Consumer<Root> resultSink = RESULT_SINK.get();
+        incrementalModel = INCREMENTAL_MODEL.get();
+        if (incrementalModel != null || resultSink != null) {
+            final Root root = incrementalModel != null
+                    ? incrementalModel.update(env, parser)
+                    : parser.parseCompactModel().toRoot();
+            ROOT.set(() -> root);
+            if (resultSink != null) {
+                resultSink.accept(root);
+            }
+            save(root);
+        } else if (options.hasOption("pipeline") && !options.hasOption("dryrun")) {
+            savePipelined(parser);
+        } else if (options.hasOption("memoryBudget") && !options.hasOption("dryrun")) {
+            saveWithinBudget(parser);
+        } else if (!options.hasOption("dryrun")) {
+            // nobody holds on to the beans, so only the compact model is kept while the outputs are written
+            final CompactModel model = parser.parseCompactModel();
+            ROOT.set(memoize(model::toRoot));
+            save(model.projectRoot());
+        } else if (options.hasOption("coverage") || options.hasOption("minCoverage")) {
+            // nothing is written, the packages are only parsed for the coverage
+            final Root root = parser.parseCompactModel().toRoot();
+            ROOT.set(() -> root);
+        } else {
+            // nothing is written, the model is only parsed if it is requested
+            ROOT.set(memoize(() -> parser.parseCompactModel().toRoot()));
+        }
+
+        if (options.hasOption("coverage") || options.hasOption("minCoverage")) {
+            checkCoverage();
+        }
+        return !failed;
+    }
+
+    /**
+     * Registers the model of a {@link DocletWatcher} on the current thread, until the returned registration is
+     * closed. The doclet invocations on the thread merge the types they parse into the model and write the outputs
+     * of the complete model.
+     *
+     * @param model the model
+     * @return the registration
+     */
+    static ResultSinkRegistration registerIncrementalModel(final IncrementalModel model) {
+        INCREMENTAL_MODEL.set(Objects.requireNonNull(model, "model"));
+        return INCREMENTAL_MODEL::remove;
+    }
+
+    /**
+     * Registers a sink receiving the object model of each doclet invocation on the current thread, until the returned
+     * registration is closed. The javadoc tool runs the doclet on the thread calling it, so concurrent invocations on
+     * different threads each deliver their model to their own sink. The model is read-only: its package list can't be
+     * modified, its packages are created when they are first accessed, and the same beans are returned afterwards and
+     * written to the output files, so they must not be changed either.
+     *
+     * <pre>{@code
+     * try (var registration = XmlDoclet.registerResultSink(results::add)) {
+     *     javadoc.getTask(null, null, null, XmlDoclet.class, arguments, null).call();
+     * }
+     * }</pre>
+     *
+     * @param sink the consumer of the object models, called before the output files are written
+     * @return the registration, restoring the previously registered sink of the thread when closed
+     */
+    public static ResultSinkRegistration registerResultSink(final Consumer<Root> sink) {
+        final Consumer<Root> previousSink = RESULT_SINK.get();
+        RESULT_SINK.set(Objects.requireNonNull(sink, "sink"));
+        return () -> {
+            if (previousSink == null) {
+                RESULT_SINK.remove();
+            } else {
+                RESULT_SINK.set(previousSink);
+            }
+        };
     }
 
     public static void transform(
@@ -103,9 +245,72 @@ public final class XmlDoclet implements Doclet {
             final File xmlFile, final File outFile,
             final Map<String, String> parameters)
             throws IOException, SaxonApiException {
-        try (var xmlInputStream = new FileInputStream(xmlFile); var output = new FileOutputStream(outFile)) {
-            // Create a Saxon Processor
-            final var processor = new Processor(false);
+        try (var output = OutputFile.open(outFile.toPath(), Compression.NONE, DEFAULT_BUFFER_SIZE)) {
+            transform(xsltInputStream, xmlFile, output.getOutputStream(), parameters);
+            output.commit();
+        }
+    }
+
+    /**
+     * Transforms the XML file with a stylesheet. The XML file may be compressed in any of the formats supported by
+     * the {@code -compress} option, which is detected from its content.
+     *
+     * @param xsltInputStream the stylesheet
+     * @param xmlFile the XML file written by the doclet
+     * @param output the stream receiving the transformation result, which is left open
+     * @param parameters the stylesheet parameters
+     */
+    public static void transform(
+            final InputStream xsltInputStream,
+            final File xmlFile, final OutputStream output,
+            final Map<String, String> parameters)
+            throws IOException, SaxonApiException {
+        transform(xsltInputStream, xmlFile, output, parameters, null);
+    }
+
+    /**
+     * Transforms the XML file with a stylesheet, which may write secondary result documents with
+     * {@code xsl:result-document}. Those are collected in memory instead of being written by the stylesheet.
+     *
+     * @param xsltInputStream the stylesheet
+     * @param xmlFile the XML file written by the doclet
+     * @param output the stream receiving the principal transformation result, which is left open
+     * @param parameters the stylesheet parameters
+     * @param baseOutputUri the URI the relative URIs of the secondary result documents are resolved against,
+     *        or null if the stylesheet doesn't write any
+     * @return a map where each key is the resolved URI of a secondary result document and each value its content,
+     *         in the order the documents were started
+     */
+    public static Map<URI, byte[]> transform(
+            final InputStream xsltInputStream,
+            final File xmlFile, final OutputStream output,
+            final Map<String, String> parameters, final URI baseOutputUri)
+            throws IOException, SaxonApiException {
+        final XsltExecutable xsltExecutable = Stylesheets.getShared().compile(new StreamSource(xsltInputStream));
+        return transform(xsltExecutable, xmlFile, output, parameters, baseOutputUri);
+    }
+
+    /**
+     * Transforms the XML file with a compiled stylesheet, see {@link #transform(InputStream, File, OutputStream, Map,
+     * URI)}.
+     *
+     * @param xsltExecutable the stylesheet, compiled by the {@link Stylesheets}
+     * @param xmlFile the XML file written by the doclet
+     * @param output the stream receiving the principal transformation result, which is left open
+     * @param parameters the stylesheet parameters
+     * @param baseOutputUri the URI the relative URIs of the secondary result documents are resolved against,
+     *        or null if the stylesheet doesn't write any
+     * @return the secondary result documents by their resolved URI
+     */
+    static Map<URI, byte[]> transform(
+            final XsltExecutable xsltExecutable,
+            final File xmlFile, final OutputStream output,
+            final Map<String, String> parameters, final URI baseOutputUri)
+            throws IOException, SaxonApiException {
+        final Map<URI, ByteArrayOutputStream> resultDocuments = new LinkedHashMap<>();
+        try (var xmlInputStream = Compression.decompress(new FileInputStream(xmlFile))) {
+            // The document must be built by the processor the stylesheet was compiled by
+            final Processor processor = Stylesheets.getShared().getProcessor();
 
             // Create a DocumentBuilder
             final DocumentBuilder docBuilder = processor.newDocumentBuilder();
@@ -113,14 +318,6 @@ public final class XmlDoclet implements Doclet {
             // Parse the XML input
             final XdmNode xmlDoc = docBuilder.build(new StreamSource(xmlInputStream));
 
-            // Create a XsltCompiler
-            final XsltCompiler compiler = processor.newXsltCompiler();
-
-            // Set the ClassLoader for the compiler to load resources from the classpath
-            compiler.setResourceResolver(new ClasspathResourceURIResolver());
-
-            // Create a XsltExecutable from the XSLT input stream
-            final XsltExecutable xsltExecutable = compiler.compile(new StreamSource(xsltInputStream));
             final XsltTransformer transformer = xsltExecutable.load();
 
             // Set the source document
@@ -130,6 +327,15 @@ public final class XmlDoclet implements Doclet {
             final var serializer = processor.newSerializer(output);
             transformer.setDestination(serializer);
 
+            if (baseOutputUri != null) {
+                transformer.setBaseOutputURI(baseOutputUri.toString());
+                transformer.setResultDocumentHandler(uri -> {
+                    final var content = new ByteArrayOutputStream();
+                    resultDocuments.put(uri, content);
+                    return processor.newSerializer(content);
+                });
+            }
+
             for (final Map.Entry<String, String> parameter : parameters.entrySet()) {
                 final var name = new QName(parameter.getKey());
                 final var values = new XdmAtomicValue(parameter.getValue());
@@ -139,84 +345,784 @@ public final class XmlDoclet implements Doclet {
             // Transform the XML
             transformer.transform();
         }
+
+        final Map<URI, byte[]> documents = new LinkedHashMap<>();
+        resultDocuments.forEach((uri, content) -> documents.put(uri, content.toByteArray()));
+        return documents;
     }
 
     /**
-     * Save XML object model to a file via JAXB.
+     * Save XML object model to a file via JAXB. For a {@link DocletWatcher}, the XML file is only written if another
+     * output reads it.
      *
      * @param root the document root
      */
     public void save(final Root root) {
-        if (options.hasOption("dryrun")) {
+        final OutputSettings settings = getOutputSettings();
+        if (settings == null) {
             return;
         }
 
-        final String filename = options.getOptionValue("filename", "javadoc.xml");
+        final List<ModelOutput> outputs = getModelOutputs(settings);
+        if (incrementalModel != null && !readsXmlFile(settings)) {
+            // the watcher renders the documents from the model, so the complete XML file isn't written on every change
+            for (final ModelOutput output : outputs.subList(1, outputs.size())) {
+                output.write(root);
+            }
+            return;
+        }
+
+        // the other outputs are only written if the XML file was
+        if (outputs.get(0).write(root)) {
+            for (final ModelOutput output : outputs.subList(1, outputs.size())) {
+                output.write(root);
+            }
+            writeFileOutputs(settings);
+        }
+    }
+
+    /**
+     * Saves the outputs while the packages are parsed (the {@code -pipeline} option). The parser passes each package
+     * to the outputs written from the object model, such as the XML file and the natively rendered documents, which
+     * run as stages of a {@link Pipeline} on their own threads. Each stage projects its own beans of the package from
+     * a {@link CompactModel}, so the stages don't share any mutable state. Parsing blocks while a stage is
+     * {@link #PIPELINE_CAPACITY} packages behind, so only those packages are held in memory. The outputs transforming
+     * the XML file are written once it is complete.
+     *
+     * @param parser the parser of the doclet invocation
+     */
+    private void savePipelined(final Parser parser) {
+        final OutputSettings settings = getOutputSettings();
+        if (settings == null) {
+            return;
+        }
+
+        final Root outline = parser.parseOutline();
+        final List<ModelOutput> outputs = getModelOutputs(settings);
+        final var pipeline = new Pipeline<CompactModel>(PIPELINE_CAPACITY);
+        final var xmlWritten = new AtomicBoolean();
+        for (int i = 0; i < outputs.size(); i++) {
+            final ModelOutput output = outputs.get(i);
+            final boolean xml = i == 0;
+            pipeline.addStage("xml-doclet-stage-" + i, packages -> {
+                final boolean written =
+                        output.write(Pipeline.stream(outline, packages, packageModel -> packageModel.getPackage(0)));
+                if (xml) {
+                    xmlWritten.set(written);
+                }
+            });
+        }
+
+        boolean completed = false;
+        try {
+            parser.parsePackages(packageNode -> {
+                final var packageModel = new CompactModel();
+                packageModel.add(packageNode);
+                pipeline.publish(packageModel);
+            });
+            completed = true;
+        } finally {
+            pipeline.close(completed);
+        }
+
+        if (xmlWritten.get()) {
+            writeFileOutputs(settings);
+        }
+    }
 
+    /**
+     * Saves the outputs of a compact model with the memory budget of the {@code -memoryBudget} option. The packages
+     * passing the budget are spilled to a temporary segment file, from which the outputs read them back one at a
+     * time, and the segment file is deleted once the outputs are written. The stylesheets of {@code -rst} and
+     * {@code -md} with the default {@code -renderer xslt} still read the complete XML file, so they are only bounded
+     * with {@code -renderer native}.
+     *
+     * @param parser the parser of the doclet invocation
+     */
+    private void saveWithinBudget(final Parser parser) {
+        final String value = options.getOptionValue("memoryBudget");
+        final long memoryBudget;
+        try {
+            memoryBudget = parseMemoryBudget(value);
+        } catch (IllegalArgumentException e) {
+            reporter.print(Diagnostic.Kind.ERROR, e.getMessage());
+            failed = true;
+            return;
+        }
+
+        if (!"native".equals(options.getOptionValue("renderer", "xslt"))
+                && (options.hasOption("rst") || options.hasOption("md"))) {
+            reporter.print(Diagnostic.Kind.WARNING, "The stylesheets of -rst and -md read the complete XML file,"
+                    + " use -renderer native to render them within the memory budget");
+        }
+
+        try (var model = parser.parseCompactModel(memoryBudget)) {
+            if (model.getSpilledPackages() > 0) {
+                reporter.print(Diagnostic.Kind.NOTE, "Spilled " + model.getSpilledPackages()
+                        + " packages to a segment file, passing the memory budget of " + value);
+            }
+            save(model.projectRoot());
+        }
+    }
+
+    /**
+     * {@return the memory budget in bytes given by the {@code -memoryBudget} option}
+     *
+     * @param value a positive number of bytes, optionally followed by k, m or g for kibi-, mebi- or gibibytes
+     * @throws IllegalArgumentException if the value is not a positive size
+     */
+    static long parseMemoryBudget(final String value) {
+        final String size = value.trim().toLowerCase(Locale.ROOT);
+        final int shift = switch (size.isEmpty() ? ' ' : size.charAt(size.length() - 1)) {
+            case 'k' -> 10;
+            case 'm' -> 20;
+            case 'g' -> 30;
+            default -> 0;
+        };
+        try {
+            final long budget = Long.parseLong(shift == 0 ? size : size.substring(0, size.length() - 1));
+            if (budget > 0 && budget <= Long.MAX_VALUE >> shift) {
+                return budget << shift;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid memory budget " + value + ", use a size like 512m or 2g");
+    }
+
+    /**
+     * {@return the settings of the output files given by the options, or null if no output is written} Invalid
+     * settings are reported.
+     */
+    private OutputSettings getOutputSettings() {
+        if (options.hasOption("dryrun")) {
+            return null;
+        }
+
+        final Compression compression;
+        try {
+            compression = Compression.of(options.getOptionValue("compress", null));
+        } catch (IllegalArgumentException e) {
+            reporter.print(Diagnostic.Kind.ERROR, e.getMessage());
+            return null;
+        }
+
+        final String renderer = options.getOptionValue("renderer", "xslt");
+        if (!"native".equals(renderer) && !"xslt".equals(renderer)) {
+            reporter.print(Diagnostic.Kind.ERROR, "Unsupported renderer " + renderer + ", use native or xslt");
+            return null;
+        }
+
+        final Map<Path, String> stylesheets;
+        try {
+            stylesheets = Stylesheets.parse(options.getOptionValue("stylesheets", ""));
+        } catch (IllegalArgumentException e) {
+            reporter.print(Diagnostic.Kind.ERROR, e.getMessage());
+            return null;
+        }
+
+        final String filename = options.getOptionValue("filename", "javadoc.xml");
         final String basename = filename.toLowerCase().endsWith(".xml")
                 ? filename.substring(0, filename.length() - ".xml".length())
                 : filename;
 
         final File xmlFile = options.hasOption("d")
-                ? new File(options.getOptionValue("d"), filename)
-                : new File(filename);
+                ? new File(options.getOptionValue("d"), filename + compression.getExtension())
+                : new File(filename + compression.getExtension());
+
+        final Map<String, String> parameters = options.getGivenOptions();
+        if (options.hasOption("searchIndex")) {
+            // the documents refer to the search index, so it is known before any of them is written
+            parameters.put("searchIndex", basename + ".index.json");
+        }
+
+        return new OutputSettings(xmlFile, basename, parameters, compression, "native".equals(renderer),
+                getBufferSize(), stylesheets);
+    }
+
+    /**
+     * {@return the outputs written from the object model, starting with the XML file}
+     *
+     * @param settings the settings of the output files
+     */
+    private List<ModelOutput> getModelOutputs(final OutputSettings settings) {
+        final List<ModelOutput> outputs = new ArrayList<>();
+        outputs.add(root -> writeXml(root, settings));
+
+        if (options.hasOption("searchIndex")) {
+            outputs.add(root -> writeSearchIndex(root, settings));
+        }
+
+        if (settings.nativeRenderer && options.hasOption("rst") && options.hasOption("splitRst")) {
+            outputs.add(root -> {
+                writeSplitRst(root, settings.xmlFile, settings.basename, settings.parameters, true,
+                        settings.compression, settings.bufferSize);
+                return true;
+            });
+        } else if (settings.nativeRenderer && options.hasOption("rst")) {
+            outputs.add(root -> {
+                writeDocument("Restructured Text", settings.getOutputFile(".rst"), root, settings.xmlFile,
+                        settings.parameters,
+                        withPackageCache("rst", new RstRenderer(settings.parameters, getParallelism())), null,
+                        settings.compression, settings.bufferSize);
+                return true;
+            });
+        }
+
+        if (settings.nativeRenderer && options.hasOption("md")) {
+            outputs.add(root -> {
+                writeDocument("Markdown", settings.getOutputFile(".md"), root, settings.xmlFile, settings.parameters,
+                        withPackageCache("md", new MarkdownRenderer(settings.parameters, getParallelism())), null,
+                        settings.compression, settings.bufferSize);
+                return true;
+            });
+        }
+
+        // there are no bundled stylesheets for DocBook and AsciiDoc, so they are always rendered natively
+        if (options.hasOption("docbook")) {
+            outputs.add(root -> {
+                writeDocument("DocBook", settings.getOutputFile(".db.xml"), root, settings.xmlFile,
+                        settings.parameters,
+                        withPackageCache("docbook", new DocBookRenderer(settings.parameters, getParallelism())), null,
+                        settings.compression, settings.bufferSize);
+                return true;
+            });
+        }
+
+        if (options.hasOption("adoc")) {
+            outputs.add(root -> {
+                writeDocument("AsciiDoc", settings.getOutputFile(".adoc"), root, settings.xmlFile,
+                        settings.parameters,
+                        withPackageCache("adoc", new AsciiDocRenderer(settings.parameters, getParallelism())), null,
+                        settings.compression, settings.bufferSize);
+                return true;
+            });
+        }
+        return outputs;
+    }
+
+    /**
+     * {@return whether any output reads the written XML file, see {@link #writeFileOutputs(OutputSettings)}}
+     *
+     * @param settings the settings of the output files
+     */
+    private boolean readsXmlFile(final OutputSettings settings) {
+        return options.hasOption("apiDiff") || options.hasOption("coverage")
+                || !settings.nativeRenderer && (options.hasOption("rst") || options.hasOption("md"))
+                || !settings.stylesheets.isEmpty();
+    }
+
+    /**
+     * Writes the outputs read from the complete XML file: the API diff and the documents transformed by the
+     * stylesheets.
+     *
+     * @param settings the settings of the output files
+     */
+    private void writeFileOutputs(final OutputSettings settings) {
+        if (options.hasOption("apiDiff")) {
+            compareApi(settings.xmlFile, settings.basename);
+        }
+
+        if (options.hasOption("coverage")) {
+            writeCoverage(settings.xmlFile, settings.basename);
+        }
+
+        if (!settings.nativeRenderer && options.hasOption("rst") && options.hasOption("splitRst")) {
+            writeSplitRst(null, settings.xmlFile, settings.basename, settings.parameters, false,
+                    settings.compression, settings.bufferSize);
+        } else if (!settings.nativeRenderer && options.hasOption("rst")) {
+            writeDocument("Restructured Text", settings.getOutputFile(".rst"), null, settings.xmlFile,
+                    settings.parameters, null, Stylesheets.getResource(RESTRUCTURED_XSL), settings.compression,
+                    settings.bufferSize);
+        }
+
+        if (!settings.nativeRenderer && options.hasOption("md")) {
+            writeDocument("Markdown", settings.getOutputFile(".md"), null, settings.xmlFile, settings.parameters,
+                    null, Stylesheets.getResource(MARKDOWN_XSL), settings.compression, settings.bufferSize);
+        }
 
-        try (
-                var fileOutputStream = new FileOutputStream(xmlFile);
-                var bufferedOutputStream = new BufferedOutputStream(fileOutputStream)) {
-            final var contextObj = JAXBContext.newInstance(Root.class);
+        if (!settings.stylesheets.isEmpty()) {
+            writeCustomDocuments(settings);
+        }
+    }
 
-            final var marshaller = contextObj.createMarshaller();
-            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-            if (options.hasOption("docencoding")) {
-                marshaller.setProperty(Marshaller.JAXB_ENCODING, options.getOptionValue("docencoding"));
+    /**
+     * Transforms the XML file with the custom stylesheets of the {@code -stylesheets} option, after importing the
+     * library packages of the {@code -xslPackages} option they may use.
+     *
+     * @param settings the settings of the output files
+     */
+    private void writeCustomDocuments(final OutputSettings settings) {
+        for (final String xslPackage : options.getOptionValue("xslPackages", "").split(",")) {
+            if (!xslPackage.isBlank()) {
+                try {
+                    Stylesheets.getShared().importPackage(Path.of(xslPackage.trim()).toUri());
+                } catch (SaxonApiException | RuntimeException ex) {
+                    LOGGER.log(Level.SEVERE, "Failed to compile the XSLT package " + xslPackage.trim(), ex);
+                    failed = true;
+                    return;
+                }
             }
+        }
 
-            marshaller.marshal(root, bufferedOutputStream);
-            bufferedOutputStream.flush();
-            fileOutputStream.flush();
+        for (final Map.Entry<Path, String> stylesheet : settings.stylesheets.entrySet()) {
+            writeDocument(stylesheet.getKey().getFileName().toString(), settings.getOutputFile(stylesheet.getValue()),
+                    null, settings.xmlFile, settings.parameters, null, stylesheet.getKey().toUri(),
+                    settings.compression, settings.bufferSize);
+        }
+    }
 
-            reporter.print(Diagnostic.Kind.NOTE, "Wrote XML to: " + xmlFile.getAbsolutePath());
+    /**
+     * Writes the XML file, in the compact profile with the {@code -compactXml} option.
+     *
+     * @param root the document root
+     * @param settings the settings of the output files
+     * @return whether the XML file was written or is unchanged
+     */
+    private boolean writeXml(final Root root, final OutputSettings settings) {
+        // the XML file must be closed (and its compression finished) before it can be transformed
+        final boolean xmlWritten;
+        try (var output = OutputFile.open(settings.xmlFile.toPath(), settings.compression, settings.bufferSize)) {
+            final OutputStream outputStream = output.getOutputStream();
+            if (options.hasOption("compactXml")) {
+                writeCompactXml(root, outputStream);
+            } else {
+                final var marshaller = getJaxbContext().createMarshaller();
+                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                if (options.hasOption("docencoding")) {
+                    marshaller.setProperty(Marshaller.JAXB_ENCODING, options.getOptionValue("docencoding"));
+                }
 
-            final var parameters = new HashMap<String, String>();
-            for (final var option : options.get()) {
-                final String optionValue = options.getOptionValue(option, "true");
-                parameters.put(option.getParameters(), optionValue);
+                marshaller.marshal(root, outputStream);
             }
+            xmlWritten = output.commit();
+        } catch (RuntimeException | IOException | JAXBException | XMLStreamException e) {
+            LOGGER.log(Level.SEVERE, "Failed to write the XML File", e);
+            failed = true;
+            return false;
+        }
+
+        reportOutput("XML", settings.xmlFile, xmlWritten);
+        return true;
+    }
+
+    /**
+     * Writes the search index of the floating TOC.
+     *
+     * @param root the document root
+     * @param settings the settings of the output files
+     * @return whether the search index was written or is unchanged
+     */
+    private boolean writeSearchIndex(final Root root, final OutputSettings settings) {
+        // not compressed, since it is loaded by the floating TOC script in the browser
+        final var indexFile = new File(settings.xmlFile.getParent(), settings.parameters.get("searchIndex"));
+        try (var output = OutputFile.open(indexFile.toPath(), Compression.NONE, settings.bufferSize)) {
+            final var writer = new OutputStreamWriter(output.getOutputStream(), StandardCharsets.UTF_8);
+            // the documents of -splitRst are in a directory named like the index document, next to the search index
+            final SearchIndex searchIndex = options.hasOption("rst") && options.hasOption("splitRst")
+                    ? SearchIndex.of(root, settings.basename,
+                            RstRenderer.parseSplitThreshold(options.getOptionValue("splitThreshold", "1000")))
+                    : SearchIndex.of(root);
+            searchIndex.write(writer);
+            reportOutput("Search Index", indexFile, output.commit());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to write the Search Index", e);
+            failed = true;
+            return false;
+        }
+    }
 
-            if (options.hasOption("rst")) {
-                final var outFile = new File(xmlFile.getParent(), basename + ".rst");
-                try (var inputStream = XmlDoclet.class.getResourceAsStream(RESTRUCTURED_XSL)) {
-                    transform(inputStream, xmlFile, outFile, parameters);
-                } catch (Exception ex) {
-                    LOGGER.log(Level.SEVERE, "Failed to write Restructured Text", ex);
+    /**
+     * Writes the Restructured Text as one document per package (and per type for packages above the
+     * {@code -splitThreshold}) into a directory named like the XML file, with an index document containing the
+     * toctree. Documents whose content didn't change are not rewritten, so their modification time stays and Sphinx
+     * doesn't render them again. Documents of removed packages and types are deleted.
+     *
+     * @param root the document root
+     * @param xmlFile the XML file to transform
+     * @param basename the name of the index document and the directory, without extension
+     * @param parameters the stylesheet parameters
+     * @param nativeRenderer whether to render the documents with the {@link RstRenderer} instead of the stylesheet
+     * @param compression the compression format of the written documents
+     * @param bufferSize the size of the output buffers
+     */
+    private void writeSplitRst(
+            final Root root, final File xmlFile, final String basename, final Map<String, String> parameters,
+            final boolean nativeRenderer, final Compression compression, final int bufferSize) {
+        final var indexFile = new File(xmlFile.getParent(), basename + ".rst");
+        final var splitParameters = new HashMap<>(parameters);
+        splitParameters.put("splitDirectory", basename);
+
+        final var index = new ByteArrayOutputStream();
+        final Map<URI, byte[]> documents;
+        if (nativeRenderer) {
+            final var indexContent = new StringBuilder();
+            try {
+                documents = new LinkedHashMap<>();
+                final RstRenderer renderer =
+                        withPackageCache("splitRst", new RstRenderer(splitParameters, getParallelism()));
+                renderer.renderSplit(root, indexContent).forEach(
+                        (path, content) -> documents.put(indexFile.toPath().resolveSibling(path).toUri(),
+                                content.getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to write Restructured Text", ex);
+                failed = true;
+                return;
+            }
+            index.writeBytes(indexContent.toString().getBytes(StandardCharsets.UTF_8));
+        } else {
+            try {
+                documents = transform(Stylesheets.getShared().get(Stylesheets.getResource(RESTRUCTURED_XSL)), xmlFile,
+                        index, splitParameters, indexFile.toURI());
+            } catch (Exception ex) {
+                LOGGER.log(Level.SEVERE, "Failed to write Restructured Text", ex);
+                failed = true;
+                return;
+            }
+        }
+
+        final Path directory = indexFile.toPath().resolveSibling(basename);
+        final var writtenFiles = new HashSet<Path>();
+        int changed = 0;
+        try {
+            for (final Map.Entry<URI, byte[]> document : documents.entrySet()) {
+                final Path documentPath = Path.of(document.getKey());
+                final Path path = documentPath.resolveSibling(documentPath.getFileName() + compression.getExtension());
+                writtenFiles.add(path);
+                if (OutputFile.writeIfChanged(path, document.getValue(), compression, bufferSize)) {
+                    changed++;
                 }
-                reporter.print(Diagnostic.Kind.NOTE, "Wrote Restructured Text to: " + outFile.getAbsolutePath());
             }
+            OutputFile.writeIfChanged(
+                    Path.of(indexFile.getPath() + compression.getExtension()), index.toByteArray(), compression, bufferSize);
 
-            if (options.hasOption("md")) {
-                final var outFile = new File(xmlFile.getParent(), basename + ".md");
-                try (var inputStream = XmlDoclet.class.getResourceAsStream(MARKDOWN_XSL);) {
-                    transform(inputStream, xmlFile, outFile, parameters);
-                } catch (Exception ex) {
-                    LOGGER.log(Level.SEVERE, "Failed to write Markdown", ex);
+            // remove the documents of packages and types that don't exist anymore
+            try (var files = Files.isDirectory(directory) ? Files.list(directory) : Stream.<Path>empty()) {
+                for (final Path file : files.toList()) {
+                    if (file.getFileName().toString().endsWith(".rst" + compression.getExtension())
+                            && !writtenFiles.contains(file)) {
+                        Files.delete(file);
+                    }
                 }
-                reporter.print(Diagnostic.Kind.NOTE, "Wrote Markdown to: " + outFile.getAbsolutePath());
             }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to write Restructured Text", ex);
+            failed = true;
+            return;
+        }
+
+        reporter.print(Diagnostic.Kind.NOTE, "Wrote Restructured Text to: " + indexFile.getAbsolutePath() + " ("
+                + changed + " of " + documents.size() + " documents in " + directory + " changed)");
+    }
+
+    /**
+     * Writes a document rendered natively from the object model, or transformed from the XML file by a stylesheet.
+     *
+     * @param name the name of the document format, for the messages
+     * @param outFile the document file
+     * @param root the document root
+     * @param xmlFile the written XML file
+     * @param parameters the stylesheet parameters
+     * @param renderer the native renderer, or null to use the stylesheet
+     * @param stylesheet the URI of the stylesheet, or null with a native renderer
+     * @param compression the compression format of the document
+     * @param bufferSize the size of the output buffers
+     */
+    private void writeDocument(
+            final String name, final File outFile, final Root root, final File xmlFile,
+            final Map<String, String> parameters, final Renderer renderer, final URI stylesheet,
+            final Compression compression, final int bufferSize) {
+        try (var output = OutputFile.open(outFile.toPath(), compression, bufferSize)) {
+            if (renderer != null) {
+                final var writer = new BufferedWriter(
+                        new OutputStreamWriter(output.getOutputStream(), StandardCharsets.UTF_8), bufferSize);
+                renderer.render(root, writer);
+                writer.flush();
+            } else {
+                transform(Stylesheets.getShared().get(stylesheet), xmlFile, output.getOutputStream(), parameters, null);
+            }
+            reportOutput(name, outFile, output.commit());
+        } catch (Exception ex) {
+            LOGGER.log(Level.SEVERE, "Failed to write " + name, ex);
+            failed = true;
+        }
+    }
+
+    /**
+     * Compares the API of the written XML file with the one of the previous doclet output given by the
+     * {@code -apiDiff} option and writes the changes next to the XML file (see {@link ApiDiff}).
+     * With the {@code -failOnIncompatible} option, binary incompatible changes fail the doclet, so the javadoc
+     * tool exits with an error code.
+     *
+     * @param xmlFile the written XML file
+     * @param basename the name of the report, without extension
+     */
+    private void compareApi(final File xmlFile, final String basename) {
+        final ApiDiff.Format format;
+        try {
+            format = ApiDiff.Format.of(options.getOptionValue("apiDiffFormat", null));
+        } catch (IllegalArgumentException e) {
+            reporter.print(Diagnostic.Kind.ERROR, e.getMessage());
+            failed = true;
+            return;
+        }
+
+        final var reportFile = new File(xmlFile.getParent(), basename + format.getExtension());
+        final ApiDiff.Summary summary;
+        try (var output = OutputFile.open(reportFile.toPath(), Compression.NONE, getBufferSize())) {
+            summary = ApiDiff.compare(
+                    Path.of(options.getOptionValue("apiDiff")), xmlFile.toPath(), output.getOutputStream(), format);
+            reportOutput("API Diff", reportFile, output.commit());
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to compare the API", e);
+            failed = true;
+            return;
+        }
+
+        final String message = summary.getChanges() + " API changes, " + summary.getIncompatibleChanges()
+                + " of them binary incompatible";
+        if (summary.getIncompatibleChanges() > 0 && options.hasOption("failOnIncompatible")) {
+            reporter.print(Diagnostic.Kind.ERROR, message);
+            failed = true;
+        } else {
+            reporter.print(Diagnostic.Kind.NOTE, message);
+        }
+    }
+
+    /**
+     * Writes the documentation coverage counted while parsing next to the XML file (see {@link DocCoverage}), in the
+     * format of the {@code -coverageFormat} option.
+     *
+     * @param xmlFile the written XML file
+     * @param basename the name of the report, without extension
+     */
+    private void writeCoverage(final File xmlFile, final String basename) {
+        final DocCoverage.Format format;
+        try {
+            format = DocCoverage.Format.of(options.getOptionValue("coverageFormat", null));
+        } catch (IllegalArgumentException e) {
+            reporter.print(Diagnostic.Kind.ERROR, e.getMessage());
+            failed = true;
+            return;
+        }
+
+        final var reportFile = new File(xmlFile.getParent(), basename + format.getExtension());
+        try (var output = OutputFile.open(reportFile.toPath(), Compression.NONE, getBufferSize())) {
+            coverage.write(output.getOutputStream(), format);
+            reportOutput("Coverage", reportFile, output.commit());
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to write the coverage", e);
+            failed = true;
+        }
+    }
+
+    /**
+     * Reports the documentation coverage of all packages. With the {@code -minCoverage} option, a coverage below one
+     * of its thresholds fails the doclet, so the javadoc tool exits with an error code.
+     */
+    private void checkCoverage() {
+        final Map<DocCoverage.Metric, Double> thresholds;
+        try {
+            thresholds = DocCoverage.parseThresholds(options.getOptionValue("minCoverage", ""));
+        } catch (IllegalArgumentException e) {
+            reporter.print(Diagnostic.Kind.ERROR, e.getMessage());
+            failed = true;
+            return;
+        }
+
+        final DocCoverage.PackageCoverage total = coverage.getTotal();
+        final var message = new StringBuilder("Documentation coverage:");
+        for (final DocCoverage.Metric metric : DocCoverage.Metric.values()) {
+            message.append(metric.ordinal() > 0 ? ", " : " ")
+                    .append(DocCoverage.formatPercentage(total.getPercentage(metric))).append("% ")
+                    .append(metric.getKey());
+        }
+        reporter.print(Diagnostic.Kind.NOTE, message.toString());
 
-            if (options.hasOption("docbook")) {
-                reporter.print(Diagnostic.Kind.WARNING, "Docbook transformation is not supported yet.");
+        for (final Map.Entry<DocCoverage.Metric, Double> threshold : thresholds.entrySet()) {
+            final double percentage = total.getPercentage(threshold.getKey());
+            if (percentage < threshold.getValue()) {
+                reporter.print(Diagnostic.Kind.ERROR, "The coverage of " + threshold.getKey().getKey() + " is "
+                        + DocCoverage.formatPercentage(percentage) + "%, below the minimum of "
+                        + DocCoverage.formatPercentage(threshold.getValue()) + "%");
+                failed = true;
             }
+        }
+    }
 
-            if (options.hasOption("adoc")) {
-                reporter.print(Diagnostic.Kind.WARNING, "ASCII transformation is not supported yet.");
+    private void reportOutput(final String name, final File file, final boolean written) {
+        reporter.print(Diagnostic.Kind.NOTE, (written ? "Wrote " + name + " to: " : name + " is unchanged: ")
+                + file.getAbsolutePath());
+    }
+
+    /**
+     * {@return the size of the output buffers given by the {@code -bufferSize} option}
+     */
+    private int getBufferSize() {
+        final String value = options.getOptionValue("bufferSize", null);
+        if (value != null) {
+            try {
+                final int bufferSize = Integer.parseInt(value.trim());
+                if (bufferSize > 0) {
+                    return bufferSize;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
             }
-        } catch (RuntimeException | IOException | JAXBException e) {
-            LOGGER.log(Level.SEVERE, "Failed to write the XML File", e);
+            reporter.print(Diagnostic.Kind.WARNING, "Invalid buffer size " + value + ", using " + DEFAULT_BUFFER_SIZE);
+        }
+
+        return DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * {@return the number of threads the native renderers render packages on}
+     */
+    private static int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * {@return a renderer, which renders only the packages that changed since the previous invocation of a
+     * {@link DocletWatcher}}
+     *
+     * @param output the name of the output
+     * @param renderer the renderer
+     */
+    private <R extends Renderer> R withPackageCache(final String output, final R renderer) {
+        if (incrementalModel != null) {
+            renderer.setPackageCache(incrementalModel.getPackageCache(output));
+        }
+        return renderer;
+    }
+
+    /**
+     * {@return the JAXB context of the object model} Creating it is expensive, so it is created once and shared by all
+     * invocations of the JVM, like the modules of a {@link DocletLauncher}. The context is thread-safe, its
+     * marshallers aren't.
+     */
+    static synchronized JAXBContext getJaxbContext() throws JAXBException {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(Root.class);
         }
+        return jaxbContext;
     }
 
+    /**
+     * Writes the XML object model in the compact profile, where each distinct type is listed only once.
+     *
+     * @param root the document root
+     * @param outputStream the stream to write to
+     * @see CompactXmlWriter
+     */
+    private void writeCompactXml(final Root root, final OutputStream outputStream) throws XMLStreamException {
+        final String encoding = options.getOptionValue("docencoding", "UTF-8");
+        final XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, encoding);
+        try {
+            new CompactXmlWriter(writer).write(root, encoding);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * {@return the object model of the last invocation on the current thread} It is the model the outputs were written
+     * from, or would have been written from with {@code -dryrun}, and null after {@code -pipeline} and
+     * {@code -memoryBudget}, which don't keep the complete model. The root is read-only and returns the same package
+     * beans each time.
+     * @see #registerResultSink(Consumer)
+     */
     public static Root getRoot() {
-        return root;
+        final Supplier<Root> root = ROOT.get();
+        return root == null ? null : root.get();
+    }
+
+    private static Supplier<Root> memoize(final Supplier<Root> supplier) {
+        final var root = new Root[1];
+        return () -> {
+            if (root[0] == null) {
+                root[0] = supplier.get();
+            }
+            return root[0];
+        };
+    }
+
+    /**
+     * {@return the on-demand model of the last invocation on the current thread}
+     */
+    public static LazyModel getModel() {
+        return MODEL.get();
+    }
+
+    /**
+     * Releases the object model and the on-demand model of the last invocation on the current thread. The on-demand
+     * model keeps the {@link jdk.javadoc.doclet.DocletEnvironment} with all compiled sources, so tools running
+     * several invocations on a thread call it after each one, once they don't need {@link #getRoot()} and
+     * {@link #getModel()} anymore.
+     */
+    public static void releaseModel() {
+        ROOT.remove();
+        MODEL.remove();
+    }
+
+    /**
+     * The settings of the output files, given by the options.
+     */
+    private static final class OutputSettings {
+        private final File xmlFile;
+        private final String basename;
+        private final Map<String, String> parameters;
+        private final Compression compression;
+        private final boolean nativeRenderer;
+        private final int bufferSize;
+
+        /**
+         * The custom stylesheets with the extensions of their documents.
+         */
+        private final Map<Path, String> stylesheets;
+
+        private OutputSettings(
+                final File xmlFile, final String basename, final Map<String, String> parameters,
+                final Compression compression, final boolean nativeRenderer, final int bufferSize,
+                final Map<Path, String> stylesheets) {
+            this.xmlFile = xmlFile;
+            this.basename = basename;
+            this.parameters = parameters;
+            this.compression = compression;
+            this.nativeRenderer = nativeRenderer;
+            this.bufferSize = bufferSize;
+            this.stylesheets = stylesheets;
+        }
+
+        /**
+         * {@return the file of a document next to the XML file}
+         *
+         * @param extension the extension of the document format
+         */
+        private File getOutputFile(final String extension) {
+            return new File(xmlFile.getParent(), basename + extension + compression.getExtension());
+        }
+    }
+
+    /**
+     * An output written from the object model, see {@link #getModelOutputs(OutputSettings)}.
+     */
+    @FunctionalInterface
+    private interface ModelOutput {
+        /**
+         * @param root the document root, whose packages may be streamed
+         * @return false if the output failed
+         */
+        boolean write(Root root);
+    }
+
+    /**
+     * A registered result sink, which is unregistered when closed.
+     */
+    @FunctionalInterface
+    public interface ResultSinkRegistration extends AutoCloseable {
+        @Override
+        void close();
     }
 }
@@ -0,0 +1,421 @@
+package com.manticore.tools.xmldoclet;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Merges the plain XML documents written by several doclet invocations, like the modules of a
+ * {@link DocletLauncher}, into one aggregate document in the canonical order of the doclet.
+ *
+ * <pre>
+ * java -cp xml-doclet.jar com.manticore.tools.xmldoclet.XmlMerge javadoc.xml core/javadoc.xml parser/javadoc.xml
+ * </pre>
+ *
+ * <p>
+ * The documents are streamed with StAX in a k-way merge: the doclet writes the packages sorted by name and the types
+ * of each kind sorted by qualified name, so the next package and the next type are always the smallest of the ones
+ * the documents are positioned at. A package split across several documents is written once, with the comment of the
+ * first document that has one and the types of all of them. A type found in several documents is a duplicate, only
+ * its first one is written. The elements are copied event by event, so the memory needed doesn't depend on the size
+ * of the documents: only the qualified names of the types of the current package are kept to detect duplicates of
+ * different kinds.
+ * </p>
+ */
+public final class XmlMerge {
+    private static final XMLEventFactory EVENTS = XMLEventFactory.newFactory();
+    private static final QName NAME = new QName("name");
+    private static final QName QUALIFIED = new QName("qualified");
+
+    /**
+     * The elements documenting a package, which precede its types.
+     */
+    private static final Set<String> PACKAGE_DOCUMENTATION = Set.of("comment", "tag", "link");
+
+    /**
+     * The kinds of types in the order of the schema.
+     */
+    private static final List<String> KINDS = List.of("annotation", "enum", "interface", "class");
+
+    private XmlMerge() {
+    }
+
+    /**
+     * Merges documents into an uncompressed aggregate document, unless it already has the merged content.
+     *
+     * @param documents the plain XML documents written by the doclet, which may be compressed
+     * @param target the aggregate document
+     * @return the result of the merge
+     * @throws XMLStreamException if a document is invalid, in the compact profile or not in the canonical order
+     */
+    public static Result merge(final List<Path> documents, final Path target) throws IOException, XMLStreamException {
+        return merge(documents, target, Compression.NONE, XmlDoclet.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Merges documents into an aggregate document, unless it already has the merged content.
+     *
+     * @param documents the plain XML documents written by the doclet, which may be compressed
+     * @param target the aggregate document
+     * @param compression the compression format of the aggregate document
+     * @param bufferSize the size of the output buffers
+     * @return the result of the merge
+     * @throws XMLStreamException if a document is invalid, in the compact profile or not in the canonical order
+     */
+    static Result merge(
+            final List<Path> documents, final Path target, final Compression compression, final int bufferSize)
+            throws IOException, XMLStreamException {
+        final List<Input> inputs = new ArrayList<>(documents.size());
+        try (var output = OutputFile.open(target, compression, bufferSize)) {
+            for (final Path document : documents) {
+                inputs.add(Input.open(document, inputs.size()));
+            }
+
+            final XMLEventWriter writer =
+                    XMLOutputFactory.newFactory().createXMLEventWriter(output.getOutputStream(), "UTF-8");
+            final List<String> duplicates = new ArrayList<>();
+            try {
+                writer.add(EVENTS.createStartDocument("UTF-8", "1.0", true));
+                writer.add(EVENTS.createCharacters("\n"));
+                writer.add(EVENTS.createStartElement("", "", "root"));
+                mergePackages(inputs, writer, duplicates);
+                writer.add(EVENTS.createCharacters("\n"));
+                writer.add(EVENTS.createEndElement("", "", "root"));
+                writer.add(EVENTS.createEndDocument());
+            } finally {
+                writer.close();
+            }
+            return new Result(output.commit(), duplicates);
+        } finally {
+            for (final Input input : inputs) {
+                input.close();
+            }
+        }
+    }
+
+    private static void mergePackages(
+            final List<Input> inputs, final XMLEventWriter writer, final List<String> duplicates)
+            throws XMLStreamException {
+        final PriorityQueue<Input> queue = new PriorityQueue<>(
+                Comparator.comparing((Input input) -> input.packageName).thenComparingInt(input -> input.index));
+        for (final Input input : inputs) {
+            if (input.nextPackage()) {
+                queue.add(input);
+            }
+        }
+
+        final List<Input> group = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            final String packageName = queue.peek().packageName;
+            while (!queue.isEmpty() && queue.peek().packageName.equals(packageName)) {
+                group.add(queue.poll());
+            }
+            mergePackage(packageName, group, writer, duplicates);
+            for (final Input input : group) {
+                if (input.nextPackage()) {
+                    queue.add(input);
+                }
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Writes a package, merged from the documents that contain it.
+     *
+     * @param packageName the name of the package
+     * @param group the documents positioned at the package, in the order of the documents
+     * @param writer the writer of the aggregate document
+     * @param duplicates the duplicate types found so far
+     */
+    private static void mergePackage(
+            final String packageName, final List<Input> group, final XMLEventWriter writer,
+            final List<String> duplicates) throws XMLStreamException {
+        writer.add(EVENTS.createCharacters("\n    "));
+        writer.add(EVENTS.createStartElement("", "", "package"));
+        writer.add(EVENTS.createAttribute(NAME, packageName));
+
+        // the documentation of the first document that has one
+        boolean documented = false;
+        for (final Input input : group) {
+            input.nextChild();
+            final boolean hasDocumentation = input.isAt(PACKAGE_DOCUMENTATION);
+            while (input.isAt(PACKAGE_DOCUMENTATION)) {
+                if (documented) {
+                    input.skipChild();
+                } else {
+                    input.copyChild(writer);
+                }
+            }
+            documented |= hasDocumentation;
+        }
+
+        // the types of each kind, the first of the smallest qualified name is written
+        final Map<String, Input> origins = new HashMap<>();
+        final PriorityQueue<Input> queue = new PriorityQueue<>(
+                Comparator.comparing((Input input) -> input.qualifiedName).thenComparingInt(input -> input.index));
+        for (final String kind : KINDS) {
+            final Set<String> kinds = Set.of(kind);
+            for (final Input input : group) {
+                if (input.isAt(kinds)) {
+                    queue.add(input);
+                }
+            }
+            while (!queue.isEmpty()) {
+                final Input input = queue.poll();
+                final Input origin = origins.putIfAbsent(input.qualifiedName, input);
+                if (origin != null) {
+                    duplicates.add(input.qualifiedName + " of " + input.document + " is a duplicate of the one of "
+                            + origin.document);
+                    input.skipChild();
+                } else {
+                    input.copyChild(writer);
+                }
+                if (input.isAt(kinds)) {
+                    queue.add(input);
+                }
+            }
+        }
+
+        for (final Input input : group) {
+            if (input.child != null) {
+                throw new XMLStreamException("Unexpected element " + input.child.getName() + " in package "
+                        + packageName + " of " + input.document, input.child.getLocation());
+            }
+        }
+        writer.add(EVENTS.createCharacters("\n    "));
+        writer.add(EVENTS.createEndElement("", "", "package"));
+    }
+
+    /**
+     * Merges the documents given as arguments.
+     *
+     * @param args the aggregate document, followed by the documents to merge
+     */
+    public static void main(final String[] args) throws IOException, XMLStreamException {
+        if (args.length < 2) {
+            System.err.println("Usage: java -cp xml-doclet.jar " + XmlMerge.class.getName()
+                    + " <aggregate document> <documents>...");
+            System.exit(2);
+        }
+        final List<Path> documents = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            documents.add(Path.of(args[i]));
+        }
+        final Result result = merge(documents, Path.of(args[0]));
+        for (final String duplicate : result.getDuplicates()) {
+            System.err.println("Duplicate type " + duplicate);
+        }
+        System.out.println((result.isWritten() ? "Wrote " : "Unchanged ") + args[0]);
+    }
+
+    /**
+     * The result of a merge.
+     */
+    public static final class Result {
+        private final boolean written;
+        private final List<String> duplicates;
+
+        private Result(final boolean written, final List<String> duplicates) {
+            this.written = written;
+            this.duplicates = Collections.unmodifiableList(duplicates);
+        }
+
+        /**
+         * {@return true if the aggregate document was written, false if it was left unchanged}
+         */
+        public boolean isWritten() {
+            return written;
+        }
+
+        /**
+         * {@return the types found in several documents, which were only written from the first one}
+         */
+        public List<String> getDuplicates() {
+            return duplicates;
+        }
+    }
+
+    /**
+     * A document being merged, positioned at a package and at one of its children.
+     */
+    private static final class Input implements Closeable {
+        private final Path document;
+        private final int index;
+        private final InputStream inputStream;
+        private final XMLEventReader reader;
+
+        private String packageName;
+
+        /**
+         * The current child of the package, or null after its last one.
+         */
+        private StartElement child;
+
+        /**
+         * The qualified name of the current child, if it is a type.
+         */
+        private String qualifiedName;
+
+        private Input(final Path document, final int index, final InputStream inputStream)
+                throws XMLStreamException {
+            this.document = document;
+            this.index = index;
+            this.inputStream = inputStream;
+            this.reader = newInputFactory().createXMLEventReader(inputStream);
+            final StartElement root = reader.nextTag().asStartElement();
+            if (CompactXmlWriter.NAMESPACE.equals(root.getName().getNamespaceURI())) {
+                throw new XMLStreamException(
+                        document + " is in the compact profile, only plain XML documents can be merged");
+            }
+        }
+
+        private static Input open(final Path document, final int index) throws IOException, XMLStreamException {
+            final InputStream inputStream = Compression.decompress(Files.newInputStream(document));
+            try {
+                return new Input(document, index, inputStream);
+            } catch (XMLStreamException | RuntimeException e) {
+                inputStream.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Moves to the next package.
+         *
+         * @return false after the last package
+         */
+        private boolean nextPackage() throws XMLStreamException {
+            final StartElement start = nextStartElement();
+            if (start == null) {
+                return false;
+            }
+            if (!"package".equals(start.getName().getLocalPart())) {
+                throw new XMLStreamException("Unexpected element " + start.getName() + " in " + document,
+                        start.getLocation());
+            }
+            final String name = getAttribute(start, NAME);
+            if (packageName != null && packageName.compareTo(name) >= 0) {
+                throw new XMLStreamException("The packages of " + document + " are not in canonical order, " + name
+                        + " follows " + packageName + ". Write the document again with this doclet version.",
+                        start.getLocation());
+            }
+            packageName = name;
+            return true;
+        }
+
+        /**
+         * Moves to the next child of the package.
+         */
+        private void nextChild() throws XMLStreamException {
+            final String previousKind = child != null ? child.getName().getLocalPart() : null;
+            final String previousQualifiedName = qualifiedName;
+            child = nextStartElement();
+            qualifiedName = child != null ? getAttribute(child, QUALIFIED) : null;
+            if (previousQualifiedName != null && child != null && KINDS.contains(previousKind)
+                    && previousKind.equals(child.getName().getLocalPart())
+                    && previousQualifiedName.compareTo(qualifiedName) >= 0) {
+                throw new XMLStreamException("The types of " + document + " are not in canonical order, "
+                        + qualifiedName + " follows " + previousQualifiedName
+                        + ". Write the document again with this doclet version.", child.getLocation());
+            }
+        }
+
+        private boolean isAt(final Set<String> names) {
+            return child != null && names.contains(child.getName().getLocalPart());
+        }
+
+        /**
+         * Copies the current child with its content and moves to the next one.
+         */
+        private void copyChild(final XMLEventWriter writer) throws XMLStreamException {
+            writer.add(EVENTS.createCharacters("\n        "));
+            writer.add(child);
+            int depth = 1;
+            while (depth > 0) {
+                final XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+                writer.add(event);
+            }
+            nextChild();
+        }
+
+        /**
+         * Skips the current child with its content and moves to the next one.
+         */
+        private void skipChild() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0) {
+                final XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                }
+            }
+            nextChild();
+        }
+
+        /**
+         * {@return the next start element of the current parent, or null after its end}
+         */
+        private StartElement nextStartElement() throws XMLStreamException {
+            while (reader.hasNext()) {
+                final XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    return event.asStartElement();
+                } else if (event.isEndElement()) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private static String getAttribute(final StartElement element, final QName name) {
+            final Attribute attribute = element.getAttributeByName(name);
+            return attribute != null ? attribute.getValue() : "";
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
+    private static XMLInputFactory newInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -1,40 +1,24 @@
 // JavaScript code for creating the floating TOC
+//
+// When the TOC container has a `data-index` attribute, the TOC and the search are built from the prebuilt
+// search index written by the `-searchIndex` option, instead of scanning the headings of the page.
+// With the `-splitRst` option, the index contains the document of each entry relative to the index, so the
+// entries link to `document.html#anchor` from every document.
+// When it has a `data-virtual` attribute (`-withVirtualToc` option), only the visible window of the TOC is rendered.
 window.addEventListener('DOMContentLoaded', function() {
   var tocContainer = document.getElementById('floating-toc');
   var showBtn = document.getElementById('toc-hide-show-btn');
   var tocList = document.getElementById('toc-list');
+  var searchInput = document.getElementById('toc-search');
   var headings = document.querySelectorAll('h1, h2, h3');
-  var tocLevels = [0, 0, 0];
 
   // Calculate the initial position of the TOC
   const tocContainerRect = tocContainer.getBoundingClientRect();
   const tocContainerRight = tocContainer.style.right;
   const buttonText = document.getElementById('buttonText');
 
-  headings.forEach(function(heading) {
-    var level = parseInt(heading.tagName.substr(1), 10) - 1;
-
-    tocLevels[level]++;
-    for (var i = level + 1; i < 3; i++) {
-      tocLevels[i] = 0;
-    }
-
-    var listItem = document.createElement('li');
-    var link = document.createElement('a');
-
-    var number = tocLevels.slice(0, level + 1).join('.') + ' ';
-    link.textContent = number + heading.textContent.trim().replace(/#$/, '').replace(/¶$/, '');
-
-    var headingId = 'heading-' + Math.random().toString(36).substr(2, 9);
-    heading.setAttribute('id', headingId);
-    link.href = '#' + headingId;
-
-    var styledHeading = document.createElement('h' + (level + 1));
-    styledHeading.appendChild(link);
-    listItem.appendChild(styledHeading);
-
-    tocList.appendChild(listItem);
-  });
+  // Maximum number of search results shown when searching the index
+  const MAX_RESULTS = 200;
 
   // Toggle TOC visibility
   showBtn.addEventListener('click', function() {
@@ -47,52 +31,376 @@ window.addEventListener('DOMContentLoaded', function() {
     };
   });
 
-  // JavaScript code for searching the TOC
-  var searchInput = document.getElementById('toc-search');
-  var tocItems = Array.from(tocList.getElementsByTagName('li'));
-
-  searchInput.addEventListener('input', function() {
-    var searchValue = this.value.toLowerCase();
+  var view = tocContainer.dataset.virtual === 'true' ? createVirtualView() : createListView();
 
-    tocItems.forEach(function(item) {
-      var link = item.querySelector('a');
-      var linkText = link.textContent.toLowerCase();
+  if (tocContainer.dataset.index) {
+    fetch(tocContainer.dataset.index)
+      .then(function(response) {
+        if (!response.ok) {
+          throw new Error(response.status + ' ' + response.statusText);
+        }
+        return response.json();
+      })
+      .then(initFromIndex)
+      .catch(function(error) {
+        console.warn('Failed to load the search index ' + tocContainer.dataset.index + ', scanning the headings', error);
+        initFromHeadings();
+      });
+  } else {
+    initFromHeadings();
+  }
 
-      if (linkText.includes(searchValue)) {
-        item.style.display = 'block';
-      } else {
-        item.style.display = 'none';
+  // Numbers the TOC entries like 1.2.3, the levels start at `firstLevel`
+  function numberEntries(entries, firstLevel) {
+    var tocLevels = [0, 0, 0];
+    entries.forEach(function(entry) {
+      tocLevels[entry.level]++;
+      for (var i = entry.level + 1; i < 3; i++) {
+        tocLevels[i] = 0;
       }
+      entry.text = tocLevels.slice(firstLevel, entry.level + 1).join('.') + ' ' + entry.text;
     });
-  });
+  }
+
+  // Builds the TOC from the prebuilt index: the packages and types in document order, linked to their stable anchors
+  function initFromIndex(index) {
+    var indexUrl = new URL(tocContainer.dataset.index, document.baseURI);
+    var lowerNames = index.names.map(function(name) {
+      return name.toLowerCase();
+    });
+    var decodedTrigrams = {};
+
+    // packages on the first level, types on the second one
+    var entries = index.toc.map(function(entry, position) {
+      return {
+        level: index.kinds[entry] === 'p' ? 1 : 2,
+        text: index.names[entry],
+        href: getHref(entry),
+        anchor: index.anchors[entry],
+        title: index.qualified[entry],
+        position: position
+      };
+    });
+    numberEntries(entries, 1);
+    view.setEntries(entries);
+
+    // Links an entry to its anchor in this document or, for split documents, in the document of the entry
+    function getHref(entry) {
+      if (!index.docs) {
+        return '#' + index.anchors[entry];
+      }
+      return new URL(index.docs[entry] + '.html#' + index.anchors[entry], indexUrl).href;
+    }
+
+    // Decodes the delta encoded entry numbers of a trigram, once
+    function getPostings(trigram) {
+      var postings = decodedTrigrams[trigram];
+      if (postings === undefined) {
+        var deltas = index.trigrams[trigram] || [];
+        postings = new Int32Array(deltas.length);
+        var value = 0;
+        for (var i = 0; i < deltas.length; i++) {
+          value += deltas[i];
+          postings[i] = value;
+        }
+        decodedTrigrams[trigram] = postings;
+      }
+      return postings;
+    }
+
+    // Binary search for the first name not less than the prefix, the names are sorted case-insensitively
+    function findByPrefix(prefix) {
+      var low = 0;
+      var high = lowerNames.length;
+      while (low < high) {
+        var middle = (low + high) >>> 1;
+        if (lowerNames[middle] < prefix) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+
+      var result = [];
+      for (var i = low; i < lowerNames.length && result.length < MAX_RESULTS && lowerNames[i].startsWith(prefix); i++) {
+        result.push(i);
+      }
+      return result;
+    }
 
-  // JavaScript code for updating the floating TOC on scroll
-  window.addEventListener('scroll', function() {
-    var scrollPosition = window.pageYOffset || document.documentElement.scrollTop;
+    // Intersects the entry numbers of all trigrams of the query, starting with the shortest list
+    function findBySubstring(query) {
+      var lists = [];
+      for (var i = 0; i + 3 <= query.length; i++) {
+        lists.push(getPostings(query.substring(i, i + 3)));
+      }
+      lists.sort(function(a, b) {
+        return a.length - b.length;
+      });
+
+      var result = [];
+      var positions = new Int32Array(lists.length);
+      candidates:
+      for (var c = 0; c < lists[0].length && result.length < MAX_RESULTS; c++) {
+        var candidate = lists[0][c];
+        for (var l = 1; l < lists.length; l++) {
+          var list = lists[l];
+          while (positions[l] < list.length && list[positions[l]] < candidate) {
+            positions[l]++;
+          }
+          if (positions[l] === list.length) {
+            break candidates;
+          }
+          if (list[positions[l]] !== candidate) {
+            continue candidates;
+          }
+        }
+
+        // the trigrams may appear in another order, so verify the match
+        if (lowerNames[candidate].includes(query)) {
+          result.push(candidate);
+        }
+      }
+      return result;
+    }
 
-    var visibleHeading = null;
-    headings.forEach(function(heading) {
-      var rect = heading.getBoundingClientRect();
-      if (rect.top > 0 && rect.top < window.innerHeight) {
-        visibleHeading = heading;
+    searchInput.addEventListener('input', function() {
+      var searchValue = this.value.trim().toLowerCase();
+      if (searchValue.length === 0) {
+        view.show(entries);
         return;
       }
+
+      var result = searchValue.length < 3 ? findByPrefix(searchValue) : findBySubstring(searchValue);
+      view.show(result.map(function(entry) {
+        return {level: 2, text: index.names[entry], href: getHref(entry), title: index.qualified[entry]};
+      }));
+    });
+
+    // the anchors written by restructured.xsl are placed on the section of the heading or just inside of it
+    var positionsByAnchor = {};
+    entries.forEach(function(entry) {
+      positionsByAnchor[entry.anchor] = entry.position;
+    });
+
+    trackActiveHeading(function(heading) {
+      var section = heading.parentElement;
+      if (!section) {
+        return -1;
+      }
+      if (section.id in positionsByAnchor) {
+        return positionsByAnchor[section.id];
+      }
+
+      var anchors = section.querySelectorAll(':scope > span[id]');
+      for (var i = 0; i < anchors.length; i++) {
+        if (anchors[i].id in positionsByAnchor) {
+          return positionsByAnchor[anchors[i].id];
+        }
+      }
+      return -1;
+    });
+  }
+
+  // Builds the TOC by scanning the headings of the page
+  function initFromHeadings() {
+    var entries = Array.from(headings, function(heading, position) {
+      var headingId = heading.id || 'heading-' + Math.random().toString(36).substr(2, 9);
+      heading.setAttribute('id', headingId);
+
+      return {
+        level: parseInt(heading.tagName.substr(1), 10) - 1,
+        text: heading.textContent.trim().replace(/#$/, '').replace(/¶$/, ''),
+        href: '#' + headingId,
+        position: position
+      };
+    });
+    numberEntries(entries, 0);
+    view.setEntries(entries);
+
+    // JavaScript code for searching the TOC
+    searchInput.addEventListener('input', function() {
+      var searchValue = this.value.toLowerCase();
+      view.show(entries.filter(function(entry) {
+        return entry.text.toLowerCase().includes(searchValue);
+      }));
+    });
+
+    trackActiveHeading(function(heading, headingPosition) {
+      return headingPosition;
+    });
+  }
+
+  // Marks the first visible heading as active, the heading positions are the ones of `headings`.
+  // Only headings whose visibility changed are reported by the observer, so no layout is forced while scrolling.
+  function trackActiveHeading(getEntryPosition) {
+    if (!('IntersectionObserver' in window)) {
+      return;
+    }
+
+    var headingPositions = new Map();
+    var visible = new Set();
+    var entryPositions = [];
+    headings.forEach(function(heading, headingPosition) {
+      var entryPosition = getEntryPosition(heading, headingPosition);
+      if (entryPosition >= 0) {
+        headingPositions.set(heading, headingPosition);
+        entryPositions[headingPosition] = entryPosition;
+      }
     });
 
-    if (visibleHeading) {
-      var activeLink = tocList.querySelector('a[href="#' + visibleHeading.id + '"]');
-      if (activeLink) {
-        activeLink.classList.add('active');
-        tocContainer.scrollTop = activeLink.offsetTop - tocContainer.offsetTop;
+    var observer = new IntersectionObserver(function(changes) {
+      changes.forEach(function(change) {
+        var headingPosition = headingPositions.get(change.target);
+        if (change.isIntersecting) {
+          visible.add(headingPosition);
+        } else {
+          visible.delete(headingPosition);
+        }
+      });
+
+      if (visible.size > 0) {
+        view.setActive(entryPositions[Math.min.apply(null, Array.from(visible))]);
       }
+    });
+
+    headingPositions.forEach(function(headingPosition, heading) {
+      observer.observe(heading);
+    });
+  }
+
+  function createItem(entry) {
+    var listItem = document.createElement('li');
+    var link = document.createElement('a');
+    link.textContent = entry.text;
+    link.href = entry.href;
+    if (entry.title) {
+      link.title = entry.title;
+    }
+
+    var styledHeading = document.createElement('h' + (entry.level + 1));
+    styledHeading.appendChild(link);
+    listItem.appendChild(styledHeading);
+    return listItem;
+  }
+
+  // Renders all entries, creating each list item once
+  function createListView() {
+    var activeLink = null;
+    var links = [];
+    var items = new WeakMap();
 
-      // Remove 'active' class from other links
-      var allLinks = tocList.querySelectorAll('a');
-      allLinks.forEach(function(link) {
-        if (link !== activeLink) {
-          link.classList.remove('active');
+    function getItem(entry) {
+      var listItem = items.get(entry);
+      if (!listItem) {
+        listItem = createItem(entry);
+        items.set(entry, listItem);
+        if (entry.position !== undefined) {
+          links[entry.position] = listItem.querySelector('a');
         }
+      }
+      return listItem;
+    }
+
+    function show(entries) {
+      var fragment = document.createDocumentFragment();
+      entries.forEach(function(entry) {
+        fragment.appendChild(getItem(entry));
       });
+      tocList.replaceChildren(fragment);
     }
-  });
+
+    return {
+      setEntries: show,
+      show: show,
+      setActive: function(position) {
+        var link = links[position];
+        if (!link || link === activeLink) {
+          return;
+        }
+
+        if (activeLink) {
+          activeLink.classList.remove('active');
+        }
+        link.classList.add('active');
+        activeLink = link;
+        if (link.isConnected) {
+          tocContainer.scrollTop = link.offsetTop - tocContainer.offsetTop;
+        }
+      }
+    };
+  }
+
+  // Renders only the entries in the visible window of the TOC container, positioned absolutely in a list
+  // as high as all entries together
+  function createVirtualView() {
+    var rowHeight = 0;
+    var shown = [];
+    var activePosition = -1;
+    var renderPending = false;
+    var OVERSCAN = 10;
+
+    tocList.classList.add('virtual');
+
+    function measureRowHeight() {
+      var probe = createItem({level: 0, text: 'M', href: '#'});
+      tocList.replaceChildren(probe);
+      rowHeight = probe.getBoundingClientRect().height || 24;
+      tocList.replaceChildren();
+    }
+
+    function render() {
+      renderPending = false;
+      var listTop = tocList.offsetTop;
+      var first = Math.max(0, Math.floor((tocContainer.scrollTop - listTop) / rowHeight) - OVERSCAN);
+      var last = Math.min(shown.length, first + Math.ceil(tocContainer.clientHeight / rowHeight) + 2 * OVERSCAN);
+
+      var fragment = document.createDocumentFragment();
+      for (var i = first; i < last; i++) {
+        var listItem = createItem(shown[i]);
+        listItem.style.top = (i * rowHeight) + 'px';
+        if (shown[i].position === activePosition) {
+          listItem.querySelector('a').classList.add('active');
+        }
+        fragment.appendChild(listItem);
+      }
+      tocList.replaceChildren(fragment);
+    }
+
+    function scheduleRender() {
+      if (!renderPending) {
+        renderPending = true;
+        window.requestAnimationFrame(render);
+      }
+    }
+
+    tocContainer.addEventListener('scroll', scheduleRender, {passive: true});
+    window.addEventListener('resize', scheduleRender, {passive: true});
+
+    function show(entries) {
+      if (rowHeight === 0) {
+        measureRowHeight();
+      }
+      shown = entries;
+      tocList.style.height = (entries.length * rowHeight) + 'px';
+      scheduleRender();
+    }
+
+    return {
+      setEntries: show,
+      show: show,
+      setActive: function(position) {
+        if (position === activePosition) {
+          return;
+        }
+        activePosition = position;
+
+        // the entries of the TOC are shown at their position unless a search is active
+        if (shown[position] && shown[position].position === position) {
+          tocContainer.scrollTop = tocList.offsetTop + position * rowHeight;
+        }
+        scheduleRender();
+      }
+    };
+  }
 });
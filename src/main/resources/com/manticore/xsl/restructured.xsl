@@ -1,7 +1,9 @@
 <?xml version="1.0" encoding="UTF-8"?>
 <xsl:stylesheet version="2.0"
                 xmlns:xsl="http://www.w3.org/1999/XSL/Transform"
-                xmlns:my="http://manticore-projects.com/my" >
+                xmlns:my="http://manticore-projects.com/my"
+                xmlns:c="http://www.manticore-projects.com/xmldoclet/compact"
+                exclude-result-prefixes="c" >
 
     <xsl:output
             method="xml"
@@ -12,6 +14,24 @@
     <xsl:param name="basePackage" select="''" />
     <xsl:param name="doctitle" select="'Java API'" />
     <xsl:param name="withFloatingToc" select="'false'" />
+    <!-- File name of the prebuilt search index (-searchIndex) loaded by the floating TOC -->
+    <xsl:param name="searchIndex" select="''" />
+    <!-- Render only the visible window of the floating TOC (-withVirtualToc) -->
+    <xsl:param name="withVirtualToc" select="'false'" />
+    <!-- Write one document per package into the split directory, referenced by a toctree (-splitRst) -->
+    <xsl:param name="splitRst" select="'false'" />
+    <xsl:param name="splitDirectory" select="'javadoc'" />
+    <!-- Packages with more constructors and methods are split into one document per type (-splitThreshold) -->
+    <xsl:param name="splitThreshold" select="'1000'" />
+
+    <!-- Type table of the compact XML profile (-compactXml) -->
+    <xsl:key name="types" match="/c:root/types/type" use="@id" />
+
+    <!-- Qualified name of a type node, resolving the reference of the compact XML profile -->
+    <xsl:function name="my:qualified">
+        <xsl:param name="type"/>
+        <xsl:sequence select="if ($type/@ref) then key('types', $type/@ref, root($type))/@qualified else $type/@qualified" />
+    </xsl:function>
 
     <xsl:function name="my:replacePRE">
         <xsl:param name="input"/>
@@ -19,10 +39,11 @@
         <xsl:text>``</xsl:text><xsl:value-of select="normalize-space($content)" disable-output-escaping="yes"/><xsl:text>``</xsl:text>
     </xsl:function>
 
+    <!-- The links are the resolved references of the commented element, see my:replaceLinks -->
     <xsl:function name="my:replaceTags">
         <xsl:param name="input"/>
-        <xsl:variable name="linkTag" select='replace($input, "\{@link [\s|\n]*([^\}]*[^\s])[\s|\n]*\}", "`$1`", "i")' />
-        <xsl:variable name="preTag" select='replace($linkTag, "&lt;pre&gt;\s*([\s\S]*?)\s*&lt;/pre&gt;", "`$1`", "i")'  />
+        <xsl:param name="links"/>
+        <xsl:variable name="preTag" select='replace($input, "&lt;pre&gt;\s*([\s\S]*?)\s*&lt;/pre&gt;", "`$1`", "i")'  />
         <xsl:variable name="codeTag" select='replace($preTag, "\{@code [\s|\n]*([^\}]*[^\s])[\s|\n]*\}", "`$1`", "i")' />
         <xsl:variable name="codeTag1" select='replace($codeTag, "&lt;code&gt;\s*([\s\S]*?)\s*&lt;/code&gt;", "``$1``", "i")' />
 
@@ -34,10 +55,38 @@
 
         <xsl:variable name="anyTag" select='replace($normalized4, "&lt;\s*([\s\S]*?)\s*/?&gt;", "``$1``", "i")' />
 
-        <xsl:value-of select="concat('| ', $anyTag)" disable-output-escaping="yes"/>
+        <!-- links are replaced last, so their targets are not taken for HTML tags -->
+        <xsl:value-of select="concat('| ', my:replaceLinks($anyTag, $links))" disable-output-escaping="yes"/>
 
     </xsl:function>
 
+    <!-- Turns {@link} and {@linkplain} into a reference to the section of the target when the parser resolved it
+        to a documented element, else into interpreted text. Members link to the section of their type. -->
+    <xsl:function name="my:replaceLinks">
+        <xsl:param name="input"/>
+        <xsl:param name="links"/>
+        <xsl:variable name="replaced">
+            <xsl:analyze-string select="$input" regex="\{{@link(plain)?\s+([^\s\}}(]+(\([^)]*\))?)\s*([^\}}]*[^\s\}}])?\s*\}}">
+                <xsl:matching-substring>
+                    <xsl:variable name="link" select="$links[@reference = regex-group(2)][1]" />
+                    <xsl:variable name="label" select="if (regex-group(4)) then regex-group(4) else regex-group(2)" />
+                    <xsl:choose>
+                        <xsl:when test="$link/@anchor">
+                            <xsl:value-of select="concat(':ref:`', $label, ' &lt;', $link/@qualified, '&gt;`')" />
+                        </xsl:when>
+                        <xsl:otherwise>
+                            <xsl:value-of select="concat('`', $label, '`')" />
+                        </xsl:otherwise>
+                    </xsl:choose>
+                </xsl:matching-substring>
+                <xsl:non-matching-substring>
+                    <xsl:value-of select="." />
+                </xsl:non-matching-substring>
+            </xsl:analyze-string>
+        </xsl:variable>
+        <xsl:sequence select="string($replaced)" />
+    </xsl:function>
+
     <xsl:function name="my:className">
         <xsl:param name="input"/>
         <xsl:choose>
@@ -52,13 +101,21 @@
     </xsl:function>
 
 
-    <!-- Match the root element -->
-    <xsl:template match="/root">
+    <!-- The floating TOC, the index prefix is the path from the document to the directory of the search index -->
+    <xsl:template name="floatingToc">
+        <xsl:param name="indexPrefix"/>
         <xsl:if test="$withFloatingToc='true'" >
 <xsl:text disable-output-escaping="yes">
 .. raw:: html
 
-    &lt;div id="floating-toc"&gt;
+    &lt;div id="floating-toc"</xsl:text>
+            <xsl:if test="string-length($searchIndex)>0">
+                <xsl:text disable-output-escaping="yes"> data-index="</xsl:text><xsl:value-of select="concat($indexPrefix, $searchIndex)"/><xsl:text>"</xsl:text>
+            </xsl:if>
+            <xsl:if test="$withVirtualToc='true'">
+                <xsl:text disable-output-escaping="yes"> data-virtual="true"</xsl:text>
+            </xsl:if>
+<xsl:text disable-output-escaping="yes">&gt;
         &lt;div class="search-container"&gt;
             &lt;input type="button" id="toc-hide-show-btn"&gt;&lt;/input&gt;
             &lt;input type="text" id="toc-search" placeholder="Search" /&gt;
@@ -69,6 +126,13 @@
 
 </xsl:text>
         </xsl:if>
+    </xsl:template>
+
+    <!-- Match the root element -->
+    <xsl:template match="/root | /c:root">
+        <xsl:call-template name="floatingToc">
+            <xsl:with-param name="indexPrefix" select="''"/>
+        </xsl:call-template>
         <xsl:text  disable-output-escaping="yes">
 #######################################################################
 </xsl:text><xsl:value-of select="$doctitle"/><xsl:text>
@@ -81,10 +145,32 @@
 </xsl:text></xsl:when>
         </xsl:choose>
 
-        <xsl:for-each select="package">
-            <xsl:sort select="@name"/>
-            <xsl:apply-templates select="."/>
-        </xsl:for-each>
+        <xsl:choose>
+            <xsl:when test="$splitRst='true'">
+                <xsl:text>
+.. toctree::
+    :maxdepth: 2
+
+</xsl:text>
+                <xsl:for-each select="package">
+                    <xsl:value-of select="concat('    ', $splitDirectory, '/', @name, '&#xa;')"/>
+                </xsl:for-each>
+                <xsl:for-each select="package">
+                    <xsl:result-document href="{concat($splitDirectory, '/', @name, '.rst')}">
+                        <!-- the documents are in the split directory, one level below the search index -->
+                        <xsl:call-template name="floatingToc">
+                            <xsl:with-param name="indexPrefix" select="'../'"/>
+                        </xsl:call-template>
+                        <xsl:apply-templates select="."/>
+                    </xsl:result-document>
+                </xsl:for-each>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:for-each select="package">
+                    <xsl:apply-templates select="."/>
+                </xsl:for-each>
+            </xsl:otherwise>
+        </xsl:choose>
     </xsl:template>
 
     <!-- Match package elements -->
@@ -101,30 +187,38 @@
 ***********************************************************************
 </xsl:text>
 
-        <!-- Process enums in the package -->
-        <xsl:for-each select="enum">
-            <xsl:sort select="@qualified"/>
-            <xsl:apply-templates select="."/>
-        </xsl:for-each>
+        <!-- The enums, classes and interfaces in the package -->
+        <xsl:variable name="types" select="enum, class, interface"/>
 
-        <!-- Process classes in the package -->
-        <xsl:for-each select="class">
-            <xsl:sort select="@qualified"/>
-            <xsl:apply-templates select="."/>
-        </xsl:for-each>
+        <xsl:choose>
+            <xsl:when test="$splitRst='true' and count(*/constructor | */method) > number($splitThreshold)">
+                <xsl:text>
+.. toctree::
+    :maxdepth: 1
 
-        <!-- Process classes in the interface -->
-        <xsl:for-each select="interface">
-            <xsl:sort select="@qualified"/>
-            <xsl:apply-templates select="."/>
-        </xsl:for-each>
+</xsl:text>
+                <xsl:for-each select="$types">
+                    <xsl:value-of select="concat('    ', @qualified, '&#xa;')"/>
+                </xsl:for-each>
+                <xsl:for-each select="$types">
+                    <xsl:result-document href="{concat($splitDirectory, '/', @qualified, '.rst')}">
+                        <xsl:call-template name="floatingToc">
+                            <xsl:with-param name="indexPrefix" select="'../'"/>
+                        </xsl:call-template>
+                        <xsl:apply-templates select="."/>
+                    </xsl:result-document>
+                </xsl:for-each>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:apply-templates select="$types"/>
+            </xsl:otherwise>
+        </xsl:choose>
 
     </xsl:template>
 
     <!-- Match interface elements -->
     <xsl:template match="interface">
         <xsl:variable name="interfaceName" select="@name"/>
-        <xsl:variable name="qualifiedInterfaceName" select="@qualified"/>
 
         <!-- Generate reStructuredText heading for interface -->
 <xsl:text  disable-output-escaping="yes">
@@ -141,7 +235,6 @@
             <xsl:when test="interface">
                 <xsl:text>*implements:* </xsl:text>
                 <xsl:for-each select="interface">
-                    <xsl:sort select="@name"/>
                     <xsl:value-of select="my:className(@qualified)" disable-output-escaping="yes"/>
                     <xsl:if test="position() != last()">
                         <xsl:text>, </xsl:text>
@@ -152,11 +245,11 @@
         </xsl:choose>
 
         <xsl:choose>
-            <xsl:when test="//*[interface[@qualified=$qualifiedInterfaceName]]">
+            <!-- the types implementing or extending the interface, indexed by the doclet -->
+            <xsl:when test="implementor">
                 <xsl:text>*provides:* </xsl:text>
-                <xsl:for-each select="//*[interface[@qualified=$qualifiedInterfaceName]]">
-                    <xsl:sort select="@name"/>
-                    <xsl:value-of select="my:className(@qualified)" disable-output-escaping="yes"/>
+                <xsl:for-each select="implementor">
+                    <xsl:value-of select="my:className(my:qualified(.))" disable-output-escaping="yes"/>
                     <xsl:if test="position() != last()">
                         <xsl:text>, </xsl:text>
                     </xsl:if>
@@ -170,7 +263,7 @@
 
         <xsl:choose>
             <xsl:when test="comment">
-                <xsl:value-of select='my:replaceTags(comment)' disable-output-escaping="yes"/>
+                <xsl:value-of select='my:replaceTags(comment, link)' disable-output-escaping="yes"/>
                 <xsl:text>
 
 </xsl:text>
@@ -185,7 +278,6 @@
     <!-- Match class elements -->
     <xsl:template match="class">
         <xsl:variable name="className" select="@name"/>
-        <xsl:variable name="qualifiedClassName" select="@qualified"/>
 
         <!-- Generate reStructuredText heading for class -->
         <xsl:text  disable-output-escaping="yes">
@@ -202,7 +294,7 @@
         <xsl:choose>
             <xsl:when test="class">
 <xsl:text>*extends:* </xsl:text>
-                    <xsl:value-of select="my:className(class/@qualified)" disable-output-escaping="yes"/>
+                    <xsl:value-of select="my:className(my:qualified(class))" disable-output-escaping="yes"/>
                 <xsl:text> </xsl:text>
             </xsl:when>
         </xsl:choose>
@@ -211,8 +303,7 @@
             <xsl:when test="interface">
 <xsl:text>*implements:* </xsl:text>
                 <xsl:for-each select="interface">
-                    <xsl:sort select="@name"/>
-                    <xsl:value-of select="my:className(@qualified)" disable-output-escaping="yes"/>
+                    <xsl:value-of select="my:className(my:qualified(.))" disable-output-escaping="yes"/>
                     <xsl:if test="position() != last()">
                         <xsl:text>, </xsl:text>
                     </xsl:if>
@@ -222,11 +313,11 @@
         </xsl:choose>
 
         <xsl:choose>
-            <xsl:when test="//class[class[@qualified=$qualifiedClassName]]">
+            <!-- the direct subclasses, indexed by the doclet -->
+            <xsl:when test="subclass">
                 <xsl:text>*provides:* </xsl:text>
-                <xsl:for-each select="//class[class[@qualified=$qualifiedClassName]]">
-                    <xsl:sort select="@name"/>
-                    <xsl:value-of select="my:className(@qualified)" disable-output-escaping="yes"/>
+                <xsl:for-each select="subclass">
+                    <xsl:value-of select="my:className(my:qualified(.))" disable-output-escaping="yes"/>
                     <xsl:if test="position() != last()">
                         <xsl:text>, </xsl:text>
                     </xsl:if>
@@ -240,7 +331,7 @@
 
         <xsl:choose>
             <xsl:when test="comment">
-                <xsl:value-of select='my:replaceTags(comment)' disable-output-escaping="yes"/>
+                <xsl:value-of select='my:replaceTags(comment, link)' disable-output-escaping="yes"/>
                 <xsl:text>
 
 </xsl:text>
@@ -261,7 +352,7 @@
 
         <!-- Generate reStructuredText heading for class -->
         <xsl:text  disable-output-escaping="yes">
-..  _</xsl:text><xsl:value-of select="@qualified"/><xsl:text  disable-output-escaping="yes">
+..  _</xsl:text><xsl:value-of select="@qualified"/><xsl:text  disable-output-escaping="yes">:
 
 =======================================================================
 </xsl:text>
@@ -285,7 +376,7 @@
 </xsl:text>
         <xsl:choose>
             <xsl:when test="comment">
-                <xsl:value-of select='my:replaceTags(comment)' disable-output-escaping="yes"/>
+                <xsl:value-of select='my:replaceTags(comment, link)' disable-output-escaping="yes"/>
                 <xsl:text>
 
 </xsl:text>
@@ -316,7 +407,7 @@
 
         <xsl:choose>
             <xsl:when test="comment">
-                <xsl:value-of select='my:replaceTags(comment)' disable-output-escaping="yes"/>
+                <xsl:value-of select='my:replaceTags(comment, link)' disable-output-escaping="yes"/>
                 <xsl:text>
 </xsl:text>
             </xsl:when>
@@ -360,9 +451,9 @@
         </xsl:choose>
         <xsl:text>)</xsl:text>
         <xsl:choose>
-            <xsl:when test="./return[@qualified!='void']">
+            <xsl:when test="./return[my:qualified(.)!='void']">
                 <xsl:text> → </xsl:text>
-                <xsl:value-of select="my:className(./return/@qualified)" disable-output-escaping="yes"/>
+                <xsl:value-of select="my:className(my:qualified(./return))" disable-output-escaping="yes"/>
             </xsl:when>
         </xsl:choose>
         <xsl:text disable-output-escaping="yes">
@@ -370,7 +461,7 @@
 
         <xsl:choose>
             <xsl:when test="comment">
-                <xsl:value-of select='my:replaceTags(comment)' disable-output-escaping="yes"/>
+                <xsl:value-of select='my:replaceTags(comment, link)' disable-output-escaping="yes"/>
                 <xsl:text>
 </xsl:text>
             </xsl:when>
@@ -380,7 +471,7 @@
         <xsl:apply-templates select="parameter"/>
 
         <!-- Process method return -->
-        <xsl:apply-templates select="./return[@qualified!='void']"/>
+        <xsl:apply-templates select="./return[my:qualified(.)!='void']"/>
 
 <xsl:text>
 
@@ -393,13 +484,13 @@
 
         <!-- Generate reStructuredText bullet point for parameter -->
         <xsl:text>|          </xsl:text>
-        <xsl:value-of select="my:className(type/@qualified)" disable-output-escaping="yes"/>
+        <xsl:value-of select="my:className(my:qualified(type))" disable-output-escaping="yes"/>
         <xsl:text> </xsl:text>
         <xsl:value-of select="$paramName"/>
         <xsl:choose>
             <xsl:when test="./return">
                 <xsl:text> </xsl:text>
-                <xsl:value-of select="my:className(./return/@qualified)" disable-output-escaping="yes"/>
+                <xsl:value-of select="my:className(my:qualified(./return))" disable-output-escaping="yes"/>
             </xsl:when>
         </xsl:choose>
         <xsl:choose>
@@ -411,7 +502,7 @@
         <xsl:choose>
             <xsl:when test="../tag[@name='@param' and starts-with(@text, concat($paramName, ' '))]">
                 <xsl:text>  </xsl:text>
-                <xsl:value-of select='my:replaceTags(../tag[@name="@param" and starts-with(@text, $paramName)]/@text)'/>
+                <xsl:value-of select='my:replaceTags(../tag[@name="@param" and starts-with(@text, $paramName)]/@text, ../link)' disable-output-escaping="yes"/>
             </xsl:when>
         </xsl:choose>
         <xsl:text>
@@ -422,7 +513,7 @@
     <xsl:template match="return">
         <!-- Generate reStructuredText bullet point for return -->
         <xsl:text>|          returns </xsl:text>
-        <xsl:value-of select="my:className(@qualified)" disable-output-escaping="yes"/>
+        <xsl:value-of select="my:className(my:qualified(.))" disable-output-escaping="yes"/>
         <xsl:choose>
             <xsl:when test="../tag[@name]='@param'">
                 <xsl:text> ― </xsl:text>
@@ -432,7 +523,7 @@
         <xsl:choose>
             <xsl:when test="../tag[@name='@return']">
                 <xsl:text>  </xsl:text>
-                <xsl:value-of select='my:replaceTags(../tag[@name="@return"]/@text)' />
+                <xsl:value-of select='my:replaceTags(../tag[@name="@return"]/@text, ../link)' disable-output-escaping="yes"/>
             </xsl:when>
         </xsl:choose>
         <xsl:text>
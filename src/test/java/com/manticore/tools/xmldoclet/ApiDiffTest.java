@@ -0,0 +1,168 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the comparison of two doclet outputs
+ */
+class ApiDiffTest {
+    private static final String PREVIOUS = """
+            <root>
+              <package name="a">
+                <interface name="Shape" qualified="a.Shape" scope="public">
+                  <method name="area" signature="double ()" qualified="a.Shape.area" scope="" abstract="true">
+                    <return qualified="double"/>
+                  </method>
+                </interface>
+                <class name="Circle" qualified="a.Circle" scope="public">
+                  <class qualified="java.lang.Object"/>
+                  <interface qualified="a.Shape"/>
+                  <method name="area" signature="double ()" qualified="a.Circle.area" scope="public">
+                    <return qualified="double"/>
+                  </method>
+                  <method name="scale" signature="a.Circle (double)" qualified="a.Circle.scale" scope="public">
+                    <parameter name="factor"><type qualified="double"/></parameter>
+                    <return qualified="a.Circle"/>
+                  </method>
+                  <field name="radius" qualified="radius" scope="public" final="true">
+                    <type qualified="double"/>
+                  </field>
+                </class>
+              </package>
+              <package name="b">
+                <class name="Helper" qualified="b.Helper" scope="">
+                  <method name="help" signature="void ()" qualified="b.Helper.help" scope="">
+                    <return qualified="void"/>
+                  </method>
+                </class>
+              </package>
+            </root>
+            """;
+
+    /**
+     * Circle.scale was removed, Circle.radius changed its type, Circle.perimeter was added, Shape.area moved out of
+     * the interface into Circle and the package private Helper class was removed.
+     */
+    private static final String CURRENT = """
+            <root>
+              <package name="a">
+                <interface name="Shape" qualified="a.Shape" scope="public">
+                  <method name="perimeter" signature="double ()" qualified="a.Shape.perimeter" scope="" abstract="true">
+                    <return qualified="double"/>
+                  </method>
+                </interface>
+                <class name="Circle" qualified="a.Circle" scope="public">
+                  <class qualified="java.lang.Object"/>
+                  <interface qualified="a.Shape"/>
+                  <method name="area" signature="double ()" qualified="a.Circle.area" scope="public">
+                    <return qualified="double"/>
+                  </method>
+                  <method name="perimeter" signature="double ()" qualified="a.Circle.perimeter" scope="public">
+                    <return qualified="double"/>
+                  </method>
+                  <field name="radius" qualified="radius" scope="public" final="true">
+                    <type qualified="float"/>
+                  </field>
+                </class>
+              </package>
+            </root>
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testChanges() throws IOException, XMLStreamException {
+        final var report = new ByteArrayOutputStream();
+        final ApiDiff.Summary summary = ApiDiff.compare(
+                write("previous.xml", PREVIOUS), write("current.xml", CURRENT), report, ApiDiff.Format.XML);
+        final String xml = report.toString(StandardCharsets.UTF_8);
+
+        assertTrue(xml.contains(
+                "<change action=\"added\" kind=\"method\" type=\"a.Circle\" member=\"perimeter()\"/>"), xml);
+        assertTrue(xml.contains(
+                "<change action=\"removed\" kind=\"method\" type=\"a.Circle\" member=\"scale(double)\" incompatible=\"true\"/>"),
+                xml);
+        assertTrue(xml.contains("<change action=\"changed\" kind=\"field\" type=\"a.Circle\" member=\"radius\""
+                + " property=\"type\" previous=\"double\" current=\"float\" incompatible=\"true\"/>"), xml);
+        // the methods of interfaces are implicitly public
+        assertTrue(xml.contains(
+                "<change action=\"removed\" kind=\"method\" type=\"a.Shape\" member=\"area()\" incompatible=\"true\"/>"),
+                xml);
+        // removing a package private class doesn't break other packages
+        assertTrue(xml.contains("<change action=\"removed\" kind=\"class\" type=\"b.Helper\"/>"), xml);
+
+        assertEquals(6, summary.getChanges());
+        assertEquals(3, summary.getIncompatibleChanges());
+        assertTrue(xml.contains("<summary changes=\"6\" incompatible=\"3\"/>"), xml);
+    }
+
+    @Test
+    void testJsonReport() throws IOException, XMLStreamException {
+        final var report = new ByteArrayOutputStream();
+        ApiDiff.compare(write("previous.xml", PREVIOUS), write("current.xml", CURRENT), report, ApiDiff.Format.JSON);
+        final String json = report.toString(StandardCharsets.UTF_8);
+
+        assertTrue(json.contains("{\"action\":\"removed\",\"kind\":\"method\",\"type\":\"a.Circle\","
+                + "\"member\":\"scale(double)\",\"incompatible\":true}"), json);
+        assertTrue(json.endsWith("\"summary\":{\"changes\":6,\"incompatible\":3}}\n"), json);
+    }
+
+    /**
+     * Reduced visibility and a removed interface break compiled classes, a new interface doesn't.
+     */
+    @Test
+    void testTypeChanges() throws IOException, XMLStreamException {
+        final String current = PREVIOUS
+                .replace("<class name=\"Circle\" qualified=\"a.Circle\" scope=\"public\">",
+                        "<class name=\"Circle\" qualified=\"a.Circle\" scope=\"public\">"
+                                + "<interface qualified=\"java.io.Serializable\"/>")
+                .replace("<interface name=\"Shape\" qualified=\"a.Shape\" scope=\"public\">",
+                        "<interface name=\"Shape\" qualified=\"a.Shape\" scope=\"\">");
+        final ApiDiff.Summary summary = ApiDiff.compare(
+                write("previous.xml", PREVIOUS), write("current.xml", current), new ByteArrayOutputStream(),
+                ApiDiff.Format.XML);
+
+        assertEquals(2, summary.getChanges());
+        assertEquals(1, summary.getIncompatibleChanges());
+
+        final ApiDiff.Summary reverse = ApiDiff.compare(
+                write("current.xml", current), write("previous.xml", PREVIOUS), new ByteArrayOutputStream(),
+                ApiDiff.Format.XML);
+        assertEquals(2, reverse.getChanges());
+        assertEquals(1, reverse.getIncompatibleChanges());
+    }
+
+    @Test
+    void testSameApi() throws IOException, XMLStreamException {
+        final ApiDiff.Summary summary = ApiDiff.compare(
+                write("previous.xml", PREVIOUS), write("current.xml", PREVIOUS), new ByteArrayOutputStream(),
+                ApiDiff.Format.XML);
+        assertEquals(0, summary.getChanges());
+    }
+
+    /**
+     * Older outputs without the canonical order can't be merged.
+     */
+    @Test
+    void testUnsortedPackages() throws IOException {
+        final String unsorted = PREVIOUS.replace("<package name=\"b\">", "<package name=\"0\">");
+        final Path previous = write("previous.xml", unsorted);
+        assertThrows(XMLStreamException.class,
+                () -> ApiDiff.compare(previous, previous, new ByteArrayOutputStream(), ApiDiff.Format.XML));
+    }
+
+    private Path write(final String name, final String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content);
+    }
+}
@@ -12,13 +12,18 @@ import com.manticore.tools.xmldoclet.simpledata.Class7;
 import com.manticore.tools.xmldoclet.simpledata.Class8;
 import com.manticore.tools.xmldoclet.simpledata.Class9;
 import com.manticore.tools.xmldoclet.simpledata.ClassAnnotationCascade;
+import com.manticore.tools.xmldoclet.simpledata.Field1;
+import com.manticore.tools.xmldoclet.simpledata.MethodsA;
 import com.manticore.tools.xmldoclet.xjc.AnnotationArgument;
 import com.manticore.tools.xmldoclet.xjc.AnnotationInstance;
+import com.manticore.tools.xmldoclet.xjc.Field;
+import com.manticore.tools.xmldoclet.xjc.Method;
 import com.manticore.tools.xmldoclet.xjc.TypeInfo;
 import com.manticore.tools.xmldoclet.xjc.TypeParameter;
 import org.junit.jupiter.api.Test;
 
 import java.io.Serializable;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -301,7 +306,8 @@ class ClassTest extends AbstractTest {
         final var javaDocElements = newJavaDocElements("Class5.java", "Class3.java");
         final var rootNode = javaDocElements.rootNode();
         final var packageNode = javaDocElements.packageNode();
-        final var classNode = javaDocElements.classNode();
+        // the classes are sorted by their qualified name
+        final var classNode = packageNode.getClazz().get(1);
 
         assertEquals(1, rootNode.getPackage().size());
         assertNull(packageNode.getComment());
@@ -886,4 +892,22 @@ class ClassTest extends AbstractTest {
         assertFalse(argument.isPrimitive());
         assertTrue(argument.isArray());
     }
+
+    /**
+     * The types and their members are sorted by name, independent of the order of the source files
+     */
+    @Test
+    void testCanonicalOrder() {
+        final var packageNode = newJavaDocElements("MethodsA.java", "Field1.java", "Class3.java").packageNode();
+        assertEquals(
+                List.of(Class3.class.getName(), Field1.class.getName(), MethodsA.class.getName()),
+                packageNode.getClazz().stream().map(com.manticore.tools.xmldoclet.xjc.Class::getQualified).toList());
+
+        final var methods = packageNode.getClazz().get(2).getMethod();
+        assertEquals(List.of("method1", "method10", "method2"),
+                methods.stream().map(Method::getName).limit(3).toList());
+
+        final var fields = packageNode.getClazz().get(1).getField();
+        assertEquals(List.of("field0", "field1", "field10"), fields.stream().map(Field::getName).limit(3).toList());
+    }
 }
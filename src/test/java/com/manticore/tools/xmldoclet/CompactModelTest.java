@@ -0,0 +1,189 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the compact in-memory model
+ */
+class CompactModelTest extends AbstractTest {
+    private final Root rootNode;
+    private final CompactModel model = new CompactModel();
+
+    public CompactModelTest() {
+        this.rootNode = newJavaDocElements("Annotation3.java", "Annotation9.java", "Class3.java", "Class9.java",
+                "Class26.java", "Enum3.java", "Field1.java", "Interface2.java", "Interface3.java", "MethodsA.java",
+                "Tag1.java").rootNode();
+        for (final Package packageNode : rootNode.getPackage()) {
+            model.add(packageNode);
+        }
+    }
+
+    /**
+     * The projection of the compact model is written exactly like the beans it was created from.
+     */
+    @Test
+    void testProjectionIsEquivalent() throws XMLStreamException {
+        assertEquals(write(rootNode), write(model.toRoot()));
+    }
+
+    @Test
+    void testPackagesAreProjectedOnAccess() {
+        final Root projectedRoot = model.toRoot();
+        assertEquals(rootNode.getPackage().size(), projectedRoot.getPackage().size());
+        assertEquals(SIMPLE_DATA_PACKAGE, projectedRoot.getPackage().get(0).getName());
+        assertSame(projectedRoot.getPackage().get(0), projectedRoot.getPackage().get(0));
+        assertNotSame(projectedRoot.getPackage().get(0), model.toRoot().getPackage().get(0));
+        assertThrows(UnsupportedOperationException.class, () -> projectedRoot.getPackage().add(new Package()));
+
+        // the writers visit each package once, so the streamed root doesn't keep them
+        final Root streamedRoot = model.projectRoot();
+        assertNotSame(streamedRoot.getPackage().get(0), streamedRoot.getPackage().get(0));
+    }
+
+    @Test
+    void testReverseReferencesAreReplaced() {
+        final String class3 = getElementPathFromSimpleDataPackage("Class3");
+        assertFalse(model.toRoot().getPackage().get(0).getClazz().stream()
+                .filter(classNode -> classNode.getQualified().equals(class3))
+                .findFirst().orElseThrow().getSubclass().isEmpty());
+
+        model.setReverseReferences(class3, new Class());
+        assertTrue(model.toRoot().getPackage().get(0).getClazz().stream()
+                .filter(classNode -> classNode.getQualified().equals(class3))
+                .findFirst().orElseThrow().getSubclass().isEmpty());
+    }
+
+    /**
+     * A model with a tiny memory budget spills every package, and projects them like a model holding them in memory.
+     */
+    @Test
+    void testSpilledPackagesAreEquivalent() throws XMLStreamException {
+        final Path segmentDirectory;
+        try (var spillingModel = new CompactModel(1)) {
+            for (final Package packageNode : rootNode.getPackage()) {
+                spillingModel.add(packageNode);
+            }
+            assertEquals(rootNode.getPackage().size(), spillingModel.getSpilledPackages());
+            assertEquals(write(model.toRoot()), write(spillingModel.toRoot()));
+            assertThrows(IllegalStateException.class,
+                    () -> spillingModel.setReverseReferences(getElementPathFromSimpleDataPackage("Class3"), new Class()));
+
+            segmentDirectory = spillingModel.getSegmentDirectory();
+            assertTrue(Files.isDirectory(segmentDirectory));
+        }
+        assertFalse(Files.exists(segmentDirectory));
+    }
+
+    /**
+     * Every spill is appended to the same segment file, so spilling many packages doesn't open a file per spill.
+     */
+    @Test
+    void testSpillsShareOneSegmentFile() throws IOException {
+        final int packageCount = 5000;
+        try (var spillingModel = new CompactModel(1)) {
+            for (int i = 0; i < packageCount; i++) {
+                final var packageNode = new Package();
+                packageNode.setName("p" + i);
+                spillingModel.add(packageNode);
+            }
+            assertEquals(packageCount, spillingModel.getSpilledPackages());
+            try (var files = Files.list(spillingModel.getSegmentDirectory())) {
+                assertEquals(1, files.count());
+            }
+
+            final List<Package> packages = spillingModel.toRoot().getPackage();
+            assertEquals(packageCount, packages.size());
+            assertEquals("p0", packages.get(0).getName());
+            assertEquals("p2500", packages.get(2500).getName());
+            assertEquals("p4999", packages.get(packageCount - 1).getName());
+        }
+    }
+
+    /**
+     * The interned names of the spilled packages are released with them, so a budget limits the heap even if most
+     * names are unique.
+     */
+    @Test
+    void testUniqueNamesStayWithinBudget() {
+        final long budget = 1L << 20;
+        final long before = getUsedHeapAfterGc();
+        try (var spillingModel = new CompactModel(budget)) {
+            for (int i = 0; i < 50; i++) {
+                final var packageNode = new Package();
+                packageNode.setName("p" + i);
+                final var classNode = new Class();
+                classNode.setName("Type");
+                classNode.setQualified("p" + i + ".Type");
+                for (int j = 0; j < 1000; j++) {
+                    final String name = "uniqueMethodNameWithSomeLengthToFillTheBudget" + i + "x" + j;
+                    final var method = new Method();
+                    method.setName(name);
+                    method.setQualified(classNode.getQualified() + "." + name);
+                    method.setSignature("(java.lang.String " + name + "Parameter)");
+                    classNode.getMethod().add(method);
+                }
+                packageNode.getClazz().add(classNode);
+                spillingModel.add(packageNode);
+            }
+
+            // about 30 MB of unique names were interned
+            final long retained = getUsedHeapAfterGc() - before;
+            assertTrue(spillingModel.getSpilledPackages() > 40);
+            assertTrue(retained < 8 * budget, "The model retains " + (retained >> 10) + " KB");
+        }
+    }
+
+    /**
+     * {@return the used heap after requesting full collections until it doesn't shrink anymore}
+     */
+    private static long getUsedHeapAfterGc() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            final long current = memory.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    @Test
+    void testMemoryBudget() {
+        assertEquals(512, XmlDoclet.parseMemoryBudget("512"));
+        assertEquals(64L << 10, XmlDoclet.parseMemoryBudget("64k"));
+        assertEquals(512L << 20, XmlDoclet.parseMemoryBudget(" 512M "));
+        assertEquals(2L << 30, XmlDoclet.parseMemoryBudget("2g"));
+        for (final String invalid : new String[] {"", "g", "0", "-1m", "1.5g", "1t", "9223372036854775807g"}) {
+            assertThrows(IllegalArgumentException.class, () -> XmlDoclet.parseMemoryBudget(invalid));
+        }
+    }
+
+    private static String write(final Root root) throws XMLStreamException {
+        final var outputStream = new ByteArrayOutputStream();
+        final XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, "UTF-8");
+        new CompactXmlWriter(writer).write(root, "UTF-8");
+        writer.close();
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+}
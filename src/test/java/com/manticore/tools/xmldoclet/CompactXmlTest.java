@@ -0,0 +1,80 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Field;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the compact XML profile
+ */
+class CompactXmlTest extends AbstractTest {
+    private final Root rootNode;
+    private final String compactXml;
+
+    public CompactXmlTest() throws Exception {
+        this.rootNode = newJavaDocElements("Field1.java").rootNode();
+
+        final var outputStream = new ByteArrayOutputStream();
+        final XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, "UTF-8");
+        new CompactXmlWriter(writer).write(rootNode, "UTF-8");
+        writer.close();
+        this.compactXml = outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Each distinct type is written only once into the type table.
+     */
+    @Test
+    void testTypeTableIsDeduplicated() {
+        assertEquals(1, countOccurrences(compactXml, "qualified=\"java.lang.String\""));
+        assertTrue(compactXml.indexOf("<types>") > compactXml.lastIndexOf("</package>"));
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        final Root compactRoot = CompactXmlReader.read(new ByteArrayInputStream(compactXml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, compactRoot.getPackage().size());
+
+        final List<Field> expectedFields = rootNode.getPackage().get(0).getClazz().get(0).getField();
+        final List<Field> fields = compactRoot.getPackage().get(0).getClazz().get(0).getField();
+        assertEquals(expectedFields.size(), fields.size());
+
+        for (int i = 0; i < fields.size(); i++) {
+            final Field expected = expectedFields.get(i);
+            final Field field = fields.get(i);
+            assertEquals(expected.getName(), field.getName());
+            assertEquals(expected.getScope(), field.getScope());
+            assertEquals(expected.isStatic(), field.isStatic());
+            assertEquals(expected.isVolatile(), field.isVolatile());
+            assertEquals(expected.getConstant(), field.getConstant());
+            assertEquals(expected.getAnnotation().size(), field.getAnnotation().size());
+            assertEquals(expected.getType().getQualified(), field.getType().getQualified());
+            assertEquals(expected.getType().getDimension(), field.getType().getDimension());
+            assertEquals(expected.getType().getGeneric().size(), field.getType().getGeneric().size());
+        }
+    }
+
+    @Test
+    void testSameTypeIsShared() throws Exception {
+        final Root compactRoot = CompactXmlReader.read(new ByteArrayInputStream(compactXml.getBytes(StandardCharsets.UTF_8)));
+        final List<Field> fields = compactRoot.getPackage().get(0).getClazz().get(0).getField();
+        assertSame(fields.get(0).getType(), fields.get(1).getType());
+    }
+
+    private static int countOccurrences(final String text, final String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+}
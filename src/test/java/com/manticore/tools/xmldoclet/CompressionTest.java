@@ -0,0 +1,80 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the compressed outputs
+ */
+class CompressionTest {
+    private static final byte[] CONTENT = "<root><package name=\"a.b.c\"/></root>\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testGzipRoundTrip() throws IOException {
+        assertRoundTrip(Compression.GZIP);
+    }
+
+    @Test
+    void testDeflateRoundTrip() throws IOException {
+        assertRoundTrip(Compression.DEFLATE);
+    }
+
+    /**
+     * Uncompressed content is passed through unchanged when reading.
+     */
+    @Test
+    void testUncompressedIsPassedThrough() throws IOException {
+        try (var inputStream = Compression.decompress(new ByteArrayInputStream(CONTENT))) {
+            assertArrayEquals(CONTENT, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void testUnknownFormat() {
+        assertEquals(Compression.NONE, Compression.of(null));
+        assertEquals(Compression.GZIP, Compression.of("GZip"));
+        assertThrows(IllegalArgumentException.class, () -> Compression.of("rar"));
+    }
+
+    /**
+     * A failure of the pipeline thread is reported to the writer.
+     */
+    @Test
+    void testPipelineFailureIsRethrown() {
+        final var failingStream = new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        assertThrows(IOException.class, () -> {
+            try (var outputStream = new PipelinedOutputStream(failingStream, 16)) {
+                outputStream.write(CONTENT);
+            }
+        });
+    }
+
+    private static void assertRoundTrip(final Compression compression) throws IOException {
+        final var compressed = new ByteArrayOutputStream();
+        try (var outputStream = new PipelinedOutputStream(compression.compress(compressed, 512), 1024)) {
+            outputStream.write(CONTENT, 0, 100);
+            outputStream.write('x');
+            outputStream.write(CONTENT, 101, CONTENT.length - 101);
+        }
+        assertTrue(compressed.size() < CONTENT.length);
+
+        final byte[] expected = CONTENT.clone();
+        expected[100] = 'x';
+        try (var inputStream = Compression.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(expected, inputStream.readAllBytes());
+        }
+    }
+}
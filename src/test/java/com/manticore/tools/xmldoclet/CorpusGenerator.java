@@ -0,0 +1,233 @@
+package com.manticore.tools.xmldoclet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates a synthetic source tree for the scaling tests, since the {@code simpledata} classes are too few to reveal
+ * costs that grow faster than the documented API. The tree is deterministic for the same settings.
+ *
+ * <p>
+ * Each package has an annotation type, and the types of a package are mostly classes, with every tenth an interface
+ * and every tenth an enum. A class extends the previous class of its package, so inheritance chains are at most five
+ * types deep. The members refer to types of the same and of the previous package, through generic types nested up to
+ * the generics depth, so the subclasses, usages and links are resolved across packages.
+ * </p>
+ */
+class CorpusGenerator {
+    private static final String[] WORDS = {
+            "parser", "returns", "the", "statement", "expression", "of", "a", "column", "table", "with", "given",
+            "value", "index", "and", "for", "each", "visitor", "node", "list", "name"};
+
+    /**
+     * The root package of the generated packages.
+     */
+    static final String ROOT_PACKAGE = "generated";
+
+    private final int packages;
+    private final int typesPerPackage;
+    private final int membersPerType;
+    private int genericsDepth = 2;
+    private int annotationsPerMember = 1;
+    private int commentSentences = 3;
+
+    /**
+     * @param packages the number of packages
+     * @param typesPerPackage the number of types of each package, without its annotation type
+     * @param membersPerType the number of methods and fields of each type
+     */
+    CorpusGenerator(final int packages, final int typesPerPackage, final int membersPerType) {
+        this.packages = packages;
+        this.typesPerPackage = typesPerPackage;
+        this.membersPerType = membersPerType;
+    }
+
+    /**
+     * @param genericsDepth how deep the type arguments of the member types are nested
+     * @return this generator
+     */
+    CorpusGenerator withGenericsDepth(final int genericsDepth) {
+        this.genericsDepth = genericsDepth;
+        return this;
+    }
+
+    /**
+     * @param annotationsPerMember the number of annotations of each member, at most three
+     * @return this generator
+     */
+    CorpusGenerator withAnnotationsPerMember(final int annotationsPerMember) {
+        this.annotationsPerMember = annotationsPerMember;
+        return this;
+    }
+
+    /**
+     * @param commentSentences the number of sentences of each comment
+     * @return this generator
+     */
+    CorpusGenerator withCommentSentences(final int commentSentences) {
+        this.commentSentences = commentSentences;
+        return this;
+    }
+
+    /**
+     * {@return the number of generated types, including the annotation types}
+     */
+    int getTypeCount() {
+        return packages * (typesPerPackage + 1);
+    }
+
+    /**
+     * Writes the source tree.
+     *
+     * @param directory the source path to write the packages into
+     */
+    void generate(final Path directory) throws IOException {
+        final var random = new Random(packages * 31L + typesPerPackage);
+        for (int p = 0; p < packages; p++) {
+            final Path packageDirectory = Files.createDirectories(directory.resolve(ROOT_PACKAGE + "/" + packageName(p)));
+            Files.writeString(packageDirectory.resolve("Marker.java"), annotationType(p, random));
+            for (int t = 0; t < typesPerPackage; t++) {
+                Files.writeString(packageDirectory.resolve(typeName(t) + ".java"), type(p, t, random));
+            }
+        }
+    }
+
+    private String annotationType(final int p, final Random random) {
+        final var builder = new StringBuilder(1024);
+        builder.append("package ").append(qualifiedPackageName(p)).append(";\n\n");
+        comment(builder, "", random, null);
+        builder.append("@java.lang.annotation.Documented\n");
+        builder.append("public @interface Marker {\n");
+        comment(builder, "    ", random, null);
+        builder.append("    String value() default \"\";\n\n");
+        comment(builder, "    ", random, null);
+        builder.append("    int priority() default 0;\n}\n");
+        return builder.toString();
+    }
+
+    private String type(final int p, final int t, final Random random) {
+        final String kind = t % 10 == 5 ? "interface" : t % 10 == 9 ? "enum" : "class";
+        final var builder = new StringBuilder(4096);
+        builder.append("package ").append(qualifiedPackageName(p)).append(";\n\n");
+        builder.append("import java.util.List;\nimport java.util.Map;\n\n");
+
+        comment(builder, "", random, kind.equals("enum") ? null : "@param <T> the element type");
+        builder.append("@Marker(\"").append(typeName(t)).append("\")\n");
+        builder.append("public ").append(kind).append(' ').append(typeName(t));
+        if (kind.equals("enum")) {
+            builder.append(" {\n    ");
+            for (int c = 0; c < 3; c++) {
+                builder.append(c > 0 ? ", " : "").append("CONSTANT_").append(c);
+            }
+            builder.append(";\n\n");
+        } else {
+            builder.append("<T extends Comparable<T>>");
+            final int superclass = previousClass(t);
+            if (kind.equals("class") && superclass >= 0) {
+                builder.append(" extends ").append(typeName(superclass)).append("<T>");
+            }
+            builder.append(" {\n");
+        }
+
+        for (int m = 0; m < membersPerType; m++) {
+            member(builder, p, t, m, kind, random);
+        }
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private void member(
+            final StringBuilder builder, final int p, final int t, final int m, final String kind,
+            final Random random) {
+        final boolean field = m % 3 == 2 && !kind.equals("interface");
+        final String type = memberType(p, t, m, kind);
+        comment(builder, "    ", random, field ? null : "@param argument the argument\n     * @return the result");
+        annotations(builder, m);
+        if (field) {
+            builder.append("    public ").append(type).append(" field").append(m).append(";\n\n");
+        } else {
+            builder.append("    ").append(kind.equals("interface") ? "" : "public ").append(type)
+                    .append(" method").append(m).append("(final ").append(typeName((t + m) % typesPerPackage))
+                    .append(isEnum((t + m) % typesPerPackage) ? "" : "<?>")
+                    .append(" argument)");
+            builder.append(kind.equals("interface") ? ";\n\n" : " {\n        return null;\n    }\n\n");
+        }
+    }
+
+    /**
+     * {@return the type of a member, a type of the previous package nested into generic types}
+     */
+    private String memberType(final int p, final int t, final int m, final String kind) {
+        final int target = (t + m) % typesPerPackage;
+        String type = qualifiedPackageName(Math.max(0, p - 1)) + "." + typeName(target);
+        if (!isEnum(target)) {
+            type += "<" + (kind.equals("enum") ? "String" : "T") + ">";
+        }
+        for (int d = 0; d < genericsDepth; d++) {
+            type = d % 2 == 0 ? "List<" + type + ">" : "Map<String, " + type + ">";
+        }
+        return type;
+    }
+
+    private void annotations(final StringBuilder builder, final int m) {
+        if (annotationsPerMember > 0) {
+            builder.append("    @Marker(value = \"member").append(m).append("\", priority = ").append(m).append(")\n");
+        }
+        if (annotationsPerMember > 1) {
+            builder.append("    @Deprecated(since = \"1.").append(m).append("\")\n");
+        }
+        if (annotationsPerMember > 2) {
+            builder.append("    @SuppressWarnings(\"unchecked\")\n");
+        }
+    }
+
+    private void comment(final StringBuilder builder, final String indent, final Random random, final String tags) {
+        builder.append(indent).append("/**\n").append(indent).append(" *");
+        for (int s = 0; s < commentSentences; s++) {
+            builder.append(' ');
+            final int words = 6 + random.nextInt(10);
+            for (int w = 0; w < words; w++) {
+                final String word = WORDS[random.nextInt(WORDS.length)];
+                builder.append(w == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                builder.append(w + 1 < words ? " " : ".");
+            }
+            if (s % 2 == 1) {
+                builder.append(" See {@link ").append(typeName(random.nextInt(typesPerPackage))).append("}.");
+            }
+        }
+        builder.append('\n');
+        if (tags != null) {
+            builder.append(indent).append(" *\n").append(indent).append(" * ").append(tags).append('\n');
+        }
+        builder.append(indent).append(" */\n");
+    }
+
+    /**
+     * {@return the previous class of a package, or -1 for every fifth class, so the inheritance chains are short}
+     */
+    private static int previousClass(final int t) {
+        int previous = t - 1;
+        while (previous >= 0 && (previous % 10 == 5 || previous % 10 == 9)) {
+            previous--;
+        }
+        return t % 5 == 0 ? -1 : previous;
+    }
+
+    private static boolean isEnum(final int t) {
+        return t % 10 == 9;
+    }
+
+    private static String packageName(final int p) {
+        return String.format("p%04d", p);
+    }
+
+    private static String qualifiedPackageName(final int p) {
+        return ROOT_PACKAGE + "." + packageName(p);
+    }
+
+    private static String typeName(final int t) {
+        return String.format("Type%04d", t);
+    }
+}
@@ -0,0 +1,131 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Element;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the documentation coverage counted while parsing
+ */
+class DocCoverageTest {
+    private static final String SOURCE = """
+            package p;
+
+            /** Documented. */
+            public class Api {
+                /** Documented. */
+                public int documented;
+
+                public int undocumented;
+
+                int notApi;
+
+                /**
+                 * Adds.
+                 *
+                 * @param a the first summand
+                 * @return the sum
+                 */
+                public int add(int a, int b) {
+                    return a + b;
+                }
+
+                /** {@return the name} */
+                public String name() {
+                    return "";
+                }
+
+                public void run(int count) {
+                }
+
+                /** Documented. */
+                public enum Mode {
+                    /** Documented. */
+                    FIRST,
+                    SECOND
+                }
+
+                static class NotApi {
+                    public void ignored() {
+                    }
+                }
+            }
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testCoverageIsCountedWhileParsing() throws Exception {
+        final var messages = new StringWriter();
+        assertTrue(document(messages, "-compactXml", "-coverage"), messages.toString());
+
+        final Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(directory.resolve("out/javadoc.coverage.xml").toFile()).getDocumentElement();
+        final var packageNode = (Element) root.getElementsByTagName("package").item(0);
+        assertEquals("p", packageNode.getAttribute("name"));
+        assertEquals("false", packageNode.getAttribute("documented"));
+
+        // the class, its default constructor, two fields, three methods, the enum and its two constants
+        final var summary = (Element) root.getElementsByTagName("summary").item(0);
+        assertEquals("10", summary.getAttribute("elements"));
+        assertEquals("6", summary.getAttribute("commented"));
+        assertEquals("60.0", summary.getAttribute("commentCoverage"));
+        assertEquals("3", summary.getAttribute("params"));
+        assertEquals("1", summary.getAttribute("documentedParams"));
+        assertEquals("2", summary.getAttribute("returns"));
+        assertEquals("2", summary.getAttribute("documentedReturns"));
+        assertTrue(messages.toString().contains("Documentation coverage: 60.0% comments, 33.3% params, 100.0% returns"),
+                messages.toString());
+    }
+
+    @Test
+    void testThresholdsFailTheRun() throws IOException {
+        final var passed = new StringWriter();
+        assertTrue(document(passed, "-dryrun", "-minCoverage", "comments=60,returns=100"), passed.toString());
+
+        final var failed = new StringWriter();
+        assertFalse(document(failed, "-dryrun", "-minCoverage", "comments=50, params=50%"));
+        assertTrue(failed.toString().contains("The coverage of params is 33.3%, below the minimum of 50.0%"),
+                failed.toString());
+        assertFalse(failed.toString().contains("The coverage of comments"), failed.toString());
+        assertFalse(Files.exists(directory.resolve("out")));
+    }
+
+    @Test
+    void testThresholds() {
+        assertEquals(Map.of(DocCoverage.Metric.COMMENTS, 90.0, DocCoverage.Metric.RETURNS, 75.5),
+                DocCoverage.parseThresholds(" comments=90 ,returns=75.5%"));
+        assertTrue(DocCoverage.parseThresholds("").isEmpty());
+        for (final String invalid : new String[] {"comments", "comments=", "comments=101", "tags=50", "params=-1"}) {
+            assertThrows(IllegalArgumentException.class, () -> DocCoverage.parseThresholds(invalid));
+        }
+    }
+
+    private boolean document(final StringWriter messages, final String... options) throws IOException {
+        final Path packageDirectory = Files.createDirectories(directory.resolve("src/p"));
+        Files.writeString(packageDirectory.resolve("Api.java"), SOURCE);
+
+        final List<String> arguments = new ArrayList<>(List.of("-sourcepath", directory.resolve("src").toString(),
+                "-d", directory.resolve("out").toString(), "p"));
+        arguments.addAll(List.of(options));
+        final DocumentationTool javadoc = ToolProvider.getSystemDocumentationTool();
+        try (var writer = new PrintWriter(messages)) {
+            return javadoc.getTask(writer, null, null, XmlDoclet.class, arguments, null).call();
+        }
+    }
+}
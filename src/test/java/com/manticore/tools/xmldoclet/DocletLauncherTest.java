@@ -0,0 +1,124 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the multi-module launcher
+ */
+class DocletLauncherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testManifest() {
+        final var manifest = new Properties();
+        manifest.setProperty("modules", "core, parser");
+        manifest.setProperty("options", " -rst  -noTimestamp ");
+        manifest.setProperty("directory", "build/docs");
+        manifest.setProperty("parser.sourcepath", "parser/src" + File.pathSeparator + "generated");
+        manifest.setProperty("parser.classpath", "libs/antlr.jar");
+        manifest.setProperty("parser.subpackages", "com.example.parser");
+        manifest.setProperty("parser.options", "-inheritedMembers");
+
+        final var launcher = new DocletLauncher(manifest, directory);
+        assertEquals(List.of("core", "parser"),
+                launcher.getModules().stream().map(DocletLauncher.Module::getName).toList());
+        assertEquals(List.of("-rst", "-noTimestamp", "-sourcepath", directory.resolve("core/src/main/java").toString(),
+                "-d", directory.resolve("build/docs/core").toString()),
+                launcher.getArguments(launcher.getModules().get(0)));
+        assertEquals(List.of("-rst", "-noTimestamp", "-inheritedMembers", "-sourcepath",
+                directory.resolve("parser/src") + File.pathSeparator + directory.resolve("generated"),
+                "-classpath", directory.resolve("libs/antlr.jar").toString(),
+                "-subpackages", "com.example.parser", "-d", directory.resolve("build/docs/parser").toString()),
+                launcher.getArguments(launcher.getModules().get(1)));
+
+        assertThrows(IllegalArgumentException.class, () -> new DocletLauncher(new Properties(), directory));
+        manifest.setProperty("threads", "0");
+        assertThrows(IllegalArgumentException.class, () -> new DocletLauncher(manifest, directory));
+    }
+
+    @Test
+    void testQuotedOptions() {
+        assertEquals(List.of("-rst", "-apiDiff", "previous release/javadoc.xml", "-basePackage", "com.example"),
+                DocletLauncher.split(" -rst -apiDiff \"previous release/javadoc.xml\"\t-basePackage 'com.example' "));
+        assertEquals(List.of("-filename", "", "-a'b", "c\"d"), DocletLauncher.split("-filename \"\" \"-a'b\" 'c\"d'"));
+        assertEquals(List.of("--option=a b"), DocletLauncher.split("--option=\"a b\""));
+        assertTrue(DocletLauncher.split("  ").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> DocletLauncher.split("-apiDiff \"previous release"));
+    }
+
+    /**
+     * The XML documents merged into the aggregate document are named by the options of each module.
+     */
+    @Test
+    void testModuleDocuments() {
+        final var manifest = new Properties();
+        manifest.setProperty("modules", "core,parser,api");
+        manifest.setProperty("options", "-filename modules.xml -compress gzip");
+        manifest.setProperty("directory", "docs");
+        manifest.setProperty("parser.options", "-filename parser.xml");
+        manifest.setProperty("api.options", "-compress zstd -inheritedMembers");
+
+        final var launcher = new DocletLauncher(manifest, directory);
+        final List<DocletLauncher.Module> modules = launcher.getModules();
+        assertEquals(directory.resolve("docs/core/modules.xml.gz"), launcher.getDocument(modules.get(0)));
+        assertEquals(directory.resolve("docs/parser/parser.xml.gz"), launcher.getDocument(modules.get(1)));
+        assertEquals(directory.resolve("docs/api/modules.xml.zst"), launcher.getDocument(modules.get(2)));
+
+        manifest.setProperty("api.options", "-compress unknown");
+        final var invalidLauncher = new DocletLauncher(manifest, directory);
+        assertThrows(IllegalArgumentException.class,
+                () -> invalidLauncher.getDocument(invalidLauncher.getModules().get(2)));
+    }
+
+    @Test
+    void testModulesAreDocumentedConcurrently() throws IOException, InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            writeSource("m" + i, "p" + i, "Type" + i, "public class Type" + i + " {}");
+        }
+        final Path manifest = writeManifest("modules=m0,m1,m2,m3\noptions=-dryrun -quiet\nthreads=2\n"
+                + "m0.subpackages=p0\nm1.subpackages=p1\nm2.subpackages=p2\nm3.subpackages=p3\n");
+
+        final var out = new StringWriter();
+        assertTrue(DocletLauncher.load(manifest).run(new PrintWriter(out)));
+        for (int i = 0; i < 4; i++) {
+            assertTrue(out.toString().contains("Documented m" + i + " in "), out.toString());
+        }
+    }
+
+    @Test
+    void testFailedModule() throws IOException, InterruptedException {
+        writeSource("valid", "p", "Valid", "public class Valid {}");
+        writeSource("invalid", "q", "Invalid", "public class Invalid {");
+        final Path manifest = writeManifest("modules=valid,invalid\noptions=-quiet\n"
+                + "valid.subpackages=p\ninvalid.subpackages=q\n");
+
+        final var out = new StringWriter();
+        assertFalse(DocletLauncher.load(manifest).run(new PrintWriter(out)));
+        assertTrue(out.toString().contains("Failed to document invalid"), out.toString());
+        assertTrue(out.toString().contains("The aggregate document is not written"), out.toString());
+        assertFalse(Files.exists(directory.resolve("javadoc.xml")));
+    }
+
+    private void writeSource(final String module, final String packageName, final String type, final String body)
+            throws IOException {
+        final Path packageDirectory = Files.createDirectories(directory.resolve(module + "/src/main/java/" + packageName));
+        Files.writeString(packageDirectory.resolve(type + ".java"), "package " + packageName + ";\n" + body + "\n");
+    }
+
+    private Path writeManifest(final String content) throws IOException {
+        return Files.writeString(directory.resolve("modules.properties"), content);
+    }
+}
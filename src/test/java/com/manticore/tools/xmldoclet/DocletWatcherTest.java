@@ -0,0 +1,176 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import com.manticore.tools.xmldoclet.xjc.MemberRef;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the watch mode and the incremental object model
+ */
+class DocletWatcherTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testChangedFilesAreMerged() throws IOException {
+        final Path sources = Files.createDirectories(directory.resolve("src/p"));
+        final Path base = sources.resolve("Base.java");
+        final Path derived = sources.resolve("Derived.java");
+        Files.writeString(base, "package p;\n/** The base. */\npublic class Base {}\n");
+        Files.writeString(derived,
+                "package p;\n/** Derived. */\npublic class Derived extends Base {\n  /** @return a base */\n"
+                        + "  public Base get() { return null; }\n}\n");
+
+        final List<Root> results = new ArrayList<>();
+        try (var watcher = newWatcher(); var registration = XmlDoclet.registerResultSink(results::add)) {
+            assertTrue(watcher.document());
+            Class baseNode = getClass(results, "p.Base");
+            assertEquals(List.of("p.Derived"), baseNode.getSubclass().stream().map(TypeInfo::getQualified).toList());
+            assertEquals(List.of("p.Derived"), baseNode.getUsedBy().stream().map(MemberRef::getType).toList());
+            assertEquals(Set.of(base.toAbsolutePath(), derived.toAbsolutePath()), watcher.getModel().getFiles());
+
+            // the unchanged base type loses the subclass, but keeps the usage
+            Files.writeString(derived,
+                    "package p;\n/** Derived. */\npublic class Derived {\n  /** @return a base */\n"
+                            + "  public Base get() { return null; }\n}\n");
+            assertTrue(watcher.document(List.of(derived)));
+            baseNode = getClass(results, "p.Base");
+            assertTrue(baseNode.getSubclass().isEmpty());
+            assertEquals(List.of("p.Derived"), baseNode.getUsedBy().stream().map(MemberRef::getType).toList());
+
+            // the changed base type keeps the usage by the unchanged type and links to it
+            Files.writeString(base, "package p;\n/** The base, see {@link Derived}. */\npublic class Base {}\n");
+            assertTrue(watcher.document(List.of(base)));
+            baseNode = getClass(results, "p.Base");
+            assertEquals(List.of("p.Derived"), baseNode.getUsedBy().stream().map(MemberRef::getType).toList());
+            assertEquals(List.of(SearchIndex.getAnchor("p.Derived")),
+                    baseNode.getLink().stream().map(LinkInfo::getAnchor).toList());
+
+            // a deleted type is removed with its usages and the links to it
+            Files.delete(derived);
+            assertTrue(watcher.document(List.of(derived)));
+            assertEquals(1, results.get(results.size() - 1).getPackage().get(0).getClazz().size());
+            baseNode = getClass(results, "p.Base");
+            assertTrue(baseNode.getUsedBy().isEmpty());
+            assertNull(baseNode.getLink().get(0).getAnchor());
+            assertEquals(Set.of(base.toAbsolutePath()), watcher.getModel().getFiles());
+        }
+    }
+
+    @Test
+    void testInvalidChangesStayPending() throws IOException {
+        final Path sources = Files.createDirectories(directory.resolve("src/p"));
+        final Path file = sources.resolve("Valid.java");
+        Files.writeString(file, "package p;\n/** Valid. */\npublic class Valid {}\n");
+
+        try (var watcher = newWatcher()) {
+            assertTrue(watcher.document());
+            final int updates = watcher.getModel().getUpdates();
+
+            Files.writeString(file, "package p;\npublic class Valid {\n");
+            assertFalse(watcher.document(List.of(file)));
+            assertEquals(updates, watcher.getModel().getUpdates());
+
+            Files.writeString(file, "package p;\n/** Fixed. */\npublic class Valid {}\n");
+            assertTrue(watcher.document(List.of()), "the pending file is documented again");
+        }
+    }
+
+    /**
+     * Changed files in packages which are not selected are not documented, like they aren't when all files are.
+     */
+    @Test
+    void testUnselectedPackagesAreIgnored() throws IOException {
+        final Path file = Files.createDirectories(directory.resolve("src/p")).resolve("Api.java");
+        final Path excluded = Files.createDirectories(directory.resolve("src/p/internal")).resolve("Impl.java");
+        final Path other = Files.createDirectories(directory.resolve("src/q")).resolve("Other.java");
+        Files.writeString(file, "package p;\n/** Api. */\npublic class Api {}\n");
+        Files.writeString(excluded, "package p.internal;\n/** Impl. */\npublic class Impl {}\n");
+        Files.writeString(other, "package q;\n/** Other. */\npublic class Other {}\n");
+
+        try (var watcher = newWatcher("-exclude", "p.internal")) {
+            assertTrue(watcher.document());
+            assertEquals(Set.of(file.toAbsolutePath()), watcher.getModel().getFiles());
+            assertTrue(watcher.isSelected(file));
+            assertFalse(watcher.isSelected(excluded));
+            assertFalse(watcher.isSelected(other));
+
+            final int updates = watcher.getModel().getUpdates();
+            assertFalse(watcher.document(List.of(excluded, other)));
+            assertEquals(updates, watcher.getModel().getUpdates());
+
+            assertTrue(watcher.document(List.of(excluded, file, other)));
+            assertEquals(Set.of(file.toAbsolutePath()), watcher.getModel().getFiles());
+        }
+    }
+
+    /**
+     * The watcher renders natively and only writes the XML file if another output reads it.
+     */
+    @Test
+    void testDocumentsAreRenderedWithoutXmlFile() throws IOException {
+        final Path file = Files.createDirectories(directory.resolve("src/p")).resolve("Api.java");
+        Files.writeString(file, "package p;\n/** Api. */\npublic class Api {}\n");
+        final Path out = directory.resolve("out");
+
+        try (var watcher = new DocletWatcher(List.of("-sourcepath", directory.resolve("src").toString(),
+                "-subpackages", "p", "-d", out.toString(), "-rst", "-quiet"), new PrintWriter(new StringWriter()))) {
+            assertTrue(watcher.document());
+            assertTrue(Files.exists(out.resolve("javadoc.rst")));
+            assertFalse(Files.exists(out.resolve("javadoc.xml")));
+        }
+    }
+
+    @Test
+    void testCoverageIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> newWatcher("-coverage").close());
+        assertThrows(IllegalArgumentException.class, () -> newWatcher("-minCoverage", "80").close());
+    }
+
+    @Test
+    void testAwaitChanges() throws IOException, InterruptedException {
+        final Path sources = Files.createDirectories(directory.resolve("src/p"));
+        try (var watcher = newWatcher()) {
+            final Path file = sources.resolve("Added.java");
+            Files.writeString(file, "package p;\npublic class Added {}\n");
+            Files.writeString(sources.resolve("notes.txt"), "ignored");
+            assertEquals(Set.of(file), watcher.awaitChanges());
+
+            // the files of new directories are changed too
+            final Path nested = Files.createDirectories(sources.resolve("q"));
+            final Path nestedFile = nested.resolve("Nested.java");
+            Files.writeString(nestedFile, "package p.q;\npublic class Nested {}\n");
+            assertTrue(watcher.awaitChanges().contains(nestedFile));
+        }
+    }
+
+    private DocletWatcher newWatcher(final String... options) throws IOException {
+        final List<String> arguments = new ArrayList<>(List.of("-sourcepath", directory.resolve("src").toString(),
+                "-subpackages", "p", "-d", directory.resolve("out").toString(), "-dryrun", "-quiet"));
+        arguments.addAll(List.of(options));
+        return new DocletWatcher(arguments, new PrintWriter(new StringWriter()));
+    }
+
+    private static Class getClass(final List<Root> results, final String qualified) {
+        return results.get(results.size() - 1).getPackage().stream()
+                .flatMap(packageNode -> packageNode.getClazz().stream())
+                .filter(classNode -> qualified.equals(classNode.getQualified()))
+                .findFirst()
+                .orElseThrow();
+    }
+}
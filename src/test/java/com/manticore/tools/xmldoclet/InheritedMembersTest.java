@@ -0,0 +1,95 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.InheritedMembers;
+import com.manticore.tools.xmldoclet.xjc.MemberRef;
+import com.manticore.tools.xmldoclet.xjc.Method;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static java.util.Arrays.stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the inherited members and overridden methods written with {@code -inheritedMembers}
+ */
+class InheritedMembersTest extends AbstractTest {
+    private static final String[] INHERITED_MEMBERS_ARGS = {"-dryrun", "-inheritedMembers"};
+
+    @Test
+    void testNotWrittenByDefault() {
+        final Class classNode = newJavaDocElements("Class5.java", "Class3.java").packageNode().getClazz().get(1);
+        assertTrue(classNode.getInherited().isEmpty());
+    }
+
+    @Test
+    void testInheritedMethods() {
+        final Class classNode = findClass(parse("Class5.java", "Class3.java"), "Class5");
+        final List<InheritedMembers> inherited = classNode.getInherited();
+
+        // the superclass chain in order, with the members sorted by name
+        assertEquals(List.of(getElementPathFromSimpleDataPackage("Class3"), "java.lang.Object"),
+                inherited.stream().map(InheritedMembers::getQualified).toList());
+        assertEquals(List.of("method1"), names(inherited.get(0).getMethod()));
+        assertEquals(getElementPathFromSimpleDataPackage("Class3"), inherited.get(0).getMethod().get(0).getType());
+        assertTrue(names(inherited.get(1).getMethod()).containsAll(List.of("equals", "hashCode", "toString")));
+    }
+
+    @Test
+    void testOverriddenMethods() {
+        final Class classNode = findClass(parse("Class25.java", "Class3.java", "Interface2.java"), "Class25");
+
+        final Method method1 = findMethod(classNode, "method1");
+        assertEquals(getElementPathFromSimpleDataPackage("Class3"), method1.getOverrides().getType());
+        assertEquals("int ()", method1.getOverrides().getSignature());
+        assertEquals(List.of(getElementPathFromSimpleDataPackage("Interface2")),
+                method1.getImplements().stream().map(MemberRef::getType).toList());
+
+        final Method toString = findMethod(classNode, "toString");
+        assertEquals("java.lang.Object", toString.getOverrides().getType());
+        assertTrue(toString.getImplements().isEmpty());
+
+        // overridden methods are not inherited, neither from the class nor from the interface
+        for (final InheritedMembers inherited : classNode.getInherited()) {
+            assertFalse(names(inherited.getMethod()).contains("method1"), inherited.getQualified());
+            assertFalse(names(inherited.getMethod()).contains("toString"), inherited.getQualified());
+        }
+        assertEquals(List.of("java.lang.Object"),
+                classNode.getInherited().stream().map(InheritedMembers::getQualified).toList());
+    }
+
+    @Test
+    void testImplementedInterfaceMethods() {
+        final Class classNode = findClass(parse("Class9.java"), "Class9");
+
+        final Method writeExternal = findMethod(classNode, "writeExternal");
+        assertNull(writeExternal.getOverrides());
+        assertEquals(List.of("java.io.Externalizable"),
+                writeExternal.getImplements().stream().map(MemberRef::getType).toList());
+    }
+
+    private Root parse(final String... sourceFileName) {
+        final var sourceFiles = stream(sourceFileName).map(this::getFilePathFromSimpleDataDir).toArray(String[]::new);
+        return new JavaDocCLI(sourceFiles, INHERITED_MEMBERS_ARGS).execute();
+    }
+
+    private static Class findClass(final Root rootNode, final String name) {
+        return rootNode.getPackage().get(0).getClazz().stream()
+                .filter(classNode -> classNode.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Method findMethod(final Class classNode, final String name) {
+        return classNode.getMethod().stream()
+                .filter(method -> method.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static List<String> names(final List<MemberRef> memberRefs) {
+        return memberRefs.stream().map(MemberRef::getName).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the on-demand model
+ */
+class LazyModelTest extends AbstractTest {
+    private final Package packageNode;
+    private final LazyModel model;
+
+    public LazyModelTest() {
+        newJavaDocElements("Class4.java", "Class6.java", "Class9.java", "Interface3.java");
+        this.model = XmlDoclet.getModel();
+        // the on-demand model is separate from the root the doclet writes, so its nodes come from its own root
+        this.packageNode = model.toRoot().getPackage().get(0);
+    }
+
+    @Test
+    void testImplementors() {
+        final var implementors = model.getImplementors("java.io.Serializable");
+        assertEquals(
+                List.of(getElementPathFromSimpleDataPackage("Class6"), getElementPathFromSimpleDataPackage("Class9")),
+                implementors.stream().sorted().toList());
+
+        final var subtypes = model.getSubtypes("java.io.Serializable");
+        assertTrue(subtypes.contains(getElementPathFromSimpleDataPackage("Interface3")));
+        assertTrue(model.getImplementors("java.lang.Runnable").isEmpty());
+    }
+
+    /**
+     * The nodes of the model are created once, and the root is built from the same nodes.
+     */
+    @Test
+    void testNodesAreMemoized() {
+        final Class classNode = model.findClass(getElementPathFromSimpleDataPackage("Class4")).orElseThrow();
+        assertTrue(packageNode.getClazz().contains(classNode));
+        assertSame(classNode, model.findClass(getElementPathFromSimpleDataPackage("Class4")).orElseThrow());
+        assertSame(
+                classNode.getField().get(0),
+                model.findField(getElementPathFromSimpleDataPackage("Class4"), "field1").orElseThrow());
+        assertSame(packageNode, model.findPackage(SIMPLE_DATA_PACKAGE).orElseThrow());
+    }
+
+    /**
+     * The root is materialized once, so the reverse references aren't added again by later calls.
+     */
+    @Test
+    void testRootIsMemoized() {
+        final var root = model.toRoot();
+        assertSame(root, model.toRoot());
+        assertEquals(List.of(SIMPLE_DATA_PACKAGE), model.getPackageNames());
+        assertEquals(4, packageNode.getClazz().size() + packageNode.getInterface().size());
+    }
+
+    @Test
+    void testUnknownElements() {
+        assertTrue(model.findClass(getElementPathFromSimpleDataPackage("Interface3")).isEmpty());
+        assertTrue(model.findInterface(getElementPathFromSimpleDataPackage("Interface3")).isPresent());
+        assertTrue(model.findClass("java.lang.String").isEmpty());
+        assertTrue(model.findMethods(getElementPathFromSimpleDataPackage("Class9"), "missing").isEmpty());
+        assertEquals(1, model.findMethods(getElementPathFromSimpleDataPackage("Class9"), "writeExternal").size());
+        assertTrue(model.findPackage("java.lang").isEmpty());
+    }
+}
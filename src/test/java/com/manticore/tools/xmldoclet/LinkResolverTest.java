@@ -0,0 +1,64 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.LinkInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the references of the comments, resolved by the parser
+ */
+class LinkResolverTest extends AbstractTest {
+    private final Class classNode;
+
+    public LinkResolverTest() {
+        this.classNode = newJavaDocElements("Class26.java", "Class3.java", "Interface2.java").packageNode()
+                .getClazz().get(0);
+    }
+
+    @Test
+    void testResolvedTypesAndMembers() {
+        assertEquals("Class26", classNode.getName());
+        final List<LinkInfo> links = classNode.getLink();
+        assertEquals(List.of("Class3", "Class3#method1()", "Interface2", "String"),
+                links.stream().map(LinkInfo::getReference).toList());
+
+        final String class3 = getElementPathFromSimpleDataPackage("Class3");
+        assertEquals(class3, links.get(0).getQualified());
+        assertNull(links.get(0).getMember());
+        assertEquals(SearchIndex.getAnchor(class3), links.get(0).getAnchor());
+
+        // members link to the section of their type
+        assertEquals(class3, links.get(1).getQualified());
+        assertEquals("method1()", links.get(1).getMember());
+        assertEquals(SearchIndex.getAnchor(class3), links.get(1).getAnchor());
+
+        assertEquals(getElementPathFromSimpleDataPackage("Interface2"), links.get(2).getQualified());
+        assertNotNull(links.get(2).getAnchor());
+    }
+
+    /**
+     * Types which are not documented are resolved, but have no anchor.
+     */
+    @Test
+    void testUndocumentedTarget() {
+        final LinkInfo link = classNode.getLink().get(3);
+        assertEquals("java.lang.String", link.getQualified());
+        assertNull(link.getAnchor());
+    }
+
+    /**
+     * Members without type are resolved in the scope of the commented element, also inherited ones.
+     */
+    @Test
+    void testMemberReferences() {
+        final List<LinkInfo> links = classNode.getMethod().get(0).getLink();
+        assertEquals(List.of("#method1()", "IllegalStateException"), links.stream().map(LinkInfo::getReference).toList());
+        assertEquals(getElementPathFromSimpleDataPackage("Class3"), links.get(0).getQualified());
+        assertEquals("method1()", links.get(0).getMember());
+        assertEquals("java.lang.IllegalStateException", links.get(1).getQualified());
+    }
+}
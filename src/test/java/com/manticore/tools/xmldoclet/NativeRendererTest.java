@@ -0,0 +1,227 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.ObjectFactory;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the native Restructured Text, Markdown, AsciiDoc and DocBook renderers
+ */
+class NativeRendererTest extends AbstractTest {
+    private final Root rootNode;
+
+    @TempDir
+    Path directory;
+
+    public NativeRendererTest() {
+        this.rootNode = newJavaDocElements("Class26.java", "Class3.java", "Interface2.java").rootNode();
+    }
+
+    @Test
+    void testRestructuredText() throws IOException {
+        final String rst = render(new RstRenderer(Map.of("doctitle", "Simple Data"), 2), rootNode);
+        final String class3 = getElementPathFromSimpleDataPackage("Class3");
+
+        assertTrue(rst.startsWith("\n" + "#".repeat(71) + "\nSimple Data\n" + "#".repeat(71) + "\n\n"), rst);
+        assertTrue(rst.contains("\n..  _" + getElementPathFromSimpleDataPackage("Class26") + ":\n\n"
+                + "=".repeat(71) + "\nClass26\n" + "=".repeat(71) + "\n\n*extends:* :ref:`Class3<" + class3 + ">` \n\n"),
+                rst);
+        // resolved links refer to the section of their target, the others are interpreted text
+        assertTrue(rst.contains(":ref:`Class3 <" + class3 + ">`"), rst);
+        assertTrue(rst.contains(":ref:`the first method <" + class3 + ">`"), rst);
+        assertTrue(rst.contains("| **method2** () \u2192 int\n| Same as "), rst);
+        assertTrue(rst.contains("|          returns int\n\n\n\n"), rst);
+        assertTrue(rst.contains("*provides:* :ref:`Class26<" + getElementPathFromSimpleDataPackage("Class26") + ">`"),
+                rst);
+    }
+
+    /**
+     * The native renderer writes the same Restructured Text as {@code restructured.xsl} for the simple data corpus,
+     * including the split documents. Only public members are documented, since the stylesheet copies the raw
+     * comments of the other constructors and methods into the document, which is the documented difference.
+     */
+    @Test
+    void testRestructuredTextMatchesStylesheet() throws IOException {
+        final Path nativeOutput = directory.resolve("native");
+        final Path xsltOutput = directory.resolve("xslt");
+        assertTrue(document(nativeOutput, "-rst", "-renderer", "native"));
+        assertTrue(document(xsltOutput, "-rst", "-renderer", "xslt"));
+        assertEquals(Files.readString(xsltOutput.resolve("javadoc.rst")),
+                Files.readString(nativeOutput.resolve("javadoc.rst")));
+
+        final Path nativeSplitOutput = directory.resolve("native-split");
+        final Path xsltSplitOutput = directory.resolve("xslt-split");
+        final String[] split = {"-rst", "-splitRst", "-splitThreshold", "5"};
+        assertTrue(document(nativeSplitOutput, concat(split, "-renderer", "native")));
+        assertTrue(document(xsltSplitOutput, concat(split, "-renderer", "xslt")));
+        assertEquals(Files.readString(xsltSplitOutput.resolve("javadoc.rst")),
+                Files.readString(nativeSplitOutput.resolve("javadoc.rst")));
+        final List<String> documents = listFileNames(xsltSplitOutput.resolve("javadoc"));
+        assertFalse(documents.isEmpty());
+        assertEquals(documents, listFileNames(nativeSplitOutput.resolve("javadoc")));
+        for (final String document : documents) {
+            assertEquals(Files.readString(xsltSplitOutput.resolve("javadoc").resolve(document)),
+                    Files.readString(nativeSplitOutput.resolve("javadoc").resolve(document)), document);
+        }
+    }
+
+    @Test
+    void testSplitDocuments() throws IOException {
+        final var parameters = new HashMap<String, String>();
+        parameters.put("splitRst", SupportedOptions.NO_ARG_VALUE);
+        parameters.put("splitDirectory", "api");
+        parameters.put("splitThreshold", "0");
+
+        final var index = new StringBuilder();
+        final Map<String, String> documents = new RstRenderer(parameters, 2).renderSplit(rootNode, index);
+
+        assertTrue(index.toString().endsWith(".. toctree::\n    :maxdepth: 2\n\n    api/" + SIMPLE_DATA_PACKAGE + "\n"),
+                index.toString());
+        final String class26 = getElementPathFromSimpleDataPackage("Class26");
+        assertEquals(List.of("api/" + SIMPLE_DATA_PACKAGE + ".rst", "api/" + class26 + ".rst",
+                "api/" + getElementPathFromSimpleDataPackage("Class3") + ".rst",
+                "api/" + getElementPathFromSimpleDataPackage("Interface2") + ".rst"), List.copyOf(documents.keySet()));
+        assertTrue(documents.get("api/" + SIMPLE_DATA_PACKAGE + ".rst").contains("    " + class26 + "\n"));
+        assertTrue(documents.get("api/" + class26 + ".rst").startsWith("\n..  _" + class26 + ":\n"));
+    }
+
+    /**
+     * The packages rendered in parallel are written in the order of the document.
+     */
+    @Test
+    void testParallelRenderingOrder() throws IOException {
+        final var objectFactory = new ObjectFactory();
+        final Root root = objectFactory.createRoot();
+        for (int i = 0; i < 100; i++) {
+            final Package packageNode = objectFactory.createPackage();
+            packageNode.setName("p" + i);
+            final Class classNode = objectFactory.createClass();
+            classNode.setName("C" + i);
+            classNode.setQualified("p" + i + ".C" + i);
+            classNode.setComment("Class " + i + " with a {@code long} <b>comment</b>.");
+            packageNode.getClazz().add(classNode);
+            root.getPackage().add(packageNode);
+        }
+
+        final String sequential = render(new RstRenderer(Map.of(), 1), root);
+        assertEquals(sequential, render(new RstRenderer(Map.of(), 8), root));
+        assertTrue(sequential.indexOf("\nC9\n") < sequential.indexOf("\nC10\n"));
+        assertEquals(sequential.length(), sequential.replace("\nC99\n", "").length() + "\nC99\n".length());
+
+        final String markdown = render(new MarkdownRenderer(Map.of(), 1), root);
+        assertEquals(markdown, render(new MarkdownRenderer(Map.of(), 8), root));
+    }
+
+    @Test
+    void testMarkdown() throws IOException {
+        final String markdown = render(new MarkdownRenderer(Map.of(), 2), rootNode);
+        final String class3Anchor = SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class3"));
+
+        assertTrue(markdown.startsWith("# Java API\n\n## <a id=\"" + SearchIndex.getAnchor(SIMPLE_DATA_PACKAGE)
+                + "\"></a>" + SIMPLE_DATA_PACKAGE + "\n\n"), markdown);
+        assertTrue(markdown.contains("### <a id=\"" + SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class26"))
+                + "\"></a>Class26\n\n*class* extends [Class3](#" + class3Anchor + ")\n\n"), markdown);
+        assertTrue(markdown.contains("[the first method](#" + class3Anchor + ")"), markdown);
+        assertTrue(markdown.contains("- **method2**() \u2192 `int`  \n  Same as "), markdown);
+        assertTrue(markdown.contains("[method1](#" + class3Anchor + ")"), markdown);
+        assertTrue(markdown.contains("  - *returns* never\n"), markdown);
+    }
+
+    @Test
+    void testAsciiDoc() throws IOException {
+        final String asciiDoc = render(new AsciiDocRenderer(Map.of("doctitle", "Simple Data"), 2), rootNode);
+        final String class3Anchor = SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class3"));
+
+        assertTrue(asciiDoc.startsWith("= Simple Data\n:toc: left\n:toclevels: 3\n\n[[" + SearchIndex.getAnchor(SIMPLE_DATA_PACKAGE)
+                + "]]\n== " + SIMPLE_DATA_PACKAGE + "\n\n"), asciiDoc);
+        assertTrue(asciiDoc.contains("[[" + SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class26"))
+                + "]]\n=== Class26\n\n_class_ extends <<" + class3Anchor + ",Class3>>\n\n"), asciiDoc);
+        assertTrue(asciiDoc.contains("<<" + class3Anchor + ",the first method>>"), asciiDoc);
+        assertTrue(asciiDoc.contains("* *method2*() \u2192 `+int+` +\nSame as "), asciiDoc);
+        assertTrue(asciiDoc.contains("** _returns_ never\n"), asciiDoc);
+    }
+
+    @Test
+    void testDocBook() throws IOException, ParserConfigurationException, SAXException {
+        final String docBook = render(new DocBookRenderer(Map.of("doctitle", "Simple <Data>"), 2), rootNode);
+        final String class3Anchor = SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class3"));
+
+        final var factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        final Document document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(docBook)));
+        assertEquals("book", document.getDocumentElement().getLocalName());
+        assertEquals(1, document.getElementsByTagNameNS("http://docbook.org/ns/docbook", "chapter").getLength());
+        assertEquals(3, document.getElementsByTagNameNS("http://docbook.org/ns/docbook", "section").getLength());
+
+        assertTrue(docBook.contains("<title>Simple &lt;Data&gt;</title>"), docBook);
+        assertTrue(docBook.contains("<section xml:id=\"" + SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class26"))
+                + "\">\n<title>Class26</title>\n<para><emphasis>class</emphasis> extends <link linkend=\""
+                + class3Anchor + "\">Class3</link></para>\n"), docBook);
+        assertTrue(docBook.contains("<link linkend=\"" + class3Anchor + "\">the first method</link>"), docBook);
+        assertTrue(docBook.contains("<term><methodname>method2</methodname>() \u2192 <type>int</type></term>"), docBook);
+        assertTrue(docBook.endsWith("</book>\n"), docBook);
+    }
+
+    @Test
+    void testDocBookEscaping() {
+        final var renderer = new DocBookRenderer(Map.of(), 1);
+        assertEquals("<para>a &lt; b &amp;&amp; c &gt; d &amp;lt</para><para>&#64; <literal>List&lt;T&gt;</literal></para>",
+                renderer.convert("a < b && c > d &lt\u0001<p>&#64; {@code List<T>}", List.of()));
+        assertEquals("<para>code</para><programlisting>if (a &lt; b) {\n}</programlisting>",
+                renderer.convert("<i>code</i><pre>\nif (a < b) {\n}\n</pre>", List.of()));
+        assertEquals("<para/>", renderer.convert("<p>", List.of()));
+    }
+
+    private static boolean document(final Path output, final String... options) {
+        final List<String> arguments = new ArrayList<>(List.of("-public", "-noTimestamp", "-classpath",
+                System.getProperty("java.class.path"), "-sourcepath", TEST_DIR[0], "-subpackages", SIMPLE_DATA_PACKAGE,
+                "-quiet", "-d", output.toString()));
+        arguments.addAll(List.of(options));
+        final DocumentationTool javadoc = ToolProvider.getSystemDocumentationTool();
+        try (var writer = new PrintWriter(new StringWriter())) {
+            return javadoc.getTask(writer, null, null, XmlDoclet.class, arguments, null).call();
+        }
+    }
+
+    private static List<String> listFileNames(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static String[] concat(final String[] options, final String... more) {
+        final List<String> all = new ArrayList<>(List.of(options));
+        all.addAll(List.of(more));
+        return all.toArray(String[]::new);
+    }
+
+    private static String render(final Renderer renderer, final Root root) throws IOException {
+        final var writer = new StringWriter();
+        renderer.render(root, writer);
+        return writer.toString();
+    }
+}
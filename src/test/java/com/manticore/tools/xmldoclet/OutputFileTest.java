@@ -0,0 +1,124 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the atomically replaced output files
+ */
+class OutputFileTest {
+    private static final byte[] CONTENT = "<root><package name=\"a.b.c\"/></root>\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Small buffers force several gathering writes, including partially filled buffers.
+     */
+    @Test
+    void testCommitWritesContent() throws IOException {
+        final Path target = directory.resolve("javadoc.xml");
+        try (var outputFile = OutputFile.open(target, Compression.NONE, 1000)) {
+            outputFile.getOutputStream().write(CONTENT, 0, 7);
+            outputFile.getOutputStream().write(CONTENT, 7, CONTENT.length - 7);
+            outputFile.commit();
+        }
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void testCommitReplacesTarget() throws IOException {
+        final Path target = directory.resolve("javadoc.xml.gz");
+        Files.writeString(target, "previous");
+
+        try (var outputFile = OutputFile.open(target, Compression.GZIP, 1000)) {
+            outputFile.getOutputStream().write(CONTENT);
+            outputFile.commit();
+        }
+
+        try (var inputStream = Compression.decompress(Files.newInputStream(target))) {
+            assertArrayEquals(CONTENT, inputStream.readAllBytes());
+        }
+        assertEquals(1, countFiles());
+    }
+
+    /**
+     * Failed output leaves the previous file untouched and no temporary file behind.
+     */
+    @Test
+    void testUncommittedOutputIsDiscarded() throws IOException {
+        final Path target = directory.resolve("javadoc.xml");
+        Files.writeString(target, "previous");
+
+        try (var outputFile = OutputFile.open(target, Compression.NONE, 1000)) {
+            outputFile.getOutputStream().write(CONTENT);
+        }
+
+        assertEquals("previous", Files.readString(target));
+        assertEquals(1, countFiles());
+    }
+
+    /**
+     * Unchanged content is not written again, also when it is compressed.
+     */
+    @Test
+    void testWriteIfChanged() throws IOException {
+        final Path target = directory.resolve("javadoc.rst.gz");
+        assertTrue(OutputFile.writeIfChanged(target, CONTENT, Compression.GZIP, 1000));
+
+        final FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(target, written);
+        assertFalse(OutputFile.writeIfChanged(target, CONTENT, Compression.GZIP, 1000));
+        assertEquals(written, Files.getLastModifiedTime(target));
+
+        assertTrue(OutputFile.writeIfChanged(target, "changed".getBytes(StandardCharsets.UTF_8), Compression.GZIP, 1000));
+        assertNotEquals(written, Files.getLastModifiedTime(target));
+        assertEquals(1, countFiles());
+    }
+
+    /**
+     * The digest is computed while streaming, so unchanged output written in pieces is detected as well.
+     */
+    @Test
+    void testCommitKeepsUnchangedTarget() throws IOException {
+        final Path target = directory.resolve("javadoc.xml");
+        Files.write(target, CONTENT);
+        final FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(target, written);
+
+        try (var outputFile = OutputFile.open(target, Compression.NONE, 1000)) {
+            outputFile.getOutputStream().write(CONTENT, 0, 7);
+            outputFile.getOutputStream().write(CONTENT, 7, CONTENT.length - 7);
+            assertFalse(outputFile.commit());
+        }
+
+        assertEquals(written, Files.getLastModifiedTime(target));
+        assertEquals(1, countFiles());
+
+        // same size, different content
+        final byte[] changed = CONTENT.clone();
+        changed[changed.length - 2] = 'X';
+        try (var outputFile = OutputFile.open(target, Compression.NONE, 1000)) {
+            outputFile.getOutputStream().write(changed);
+            assertTrue(outputFile.commit());
+        }
+        assertArrayEquals(changed, Files.readAllBytes(target));
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
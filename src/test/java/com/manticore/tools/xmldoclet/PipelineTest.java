@@ -0,0 +1,126 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.Root;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the pipelined outputs
+ */
+class PipelineTest extends AbstractTest {
+    @Test
+    void testStagesReceiveAllItemsInOrder() {
+        final var pipeline = new Pipeline<Integer>(2);
+        final List<Integer> first = new ArrayList<>();
+        final List<Integer> second = new ArrayList<>();
+        pipeline.addStage("first", items -> items.forEach(first::add));
+        pipeline.addStage("second", items -> items.forEach(second::add));
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.publish(i);
+        }
+        pipeline.close(true);
+
+        assertEquals(100, first.size());
+        assertEquals(first, second);
+        assertEquals(List.of(0, 1, 2), first.subList(0, 3));
+    }
+
+    /**
+     * The producer waits for a stage whose queue is full.
+     */
+    @Test
+    void testBackpressure() throws InterruptedException {
+        final var pipeline = new Pipeline<Integer>(2);
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        pipeline.addStage("slow", items -> {
+            started.countDown();
+            release.await();
+            items.forEach(item -> { });
+        });
+        started.await();
+
+        final var published = new AtomicInteger();
+        final var producer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                pipeline.publish(i);
+                published.incrementAndGet();
+            }
+        });
+        producer.start();
+        producer.join(500);
+        assertEquals(2, published.get());
+
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(10, published.get());
+        pipeline.close(true);
+    }
+
+    @Test
+    void testFailedStageDoesNotBlockTheProducer() {
+        final var pipeline = new Pipeline<Integer>(1);
+        final List<Integer> items = new ArrayList<>();
+        pipeline.addStage("failing", stageItems -> {
+            throw new IllegalArgumentException("failed");
+        });
+        pipeline.addStage("working", stageItems -> stageItems.forEach(items::add));
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.publish(i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> pipeline.close(true));
+        assertEquals(10, items.size());
+    }
+
+    @Test
+    void testCancel() {
+        final var pipeline = new Pipeline<Integer>(4);
+        pipeline.addStage("cancelled", items -> items.forEach(item -> { }));
+        pipeline.publish(1);
+        assertThrows(CancellationException.class, () -> pipeline.close(false));
+    }
+
+    /**
+     * The streamed packages are written and rendered like the packages of the complete root.
+     */
+    @Test
+    void testStreamedRoot() throws IOException {
+        final Root rootNode = newJavaDocElements("Class26.java", "Class3.java", "Interface2.java").rootNode();
+
+        final var pipeline = new Pipeline<Package>(1);
+        final var rendered = new StringWriter();
+        final var searchIndex = new StringWriter();
+        pipeline.addStage("markdown", packages -> new MarkdownRenderer(Map.of(), 2)
+                .render(Pipeline.stream(rootNode, packages, packageNode -> packageNode), rendered));
+        pipeline.addStage("searchIndex", packages -> SearchIndex
+                .of(Pipeline.stream(rootNode, packages, packageNode -> packageNode)).write(searchIndex));
+        rootNode.getPackage().forEach(pipeline::publish);
+        pipeline.close(true);
+
+        final Root streamedRoot = Pipeline.stream(rootNode, List.<Package>of(), packageNode -> packageNode);
+        assertSame(rootNode, Pipeline.getOutline(streamedRoot));
+        assertThrows(UnsupportedOperationException.class, () -> streamedRoot.getPackage().size());
+
+        final var expected = new StringWriter();
+        new MarkdownRenderer(Map.of(), 2).render(rootNode, expected);
+        assertEquals(expected.toString(), rendered.toString());
+
+        final var expectedIndex = new StringWriter();
+        SearchIndex.of(rootNode).write(expectedIndex);
+        assertEquals(expectedIndex.toString(), searchIndex.toString());
+    }
+}
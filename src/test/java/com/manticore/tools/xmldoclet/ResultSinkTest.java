@@ -0,0 +1,61 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Root;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the per invocation results
+ */
+class ResultSinkTest extends AbstractTest {
+    @Test
+    void testSinkReceivesRoot() {
+        final List<Root> results = new ArrayList<>();
+        final Root rootNode;
+        try (var registration = XmlDoclet.registerResultSink(results::add)) {
+            rootNode = newJavaDocElements("Class1.java").rootNode();
+        }
+
+        assertEquals(1, results.size());
+        assertSame(rootNode, results.get(0));
+
+        newJavaDocElements("Class2.java");
+        assertEquals(1, results.size(), "the sink was unregistered");
+    }
+
+    /**
+     * Invocations running in parallel don't see each other's results.
+     */
+    @Test
+    void testConcurrentInvocations() throws Exception {
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 1; i <= 8; i++) {
+                final String className = "Class" + i;
+                final Callable<String> invocation = () -> {
+                    final List<Root> results = new ArrayList<>();
+                    try (var registration = XmlDoclet.registerResultSink(results::add)) {
+                        newJavaDocElements(className + ".java");
+                    }
+                    assertSame(XmlDoclet.getRoot(), results.get(0));
+                    return results.get(0).getPackage().get(0).getClazz().get(0).getName();
+                };
+                futures.add(executor.submit(invocation));
+            }
+
+            for (int i = 1; i <= 8; i++) {
+                assertEquals("Class" + i, futures.get(i - 1).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Class;
+import com.manticore.tools.xmldoclet.xjc.Interface;
+import com.manticore.tools.xmldoclet.xjc.MemberRef;
+import com.manticore.tools.xmldoclet.xjc.Package;
+import com.manticore.tools.xmldoclet.xjc.TypeInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the subclasses, implementors and usages indexed by the parser
+ */
+class ReverseReferencesTest extends AbstractTest {
+    private final Package packageNode;
+
+    public ReverseReferencesTest() {
+        this.packageNode = newJavaDocElements("Class25.java", "Class5.java", "Class3.java", "Interface2.java")
+                .packageNode();
+    }
+
+    @Test
+    void testSubclasses() {
+        assertEquals(
+                List.of(getElementPathFromSimpleDataPackage("Class25"), getElementPathFromSimpleDataPackage("Class5")),
+                findClass("Class3").getSubclass().stream().map(TypeInfo::getQualified).toList());
+        assertTrue(findClass("Class5").getSubclass().isEmpty());
+    }
+
+    @Test
+    void testImplementors() {
+        final Interface interfaceNode = packageNode.getInterface().get(0);
+        assertEquals(List.of(getElementPathFromSimpleDataPackage("Class25")),
+                interfaceNode.getImplementor().stream().map(TypeInfo::getQualified).toList());
+    }
+
+    @Test
+    void testUsages() {
+        // as array component of a parameter
+        final List<MemberRef> class3Usages = findClass("Class3").getUsedBy();
+        assertEquals(List.of("of"), class3Usages.stream().map(MemberRef::getName).toList());
+        assertEquals(getElementPathFromSimpleDataPackage("Class25"), class3Usages.get(0).getType());
+
+        // as return type
+        assertEquals(List.of("of"), findClass("Class25").getUsedBy().stream().map(MemberRef::getName).toList());
+
+        // as type argument of a field
+        assertEquals(List.of("values"),
+                packageNode.getInterface().get(0).getUsedBy().stream().map(MemberRef::getName).toList());
+    }
+
+    private Class findClass(final String name) {
+        return packageNode.getClazz().stream()
+                .filter(classNode -> classNode.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,164 @@
+package com.manticore.tools.xmldoclet;
+
+import com.manticore.tools.xmldoclet.xjc.Root;
+import jakarta.xml.bind.Marshaller;
+import jdk.javadoc.doclet.Doclet;
+import jdk.javadoc.doclet.DocletEnvironment;
+import jdk.javadoc.doclet.Reporter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.lang.model.SourceVersion;
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the model the outputs are written from, which is projected from a {@link CompactModel} and must
+ * be written exactly like the beans of {@link Parser#parseRootDoc()}
+ */
+class SavedModelTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testXmlFileEqualsParsedRootDoc() throws Exception {
+        final Root rootDoc = parseRootDoc();
+        assertTrue(document(directory.resolve("out"), "-inheritedMembers"));
+
+        final var expected = new ByteArrayOutputStream();
+        final var marshaller = XmlDoclet.getJaxbContext().createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        marshaller.marshal(rootDoc, expected);
+        assertEquals(expected.toString(StandardCharsets.UTF_8),
+                Files.readString(directory.resolve("out/javadoc.xml")));
+    }
+
+    @Test
+    void testCompactXmlFileEqualsParsedRootDoc() throws Exception {
+        final Root rootDoc = parseRootDoc();
+        assertTrue(document(directory.resolve("out"), "-inheritedMembers", "-compactXml"));
+        assertEquals(writeCompact(rootDoc), Files.readString(directory.resolve("out/javadoc.xml")));
+    }
+
+    /**
+     * The root of the tests is the one the XML file was written from, not a model of its own.
+     */
+    @Test
+    void testRootIsTheSavedModel() throws Exception {
+        assertTrue(document(directory.resolve("out"), "-compactXml"));
+        assertEquals(Files.readString(directory.resolve("out/javadoc.xml")), writeCompact(XmlDoclet.getRoot()));
+
+        assertTrue(document(directory.resolve("dryrun"), "-compactXml", "-dryrun"));
+        assertFalse(Files.exists(directory.resolve("dryrun")));
+        assertEquals(Files.readString(directory.resolve("out/javadoc.xml")), writeCompact(XmlDoclet.getRoot()));
+
+        assertTrue(document(directory.resolve("pipeline"), "-compactXml", "-pipeline"));
+        assertNull(XmlDoclet.getRoot(), "the pipeline doesn't keep the model");
+    }
+
+    /**
+     * A failed output fails the doclet, also when it is written on the thread of a pipeline stage.
+     */
+    @Test
+    void testFailedOutput() throws IOException {
+        final Path output = directory.resolve("out");
+        // a directory can't be replaced by the Markdown document
+        Files.createDirectories(output.resolve("javadoc.md/occupied"));
+
+        assertFalse(document(output, "-compactXml", "-md", "-renderer", "native"));
+        assertTrue(Files.exists(output.resolve("javadoc.xml")));
+        assertFalse(document(output, "-compactXml", "-md", "-renderer", "native", "-pipeline"));
+    }
+
+    /**
+     * The models of the last invocation keep the compiled sources until they are released.
+     */
+    @Test
+    void testModelIsReleased() {
+        assertTrue(document(directory.resolve("out"), "-dryrun"));
+        assertNotNull(XmlDoclet.getRoot());
+        assertNotNull(XmlDoclet.getModel());
+
+        XmlDoclet.releaseModel();
+        assertNull(XmlDoclet.getRoot());
+        assertNull(XmlDoclet.getModel());
+    }
+
+    private static Root parseRootDoc() {
+        assertTrue(run(RootDocDoclet.class, List.of()));
+        return RootDocDoclet.rootDoc;
+    }
+
+    private static boolean document(final Path output, final String... options) {
+        final List<String> arguments = new ArrayList<>(List.of("-d", output.toString()));
+        arguments.addAll(List.of(options));
+        return run(XmlDoclet.class, arguments);
+    }
+
+    private static boolean run(final java.lang.Class<? extends Doclet> doclet, final List<String> options) {
+        final List<String> arguments = new ArrayList<>(List.of("-private", "-classpath",
+                System.getProperty("java.class.path"), "-sourcepath", AbstractTest.TEST_DIR[0], "-subpackages",
+                AbstractTest.SIMPLE_DATA_PACKAGE, "-quiet"));
+        arguments.addAll(options);
+        final DocumentationTool javadoc = ToolProvider.getSystemDocumentationTool();
+        final var messages = new StringWriter();
+        try (var writer = new PrintWriter(messages)) {
+            return javadoc.getTask(writer, null, null, doclet, arguments, null).call();
+        }
+    }
+
+    private static String writeCompact(final Root root) throws Exception {
+        final var outputStream = new ByteArrayOutputStream();
+        final XMLStreamWriter writer = XMLOutputFactory.newFactory().createXMLStreamWriter(outputStream, "UTF-8");
+        new CompactXmlWriter(writer).write(root, "UTF-8");
+        writer.close();
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A doclet keeping the beans of {@link Parser#parseRootDoc()}, with inherited members.
+     */
+    public static final class RootDocDoclet implements Doclet {
+        private static Root rootDoc;
+
+        @Override
+        public void init(final Locale locale, final Reporter reporter) {
+        }
+
+        @Override
+        public String getName() {
+            return getClass().getSimpleName();
+        }
+
+        @Override
+        public Set<? extends Option> getSupportedOptions() {
+            return Set.of();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean run(final DocletEnvironment env) {
+            rootDoc = new Parser(env, true).parseRootDoc();
+            return true;
+        }
+    }
+}
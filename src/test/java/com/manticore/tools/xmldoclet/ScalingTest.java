@@ -0,0 +1,167 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.DocumentationTool;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scaling regression suite, documenting synthetic corpora of 1, 10 and 100 times the base size (see
+ * {@link CorpusGenerator}) and asserting that the time and the peak heap grow near-linearly with the number of types.
+ * Each corpus is documented several times and the medians are compared. It takes minutes, so it is tagged and only run
+ * by the explicit {@code scalingTest} task of the build, neither by {@code test} nor by {@code check}.
+ */
+@Tag("scaling")
+class ScalingTest {
+    private static final Logger LOGGER = Logger.getLogger(ScalingTest.class.getName());
+
+    /**
+     * How much more than linear the time per type of a larger corpus may grow. The wall clock is noisy on shared build
+     * machines, so it leaves a lot of headroom while still failing a quadratic growth, which is 10 times the cost per
+     * type from one corpus to the next.
+     */
+    private static final double TIME_TOLERANCE = 4.0;
+
+    /**
+     * How much more than linear the peak heap per type of a larger corpus may grow. The peak also depends on when the
+     * collector runs, but less than the wall clock does, so the tolerance is tighter.
+     */
+    private static final double HEAP_TOLERANCE = 3.0;
+
+    private static final int RUNS = 3;
+
+    private static final int PACKAGES = 2;
+    private static final int TYPES_PER_PACKAGE = 20;
+    private static final int MEMBERS_PER_TYPE = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testNearLinearScaling() throws IOException {
+        // warm up the JIT and the shared caches, so the smallest corpus isn't measured cold
+        document(1, "warmup");
+
+        final Measurement small = document(1, "small");
+        final Measurement medium = document(10, "medium");
+        final Measurement large = document(100, "large");
+        for (final Measurement measurement : List.of(small, medium, large)) {
+            LOGGER.info(measurement.toString());
+        }
+
+        // the fixed costs dominate the small corpus, so the costs per type are compared upwards only
+        assertNearLinear(medium.millisPerType(), small.millisPerType(), TIME_TOLERANCE, "time per type", medium,
+                small);
+        assertNearLinear(large.millisPerType(), medium.millisPerType(), TIME_TOLERANCE, "time per type", large,
+                medium);
+        assertNearLinear(large.heapPerType(), medium.heapPerType(), HEAP_TOLERANCE, "peak heap per type", large,
+                medium);
+    }
+
+    private static void assertNearLinear(
+            final double larger, final double smaller, final double tolerance, final String cost,
+            final Measurement largerCorpus, final Measurement smallerCorpus) {
+        assertTrue(larger <= smaller * tolerance, "The " + cost + " grows super-linearly from " + smallerCorpus
+                + " to " + largerCorpus);
+    }
+
+    /**
+     * Documents a corpus {@link #RUNS} times and returns the medians of the time and of the peak heap, which is the
+     * sum of the peak usages of the heap pools during the run, less the heap used after a full collection before it.
+     */
+    private Measurement document(final int scale, final String name) throws IOException {
+        final var generator = new CorpusGenerator(PACKAGES * scale, TYPES_PER_PACKAGE, MEMBERS_PER_TYPE);
+        final Path sources = directory.resolve(name + "/src");
+        generator.generate(sources);
+
+        final double[] millis = new double[RUNS];
+        final long[] peakHeap = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            final List<String> arguments = List.of("-sourcepath", sources.toString(), "-subpackages",
+                    CorpusGenerator.ROOT_PACKAGE, "-d", directory.resolve(name + "/out" + run).toString(), "-quiet",
+                    "-compactXml", "-rst", "-md", "-renderer", "native", "-searchIndex");
+            final DocumentationTool javadoc = ToolProvider.getSystemDocumentationTool();
+            final var messages = new StringWriter();
+
+            final long baselineHeap = getUsedHeapAfterGc();
+            final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            final long start = System.nanoTime();
+            final boolean success;
+            try (var writer = new PrintWriter(messages)) {
+                success = javadoc.getTask(writer, null, null, XmlDoclet.class, arguments, null).call();
+            }
+            millis[run] = (System.nanoTime() - start) / 1_000_000.0;
+            peakHeap[run] = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() - baselineHeap;
+
+            assertTrue(success, messages.toString());
+            assertNotNull(XmlDoclet.getRoot());
+        }
+
+        Arrays.sort(millis);
+        Arrays.sort(peakHeap);
+        return new Measurement(name, generator.getTypeCount(), millis[RUNS / 2], peakHeap[RUNS / 2]);
+    }
+
+    /**
+     * {@return the used heap after requesting full collections until it doesn't shrink anymore}
+     */
+    private static long getUsedHeapAfterGc() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            final long current = memory.getHeapMemoryUsage().getUsed();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    private static final class Measurement {
+        private final String name;
+        private final int types;
+        private final double millis;
+        private final long peakHeap;
+
+        private Measurement(final String name, final int types, final double millis, final long peakHeap) {
+            this.name = name;
+            this.types = types;
+            this.millis = millis;
+            this.peakHeap = peakHeap;
+        }
+
+        private double millisPerType() {
+            return millis / types;
+        }
+
+        private double heapPerType() {
+            return (double) peakHeap / types;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s corpus of %d types: %.0f ms, %d MB peak heap (medians of %d runs)", name, types,
+                    millis, peakHeap / (1024 * 1024), RUNS);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the search index of the floating TOC
+ */
+class SearchIndexTest extends AbstractTest {
+    private final SearchIndex index;
+
+    public SearchIndexTest() {
+        this.index = SearchIndex.of(newJavaDocElements("Class3.java", "Interface2.java", "Enum1.java").rootNode());
+    }
+
+    @Test
+    void testAnchor() {
+        assertEquals("com-manticore-tools-xmldoclet-simpledata-class3",
+                SearchIndex.getAnchor(getElementPathFromSimpleDataPackage("Class3")));
+        assertEquals("outer-inner", SearchIndex.getAnchor("-9Outer$Inner."));
+    }
+
+    @Test
+    void testEntriesAreSortedByName() {
+        final List<SearchIndex.Entry> entries = index.getEntries();
+        assertEquals(
+                List.of("Class3", "Class3.method1", SIMPLE_DATA_PACKAGE, "Enum1", "Interface2", "Interface2.method1"),
+                entries.stream().map(SearchIndex.Entry::getName).toList());
+
+        final SearchIndex.Entry method = entries.get(1);
+        assertEquals('m', method.getKind());
+        assertEquals(getElementPathFromSimpleDataPackage("Class3.method1"), method.getQualified());
+        assertEquals(entries.get(0).getAnchor(), method.getAnchor());
+    }
+
+    @Test
+    void testTrigrams() {
+        final Map<String, List<Integer>> trigrams = index.getTrigrams();
+        assertEquals(List.of(1, 5), trigrams.get("met"));
+        assertEquals(List.of(0, 1), trigrams.get("ss3"));
+
+        for (final Map.Entry<String, List<Integer>> trigram : trigrams.entrySet()) {
+            for (final int entry : trigram.getValue()) {
+                final String name = index.getEntries().get(entry).getName().toLowerCase(Locale.ROOT);
+                assertTrue(name.contains(trigram.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void testJson() throws IOException {
+        final var writer = new StringWriter();
+        index.write(writer);
+        final String json = writer.toString();
+
+        assertTrue(json.startsWith("{\"version\":1,\"names\":[\"Class3\",\"Class3.method1\","));
+        assertTrue(json.contains("\"kinds\":\"cmpeim\""));
+        // the package first, then its enum, class and interface as in the document
+        assertTrue(json.contains("\"toc\":[2,3,0,4]"));
+        // delta encoded
+        assertTrue(json.contains("\"met\":[1,4]"));
+        assertTrue(json.endsWith("}}"));
+        assertFalse(json.contains("\"docs\""));
+    }
+
+    /**
+     * With {@code -splitRst} the entries link to the documents of their packages, or of their types when the package
+     * is above the threshold, relative to the index.
+     */
+    @Test
+    void testSplitDocuments() throws IOException {
+        final var root = newJavaDocElements("Class3.java", "Interface2.java", "Enum1.java").rootNode();
+        final String directory = "javadoc/" + SIMPLE_DATA_PACKAGE;
+
+        final SearchIndex packageDocuments = SearchIndex.of(root, "javadoc", 1000);
+        for (final SearchIndex.Entry entry : packageDocuments.getEntries()) {
+            assertEquals(directory, entry.getDocument(), entry.getName());
+        }
+
+        final SearchIndex typeDocuments = SearchIndex.of(root, "javadoc", 0);
+        assertEquals(
+                List.of(directory + ".Class3", directory + ".Class3", directory, directory + ".Enum1",
+                        directory + ".Interface2", directory + ".Interface2"),
+                typeDocuments.getEntries().stream().map(SearchIndex.Entry::getDocument).toList());
+
+        final var writer = new StringWriter();
+        typeDocuments.write(writer);
+        final String docs =
+                ",\"docs\":[\"" + directory + ".Class3\",\"" + directory + ".Class3\",\"" + directory + "\",";
+        assertTrue(writer.toString().contains(docs), writer.toString());
+        assertNull(index.getEntries().get(0).getDocument());
+    }
+}
@@ -0,0 +1,113 @@
+package com.manticore.tools.xmldoclet;
+
+import net.sf.saxon.lib.ResourceRequest;
+import net.sf.saxon.trans.XPathException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the custom stylesheets and the cached stylesheet modules
+ */
+class StylesheetsTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testParseStylesheets() {
+        final Map<Path, String> stylesheets = Stylesheets.parse("html.xsl=html, text.xsl=.txt,");
+        assertEquals(List.of(Path.of("html.xsl"), Path.of("text.xsl")), List.copyOf(stylesheets.keySet()));
+        assertEquals(List.of(".html", ".txt"), List.copyOf(stylesheets.values()));
+        assertTrue(Stylesheets.parse("").isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> Stylesheets.parse("html.xsl"));
+        assertThrows(IllegalArgumentException.class, () -> Stylesheets.parse("html.xsl="));
+        assertThrows(IllegalArgumentException.class, () -> Stylesheets.parse("=html"));
+    }
+
+    @Test
+    void testModulesAreCached() throws IOException, XPathException {
+        final Path module = directory.resolve("helpers.xsl");
+        Files.writeString(module, "<first/>");
+        final var resolver = new CachingResourceResolver();
+
+        assertEquals("<first/>", read(resolver, module.toUri().toString()));
+        Files.writeString(module, "<ignored/>");
+        Files.setLastModifiedTime(module, FileTime.fromMillis(1000));
+        final FileTime lastModified = Files.getLastModifiedTime(module);
+        assertEquals("<ignored/>", read(resolver, module.toUri().toString()));
+
+        // the content is only read again when the file was modified
+        Files.writeString(module, "<second/>");
+        Files.setLastModifiedTime(module, lastModified);
+        assertEquals("<ignored/>", read(resolver, module.toUri().toString()));
+        Files.setLastModifiedTime(module, FileTime.fromMillis(2000));
+        assertEquals("<second/>", read(resolver, module.toUri().toString()));
+        assertEquals(1, resolver.size());
+    }
+
+    @Test
+    void testClasspathModules() throws IOException, XPathException {
+        final var resolver = new CachingResourceResolver();
+        final String markdown = read(resolver, XmlDoclet.MARKDOWN_XSL.substring(1));
+        assertTrue(markdown.contains("xsl:stylesheet"));
+        assertEquals(markdown, read(resolver, XmlDoclet.MARKDOWN_XSL.substring(1)));
+        assertEquals(1, resolver.size());
+
+        // unknown modules are left to the default resolver
+        assertNull(resolver.resolve(request("com/manticore/xsl/missing.xsl")));
+        assertNull(resolver.resolve(request(directory.resolve("missing.xsl").toUri().toString())));
+    }
+
+    /**
+     * The modules included by the bundled stylesheets have absolute {@code jar:} URIs, which aren't resource names.
+     */
+    @Test
+    void testJarModules() throws IOException, XPathException {
+        final Path jar = directory.resolve("stylesheets.jar");
+        try (var outputStream = new JarOutputStream(Files.newOutputStream(jar))) {
+            outputStream.putNextEntry(new JarEntry("com/example/main.xsl"));
+            outputStream.write("<xsl:include href=\"helpers.xsl\"/>".getBytes(StandardCharsets.UTF_8));
+            outputStream.putNextEntry(new JarEntry("com/example/helpers.xsl"));
+            outputStream.write("<helpers/>".getBytes(StandardCharsets.UTF_8));
+        }
+        final String include = "jar:" + jar.toUri() + "!/com/example/helpers.xsl";
+        final var resolver = new CachingResourceResolver();
+
+        assertEquals("<helpers/>", read(resolver, include));
+        assertEquals("<helpers/>", read(resolver, include));
+        assertEquals(1, resolver.size());
+        assertNull(resolver.resolve(request("jar:" + jar.toUri() + "!/com/example/missing.xsl")));
+
+        // a bundled stylesheet, from the jar or from the classes directory
+        final String markdown = Stylesheets.getResource(XmlDoclet.MARKDOWN_XSL).toString();
+        assertTrue(read(resolver, markdown).contains("xsl:stylesheet"));
+        assertEquals(read(resolver, markdown), read(resolver, markdown));
+        assertEquals(2, resolver.size());
+    }
+
+    private static String read(final CachingResourceResolver resolver, final String uri)
+            throws IOException, XPathException {
+        final var source = (StreamSource) resolver.resolve(request(uri));
+        assertEquals(uri, source.getSystemId());
+        return new String(source.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static ResourceRequest request(final String uri) {
+        final var request = new ResourceRequest();
+        request.uri = uri;
+        return request;
+    }
+}
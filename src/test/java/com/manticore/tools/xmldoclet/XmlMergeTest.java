@@ -0,0 +1,125 @@
+package com.manticore.tools.xmldoclet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test group for the streaming merge of documents
+ */
+class XmlMergeTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testPackagesAreMergedInOrder() throws Exception {
+        final Path first = write("first.xml", "<package name=\"a\"><class name=\"A\" qualified=\"a.A\"/></package>"
+                + "<package name=\"c\"/>");
+        final Path second = write("second.xml", "<package name=\"b\"><comment>B &amp; C</comment></package>");
+
+        final Path target = directory.resolve("javadoc.xml");
+        final XmlMerge.Result result = XmlMerge.merge(List.of(first, second), target);
+        assertTrue(result.isWritten());
+        assertTrue(result.getDuplicates().isEmpty());
+        assertFalse(XmlMerge.merge(List.of(first, second), target).isWritten(), "unchanged");
+
+        final NodeList packages = parse(target).getElementsByTagName("package");
+        assertEquals(List.of("a", "b", "c"), getAttributes(packages, "name"));
+        assertEquals("B & C", packages.item(1).getTextContent().trim());
+    }
+
+    @Test
+    void testSplitPackagesAreCombined() throws Exception {
+        final Path first = write("first.xml", "<package name=\"p\"><comment>First</comment>"
+                + "<enum name=\"E\" qualified=\"p.E\"/>"
+                + "<class name=\"B\" qualified=\"p.B\"><method name=\"m\"/></class>"
+                + "<class name=\"D\" qualified=\"p.D\"/></package>");
+        final Path second = write("second.xml", "<package name=\"p\"><comment>Second</comment>"
+                + "<annotation name=\"N\" qualified=\"p.N\"/>"
+                + "<class name=\"A\" qualified=\"p.A\"/><class name=\"C\" qualified=\"p.C\"/></package>");
+
+        final Path target = directory.resolve("javadoc.xml");
+        XmlMerge.merge(List.of(first, second), target);
+
+        final Element root = parse(target);
+        assertEquals(1, root.getElementsByTagName("package").getLength());
+        assertEquals(1, root.getElementsByTagName("comment").getLength());
+        assertEquals("First", root.getElementsByTagName("comment").item(0).getTextContent());
+        assertEquals(List.of("p.A", "p.B", "p.C", "p.D"), getAttributes(root.getElementsByTagName("class"), "qualified"));
+        assertEquals(1, root.getElementsByTagName("method").getLength());
+
+        // the types keep the order of their kinds
+        final List<String> kinds = new ArrayList<>();
+        final NodeList children = root.getElementsByTagName("package").item(0).getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i) instanceof Element child) {
+                kinds.add(child.getTagName());
+            }
+        }
+        assertEquals(List.of("comment", "annotation", "enum", "class", "class", "class", "class"), kinds);
+    }
+
+    @Test
+    void testDuplicateTypes() throws Exception {
+        final Path first = write("first.xml", "<package name=\"p\"><class name=\"A\" qualified=\"p.A\">"
+                + "<method name=\"first\"/></class></package>");
+        final Path second = write("second.xml", "<package name=\"p\"><interface name=\"A\" qualified=\"p.A\"/>"
+                + "<class name=\"A\" qualified=\"p.A\"><method name=\"second\"/></class></package>");
+
+        final Path target = directory.resolve("javadoc.xml");
+        final XmlMerge.Result result = XmlMerge.merge(List.of(first, second), target);
+        assertEquals(2, result.getDuplicates().size(), result.getDuplicates().toString());
+        assertTrue(result.getDuplicates().get(0).startsWith("p.A of " + first), result.getDuplicates().toString());
+
+        // the first one in the canonical order is written
+        final Element root = parse(target);
+        assertEquals(1, root.getElementsByTagName("interface").getLength());
+        assertEquals(0, root.getElementsByTagName("class").getLength());
+    }
+
+    @Test
+    void testInvalidDocuments() throws IOException {
+        final Path target = directory.resolve("javadoc.xml");
+        final Path valid = write("valid.xml", "<package name=\"a\"/>");
+
+        final Path compact = directory.resolve("compact.xml");
+        Files.writeString(compact, "<root xmlns=\"" + CompactXmlWriter.NAMESPACE + "\"/>");
+        assertThrows(XMLStreamException.class, () -> XmlMerge.merge(List.of(valid, compact), target));
+
+        final Path unsortedPackages = write("packages.xml", "<package name=\"b\"/><package name=\"a\"/>");
+        assertThrows(XMLStreamException.class, () -> XmlMerge.merge(List.of(valid, unsortedPackages), target));
+
+        final Path unsortedTypes = write("types.xml", "<package name=\"a\"><class name=\"B\" qualified=\"a.B\"/>"
+                + "<class name=\"A\" qualified=\"a.A\"/></package>");
+        assertThrows(XMLStreamException.class, () -> XmlMerge.merge(List.of(valid, unsortedTypes), target));
+        assertFalse(Files.exists(target));
+    }
+
+    private Path write(final String name, final String packages) throws IOException {
+        return Files.writeString(directory.resolve(name),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n<root>" + packages + "</root>\n");
+    }
+
+    private static Element parse(final Path document) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(document.toFile()).getDocumentElement();
+    }
+
+    private static List<String> getAttributes(final NodeList elements, final String name) {
+        final List<String> values = new ArrayList<>();
+        for (int i = 0; i < elements.getLength(); i++) {
+            values.add(((Element) elements.item(i)).getAttribute(name));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,36 @@
+package com.manticore.tools.xmldoclet.simpledata;
+
+/**
+ * Class25
+ */
+public class Class25 extends Class3 implements Interface2 {
+    /**
+     * The values
+     */
+    public java.util.List<Interface2> values;
+
+    /**
+     * of
+     *
+     * @param values the values
+     * @return the new instance
+     */
+    public static Class25 of(final Class3... values) {
+        return new Class25();
+    }
+
+    /**
+     * method1
+     *
+     * @return int
+     */
+    @Override
+    public int method1() {
+        return 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Class25";
+    }
+}
@@ -0,0 +1,19 @@
+package com.manticore.tools.xmldoclet.simpledata;
+
+/**
+ * Class26, extending {@link Class3} and using {@link Class3#method1() the first method}.
+ *
+ * @see Interface2
+ * @see String
+ */
+public class Class26 extends Class3 {
+    /**
+     * Same as {@linkplain #method1() method1}, but fails.
+     *
+     * @return never
+     * @throws IllegalStateException always
+     */
+    public int method2() {
+        throw new IllegalStateException();
+    }
+}